@@ -0,0 +1,65 @@
+package com.ojuara.billingbenchmarks;
+
+import com.ojuara.billingservice.id.AccountIdGenerator;
+import com.ojuara.billingservice.id.SnowflakeAccountIdGenerator;
+import com.ojuara.billingservice.id.UuidV7AccountIdGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Custo por id dos geradores de conta, com uma thread e com todas as CPUs disputando o
+ * mesmo gerador. {@code millis} é o formato antigo ({@code "acc-" + currentTimeMillis},
+ * que repete ids) e {@code random-uuid} o {@code UUID.randomUUID()}, como referências.
+ *
+ * <p>Rode com {@code -prof gc} para ver as alocações por id.</p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AccountIdGeneratorBenchmark {
+
+    @Param({"snowflake", "uuidv7", "random-uuid", "millis"})
+    public String strategy;
+
+    private AccountIdGenerator generator;
+
+    @Setup
+    public void setUp() {
+        generator = switch (strategy) {
+            case "snowflake" -> new SnowflakeAccountIdGenerator(1);
+            case "uuidv7" -> new UuidV7AccountIdGenerator();
+            case "random-uuid" -> () -> AccountIdGenerator.PREFIX + UUID.randomUUID();
+            case "millis" -> () -> AccountIdGenerator.PREFIX + System.currentTimeMillis();
+            default -> throw new IllegalArgumentException(strategy);
+        };
+    }
+
+    @Benchmark
+    @Threads(1)
+    public String singleThread() {
+        return generator.nextId();
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public String allThreads() {
+        return generator.nextId();
+    }
+
+}
@@ -0,0 +1,32 @@
+package com.ojuara.billingbenchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Ponto de entrada dos benchmarks. Aceita as mesmas opções de linha de comando do JMH
+ * e grava o resultado em JSON (por padrão em {@code target/jmh-result.json}), para
+ * comparar execuções entre versões.
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+
+        OptionsBuilder options = new OptionsBuilder();
+        options.parent(commandLine);
+        if (!commandLine.getResultFormat().hasValue()) {
+            options.resultFormat(ResultFormatType.JSON);
+        }
+        if (!commandLine.getResult().hasValue()) {
+            options.result("target/jmh-result.json");
+        }
+
+        new Runner(options.build()).run();
+    }
+
+}
@@ -0,0 +1,80 @@
+package com.ojuara.billingbenchmarks;
+
+import com.ojuara.billingservice.BillingServiceApplication;
+import com.ojuara.billingservice.service.BillingAccountCreation;
+import com.ojuara.billingservice.service.BillingAccountService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Criação de contas com {@code billing.store.write-mode} {@code direct} (um insert e um
+ * commit por chamada) contra {@code batched} (write-behind, um insert de várias linhas por
+ * lote), com várias threads chamando ao mesmo tempo, sobre o H2 em arquivo padrão.
+ *
+ * <p>Mude a concorrência com {@code -t} (ex.: {@code -t 1} mostra o custo do atraso do lote
+ * quando não há nada para agrupar).</p>
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Threads(32)
+@State(Scope.Benchmark)
+public class BillingAccountStoreBenchmark {
+
+    @Param({"direct", "batched"})
+    public String writeMode;
+
+    private ConfigurableApplicationContext context;
+    private BillingAccountService billingAccountService;
+    private Path dataDirectory;
+    private final AtomicLong patients = new AtomicLong();
+
+    @Setup
+    public void setUp() throws IOException {
+        dataDirectory = Files.createTempDirectory("billing-bench-");
+        context = new SpringApplicationBuilder(BillingServiceApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=jdbc:h2:file:" + dataDirectory.resolve("billing") + ";DB_CLOSE_ON_EXIT=FALSE",
+                        "--grpc.server.port=-1",
+                        "--billing.store.write-mode=" + writeMode,
+                        "--logging.level.root=warn");
+        billingAccountService = context.getBean(BillingAccountService.class);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        context.close();
+        try (var files = Files.walk(dataDirectory)) {
+            files.sorted((a, b) -> b.getNameCount() - a.getNameCount()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public BillingAccountCreation createAccount() {
+        long n = patients.incrementAndGet();
+        return billingAccountService.createAccount("patient-" + n, "Patient " + n, "patient" + n + "@example.com");
+    }
+
+}
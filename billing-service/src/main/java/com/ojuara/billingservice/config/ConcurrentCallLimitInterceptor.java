@@ -0,0 +1,75 @@
+package com.ojuara.billingservice.config;
+
+import io.grpc.ForwardingServerCallListener.SimpleForwardingServerCallListener;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Limita as chamadas gRPC em andamento; acima do limite a chamada é encerrada na hora com
+ * {@code RESOURCE_EXHAUSTED}, sem chegar ao handler, e o cliente pode tentar de novo.
+ *
+ * <p>A permissão é devolvida quando a chamada termina ({@code onComplete} ou {@code onCancel}),
+ * então um stream ocupa uma permissão enquanto estiver aberto.</p>
+ */
+class ConcurrentCallLimitInterceptor implements ServerInterceptor {
+
+    private final int limit;
+    private final Semaphore permits;
+
+    ConcurrentCallLimitInterceptor(int limit) {
+        this.limit = limit;
+        this.permits = new Semaphore(limit);
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers,
+                                                                 ServerCallHandler<ReqT, RespT> next) {
+        if (!permits.tryAcquire()) {
+            call.close(Status.RESOURCE_EXHAUSTED.withDescription(
+                    "Billing service is handling " + limit + " calls; retry later"), new Metadata());
+            return new ServerCall.Listener<>() {
+            };
+        }
+
+        AtomicBoolean released = new AtomicBoolean();
+        Runnable release = () -> {
+            if (released.compareAndSet(false, true)) {
+                permits.release();
+            }
+        };
+
+        ServerCall.Listener<ReqT> listener;
+        try {
+            listener = next.startCall(call, headers);
+        } catch (RuntimeException e) {
+            release.run();
+            throw e;
+        }
+        return new SimpleForwardingServerCallListener<>(listener) {
+            @Override
+            public void onComplete() {
+                try {
+                    super.onComplete();
+                } finally {
+                    release.run();
+                }
+            }
+
+            @Override
+            public void onCancel() {
+                try {
+                    super.onCancel();
+                } finally {
+                    release.run();
+                }
+            }
+        };
+    }
+
+}
@@ -0,0 +1,90 @@
+package com.ojuara.billingservice.config;
+
+import io.grpc.ServerBuilder;
+import lombok.extern.slf4j.Slf4j;
+import net.devh.boot.grpc.server.serverfactory.GrpcServerConfigurer;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executor dos handlers {@code @GrpcService}, no lugar do cached thread pool padrão do gRPC
+ * (que cria threads sem limite sob carga).
+ *
+ * <ul>
+ *     <li>{@code billing.grpc.executor=virtual} (padrão): uma virtual thread por tarefa;</li>
+ *     <li>{@code billing.grpc.executor=bounded}: {@code billing.grpc.executor-threads} threads
+ *     fixas e até {@code billing.grpc.executor-queue-capacity} chamadas esperando por uma
+ *     delas. Acima disso a chamada é recusada com {@code RESOURCE_EXHAUSTED}
+ *     ({@link ConcurrentCallLimitInterceptor}). Nenhum handler roda na thread do transporte:
+ *     os handlers bloqueiam (esperam a gravação da conta) e travariam a leitura de todas as
+ *     chamadas da conexão.</li>
+ * </ul>
+ *
+ * <p>No modo bounded cada chamada aberta tem no máximo uma tarefa na fila do executor; a fila
+ * comporta o dobro do limite de chamadas, para absorver também a primeira tarefa das chamadas
+ * novas até o interceptor recusá-las. Se mesmo assim encher, o executor rejeita a tarefa
+ * ({@code AbortPolicy}) e a chamada falha no transporte, em vez de rodar na thread dele.</p>
+ *
+ * <p>O executor não é exposto como bean para não substituir o executor de tarefas do Spring.</p>
+ */
+@Slf4j
+@Component
+public class GrpcServerExecutorConfigurer implements GrpcServerConfigurer, DisposableBean {
+
+    private final ExecutorService executor;
+    // Só no modo bounded
+    private final ConcurrentCallLimitInterceptor callLimit;
+
+    public GrpcServerExecutorConfigurer(@Value("${billing.grpc.executor:virtual}") String type,
+                                        @Value("${billing.grpc.executor-threads:32}") int threads,
+                                        @Value("${billing.grpc.executor-queue-capacity:1000}") int queueCapacity) {
+        this.executor = createExecutor(type, threads, queueCapacity);
+        this.callLimit = "bounded".equalsIgnoreCase(type) ? new ConcurrentCallLimitInterceptor(threads + queueCapacity) : null;
+    }
+
+    @Override
+    public void accept(ServerBuilder<?> serverBuilder) {
+        serverBuilder.executor(executor);
+        if (callLimit != null) {
+            serverBuilder.intercept(callLimit);
+        }
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+            executor.shutdownNow();
+        }
+    }
+
+    private static ExecutorService createExecutor(String type, int threads, int queueCapacity) {
+        if ("virtual".equalsIgnoreCase(type)) {
+            log.info("gRPC handlers running on virtual threads");
+            return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("grpc-virtual-", 0).factory());
+        }
+        if (!"bounded".equalsIgnoreCase(type)) {
+            throw new IllegalArgumentException("billing.grpc.executor must be 'virtual' or 'bounded', got " + type);
+        }
+
+        log.info("gRPC handlers running on {} threads (up to {} calls waiting)", threads, queueCapacity);
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "grpc-handler-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(2 * (threads + queueCapacity)), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+}
@@ -1,12 +1,26 @@
 package com.ojuara.billingservice.grpc;
 
+import billing.BillingAccountResult;
+import billing.BillingBatchRequest;
+import billing.BillingBatchResponse;
 import billing.BillingRequest;
 import billing.BillingResponse;
 import billing.BillingServiceGrpc.BillingServiceImplBase;
+import com.ojuara.billingservice.service.AccountRequest;
+import com.ojuara.billingservice.service.BillingAccountCreation;
+import com.ojuara.billingservice.service.BillingAccountService;
+import com.ojuara.billingservice.service.BillingStoreBusyException;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
 import lombok.extern.slf4j.Slf4j;
 import net.devh.boot.grpc.server.service.GrpcService;
 
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
 // Exemplo para usar no Brun
 // Anotação Lombok que adiciona um campo 'log' (org.slf4j.Logger) à classe
 @Slf4j
@@ -15,6 +29,15 @@ import net.devh.boot.grpc.server.service.GrpcService;
 // Implementação do serviço gRPC gerada a partir do .proto (classe base)
 public class BillingGrpcService extends BillingServiceImplBase {
 
+    // Status devolvido para itens do lote sem patientId ou com campos maiores que as colunas
+    static final String REJECTED = "REJECTED";
+
+    private final BillingAccountService billingAccountService;
+
+    public BillingGrpcService(BillingAccountService billingAccountService) {
+        this.billingAccountService = billingAccountService;
+    }
+
     // Indica que este método sobrescreve o definido na classe base gerada
     @Override
     // Método chamado pelo runtime gRPC quando o cliente invoca 'createBillingAccount'
@@ -28,17 +51,30 @@ public class BillingGrpcService extends BillingServiceImplBase {
         log.info("Received billing account creation request for userId: {}",
                 billingRequest.toString());
 
-        // Lugar para a lógica de negócio:
-        // - criar registro de conta de cobrança no banco de dados,
-        // - validar dados, executar cálculos, chamar outros serviços, etc.
-        // Observação: implementar com serviços/repositórios injetados, não direto aqui.
+        // Sem patientId não há como deduplicar a conta; campos maiores que as colunas não cabem
+        AccountRequest accountRequest = toAccountRequest(billingRequest);
+        String error = accountRequest.validationError();
+        if (error != null) {
+            responseObserver.onError(Status.INVALID_ARGUMENT
+                    .withDescription(error)
+                    .asRuntimeException());
+            return;
+        }
+
+        // Cria a conta (ou devolve a existente, se o paciente já tiver uma)
+        BillingAccountCreation result;
+        try {
+            result = billingAccountService.createAccounts(List.of(accountRequest)).get(0);
+        } catch (BillingStoreBusyException e) {
+            // Fila de escrita cheia: o cliente deve tentar de novo
+            responseObserver.onError(Status.RESOURCE_EXHAUSTED.withDescription(e.getMessage()).asRuntimeException());
+            return;
+        }
 
         // Monta a resposta usando o builder gerado pelo protobuf
         BillingResponse billingResponse = BillingResponse.newBuilder()
-                // Gera um identificador simples com timestamp (exemplo)
-                .setAccountId("acc-" + System.currentTimeMillis())
-                // Define o status inicial da conta
-                .setStatus("ACTIVE")
+                .setAccountId(result.account().accountId())
+                .setStatus(result.account().status())
                 // Constrói a instância imutável de BillingResponse
                 .build();
 
@@ -48,4 +84,133 @@ public class BillingGrpcService extends BillingServiceImplBase {
         responseObserver.onCompleted();
 
     }
+
+    /**
+     * Cria as contas de um lote de pacientes (usado pelo outbox do patient-service).
+     *
+     * <p>Idempotente por patientId: um lote reenviado depois de uma resposta perdida
+     * devolve as mesmas contas, com {@code created = false}.</p>
+     */
+    @Override
+    public void batchCreateBillingAccounts(BillingBatchRequest batchRequest,
+                                           StreamObserver<BillingBatchResponse> responseObserver) {
+
+        log.info("Received batch billing account creation request with {} accounts",
+                batchRequest.getAccountsCount());
+
+        // Itens válidos vão juntos para o store (normalmente um único lote de escrita); os
+        // inválidos são recusados um a um, sem derrubar o lote
+        List<AccountRequest> requests = batchRequest.getAccountsList().stream()
+                .map(BillingGrpcService::toAccountRequest)
+                .toList();
+        Iterator<BillingAccountCreation> created;
+        try {
+            created = billingAccountService.createAccounts(requests.stream()
+                    .filter(request -> request.validationError() == null)
+                    .toList()).iterator();
+        } catch (BillingStoreBusyException e) {
+            responseObserver.onError(Status.RESOURCE_EXHAUSTED.withDescription(e.getMessage()).asRuntimeException());
+            return;
+        }
+
+        BillingBatchResponse.Builder response = BillingBatchResponse.newBuilder();
+        for (int i = 0; i < requests.size(); i++) {
+            response.addResults(requests.get(i).validationError() != null
+                    ? rejected(requests.get(i))
+                    : toResult(batchRequest.getAccounts(i), created.next()));
+        }
+
+        responseObserver.onNext(response.build());
+        responseObserver.onCompleted();
+    }
+
+    /**
+     * Stream bidirecional de criação de contas, com controle de fluxo manual.
+     *
+     * <p>O pedido automático de mensagens é desligado: o servidor pede uma requisição por vez
+     * e só pede a próxima quando o stream de resposta está pronto ({@code isReady()}). Se o
+     * cliente não consome as respostas, o servidor para de ler, o buffer do HTTP/2 enche e o
+     * cliente é que passa a esperar, em vez de o billing-service acumular mensagens sem limite.</p>
+     */
+    @Override
+    public StreamObserver<BillingRequest> createBillingAccounts(
+            StreamObserver<BillingAccountResult> responseObserver) {
+
+        ServerCallStreamObserver<BillingAccountResult> serverObserver =
+                (ServerCallStreamObserver<BillingAccountResult>) responseObserver;
+        serverObserver.disableAutoRequest();
+
+        // true quando há um pedido de mensagem pendente; evita pedir duas vezes quando o
+        // onReadyHandler dispara logo depois de onNext já ter pedido a próxima
+        AtomicBoolean requested = new AtomicBoolean();
+        AtomicLong processed = new AtomicLong();
+
+        serverObserver.setOnReadyHandler(() -> {
+            if (serverObserver.isReady() && requested.compareAndSet(false, true)) {
+                serverObserver.request(1);
+            }
+        });
+        serverObserver.setOnCancelHandler(() ->
+                log.warn("Billing account stream cancelled by client after {} accounts", processed.get()));
+
+        return new StreamObserver<>() {
+            @Override
+            public void onNext(BillingRequest request) {
+                requested.set(false);
+                try {
+                    serverObserver.onNext(createAccount(request));
+                } catch (BillingStoreBusyException e) {
+                    serverObserver.onError(Status.RESOURCE_EXHAUSTED.withDescription(e.getMessage()).asRuntimeException());
+                    return;
+                }
+                processed.incrementAndGet();
+
+                if (serverObserver.isReady() && requested.compareAndSet(false, true)) {
+                    serverObserver.request(1);
+                }
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                log.warn("Billing account stream failed after {} accounts: {}", processed.get(), t.getMessage());
+            }
+
+            @Override
+            public void onCompleted() {
+                log.info("Billing account stream completed: {} accounts", processed.get());
+                serverObserver.onCompleted();
+            }
+        };
+    }
+
+    // Cria (ou devolve) a conta de um item do stream; itens inválidos são rejeitados
+    private BillingAccountResult createAccount(BillingRequest request) {
+        AccountRequest accountRequest = toAccountRequest(request);
+        if (accountRequest.validationError() != null) {
+            return rejected(accountRequest);
+        }
+        return toResult(request, billingAccountService.createAccounts(List.of(accountRequest)).get(0));
+    }
+
+    private static AccountRequest toAccountRequest(BillingRequest request) {
+        return new AccountRequest(request.getPatientId(), request.getName(), request.getEmail());
+    }
+
+    private static BillingAccountResult toResult(BillingRequest request, BillingAccountCreation result) {
+        return BillingAccountResult.newBuilder()
+                .setPatientId(request.getPatientId())
+                .setAccountId(result.account().accountId())
+                .setStatus(result.account().status())
+                .setCreated(result.created())
+                .build();
+    }
+
+    // Leva o patientId de volta para o chamador casar o resultado com o item enviado
+    private static BillingAccountResult rejected(AccountRequest request) {
+        return BillingAccountResult.newBuilder()
+                .setPatientId(request.patientId())
+                .setStatus(REJECTED)
+                .setError(request.validationError())
+                .build();
+    }
 }
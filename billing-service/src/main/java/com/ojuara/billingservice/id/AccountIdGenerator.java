@@ -0,0 +1,16 @@
+package com.ojuara.billingservice.id;
+
+/**
+ * Gera os identificadores das contas de cobrança.
+ *
+ * <p>Implementações precisam ser thread-safe e nunca repetir um id dentro do mesmo nó.
+ * A implementação em uso é escolhida por {@code billing.account-id.strategy}
+ * (ver {@link AccountIdGeneratorConfig}).</p>
+ */
+public interface AccountIdGenerator {
+
+    String PREFIX = "acc-";
+
+    String nextId();
+
+}
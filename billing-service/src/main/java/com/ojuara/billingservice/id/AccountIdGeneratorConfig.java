@@ -0,0 +1,46 @@
+package com.ojuara.billingservice.id;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Escolhe o {@link AccountIdGenerator}:
+ *
+ * <ul>
+ *     <li>{@code billing.account-id.strategy=uuidv7} (padrão): UUIDs ordenados por tempo, sem
+ *     coordenação entre instâncias;</li>
+ *     <li>{@code billing.account-id.strategy=snowflake}: ids curtos e ordenáveis; cada
+ *     instância precisa de um {@code billing.account-id.node-id} (0-1023) diferente, atribuído
+ *     pelo deploy (ex.: o índice do pod num StatefulSet). Sem ele a aplicação não sobe: um nó
+ *     derivado do hostname pode repetir entre instâncias e gerar ids duplicados.</li>
+ * </ul>
+ */
+@Slf4j
+@Configuration
+public class AccountIdGeneratorConfig {
+
+    @Bean
+    AccountIdGenerator accountIdGenerator(@Value("${billing.account-id.strategy:uuidv7}") String strategy,
+                                          @Value("${billing.account-id.node-id:-1}") int nodeId) {
+        return switch (strategy.toLowerCase()) {
+            case "snowflake" -> {
+                if (nodeId < 0) {
+                    throw new IllegalStateException("billing.account-id.node-id (BILLING_NODE_ID) must be set to a "
+                            + "value unique per instance (0-" + SnowflakeAccountIdGenerator.MAX_NODE_ID
+                            + ") for snowflake account ids, or use billing.account-id.strategy=uuidv7");
+                }
+                log.info("Account ids: snowflake, node {}", nodeId);
+                yield new SnowflakeAccountIdGenerator(nodeId);
+            }
+            case "uuidv7" -> {
+                log.info("Account ids: UUIDv7");
+                yield new UuidV7AccountIdGenerator();
+            }
+            default -> throw new IllegalArgumentException(
+                    "billing.account-id.strategy must be 'snowflake' or 'uuidv7', got " + strategy);
+        };
+    }
+
+}
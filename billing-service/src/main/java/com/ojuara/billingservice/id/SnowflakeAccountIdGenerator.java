@@ -0,0 +1,76 @@
+package com.ojuara.billingservice.id;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Ids de 64 bits no estilo Snowflake: 41 bits de milissegundos desde {@link #EPOCH_MILLIS},
+ * 10 bits de nó e 12 bits de sequência, escritos em Crockford base32 com largura fixa
+ * ({@code acc-} + 13 caracteres), então a ordem alfabética é a ordem de geração.
+ *
+ * <p>O par (milissegundo, sequência) fica em um único {@link AtomicLong} e avança com um CAS
+ * para {@code max(anterior + 1, agora << 12)}, sem locks. Isso garante ids estritamente
+ * crescentes no nó mesmo se o relógio voltar (ajuste de NTP): enquanto o relógio estiver
+ * atrás, os ids continuam a partir do último milissegundo usado. Mais de 4096 ids no mesmo
+ * milissegundo também "emprestam" o milissegundo seguinte em vez de esperar.</p>
+ */
+public class SnowflakeAccountIdGenerator implements AccountIdGenerator {
+
+    // 2024-01-01T00:00:00Z; 41 bits de milissegundos cobrem ~69 anos a partir daqui
+    static final long EPOCH_MILLIS = 1_704_067_200_000L;
+
+    static final int NODE_BITS = 10;
+    static final int SEQUENCE_BITS = 12;
+    static final int MAX_NODE_ID = (1 << NODE_BITS) - 1;
+
+    // Texto montado em byte[] Latin-1: a String resultante é compacta e não passa por char[]
+    private static final byte[] PREFIX_BYTES = PREFIX.getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CROCKFORD = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".getBytes(StandardCharsets.US_ASCII);
+    private static final int ENCODED_LENGTH = 13;
+
+    private final long nodeBits;
+    private final LongSupplier clock;
+    // (milissegundos desde EPOCH_MILLIS << SEQUENCE_BITS) | sequência
+    private final AtomicLong state = new AtomicLong();
+
+    public SnowflakeAccountIdGenerator(int nodeId) {
+        this(nodeId, System::currentTimeMillis);
+    }
+
+    SnowflakeAccountIdGenerator(int nodeId, LongSupplier clock) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("nodeId must be between 0 and " + MAX_NODE_ID + ", got " + nodeId);
+        }
+        this.nodeBits = (long) nodeId << SEQUENCE_BITS;
+        this.clock = clock;
+    }
+
+    @Override
+    public String nextId() {
+        return encode(nextLong());
+    }
+
+    /**
+     * Próximo id como número (o mesmo valor codificado por {@link #nextId()}).
+     */
+    public long nextLong() {
+        long candidate = (clock.getAsLong() - EPOCH_MILLIS) << SEQUENCE_BITS;
+        long next = state.accumulateAndGet(candidate, (previous, now) -> Math.max(previous + 1, now));
+
+        long timestamp = next >>> SEQUENCE_BITS;
+        long sequence = next & ((1L << SEQUENCE_BITS) - 1);
+        return (timestamp << (NODE_BITS + SEQUENCE_BITS)) | nodeBits | sequence;
+    }
+
+    static String encode(long id) {
+        byte[] bytes = new byte[PREFIX.length() + ENCODED_LENGTH];
+        System.arraycopy(PREFIX_BYTES, 0, bytes, 0, PREFIX_BYTES.length);
+        for (int i = bytes.length - 1; i >= PREFIX.length(); i--) {
+            bytes[i] = CROCKFORD[(int) (id & 31)];
+            id >>>= 5;
+        }
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+}
@@ -0,0 +1,71 @@
+package com.ojuara.billingservice.id;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Ids UUIDv7 (RFC 9562): 48 bits de milissegundos Unix, 12 bits de contador ({@code rand_a},
+ * método 1 da RFC) e 62 bits aleatórios, no formato {@code acc-xxxxxxxx-xxxx-7xxx-yxxx-xxxxxxxxxxxx}.
+ *
+ * <p>Não precisa de id de nó: a parte aleatória torna colisões entre nós desprezíveis. O par
+ * (milissegundo, contador) avança com o mesmo CAS do {@link SnowflakeAccountIdGenerator}, então
+ * os ids de uma instância são estritamente crescentes mesmo com o relógio voltando.</p>
+ */
+public class UuidV7AccountIdGenerator implements AccountIdGenerator {
+
+    private static final int COUNTER_BITS = 12;
+    private static final byte[] PREFIX_BYTES = PREFIX.getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private final LongSupplier clock;
+    // (milissegundos Unix << COUNTER_BITS) | contador
+    private final AtomicLong state = new AtomicLong();
+
+    public UuidV7AccountIdGenerator() {
+        this(System::currentTimeMillis);
+    }
+
+    UuidV7AccountIdGenerator(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    @Override
+    public String nextId() {
+        long candidate = clock.getAsLong() << COUNTER_BITS;
+        long next = state.accumulateAndGet(candidate, (previous, now) -> Math.max(previous + 1, now));
+
+        long millis = next >>> COUNTER_BITS;
+        long counter = next & ((1L << COUNTER_BITS) - 1);
+        long mostSignificant = (millis << 16) | 0x7000L | counter;
+        long leastSignificant = (ThreadLocalRandom.current().nextLong() & 0x3FFF_FFFF_FFFF_FFFFL) | 0x8000_0000_0000_0000L;
+        return format(mostSignificant, leastSignificant);
+    }
+
+    private static String format(long msb, long lsb) {
+        byte[] bytes = new byte[PREFIX.length() + 36];
+        System.arraycopy(PREFIX_BYTES, 0, bytes, 0, PREFIX_BYTES.length);
+        int p = PREFIX.length();
+        p = hex(msb >>> 32, 8, bytes, p);
+        bytes[p++] = '-';
+        p = hex(msb >>> 16, 4, bytes, p);
+        bytes[p++] = '-';
+        p = hex(msb, 4, bytes, p);
+        bytes[p++] = '-';
+        p = hex(lsb >>> 48, 4, bytes, p);
+        bytes[p++] = '-';
+        hex(lsb, 12, bytes, p);
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    // Escreve os 'digits' dígitos hexadecimais menos significativos de value a partir de offset
+    private static int hex(long value, int digits, byte[] bytes, int offset) {
+        for (int i = offset + digits - 1; i >= offset; i--) {
+            bytes[i] = HEX[(int) (value & 0xF)];
+            value >>>= 4;
+        }
+        return offset + digits;
+    }
+
+}
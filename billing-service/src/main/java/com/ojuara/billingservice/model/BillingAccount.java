@@ -0,0 +1,7 @@
+package com.ojuara.billingservice.model;
+
+/**
+ * Conta de cobrança de um paciente.
+ */
+public record BillingAccount(String accountId, String patientId, String name, String email, String status) {
+}
@@ -0,0 +1,88 @@
+package com.ojuara.billingservice.repository;
+
+import com.ojuara.billingservice.model.BillingAccount;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Tabela {@code billing_account}, com uma linha por {@code patientId}.
+ */
+@Repository
+public class BillingAccountRepository {
+
+    private static final RowMapper<BillingAccount> ROW_MAPPER = (rs, rowNum) -> new BillingAccount(
+            rs.getString("account_id"),
+            rs.getString("patient_id"),
+            rs.getString("name"),
+            rs.getString("email"),
+            rs.getString("status"));
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public BillingAccountRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Insere as contas cujo {@code patientId} ainda não existe, em um único comando
+     * ({@code MERGE ... USING (VALUES ...) WHEN NOT MATCHED THEN INSERT}). Contas de pacientes
+     * que já têm conta são ignoradas, sem erro de chave duplicada.
+     *
+     * @return quantidade de contas inseridas
+     */
+    public int insertMissing(List<BillingAccount> accounts) {
+        if (accounts.isEmpty()) {
+            return 0;
+        }
+
+        StringBuilder sql = new StringBuilder(128 + accounts.size() * 20)
+                .append("MERGE INTO billing_account t USING (VALUES ");
+        List<Object> args = new ArrayList<>(accounts.size() * 6);
+        Timestamp now = Timestamp.from(Instant.now());
+        for (int i = 0; i < accounts.size(); i++) {
+            BillingAccount account = accounts.get(i);
+            sql.append(i == 0 ? "" : ", ").append("(?, ?, ?, ?, ?, ?)");
+            args.add(account.patientId());
+            args.add(account.accountId());
+            args.add(account.name());
+            args.add(account.email());
+            args.add(account.status());
+            args.add(now);
+        }
+        sql.append(") AS s(patient_id, account_id, name, email, status, created_at) ")
+                .append("ON t.patient_id = s.patient_id ")
+                .append("WHEN NOT MATCHED THEN INSERT (patient_id, account_id, name, email, status, created_at) ")
+                .append("VALUES (s.patient_id, s.account_id, s.name, s.email, s.status, CAST(s.created_at AS TIMESTAMP WITH TIME ZONE))");
+
+        return jdbcTemplate.update(sql.toString(), args.toArray());
+    }
+
+    public List<BillingAccount> findByPatientIds(Collection<String> patientIds) {
+        if (patientIds.isEmpty()) {
+            return List.of();
+        }
+        String placeholders = String.join(", ", Collections.nCopies(patientIds.size(), "?"));
+        return jdbcTemplate.query(
+                "SELECT account_id, patient_id, name, email, status FROM billing_account WHERE patient_id IN (" + placeholders + ")",
+                ROW_MAPPER, patientIds.toArray());
+    }
+
+    public Optional<BillingAccount> findByPatientId(String patientId) {
+        return findByPatientIds(List.of(patientId)).stream().findFirst();
+    }
+
+    public long count() {
+        Long count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM billing_account", Long.class);
+        return count == null ? 0 : count;
+    }
+
+}
@@ -0,0 +1,35 @@
+package com.ojuara.billingservice.service;
+
+/**
+ * Dados de um paciente para criação da conta de cobrança.
+ */
+public record AccountRequest(String patientId, String name, String email) {
+
+    // Tamanhos das colunas de billing_account (schema.sql)
+    static final int MAX_PATIENT_ID_LENGTH = 64;
+    static final int MAX_NAME_LENGTH = 255;
+    static final int MAX_EMAIL_LENGTH = 255;
+
+    /**
+     * Confere a requisição antes de ela entrar em um lote: uma linha que o banco recusaria
+     * faria o lote inteiro falhar.
+     *
+     * @return o motivo da recusa, ou {@code null} se a conta pode ser gravada
+     */
+    public String validationError() {
+        if (patientId == null || patientId.isBlank()) {
+            return "patientId is required";
+        }
+        if (patientId.length() > MAX_PATIENT_ID_LENGTH) {
+            return "patientId must have at most " + MAX_PATIENT_ID_LENGTH + " characters";
+        }
+        if (name != null && name.length() > MAX_NAME_LENGTH) {
+            return "name must have at most " + MAX_NAME_LENGTH + " characters";
+        }
+        if (email != null && email.length() > MAX_EMAIL_LENGTH) {
+            return "email must have at most " + MAX_EMAIL_LENGTH + " characters";
+        }
+        return null;
+    }
+
+}
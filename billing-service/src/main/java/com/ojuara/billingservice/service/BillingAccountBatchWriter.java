@@ -0,0 +1,246 @@
+package com.ojuara.billingservice.service;
+
+import com.ojuara.billingservice.id.AccountIdGenerator;
+import com.ojuara.billingservice.model.BillingAccount;
+import com.ojuara.billingservice.repository.BillingAccountRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Escrita write-behind das contas de cobrança.
+ *
+ * <p>As criações entram em uma fila limitada e uma única thread as grava em lotes: espera a
+ * primeira, junta o que chegar em até {@code batch-max-delay} (no máximo {@code batch-max-size})
+ * e grava tudo com um único {@code MERGE} de várias linhas e um único commit. Cada chamador
+ * recebe um {@link CompletableFuture} completado depois do commit, então a resposta ao cliente
+ * só sai com a conta já gravada.</p>
+ *
+ * <p>Com a fila cheia, {@link #submit} espera até {@code enqueue-timeout} e então falha com
+ * {@link BillingStoreBusyException}, em vez de acumular criações sem limite na memória.</p>
+ *
+ * <p>As requisições chegam validadas pelo {@link BillingAccountService}. Se ainda assim o lote
+ * falhar, ele é gravado de novo paciente a paciente, e só os pedidos do paciente com problema
+ * recebem o erro.</p>
+ */
+@Slf4j
+@Component
+public class BillingAccountBatchWriter implements SmartLifecycle {
+
+    static final String ACTIVE = "ACTIVE";
+
+    private final BillingAccountRepository repository;
+    private final AccountIdGenerator accountIdGenerator;
+    private final TransactionTemplate transactionTemplate;
+    private final BlockingQueue<PendingAccount> queue;
+    private final int batchMaxSize;
+    private final long batchMaxDelayNanos;
+    private final Duration enqueueTimeout;
+
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    private volatile boolean running;
+    private Thread writerThread;
+
+    public BillingAccountBatchWriter(BillingAccountRepository repository,
+                                     AccountIdGenerator accountIdGenerator,
+                                     PlatformTransactionManager transactionManager,
+                                     @Value("${billing.store.batch-max-size:500}") int batchMaxSize,
+                                     @Value("${billing.store.batch-max-delay:2ms}") Duration batchMaxDelay,
+                                     @Value("${billing.store.queue-capacity:10000}") int queueCapacity,
+                                     @Value("${billing.store.enqueue-timeout:100ms}") Duration enqueueTimeout) {
+        this.repository = repository;
+        this.accountIdGenerator = accountIdGenerator;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchMaxSize = batchMaxSize;
+        this.batchMaxDelayNanos = batchMaxDelay.toNanos();
+        this.enqueueTimeout = enqueueTimeout;
+    }
+
+    /**
+     * Enfileira a criação da conta.
+     *
+     * @return conta gravada (nova ou a já existente para o paciente)
+     * @throws BillingStoreBusyException se a fila continuar cheia após {@code enqueue-timeout}
+     */
+    public CompletableFuture<BillingAccountCreation> submit(AccountRequest request) {
+        if (!running) {
+            throw new IllegalStateException("Billing account writer is not running");
+        }
+
+        PendingAccount pending = new PendingAccount(request, new CompletableFuture<>());
+        try {
+            if (!queue.offer(pending, enqueueTimeout.toNanos(), TimeUnit.NANOSECONDS)) {
+                rejected.increment();
+                throw new BillingStoreBusyException("Billing account write queue is full");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BillingStoreBusyException("Interrupted while waiting for the billing account write queue");
+        }
+        return pending.result();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("queued", queue.size());
+        stats.put("batches", batches.sum());
+        stats.put("written", written.sum());
+        stats.put("rejected", rejected.sum());
+        long batchCount = batches.sum();
+        stats.put("averageBatchSize", batchCount == 0 ? 0 : written.sum() / (double) batchCount);
+        return stats;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        writerThread = Thread.ofPlatform().name("billing-account-writer").daemon().start(this::writeLoop);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        writerThread.interrupt();
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // Enfileirado depois que a thread de escrita saiu
+        PendingAccount pending;
+        while ((pending = queue.poll()) != null) {
+            pending.result().completeExceptionally(new BillingStoreBusyException("Billing account writer stopped"));
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Sobe antes e para depois do servidor gRPC (fase Integer.MAX_VALUE), que é quem enfileira
+    @Override
+    public int getPhase() {
+        return Integer.MAX_VALUE - 1000;
+    }
+
+    private void writeLoop() {
+        List<PendingAccount> batch = new ArrayList<>(batchMaxSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingAccount first = running ? queue.take() : queue.poll();
+                if (first == null) {
+                    break;
+                }
+                batch.add(first);
+
+                // Junta o que chegar até o prazo do lote ou até encher o lote
+                long deadline = System.nanoTime() + batchMaxDelayNanos;
+                while (batch.size() < batchMaxSize) {
+                    queue.drainTo(batch, batchMaxSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchMaxSize || remaining <= 0) {
+                        break;
+                    }
+                    PendingAccount next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // stop(): continua para gravar o que já foi enfileirado
+                if (batch.isEmpty()) {
+                    continue;
+                }
+            }
+
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    private void write(List<PendingAccount> batch) {
+        try {
+            writeTogether(batch);
+        } catch (RuntimeException e) {
+            Map<String, List<PendingAccount>> byPatient = batch.stream().collect(Collectors.groupingBy(
+                    pending -> pending.request().patientId(), LinkedHashMap::new, Collectors.toList()));
+            if (byPatient.size() == 1) {
+                log.error("Failed to write billing account for patient {}", batch.getFirst().request().patientId(), e);
+                batch.forEach(pending -> pending.result().completeExceptionally(e));
+                return;
+            }
+
+            // Um paciente com problema não pode derrubar o lote inteiro
+            log.warn("Failed to write batch of {} billing accounts; retrying one patient at a time", batch.size(), e);
+            for (List<PendingAccount> requests : byPatient.values()) {
+                try {
+                    writeTogether(requests);
+                } catch (RuntimeException patientFailure) {
+                    log.error("Failed to write billing account for patient {}",
+                            requests.getFirst().request().patientId(), patientFailure);
+                    requests.forEach(pending -> pending.result().completeExceptionally(patientFailure));
+                }
+            }
+        }
+    }
+
+    // Grava os pedidos em uma transação e completa os futuros só depois do commit
+    private void writeTogether(List<PendingAccount> batch) {
+        // Um candidato por paciente; pedidos repetidos no mesmo lote recebem a mesma conta
+        Map<String, BillingAccount> candidates = new LinkedHashMap<>();
+        for (PendingAccount pending : batch) {
+            AccountRequest request = pending.request();
+            candidates.computeIfAbsent(request.patientId(), patientId ->
+                    new BillingAccount(accountIdGenerator.nextId(), patientId, request.name(), request.email(), ACTIVE));
+        }
+
+        Map<String, BillingAccount> saved = transactionTemplate.execute(status -> {
+            repository.insertMissing(new ArrayList<>(candidates.values()));
+            return repository.findByPatientIds(candidates.keySet()).stream()
+                    .collect(Collectors.toMap(BillingAccount::patientId, Function.identity()));
+        });
+
+        // Contado antes de liberar os chamadores, para que as estatísticas já incluam o lote
+        batches.increment();
+        written.add(batch.size());
+
+        // "created" só para o primeiro pedido do paciente, e só se o candidato dele foi o gravado
+        Set<String> reportedCreated = new HashSet<>();
+        for (PendingAccount pending : batch) {
+            String patientId = pending.request().patientId();
+            BillingAccount account = saved.get(patientId);
+            boolean created = account.accountId().equals(candidates.get(patientId).accountId())
+                    && reportedCreated.add(patientId);
+            pending.result().complete(new BillingAccountCreation(account, created));
+        }
+    }
+
+    private record PendingAccount(AccountRequest request, CompletableFuture<BillingAccountCreation> result) {
+    }
+
+}
@@ -0,0 +1,9 @@
+package com.ojuara.billingservice.service;
+
+import com.ojuara.billingservice.model.BillingAccount;
+
+/**
+ * Conta devolvida pelo {@link BillingAccountService} e se ela foi criada nesta chamada.
+ */
+public record BillingAccountCreation(BillingAccount account, boolean created) {
+}
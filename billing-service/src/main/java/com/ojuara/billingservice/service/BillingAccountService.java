@@ -0,0 +1,117 @@
+package com.ojuara.billingservice.service;
+
+import com.ojuara.billingservice.id.AccountIdGenerator;
+import com.ojuara.billingservice.model.BillingAccount;
+import com.ojuara.billingservice.repository.BillingAccountRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Criação de contas de cobrança, idempotente por {@code patientId}.
+ *
+ * <p>O patient-service entrega os pacientes pelo outbox com semântica "pelo menos uma vez"
+ * (uma resposta perdida faz o lote ser reenviado). Deduplicar pelo {@code patientId} aqui
+ * é o que torna o efeito final "exatamente uma vez": cada paciente tem uma única conta.</p>
+ *
+ * <p>Com {@code billing.store.write-mode=batched} (padrão) as gravações passam pelo
+ * {@link BillingAccountBatchWriter}; com {@code direct} cada conta é gravada na sua própria
+ * transação.</p>
+ */
+@Service
+public class BillingAccountService {
+
+    static final String ACTIVE = "ACTIVE";
+
+    private final BillingAccountRepository repository;
+    private final BillingAccountBatchWriter batchWriter;
+    private final AccountIdGenerator accountIdGenerator;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean batched;
+
+    public BillingAccountService(BillingAccountRepository repository,
+                                 BillingAccountBatchWriter batchWriter,
+                                 AccountIdGenerator accountIdGenerator,
+                                 PlatformTransactionManager transactionManager,
+                                 @Value("${billing.store.write-mode:batched}") String writeMode) {
+        this.repository = repository;
+        this.batchWriter = batchWriter;
+        this.accountIdGenerator = accountIdGenerator;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batched = switch (writeMode.toLowerCase()) {
+            case "batched" -> true;
+            case "direct" -> false;
+            default -> throw new IllegalArgumentException(
+                    "billing.store.write-mode must be 'batched' or 'direct', got " + writeMode);
+        };
+    }
+
+    /**
+     * Cria a conta do paciente ou devolve a existente.
+     *
+     * @throws BillingStoreBusyException se a fila de escrita estiver cheia
+     */
+    public BillingAccountCreation createAccount(String patientId, String name, String email) {
+        return createAccounts(List.of(new AccountRequest(patientId, name, email))).get(0);
+    }
+
+    /**
+     * Cria as contas de vários pacientes. No modo batched todas são enfileiradas antes de
+     * esperar, então normalmente vão juntas no mesmo lote.
+     *
+     * @return um resultado por requisição, na mesma ordem
+     * @throws IllegalArgumentException se alguma requisição não passar em {@link AccountRequest#validationError()}
+     * @throws BillingStoreBusyException se a fila de escrita estiver cheia
+     */
+    public List<BillingAccountCreation> createAccounts(List<AccountRequest> requests) {
+        for (AccountRequest request : requests) {
+            String error = request.validationError();
+            if (error != null) {
+                throw new IllegalArgumentException(error);
+            }
+        }
+
+        if (!batched) {
+            return requests.stream().map(this::createDirect).toList();
+        }
+
+        List<CompletableFuture<BillingAccountCreation>> futures = new ArrayList<>(requests.size());
+        for (AccountRequest request : requests) {
+            futures.add(batchWriter.submit(request));
+        }
+        try {
+            return futures.stream().map(CompletableFuture::join).toList();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    public Optional<BillingAccount> findByPatientId(String patientId) {
+        return repository.findByPatientId(patientId);
+    }
+
+    public long count() {
+        return repository.count();
+    }
+
+    private BillingAccountCreation createDirect(AccountRequest request) {
+        BillingAccount candidate = new BillingAccount(
+                accountIdGenerator.nextId(), request.patientId(), request.name(), request.email(), ACTIVE);
+        return transactionTemplate.execute(status -> {
+            boolean created = repository.insertMissing(List.of(candidate)) == 1;
+            BillingAccount account = created ? candidate : repository.findByPatientId(request.patientId()).orElseThrow();
+            return new BillingAccountCreation(account, created);
+        });
+    }
+
+}
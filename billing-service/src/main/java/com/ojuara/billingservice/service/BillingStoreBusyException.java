@@ -0,0 +1,12 @@
+package com.ojuara.billingservice.service;
+
+/**
+ * A fila de escrita das contas está cheia; o chamador deve tentar de novo mais tarde.
+ */
+public class BillingStoreBusyException extends RuntimeException {
+
+    public BillingStoreBusyException(String message) {
+        super(message);
+    }
+
+}
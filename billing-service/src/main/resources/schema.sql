@@ -0,0 +1,8 @@
+CREATE TABLE IF NOT EXISTS billing_account (
+    patient_id VARCHAR(64) PRIMARY KEY,
+    account_id VARCHAR(64) NOT NULL UNIQUE,
+    name VARCHAR(255),
+    email VARCHAR(255),
+    status VARCHAR(32) NOT NULL,
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL
+);
@@ -3,7 +3,10 @@ package com.ojuara.billingservice;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:billing-test;DB_CLOSE_DELAY=-1",
+        "grpc.server.port=-1"
+})
 class BillingServiceApplicationTests {
 
     @Test
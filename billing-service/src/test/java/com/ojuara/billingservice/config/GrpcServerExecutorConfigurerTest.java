@@ -0,0 +1,126 @@
+package com.ojuara.billingservice.config;
+
+import billing.BillingAccountResult;
+import billing.BillingRequest;
+import billing.BillingResponse;
+import billing.BillingServiceGrpc;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Executor bounded: com {@code threads + queue-capacity} chamadas abertas, a seguinte é recusada
+ * com RESOURCE_EXHAUSTED e volta a ser aceita quando uma termina.
+ */
+class GrpcServerExecutorConfigurerTest {
+
+    private GrpcServerExecutorConfigurer configurer;
+    private Server server;
+    private ManagedChannel channel;
+    private IdleStreamBillingService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        configurer = new GrpcServerExecutorConfigurer("bounded", 1, 1);
+        service = new IdleStreamBillingService();
+        String name = InProcessServerBuilder.generateName();
+        InProcessServerBuilder builder = InProcessServerBuilder.forName(name).addService(service);
+        configurer.accept(builder);
+        server = builder.build().start();
+        channel = InProcessChannelBuilder.forName(name).build();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        channel.shutdownNow();
+        server.shutdownNow();
+        configurer.destroy();
+    }
+
+    @Test
+    void rejectsCallsOverTheLimitWithResourceExhausted() throws Exception {
+        BillingServiceGrpc.BillingServiceStub async = BillingServiceGrpc.newStub(channel);
+        BillingServiceGrpc.BillingServiceBlockingStub blocking = BillingServiceGrpc.newBlockingStub(channel);
+
+        // Dois streams abertos ocupam o limite (1 thread + 1 na fila) sem ocupar a thread
+        StreamObserver<BillingRequest> first = async.createBillingAccounts(new IgnoringObserver());
+        StreamObserver<BillingRequest> second = async.createBillingAccounts(new IgnoringObserver());
+        assertTrue(service.streamsOpened.await(5, TimeUnit.SECONDS), "streams were not admitted");
+
+        StatusRuntimeException rejected = assertThrows(StatusRuntimeException.class,
+                () -> blocking.createBillingAccount(BillingRequest.getDefaultInstance()));
+        assertEquals(Status.Code.RESOURCE_EXHAUSTED, rejected.getStatus().getCode());
+
+        first.onCompleted();
+        await().atMost(Duration.ofSeconds(5)).ignoreException(StatusRuntimeException.class).untilAsserted(() ->
+                assertEquals("acc-1", blocking.createBillingAccount(BillingRequest.getDefaultInstance()).getAccountId()));
+        second.onCompleted();
+    }
+
+    /**
+     * Streams que só terminam quando o cliente termina; a chamada unária responde na hora.
+     */
+    private static final class IdleStreamBillingService extends BillingServiceGrpc.BillingServiceImplBase {
+
+        private final CountDownLatch streamsOpened = new CountDownLatch(2);
+
+        @Override
+        public void createBillingAccount(BillingRequest request, StreamObserver<BillingResponse> responseObserver) {
+            responseObserver.onNext(BillingResponse.newBuilder().setAccountId("acc-1").setStatus("ACTIVE").build());
+            responseObserver.onCompleted();
+        }
+
+        @Override
+        public StreamObserver<BillingRequest> createBillingAccounts(StreamObserver<BillingAccountResult> responseObserver) {
+            streamsOpened.countDown();
+            return new StreamObserver<>() {
+                @Override
+                public void onNext(BillingRequest request) {
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                }
+
+                @Override
+                public void onCompleted() {
+                    responseObserver.onCompleted();
+                }
+            };
+        }
+
+    }
+
+    private static final class IgnoringObserver implements StreamObserver<BillingAccountResult> {
+
+        @Override
+        public void onNext(BillingAccountResult value) {
+        }
+
+        @Override
+        public void onError(Throwable t) {
+        }
+
+        @Override
+        public void onCompleted() {
+        }
+
+    }
+
+}
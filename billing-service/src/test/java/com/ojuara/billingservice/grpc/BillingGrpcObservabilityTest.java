@@ -0,0 +1,118 @@
+package com.ojuara.billingservice.grpc;
+
+import billing.BillingBatchRequest;
+import billing.BillingRequest;
+import billing.BillingServiceGrpc;
+import brave.handler.MutableSpan;
+import brave.handler.SpanHandler;
+import brave.propagation.TraceContext;
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.stub.MetadataUtils;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.search.MeterNotFoundException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Métricas por método e status do servidor gRPC e continuação do trace recebido no
+ * {@code traceparent}, medidas no registry em memória dos testes.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:billing-observability-test;DB_CLOSE_DELAY=-1",
+        "grpc.server.port=-1",
+        "grpc.server.in-process-name=billing-observability-test"
+})
+@AutoConfigureObservability(metrics = false)
+class BillingGrpcObservabilityTest {
+
+    private static final String TRACE_ID = "4bf92f3577b34da6a3ce929d0e0e4736";
+    private static final Metadata.Key<String> TRACEPARENT =
+            Metadata.Key.of("traceparent", Metadata.ASCII_STRING_MARSHALLER);
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private List<MutableSpan> finishedSpans;
+
+    private ManagedChannel channel;
+    private BillingServiceGrpc.BillingServiceBlockingStub stub;
+
+    @BeforeEach
+    void setUp() {
+        channel = InProcessChannelBuilder.forName("billing-observability-test").directExecutor().build();
+        Metadata headers = new Metadata();
+        headers.put(TRACEPARENT, "00-" + TRACE_ID + "-00f067aa0ba902b7-01");
+        stub = BillingServiceGrpc.newBlockingStub(channel)
+                .withInterceptors(MetadataUtils.newAttachHeadersInterceptor(headers));
+    }
+
+    @AfterEach
+    void tearDown() {
+        channel.shutdownNow();
+    }
+
+    @Test
+    void callsAreTimedPerMethodAndStatusAndContinueTheCallerTrace() {
+        stub.batchCreateBillingAccounts(BillingBatchRequest.newBuilder()
+                .addAccounts(BillingRequest.newBuilder().setPatientId("p-observability").setName("Ana").setEmail("ana@example.com"))
+                .build());
+        StatusRuntimeException rejected = assertThrows(StatusRuntimeException.class,
+                () -> stub.createBillingAccount(BillingRequest.getDefaultInstance()));
+        assertEquals(Status.Code.INVALID_ARGUMENT, rejected.getStatus().getCode());
+
+        // A observação do servidor termina depois que o cliente recebe a resposta
+        await().atMost(Duration.ofSeconds(5)).ignoreException(MeterNotFoundException.class).untilAsserted(() -> {
+            assertEquals(1, meterRegistry.get("grpc.server.processing.duration")
+                    .tag("method", "BatchCreateBillingAccounts").tag("statusCode", "OK").timer().count());
+            assertEquals(1, meterRegistry.get("grpc.server.processing.duration")
+                    .tag("method", "CreateBillingAccount").tag("statusCode", "INVALID_ARGUMENT").timer().count());
+        });
+
+        await().atMost(Duration.ofSeconds(5)).untilAsserted(() -> assertTrue(finishedSpans.stream()
+                        .anyMatch(span -> TRACE_ID.equals(span.traceId())
+                                && span.name() != null && span.name().contains("BatchCreateBillingAccounts")),
+                () -> "no server span in trace " + TRACE_ID + ": " + finishedSpans));
+    }
+
+    @TestConfiguration
+    static class SpanCapture {
+
+        @Bean
+        List<MutableSpan> finishedSpans() {
+            return new CopyOnWriteArrayList<>();
+        }
+
+        @Bean
+        SpanHandler capturingSpanHandler(List<MutableSpan> finishedSpans) {
+            return new SpanHandler() {
+                @Override
+                public boolean end(TraceContext context, MutableSpan span, Cause cause) {
+                    finishedSpans.add(span);
+                    return true;
+                }
+            };
+        }
+
+    }
+
+}
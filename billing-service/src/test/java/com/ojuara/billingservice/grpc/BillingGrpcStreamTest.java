@@ -0,0 +1,126 @@
+package com.ojuara.billingservice.grpc;
+
+import billing.BillingAccountResult;
+import billing.BillingRequest;
+import billing.BillingServiceGrpc;
+import com.ojuara.billingservice.service.BillingAccountService;
+import io.grpc.ManagedChannel;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Stream bidirecional com controle de fluxo manual: o servidor só lê (e grava) a próxima
+ * requisição quando o cliente pediu a resposta dela.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:billing-stream-test;DB_CLOSE_DELAY=-1",
+        "grpc.server.port=-1",
+        "grpc.server.in-process-name=billing-stream-test"
+})
+class BillingGrpcStreamTest {
+
+    // Tempo dado ao servidor para mostrar que não leu além do pedido
+    private static final long SETTLE_MILLIS = 300;
+
+    @Autowired
+    private BillingAccountService billingAccountService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private ManagedChannel channel;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM billing_account");
+        channel = InProcessChannelBuilder.forName("billing-stream-test").build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        channel.shutdownNow();
+    }
+
+    @Test
+    void serverReadsOnlyAsFastAsTheClientConsumes() throws Exception {
+        ManualFlowObserver responses = new ManualFlowObserver();
+        BillingServiceGrpc.newStub(channel).createBillingAccounts(responses);
+        ClientCallStreamObserver<BillingRequest> requests = responses.requestStream;
+        for (int i = 1; i <= 5; i++) {
+            requests.onNext(BillingRequest.newBuilder()
+                    .setPatientId("p-stream-" + i).setName("Patient " + i).setEmail(i + "@example.com").build());
+        }
+        requests.onNext(BillingRequest.getDefaultInstance());
+
+        // Nenhuma resposta pedida: o servidor não está pronto para enviar e não lê
+        Thread.sleep(SETTLE_MILLIS);
+        assertEquals(0, responses.results.size());
+        assertEquals(0, billingAccountService.count());
+
+        requests.request(2);
+        await().atMost(Duration.ofSeconds(5)).until(() -> responses.results.size() == 2);
+        Thread.sleep(SETTLE_MILLIS);
+        assertEquals(2, responses.results.size());
+        assertEquals(2, billingAccountService.count());
+
+        requests.request(10);
+        requests.onCompleted();
+        assertTrue(responses.completed.await(5, TimeUnit.SECONDS), "stream did not complete");
+
+        assertEquals(List.of("p-stream-1", "p-stream-2", "p-stream-3", "p-stream-4", "p-stream-5", ""),
+                responses.results.stream().map(BillingAccountResult::getPatientId).toList());
+        assertEquals(BillingGrpcService.REJECTED, responses.results.getLast().getStatus());
+        assertTrue(responses.results.subList(0, 5).stream().allMatch(BillingAccountResult::getCreated));
+        assertEquals(5, billingAccountService.count());
+    }
+
+    /**
+     * Cliente que só pede respostas quando o teste manda.
+     */
+    private static final class ManualFlowObserver implements ClientResponseObserver<BillingRequest, BillingAccountResult> {
+
+        private final List<BillingAccountResult> results = new CopyOnWriteArrayList<>();
+        private final CountDownLatch completed = new CountDownLatch(1);
+        private ClientCallStreamObserver<BillingRequest> requestStream;
+
+        @Override
+        public void beforeStart(ClientCallStreamObserver<BillingRequest> requestStream) {
+            this.requestStream = requestStream;
+            requestStream.disableAutoRequestWithInitial(0);
+        }
+
+        @Override
+        public void onNext(BillingAccountResult result) {
+            results.add(result);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            completed.countDown();
+        }
+
+        @Override
+        public void onCompleted() {
+            completed.countDown();
+        }
+
+    }
+
+}
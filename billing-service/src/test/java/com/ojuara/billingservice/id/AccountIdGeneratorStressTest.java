@@ -0,0 +1,136 @@
+package com.ojuara.billingservice.id;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Gera milhões de ids em todas as CPUs ao mesmo tempo e confere que não há repetição e que
+ * a sequência de cada thread é estritamente crescente.
+ */
+@Slf4j
+class AccountIdGeneratorStressTest {
+
+    private static final int THREADS = Math.max(4, Runtime.getRuntime().availableProcessors());
+    private static final int TOTAL_IDS = 4_000_000;
+
+    @Test
+    void snowflakeIdsAreUniqueAndMonotonicAcrossThreads() throws InterruptedException {
+        SnowflakeAccountIdGenerator generator = new SnowflakeAccountIdGenerator(42);
+        int perThread = TOTAL_IDS / THREADS;
+
+        long[][] ids = run("snowflake", perThread, thread -> {
+            long[] generated = new long[perThread];
+            for (int i = 0; i < perThread; i++) {
+                generated[i] = generator.nextLong();
+            }
+            return generated;
+        });
+
+        for (long[] threadIds : ids) {
+            for (int i = 1; i < threadIds.length; i++) {
+                assertTrue(threadIds[i] > threadIds[i - 1], "ids must increase within a thread");
+            }
+        }
+        long[] all = Arrays.stream(ids).flatMapToLong(Arrays::stream).sorted().toArray();
+        assertEquals(perThread * THREADS, all.length);
+        for (int i = 1; i < all.length; i++) {
+            assertTrue(all[i] != all[i - 1], "duplicate id " + all[i]);
+        }
+    }
+
+    @Test
+    void uuidV7IdsAreUniqueAcrossThreads() throws InterruptedException {
+        UuidV7AccountIdGenerator generator = new UuidV7AccountIdGenerator();
+        int perThread = TOTAL_IDS / 4 / THREADS;
+
+        String[][] ids = new String[THREADS][];
+        run("uuidv7", perThread, thread -> {
+            String[] generated = new String[perThread];
+            for (int i = 0; i < perThread; i++) {
+                generated[i] = generator.nextId();
+            }
+            ids[thread] = generated;
+            return new long[0];
+        });
+
+        Set<String> unique = new HashSet<>();
+        for (String[] threadIds : ids) {
+            for (int i = 0; i < threadIds.length; i++) {
+                assertTrue(unique.add(threadIds[i]), "duplicate id " + threadIds[i]);
+                assertTrue(i == 0 || threadIds[i].compareTo(threadIds[i - 1]) > 0, "ids must sort in generation order");
+            }
+        }
+        assertEquals(perThread * THREADS, unique.size());
+    }
+
+    @Test
+    void idsKeepIncreasingWhenClockGoesBackwards() {
+        AtomicLong clock = new AtomicLong(SnowflakeAccountIdGenerator.EPOCH_MILLIS + 1_000_000);
+        SnowflakeAccountIdGenerator snowflake = new SnowflakeAccountIdGenerator(1, clock::get);
+        UuidV7AccountIdGenerator uuidV7 = new UuidV7AccountIdGenerator(clock::get);
+
+        long before = snowflake.nextLong();
+        String beforeId = snowflake.nextId();
+        String beforeUuid = uuidV7.nextId();
+        clock.addAndGet(-5_000);
+
+        for (long value : List.of(snowflake.nextLong(), snowflake.nextLong())) {
+            assertTrue(value > before);
+            before = value;
+        }
+        assertTrue(snowflake.nextId().compareTo(beforeId) > 0);
+        assertTrue(uuidV7.nextId().compareTo(beforeUuid) > 0);
+    }
+
+    @Test
+    void sequenceOverflowBorrowsNextMillisecond() {
+        SnowflakeAccountIdGenerator generator = new SnowflakeAccountIdGenerator(0, () -> SnowflakeAccountIdGenerator.EPOCH_MILLIS);
+
+        long previous = generator.nextLong();
+        for (int i = 0; i < 10_000; i++) {
+            long next = generator.nextLong();
+            assertTrue(next > previous);
+            previous = next;
+        }
+    }
+
+    private static long[][] run(String name, int perThread, IntFunction<long[]> work) throws InterruptedException {
+        long[][] results = new long[THREADS][];
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[THREADS];
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            threads[t] = Thread.ofPlatform().start(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                results[thread] = work.apply(thread);
+            });
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        double seconds = (System.nanoTime() - begin) / 1e9;
+        log.info("{}: {} ids on {} threads in {} s", name, (long) perThread * THREADS, THREADS,
+                String.format("%.2f", seconds));
+        return results;
+    }
+
+}
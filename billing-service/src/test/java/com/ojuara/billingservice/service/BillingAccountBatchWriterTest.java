@@ -0,0 +1,270 @@
+package com.ojuara.billingservice.service;
+
+import billing.BillingAccountResult;
+import billing.BillingBatchRequest;
+import billing.BillingBatchResponse;
+import billing.BillingRequest;
+import billing.BillingServiceGrpc;
+import com.ojuara.billingservice.grpc.BillingGrpcService;
+import com.ojuara.billingservice.id.AccountIdGenerator;
+import com.ojuara.billingservice.repository.BillingAccountRepository;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Escrita write-behind das contas: lotes, pacientes repetidos no mesmo lote, fila cheia
+ * (RESOURCE_EXHAUSTED no gRPC), linhas que não cabem nas colunas e o modo direto.
+ *
+ * <p>O gerador de ids de teste segura a thread de escrita no primeiro lote até o teste
+ * liberá-la, para controlar o que chega junto no lote seguinte.</p>
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:billing-writer-test;DB_CLOSE_DELAY=-1",
+        "grpc.server.port=-1"
+})
+class BillingAccountBatchWriterTest {
+
+    @Autowired
+    private BillingAccountRepository repository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private GatedIdGenerator idGenerator;
+    private BillingAccountBatchWriter writer;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM billing_account");
+        idGenerator = new GatedIdGenerator();
+    }
+
+    @AfterEach
+    void tearDown() {
+        idGenerator.open();
+        if (writer != null && writer.isRunning()) {
+            writer.stop();
+        }
+    }
+
+    @Test
+    void writesWhatQueuedUpWhileTheWriterWasBusyInOneBatch() throws Exception {
+        startWriter(10_000);
+        CompletableFuture<BillingAccountCreation> first = writer.submit(request("p-first"));
+        idGenerator.awaitBlocked();
+
+        List<CompletableFuture<BillingAccountCreation>> queued = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            queued.add(writer.submit(request("p-" + i)));
+        }
+        idGenerator.open();
+
+        assertTrue(first.get(5, TimeUnit.SECONDS).created());
+        for (CompletableFuture<BillingAccountCreation> result : queued) {
+            assertTrue(result.get(5, TimeUnit.SECONDS).created());
+        }
+        assertEquals(2L, writer.stats().get("batches"));
+        assertEquals(21L, writer.stats().get("written"));
+        assertEquals(21, repository.count());
+    }
+
+    @Test
+    void repeatedPatientInOneBatchGetsOneAccountCreatedOnce() throws Exception {
+        startWriter(10_000);
+        writer.submit(request("p-first"));
+        idGenerator.awaitBlocked();
+
+        CompletableFuture<BillingAccountCreation> ana1 = writer.submit(request("p-ana"));
+        CompletableFuture<BillingAccountCreation> bruno = writer.submit(request("p-bruno"));
+        CompletableFuture<BillingAccountCreation> ana2 = writer.submit(request("p-ana"));
+        idGenerator.open();
+
+        BillingAccountCreation firstAna = ana1.get(5, TimeUnit.SECONDS);
+        BillingAccountCreation secondAna = ana2.get(5, TimeUnit.SECONDS);
+        assertTrue(firstAna.created());
+        assertFalse(secondAna.created());
+        assertEquals(firstAna.account().accountId(), secondAna.account().accountId());
+        assertTrue(bruno.get(5, TimeUnit.SECONDS).created());
+        assertEquals(3, repository.count());
+    }
+
+    @Test
+    void oneRowThatDoesNotFitFailsOnlyItsOwnRequest() throws Exception {
+        startWriter(10_000);
+        writer.submit(request("p-first"));
+        idGenerator.awaitBlocked();
+
+        // Direto no writer, sem a validação do BillingAccountService
+        CompletableFuture<BillingAccountCreation> valid = writer.submit(request("p-valid"));
+        CompletableFuture<BillingAccountCreation> oversized = writer.submit(
+                new AccountRequest("p-oversized", "x".repeat(AccountRequest.MAX_NAME_LENGTH + 1), "big@example.com"));
+        idGenerator.open();
+
+        assertTrue(valid.get(5, TimeUnit.SECONDS).created());
+        CompletionException failure = assertThrows(CompletionException.class, oversized::join);
+        assertInstanceOf(RuntimeException.class, failure.getCause());
+        assertTrue(repository.findByPatientId("p-valid").isPresent());
+        assertFalse(repository.findByPatientId("p-oversized").isPresent());
+    }
+
+    @Test
+    void rejectsOversizedItemsBeforeTheyReachABatch() throws Exception {
+        startWriter(10_000);
+        idGenerator.open();
+        BillingAccountService service = new BillingAccountService(
+                repository, writer, idGenerator, transactionManager, "batched");
+
+        withGrpc(service, stub -> {
+            BillingBatchResponse response = stub.batchCreateBillingAccounts(BillingBatchRequest.newBuilder()
+                    .addAccounts(grpcRequest("p-ok"))
+                    .addAccounts(grpcRequest("p-" + "9".repeat(AccountRequest.MAX_PATIENT_ID_LENGTH)))
+                    .addAccounts(grpcRequest("p-ok-too").toBuilder().setEmail("a".repeat(300)))
+                    .build());
+
+            assertEquals(List.of("ACTIVE", "REJECTED", "REJECTED"),
+                    response.getResultsList().stream().map(BillingAccountResult::getStatus).toList());
+            assertEquals(List.of("p-ok", "p-" + "9".repeat(AccountRequest.MAX_PATIENT_ID_LENGTH), "p-ok-too"),
+                    response.getResultsList().stream().map(BillingAccountResult::getPatientId).toList());
+            assertEquals("", response.getResults(0).getError());
+            assertTrue(response.getResults(1).getError().startsWith("patientId must have at most"));
+            assertTrue(response.getResults(2).getError().startsWith("email must have at most"));
+            StatusRuntimeException single = assertThrows(StatusRuntimeException.class,
+                    () -> stub.createBillingAccount(grpcRequest("p-single").toBuilder().setName("n".repeat(256)).build()));
+            assertEquals(Status.Code.INVALID_ARGUMENT, single.getStatus().getCode());
+        });
+        assertEquals(1, repository.count());
+    }
+
+    @Test
+    void fullQueueIsReportedAsResourceExhausted() throws Exception {
+        startWriter(1);
+        BillingAccountService service = new BillingAccountService(
+                repository, writer, idGenerator, transactionManager, "batched");
+        writer.submit(request("p-in-flight"));
+        idGenerator.awaitBlocked();
+        writer.submit(request("p-queued"));
+
+        withGrpc(service, stub -> {
+            StatusRuntimeException busy = assertThrows(StatusRuntimeException.class,
+                    () -> stub.createBillingAccount(grpcRequest("p-rejected")));
+            assertEquals(Status.Code.RESOURCE_EXHAUSTED, busy.getStatus().getCode());
+        });
+        assertEquals(1L, writer.stats().get("rejected"));
+    }
+
+    @Test
+    void directModeWritesEachAccountInItsOwnTransaction() {
+        startWriter(10_000);
+        BillingAccountService service = new BillingAccountService(
+                repository, writer, idGenerator, transactionManager, "direct");
+        idGenerator.open();
+
+        List<BillingAccountCreation> results = service.createAccounts(List.of(
+                request("p-ana"), request("p-bruno"), request("p-ana")));
+
+        assertEquals(List.of(true, true, false), results.stream().map(BillingAccountCreation::created).toList());
+        assertEquals(results.get(0).account().accountId(), results.get(2).account().accountId());
+        assertEquals(0L, writer.stats().get("batches"));
+        assertEquals(2, repository.count());
+        assertThrows(IllegalArgumentException.class,
+                () -> service.createAccounts(List.of(request("p-" + "9".repeat(AccountRequest.MAX_PATIENT_ID_LENGTH)))));
+    }
+
+    private void startWriter(int queueCapacity) {
+        writer = new BillingAccountBatchWriter(repository, idGenerator, transactionManager,
+                500, Duration.ofMillis(2), queueCapacity, Duration.ofMillis(10));
+        writer.start();
+    }
+
+    private void withGrpc(BillingAccountService service, StubConsumer test) throws Exception {
+        String name = InProcessServerBuilder.generateName();
+        Server server = InProcessServerBuilder.forName(name)
+                .addService(new BillingGrpcService(service))
+                .build()
+                .start();
+        ManagedChannel channel = InProcessChannelBuilder.forName(name).build();
+        try {
+            test.accept(BillingServiceGrpc.newBlockingStub(channel));
+        } finally {
+            channel.shutdownNow();
+            server.shutdownNow();
+        }
+    }
+
+    private static AccountRequest request(String patientId) {
+        return new AccountRequest(patientId, "Patient " + patientId, patientId + "@example.com");
+    }
+
+    private static BillingRequest grpcRequest(String patientId) {
+        return BillingRequest.newBuilder()
+                .setPatientId(patientId)
+                .setName("Patient " + patientId)
+                .setEmail(patientId + "@example.com")
+                .build();
+    }
+
+    private interface StubConsumer {
+        void accept(BillingServiceGrpc.BillingServiceBlockingStub stub) throws Exception;
+    }
+
+    /**
+     * Gera ids sequenciais, mas segura quem pede um id até {@link #open()}.
+     */
+    private static final class GatedIdGenerator implements AccountIdGenerator {
+
+        private final CountDownLatch blocked = new CountDownLatch(1);
+        private final CountDownLatch gate = new CountDownLatch(1);
+        private final AtomicLong next = new AtomicLong();
+
+        @Override
+        public String nextId() {
+            blocked.countDown();
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for the gate", e);
+            }
+            return PREFIX + "test-" + next.incrementAndGet();
+        }
+
+        void awaitBlocked() throws InterruptedException {
+            assertTrue(blocked.await(5, TimeUnit.SECONDS), "writer did not start a batch");
+        }
+
+        void open() {
+            gate.countDown();
+        }
+
+    }
+
+}
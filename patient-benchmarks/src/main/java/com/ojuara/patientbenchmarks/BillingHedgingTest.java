@@ -0,0 +1,215 @@
+package com.ojuara.patientbenchmarks;
+
+import billing.BillingAccountResult;
+import billing.BillingBatchRequest;
+import billing.BillingBatchResponse;
+import billing.BillingRequest;
+import billing.BillingServiceGrpc;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.ojuara.patientservice.grpc.BillingClientSettings;
+import com.ojuara.patientservice.grpc.BillingServiceGrpcClient;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.boot.convert.DurationStyle;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latência de cauda das chamadas ao billing-service com e sem hedge.
+ *
+ * <p>Sobe {@code --endpoints} billing-services falsos em servidores gRPC in-process. Cada chamada
+ * leva {@code --latency} e, com probabilidade {@code --slow-rate}, {@code --slow-latency} (uma
+ * pausa de GC, um disco lento, um vizinho barulhento); o primeiro endpoint fica lento com o dobro
+ * dessa probabilidade. Os {@code --concurrency} clientes chamam em laço fechado durante
+ * {@code --duration} com o hedge desligado e depois ligado, e o resultado compara p50, p99 e
+ * p99.9 e quantas chamadas geraram hedge.</p>
+ *
+ * <p>Opções no formato {@code --nome=valor}: {@code endpoints}, {@code concurrency},
+ * {@code duration}, {@code warmup}, {@code latency}, {@code slow-latency}, {@code slow-rate},
+ * {@code deadline} e {@code result}. O resultado vai para {@code target/billing-hedging-result.json}.</p>
+ */
+public class BillingHedgingTest {
+
+    private static final List<BillingRequest> ACCOUNTS = List.of(BillingRequest.newBuilder()
+            .setPatientId("00000000-0000-0000-0000-000000000001")
+            .setName("Hedging")
+            .setEmail("hedging@example.com")
+            .build());
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = PatientLoadTest.parse(args);
+        int endpoints = Integer.parseInt(options.getOrDefault("endpoints", "3"));
+        int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "64"));
+        Duration duration = Duration.parse("PT" + options.getOrDefault("duration", "15s"));
+        Duration warmup = Duration.parse("PT" + options.getOrDefault("warmup", "3s"));
+        Duration latency = DurationStyle.detectAndParse(options.getOrDefault("latency", "2ms"));
+        Duration slowLatency = DurationStyle.detectAndParse(options.getOrDefault("slow-latency", "200ms"));
+        double slowRate = Double.parseDouble(options.getOrDefault("slow-rate", "0.02"));
+        Duration deadline = DurationStyle.detectAndParse(options.getOrDefault("deadline", "5s"));
+
+        List<Server> servers = new ArrayList<>();
+        List<ManagedChannel> channels = new ArrayList<>();
+        try {
+            for (int i = 0; i < endpoints; i++) {
+                String name = InProcessServerBuilder.generateName();
+                double rate = i == 0 ? Math.min(1, slowRate * 2) : slowRate;
+                servers.add(InProcessServerBuilder.forName(name)
+                        .executor(Executors.newVirtualThreadPerTaskExecutor())
+                        .addService(new SlowBillingService(latency, slowLatency, rate))
+                        .build()
+                        .start());
+                channels.add(InProcessChannelBuilder.forName(name).build());
+            }
+
+            List<Map<String, Object>> results = new ArrayList<>();
+            for (boolean hedging : new boolean[]{false, true}) {
+                BillingClientSettings defaults = BillingClientSettings.withDeadline(deadline);
+                BillingClientSettings settings = new BillingClientSettings(deadline, hedging,
+                        defaults.hedgePercentile(), Duration.ofMillis(1), defaults.maxHedgeDelay(),
+                        defaults.failureRateThreshold(), defaults.circuitWindowSize(),
+                        defaults.circuitMinimumCalls(), defaults.circuitOpenDuration());
+                BillingServiceGrpcClient client = new BillingServiceGrpcClient(channels, settings,
+                        ObservationRegistry.NOOP);
+
+                String mode = hedging ? "hedged" : "plain";
+                System.out.printf("[%s] %d endpoints, %d clients, warmup %s, measuring %s%n",
+                        mode, endpoints, concurrency, warmup, duration);
+                drive(client, concurrency, warmup);
+                Map<String, Object> before = client.stats();
+                long[] latencies = drive(client, concurrency, duration);
+                Map<String, Object> after = client.stats();
+
+                long hedges = (long) after.get("hedges") - (long) before.get("hedges");
+                Map<String, Object> summary = new LinkedHashMap<>();
+                summary.put("mode", mode);
+                summary.put("endpoints", endpoints);
+                summary.put("concurrency", concurrency);
+                summary.put("calls", latencies.length);
+                summary.put("throughputPerSecond", latencies.length / (double) duration.toMillis() * 1000);
+                summary.put("p50Millis", percentileMillis(latencies, 0.50));
+                summary.put("p99Millis", percentileMillis(latencies, 0.99));
+                summary.put("p999Millis", percentileMillis(latencies, 0.999));
+                summary.put("maxMillis", latencies.length == 0 ? 0 : latencies[latencies.length - 1] / 1_000_000.0);
+                summary.put("hedgeRate", latencies.length == 0 ? 0 : hedges / (double) latencies.length);
+                summary.put("hedgeDelayMillis", after.get("hedgeDelayMillis"));
+                results.add(summary);
+            }
+
+            System.out.printf("%n%8s %10s %10s %10s %10s %10s%n", "mode", "calls/s", "p50 ms", "p99 ms", "p99.9 ms",
+                    "hedges");
+            for (Map<String, Object> result : results) {
+                System.out.printf("%8s %10.1f %10.2f %10.2f %10.2f %9.1f%%%n", result.get("mode"),
+                        result.get("throughputPerSecond"), result.get("p50Millis"), result.get("p99Millis"),
+                        result.get("p999Millis"), (double) result.get("hedgeRate") * 100);
+            }
+
+            File output = new File(options.getOrDefault("result", "target/billing-hedging-result.json"));
+            output.getParentFile().mkdirs();
+            new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(output, results);
+            System.out.println("Result written to " + output);
+        } finally {
+            channels.forEach(ManagedChannel::shutdownNow);
+            servers.forEach(Server::shutdownNow);
+        }
+    }
+
+    private static long[] drive(BillingServiceGrpcClient client, int concurrency, Duration duration) {
+        long deadline = System.nanoTime() + duration.toNanos();
+        LongAdder errors = new LongAdder();
+        long[][] latencies = new long[concurrency][0];
+
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < concurrency; c++) {
+                int clientIndex = c;
+                clients.submit(() -> {
+                    long[] samples = new long[1024];
+                    int count = 0;
+                    while (System.nanoTime() < deadline) {
+                        long start = System.nanoTime();
+                        try {
+                            client.createBillingAccounts(ACCOUNTS);
+                        } catch (RuntimeException e) {
+                            errors.increment();
+                        }
+                        if (count == samples.length) {
+                            samples = Arrays.copyOf(samples, count * 2);
+                        }
+                        samples[count++] = System.nanoTime() - start;
+                    }
+                    latencies[clientIndex] = Arrays.copyOf(samples, count);
+                });
+            }
+        }
+
+        if (errors.sum() > 0) {
+            System.out.printf("  %d call(s) failed%n", errors.sum());
+        }
+        return Arrays.stream(latencies).flatMapToLong(Arrays::stream).sorted().toArray();
+    }
+
+    private static double percentileMillis(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1);
+        return sorted[Math.max(index, 0)] / 1_000_000.0;
+    }
+
+    /**
+     * Billing-service falso: responde em {@code latency} ou, às vezes, em {@code slowLatency}.
+     */
+    private static final class SlowBillingService extends BillingServiceGrpc.BillingServiceImplBase {
+
+        private final Duration latency;
+        private final Duration slowLatency;
+        private final double slowRate;
+
+        SlowBillingService(Duration latency, Duration slowLatency, double slowRate) {
+            this.latency = latency;
+            this.slowLatency = slowLatency;
+            this.slowRate = slowRate;
+        }
+
+        @Override
+        public void batchCreateBillingAccounts(BillingBatchRequest request,
+                                               StreamObserver<BillingBatchResponse> responseObserver) {
+            try {
+                Thread.sleep(ThreadLocalRandom.current().nextDouble() < slowRate ? slowLatency : latency);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            BillingBatchResponse.Builder response = BillingBatchResponse.newBuilder();
+            for (BillingRequest account : request.getAccountsList()) {
+                response.addResults(BillingAccountResult.newBuilder()
+                        .setPatientId(account.getPatientId())
+                        .setAccountId("acc-" + account.getPatientId())
+                        .setStatus("ACTIVE"));
+            }
+            try {
+                responseObserver.onNext(response.build());
+                responseObserver.onCompleted();
+            } catch (RuntimeException e) {
+                // Hedge perdedor: o cliente já cancelou a chamada
+            }
+        }
+
+    }
+
+}
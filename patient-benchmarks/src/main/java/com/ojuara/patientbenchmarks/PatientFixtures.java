@@ -0,0 +1,83 @@
+package com.ojuara.patientbenchmarks;
+
+import com.ojuara.patientservice.dto.PatientRequestDTO;
+import com.ojuara.patientservice.model.Patient;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Dados sintéticos compartilhados pelos benchmarks.
+ */
+final class PatientFixtures {
+
+    private static final int SEED_BATCH_SIZE = 5_000;
+
+    // Nomes e ruas variados para que as buscas por termo e prefixo tenham seletividade realista
+    static final String[] FIRST_NAMES = {
+            "Ana", "Bruno", "Carla", "Daniel", "Eduarda", "Felipe", "Gabriela", "Henrique", "Isabela", "João",
+            "Karina", "Lucas", "Mariana", "Nicolas", "Olívia", "Pedro", "Rafaela", "Samuel", "Tatiana", "Vinícius",
+            "Alice", "Bernardo", "Cecília", "Davi", "Elisa", "Fernando", "Giovana", "Heitor", "Helena", "Igor",
+            "Júlia", "Leonardo", "Manuela", "Miguel", "Natália", "Otávio", "Paula", "Ricardo", "Sofia", "Thiago"};
+    static final String[] LAST_NAMES = {
+            "Silva", "Santos", "Oliveira", "Souza", "Rodrigues", "Ferreira", "Alves", "Pereira", "Lima", "Gomes",
+            "Costa", "Ribeiro", "Martins", "Carvalho", "Almeida", "Lopes", "Soares", "Fernandes", "Vieira", "Barbosa",
+            "Rocha", "Dias", "Nascimento", "Andrade", "Moreira", "Nunes", "Marques", "Machado", "Mendes", "Freitas",
+            "Cardoso", "Ramos", "Gonçalves", "Santana", "Teixeira", "Araújo", "Cavalcanti", "Albuquerque", "Monteiro", "Pinto"};
+    private static final String[] STREETS = {
+            "Main St", "Elm St", "Rua Augusta", "Avenida Paulista", "Rua das Flores", "Oak Avenue",
+            "Rua da Consolação", "Avenida Brasil", "Pine Road", "Rua XV de Novembro"};
+
+    private PatientFixtures() {
+    }
+
+    static Patient patient(int i) {
+        return new Patient(
+                UUID.nameUUIDFromBytes(("patient-" + i).getBytes()),
+                FIRST_NAMES[i % FIRST_NAMES.length] + " " + LAST_NAMES[(i / FIRST_NAMES.length) % LAST_NAMES.length],
+                "patient" + i + "@example.com",
+                i + " " + STREETS[i % STREETS.length] + ", Springfield",
+                LocalDate.of(1950, 1, 1).plusDays(i % 20_000),
+                LocalDate.of(2020, 1, 1).plusDays(i % 2_000));
+    }
+
+    static PatientRequestDTO request(int i) {
+        Patient patient = patient(i);
+        return new PatientRequestDTO(
+                patient.getName(),
+                patient.getEmail(),
+                patient.getAddress(),
+                patient.getDateOfBirth().toString(),
+                patient.getRegisteredDate().toString());
+    }
+
+    /**
+     * Insere {@code rows} pacientes de {@link #patient(int)} direto via JDBC, em lotes.
+     */
+    static void seed(JdbcTemplate jdbcTemplate, int rows) {
+        String sql = "INSERT INTO patient (id, name, email, address, date_of_birth, registered_date) VALUES (?, ?, ?, ?, ?, ?)";
+        List<Object[]> batch = new ArrayList<>(SEED_BATCH_SIZE);
+        for (int i = 0; i < rows; i++) {
+            Patient patient = patient(i);
+            batch.add(new Object[]{
+                    patient.getId(),
+                    patient.getName(),
+                    patient.getEmail(),
+                    patient.getAddress(),
+                    Date.valueOf(patient.getDateOfBirth()),
+                    Date.valueOf(patient.getRegisteredDate())});
+            if (batch.size() == SEED_BATCH_SIZE) {
+                jdbcTemplate.batchUpdate(sql, batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            jdbcTemplate.batchUpdate(sql, batch);
+        }
+    }
+
+}
@@ -0,0 +1,77 @@
+package com.ojuara.patientbenchmarks;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.ojuara.patientservice.dto.PatientResponseDTO;
+import com.ojuara.patientservice.mapper.PatientMapper;
+import com.ojuara.patientservice.mapper.PatientResponseSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Serialização Jackson de listas de {@link PatientResponseDTO}, com um ObjectMapper
+ * configurado como o do Spring Boot.
+ *
+ * <p>{@code serializer=streaming} usa o {@link PatientResponseSerializer} do DTO;
+ * {@code serializer=reflective} o desliga por mix-in e volta à serialização por reflexão do
+ * Jackson (UUID e datas convertidos em {@code String} a cada campo). Compare os dois também pelo
+ * {@code gc.alloc.rate.norm} (bytes por operação) do profiler {@code gc}.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PatientJsonBenchmark {
+
+    @Param({"50", "500", "5000"})
+    public int size;
+
+    @Param({"streaming", "reflective"})
+    public String serializer;
+
+    private ObjectWriter listWriter;
+    private List<PatientResponseDTO> patients;
+
+    @Setup
+    public void setUp() {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        if (serializer.equals("reflective")) {
+            objectMapper.addMixIn(PatientResponseDTO.class, ReflectiveSerialization.class);
+        }
+        listWriter = objectMapper.writerFor(objectMapper.getTypeFactory()
+                .constructCollectionType(List.class, PatientResponseDTO.class));
+        patients = IntStream.range(0, size)
+                .mapToObj(PatientFixtures::patient)
+                .map(PatientMapper::toDTO)
+                .toList();
+    }
+
+    @Benchmark
+    public byte[] serializeList() throws JsonProcessingException {
+        return listWriter.writeValueAsBytes(patients);
+    }
+
+    @JsonSerialize(using = JsonSerializer.None.class)
+    private abstract static class ReflectiveSerialization {
+    }
+
+}
@@ -0,0 +1,335 @@
+package com.ojuara.patientbenchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.ojuara.patientservice.PatientServiceApplication;
+import com.ojuara.patientservice.model.Patient;
+import com.ojuara.patientservice.service.EmailBloomFilter;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Teste de carga HTTP do patient-service comparando o pool de threads de plataforma do
+ * Tomcat com virtual threads ({@code spring.threads.virtual.enabled}).
+ *
+ * <p>Para cada modo sobe a aplicação no mesmo processo (porta aleatória, H2 em memória
+ * populado com {@code --rows} pacientes) e dispara {@code --concurrency} clientes em
+ * laço fechado durante {@code --duration}, com 40% de leituras por id, 20% de páginas,
+ * 20% de atualizações e 20% de criações. Cada comando SQL recebe {@code --db-latency} de atraso para simular
+ * a ida e volta de rede de um banco real, que é onde as threads ficam bloqueadas.</p>
+ *
+ * <p>Imprime vazão, p50/p99/máximo e quantidade de 503 por modo e grava tudo em
+ * {@code target/load-test-result.json}. Opções no formato {@code --nome=valor}:
+ * {@code mode} (platform, virtual ou both), {@code concurrency}, {@code duration},
+ * {@code warmup}, {@code rows}, {@code db-latency}, {@code pool-size},
+ * {@code tomcat-threads}, {@code admission} (controle de admissão, desligado por padrão) e
+ * {@code datasource-url} (para apontar para um Postgres).</p>
+ */
+public class PatientLoadTest {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parse(args);
+        String mode = options.getOrDefault("mode", "both");
+        int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "1000"));
+        Duration duration = Duration.parse("PT" + options.getOrDefault("duration", "30s"));
+        Duration warmup = Duration.parse("PT" + options.getOrDefault("warmup", "5s"));
+        int rows = Integer.parseInt(options.getOrDefault("rows", "10000"));
+
+        List<String> modes = mode.equals("both") ? List.of("platform", "virtual") : List.of(mode);
+        List<Map<String, Object>> results = new ArrayList<>();
+        for (String m : modes) {
+            results.add(run(m, options, concurrency, rows, warmup, duration));
+        }
+
+        System.out.printf("%n%-10s %12s %10s %10s %10s %10s %8s%n",
+                "mode", "req/s", "p50 ms", "p99 ms", "max ms", "errors", "503");
+        for (Map<String, Object> result : results) {
+            System.out.printf("%-10s %12.1f %10.2f %10.2f %10.2f %10d %8d%n",
+                    result.get("mode"), result.get("throughputPerSecond"), result.get("p50Millis"),
+                    result.get("p99Millis"), result.get("maxMillis"), result.get("errors"),
+                    result.get("serviceUnavailable"));
+        }
+
+        File output = new File(options.getOrDefault("result", "target/load-test-result.json"));
+        output.getParentFile().mkdirs();
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(output, results);
+        System.out.println("Result written to " + output);
+    }
+
+    private static Map<String, Object> run(String mode, Map<String, String> options, int concurrency, int rows,
+                                           Duration warmup, Duration duration) throws Exception {
+        String poolSize = options.getOrDefault("pool-size", "20");
+        // Passadas como argumentos de linha de comando para terem precedência sobre o application.properties
+        List<String> properties = new ArrayList<>(List.of(
+                "--server.port=0",
+                "--spring.threads.virtual.enabled=" + mode.equals("virtual"),
+                "--server.tomcat.threads.max=" + options.getOrDefault("tomcat-threads", "200"),
+                "--spring.datasource.hikari.maximum-pool-size=" + poolSize,
+                "--spring.datasource.hikari.minimum-idle=" + poolSize,
+                "--patient.db.max-concurrency=" + poolSize,
+                "--load-test.db-latency=" + options.getOrDefault("db-latency", "2ms"),
+                "--spring.jpa.hibernate.ddl-auto=none",
+                "--billing.outbox.relay.enabled=false",
+                // Todos os clientes saem do mesmo IP; o controle de admissão tem teste próprio
+                "--patient.admission.enabled=" + options.getOrDefault("admission", "false"),
+                "--logging.level.root=warn"));
+        properties.add("--spring.datasource.url=" + options.getOrDefault("datasource-url",
+                "jdbc:h2:mem:patient-load-" + mode + ";DB_CLOSE_DELAY=-1"));
+
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(
+                PatientServiceApplication.class, DatabaseLatencyConfig.class)
+                .run(properties.toArray(String[]::new))) {
+            PatientFixtures.seed(context.getBean(JdbcTemplate.class), rows);
+            context.getBean(EmailBloomFilter.class).rebuild();
+
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            System.out.printf("[%s] %d clients, warmup %s, measuring %s on port %d%n",
+                    mode, concurrency, warmup, duration, port);
+
+            LoadResult warmupResult = drive("http://localhost:" + port, concurrency, rows, warmup);
+            System.out.printf("[%s] warmup: %d requests%n", mode, warmupResult.requests());
+            LoadResult result = drive("http://localhost:" + port, concurrency, rows, duration);
+
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("mode", mode);
+            summary.put("concurrency", concurrency);
+            summary.put("rows", rows);
+            summary.put("durationSeconds", duration.toSeconds());
+            summary.put("requests", result.requests());
+            summary.put("throughputPerSecond", result.requests() / (double) duration.toMillis() * 1000);
+            summary.put("p50Millis", result.percentileMillis(0.50));
+            summary.put("p99Millis", result.percentileMillis(0.99));
+            summary.put("maxMillis", result.percentileMillis(1.0));
+            summary.put("errors", result.errors());
+            summary.put("serviceUnavailable", result.serviceUnavailable());
+            return summary;
+        }
+    }
+
+    private static LoadResult drive(String baseUrl, int concurrency, int rows, Duration duration)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + duration.toNanos();
+        AtomicLong created = new AtomicLong();
+        LongAdder errors = new LongAdder();
+        LongAdder serviceUnavailable = new LongAdder();
+        long[][] latencies = new long[concurrency][0];
+
+        // Os clientes usam virtual threads nos dois modos: o que muda é só o servidor
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor();
+             HttpClient http = HttpClient.newBuilder()
+                     .executor(clients)
+                     .connectTimeout(Duration.ofSeconds(10))
+                     .build()) {
+            ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor();
+            for (int c = 0; c < concurrency; c++) {
+                int client = c;
+                workers.submit(() -> {
+                    LongList samples = new LongList();
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    while (System.nanoTime() < deadline) {
+                        HttpRequest request = nextRequest(baseUrl, rows, random, created);
+                        long start = System.nanoTime();
+                        try {
+                            int status = http.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                            if (status == 503) {
+                                serviceUnavailable.increment();
+                            } else if (status >= 400) {
+                                errors.increment();
+                            }
+                        } catch (IOException e) {
+                            errors.increment();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            return;
+                        }
+                        samples.add(System.nanoTime() - start);
+                    }
+                    latencies[client] = samples.toArray();
+                });
+            }
+            workers.shutdown();
+            workers.close();
+        }
+
+        long[] all = Arrays.stream(latencies).flatMapToLong(Arrays::stream).sorted().toArray();
+        return new LoadResult(all, errors.sum(), serviceUnavailable.sum());
+    }
+
+    static HttpRequest nextRequest(String baseUrl, int rows, ThreadLocalRandom random, AtomicLong created) {
+        int roll = random.nextInt(100);
+        if (roll < 40) {
+            return HttpRequest.newBuilder(URI.create(baseUrl + "/api/v1/patients/"
+                    + PatientFixtures.patient(random.nextInt(rows)).getId())).GET().build();
+        }
+        if (roll < 60) {
+            return HttpRequest.newBuilder(URI.create(baseUrl + "/api/v1/patients?limit=50")).GET().build();
+        }
+        if (roll < 80) {
+            Patient patient = PatientFixtures.patient(random.nextInt(rows));
+            String body = """
+                    {"name":"%s","email":"%s","address":"%d Updated St","dateOfBirth":"%s"}"""
+                    .formatted(patient.getName(), patient.getEmail(), random.nextInt(10_000), patient.getDateOfBirth());
+            return json(HttpRequest.newBuilder(URI.create(baseUrl + "/api/v1/patients/update/" + patient.getId())))
+                    .PUT(HttpRequest.BodyPublishers.ofString(body))
+                    .build();
+        }
+        long n = created.incrementAndGet();
+        String body = """
+                {"name":"Load %d","email":"load-%d-%d@example.com","address":"%d Load St",\
+                "dateOfBirth":"1990-01-01","registeredDate":"2024-01-01"}"""
+                .formatted(n, System.nanoTime(), n, n);
+        return json(HttpRequest.newBuilder(URI.create(baseUrl + "/api/v1/patients/create")))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private static HttpRequest.Builder json(HttpRequest.Builder builder) {
+        return builder.header("Content-Type", "application/json");
+    }
+
+    static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            int eq = arg.indexOf('=');
+            options.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        return options;
+    }
+
+    private record LoadResult(long[] sortedLatencies, long errors, long serviceUnavailable) {
+
+        long requests() {
+            return sortedLatencies.length;
+        }
+
+        double percentileMillis(double percentile) {
+            if (sortedLatencies.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.min(sortedLatencies.length - 1, Math.ceil(percentile * sortedLatencies.length) - 1);
+            return sortedLatencies[Math.max(index, 0)] / 1_000_000.0;
+        }
+
+    }
+
+    private static final class LongList {
+
+        private long[] values = new long[1024];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+
+    }
+
+    /**
+     * Atrasa cada comando SQL em {@code load-test.db-latency} para simular a latência de rede
+     * de um banco fora do processo; com H2 em memória as threads quase nunca bloqueiam.
+     */
+    @Configuration(proxyBeanMethods = false)
+    static class DatabaseLatencyConfig {
+
+        @Bean
+        static BeanPostProcessor databaseLatencyPostProcessor(Environment environment) {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    Duration latency = environment.getProperty("load-test.db-latency", Duration.class, Duration.ZERO);
+                    if (bean instanceof DataSource dataSource && !latency.isZero()) {
+                        return new LatencyDataSource(dataSource, latency);
+                    }
+                    return bean;
+                }
+            };
+        }
+
+    }
+
+    static final class LatencyDataSource extends DelegatingDataSource {
+
+        private final Duration latency;
+
+        LatencyDataSource(DataSource target, Duration latency) {
+            super(target);
+            this.latency = latency;
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            Connection connection = super.getConnection();
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> {
+                        Object result = invoke(connection, method, args);
+                        if (result instanceof PreparedStatement statement) {
+                            return delayed(statement);
+                        }
+                        return result;
+                    });
+        }
+
+        private PreparedStatement delayed(PreparedStatement statement) {
+            return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class},
+                    (proxy, method, args) -> {
+                        if (method.getName().startsWith("execute")) {
+                            Thread.sleep(latency);
+                        }
+                        return invoke(statement, method, args);
+                    });
+        }
+
+        private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,81 @@
+package com.ojuara.patientbenchmarks;
+
+import com.ojuara.patientservice.dto.PatientRequestDTO;
+import com.ojuara.patientservice.dto.PatientResponseDTO;
+import com.ojuara.patientservice.mapper.PatientMapper;
+import com.ojuara.patientservice.model.Patient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Custo da conversão entidade ⇄ DTO, incluindo isoladamente as conversões de texto
+ * ({@code UUID.toString}, {@code LocalDate.toString/parse}) que o caminho de resposta evita e o
+ * {@code parseDate} que substitui o {@code LocalDate.parse} na entrada. Com o profiler
+ * {@code gc} (padrão do {@link BenchmarkRunner}) o {@code gc.alloc.rate.norm} dá os bytes por operação.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PatientMapperBenchmark {
+
+    private Patient patient;
+    private PatientRequestDTO request;
+    private UUID id;
+    private LocalDate date;
+    private String dateText;
+
+    @Setup
+    public void setUp() {
+        patient = PatientFixtures.patient(42);
+        request = PatientFixtures.request(42);
+        id = patient.getId();
+        date = patient.getDateOfBirth();
+        dateText = date.toString();
+    }
+
+    @Benchmark
+    public PatientResponseDTO toDTO() {
+        return PatientMapper.toDTO(patient);
+    }
+
+    @Benchmark
+    public Patient toEntity() {
+        return PatientMapper.toEntity(request);
+    }
+
+    @Benchmark
+    public String uuidToString() {
+        return id.toString();
+    }
+
+    @Benchmark
+    public String localDateToString() {
+        return date.toString();
+    }
+
+    @Benchmark
+    public LocalDate localDateParse() {
+        return LocalDate.parse(dateText);
+    }
+
+    @Benchmark
+    public LocalDate parseDate() {
+        return PatientMapper.parseDate(dateText);
+    }
+
+}
@@ -0,0 +1,211 @@
+package com.ojuara.patientbenchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.ojuara.patientservice.PatientServiceApplication;
+import com.ojuara.patientservice.service.EmailBloomFilter;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Teste de sobrecarga do patient-service: goodput (respostas 2xx dentro do {@code --slo}) com
+ * concorrência crescente, sem e com o controle de admissão ({@code patient.admission.*}).
+ *
+ * <p>Sem admissão, depois da saturação as requisições se acumulam na fila do pool de conexões e
+ * cada vez menos respostas cabem no SLO; com admissão o excedente é recusado na hora (429/503) e o
+ * goodput deve ficar estável. Os clientes usam a mesma mistura do {@link PatientLoadTest}, cada um
+ * com seu {@code X-Client-Id}, e respeitam o {@code Retry-After} das recusas.</p>
+ *
+ * <p>Opções no formato {@code --nome=valor}: {@code levels} (concorrências, separadas por vírgula),
+ * {@code duration}, {@code warmup}, {@code rows}, {@code slo}, {@code db-latency},
+ * {@code pool-size}, {@code client-rate} e {@code result}. O resultado vai para
+ * {@code target/overload-test-result.json}.</p>
+ */
+public class PatientOverloadTest {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = PatientLoadTest.parse(args);
+        int[] levels = Arrays.stream(options.getOrDefault("levels", "50,200,800,2000").split(","))
+                .mapToInt(level -> Integer.parseInt(level.trim()))
+                .toArray();
+        Duration duration = Duration.parse("PT" + options.getOrDefault("duration", "20s"));
+        Duration warmup = Duration.parse("PT" + options.getOrDefault("warmup", "5s"));
+        Duration slo = Duration.parse("PT" + options.getOrDefault("slo", "0.2s"));
+        int rows = Integer.parseInt(options.getOrDefault("rows", "10000"));
+
+        List<Map<String, Object>> results = new ArrayList<>();
+        for (boolean admission : new boolean[]{false, true}) {
+            results.addAll(run(admission, options, levels, rows, warmup, duration, slo));
+        }
+
+        System.out.printf("%n%-10s %8s %12s %12s %10s %8s %8s %8s%n",
+                "admission", "clients", "req/s", "goodput/s", "p99 ms", "429", "503", "errors");
+        for (Map<String, Object> result : results) {
+            System.out.printf("%-10s %8d %12.1f %12.1f %10.2f %8d %8d %8d%n",
+                    result.get("admission"), result.get("concurrency"), result.get("throughputPerSecond"),
+                    result.get("goodputPerSecond"), result.get("p99Millis"), result.get("tooManyRequests"),
+                    result.get("serviceUnavailable"), result.get("errors"));
+        }
+
+        File output = new File(options.getOrDefault("result", "target/overload-test-result.json"));
+        output.getParentFile().mkdirs();
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(output, results);
+        System.out.println("Result written to " + output);
+    }
+
+    private static List<Map<String, Object>> run(boolean admission, Map<String, String> options, int[] levels,
+                                                 int rows, Duration warmup, Duration duration, Duration slo)
+            throws Exception {
+        String poolSize = options.getOrDefault("pool-size", "10");
+        String[] properties = {
+                "--server.port=0",
+                "--spring.threads.virtual.enabled=true",
+                "--spring.datasource.hikari.maximum-pool-size=" + poolSize,
+                "--spring.datasource.hikari.minimum-idle=" + poolSize,
+                "--patient.db.max-concurrency=" + poolSize,
+                "--load-test.db-latency=" + options.getOrDefault("db-latency", "2ms"),
+                "--spring.jpa.hibernate.ddl-auto=none",
+                "--billing.outbox.relay.enabled=false",
+                "--patient.admission.enabled=" + admission,
+                "--patient.admission.client-rate=" + options.getOrDefault("client-rate", "50"),
+                "--logging.level.root=warn",
+                "--spring.datasource.url=jdbc:h2:mem:patient-overload-" + admission + ";DB_CLOSE_DELAY=-1"};
+
+        List<Map<String, Object>> results = new ArrayList<>();
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(
+                PatientServiceApplication.class, PatientLoadTest.DatabaseLatencyConfig.class)
+                .run(properties)) {
+            PatientFixtures.seed(context.getBean(JdbcTemplate.class), rows);
+            context.getBean(EmailBloomFilter.class).rebuild();
+
+            String baseUrl = "http://localhost:"
+                    + ((WebServerApplicationContext) context).getWebServer().getPort();
+            for (int concurrency : levels) {
+                System.out.printf("[admission=%s] %d clients, warmup %s, measuring %s%n",
+                        admission, concurrency, warmup, duration);
+                drive(baseUrl, concurrency, rows, warmup, slo);
+                OverloadResult result = drive(baseUrl, concurrency, rows, duration, slo);
+
+                double seconds = duration.toMillis() / 1000.0;
+                Map<String, Object> summary = new LinkedHashMap<>();
+                summary.put("admission", admission);
+                summary.put("concurrency", concurrency);
+                summary.put("durationSeconds", duration.toSeconds());
+                summary.put("sloMillis", slo.toMillis());
+                summary.put("requests", result.requests());
+                summary.put("throughputPerSecond", result.requests() / seconds);
+                summary.put("goodputPerSecond", result.good() / seconds);
+                summary.put("p99Millis", result.percentileMillis(0.99));
+                summary.put("tooManyRequests", result.tooManyRequests());
+                summary.put("serviceUnavailable", result.serviceUnavailable());
+                summary.put("errors", result.errors());
+                results.add(summary);
+            }
+        }
+        return results;
+    }
+
+    private static OverloadResult drive(String baseUrl, int concurrency, int rows, Duration duration, Duration slo)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + duration.toNanos();
+        AtomicLong created = new AtomicLong();
+        LongAdder good = new LongAdder();
+        LongAdder tooManyRequests = new LongAdder();
+        LongAdder serviceUnavailable = new LongAdder();
+        LongAdder errors = new LongAdder();
+        long[][] latencies = new long[concurrency][0];
+
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor();
+             HttpClient http = HttpClient.newBuilder()
+                     .executor(clients)
+                     .connectTimeout(Duration.ofSeconds(10))
+                     .build()) {
+            ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor();
+            for (int c = 0; c < concurrency; c++) {
+                int client = c;
+                workers.submit(() -> {
+                    long[] samples = new long[1024];
+                    int size = 0;
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    while (System.nanoTime() < deadline) {
+                        HttpRequest request = HttpRequest.newBuilder(
+                                        PatientLoadTest.nextRequest(baseUrl, rows, random, created), (name, value) -> true)
+                                .header("X-Client-Id", "overload-" + client)
+                                .build();
+                        long start = System.nanoTime();
+                        try {
+                            HttpResponse<Void> response = http.send(request, HttpResponse.BodyHandlers.discarding());
+                            long elapsed = System.nanoTime() - start;
+                            if (size == samples.length) {
+                                samples = Arrays.copyOf(samples, size * 2);
+                            }
+                            samples[size++] = elapsed;
+
+                            int status = response.statusCode();
+                            if (status < 300) {
+                                if (elapsed <= slo.toNanos()) {
+                                    good.increment();
+                                }
+                            } else if (status == 429 || status == 503) {
+                                (status == 429 ? tooManyRequests : serviceUnavailable).increment();
+                                // Cliente bem-comportado: espera o Retry-After antes de tentar de novo
+                                long retryAfter = response.headers().firstValueAsLong("Retry-After").orElse(1);
+                                Thread.sleep(Duration.ofSeconds(retryAfter));
+                            } else {
+                                errors.increment();
+                            }
+                        } catch (IOException e) {
+                            errors.increment();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            break;
+                        }
+                    }
+                    latencies[client] = Arrays.copyOf(samples, size);
+                });
+            }
+            workers.shutdown();
+            workers.close();
+        }
+
+        long[] all = Arrays.stream(latencies).flatMapToLong(Arrays::stream).sorted().toArray();
+        return new OverloadResult(all, good.sum(), tooManyRequests.sum(), serviceUnavailable.sum(), errors.sum());
+    }
+
+    private record OverloadResult(long[] sortedLatencies, long good, long tooManyRequests,
+                                  long serviceUnavailable, long errors) {
+
+        long requests() {
+            return sortedLatencies.length;
+        }
+
+        double percentileMillis(double percentile) {
+            if (sortedLatencies.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.min(sortedLatencies.length - 1, Math.ceil(percentile * sortedLatencies.length) - 1);
+            return sortedLatencies[Math.max(index, 0)] / 1_000_000.0;
+        }
+
+    }
+
+}
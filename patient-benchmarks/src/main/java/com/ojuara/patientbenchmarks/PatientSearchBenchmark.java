@@ -0,0 +1,130 @@
+package com.ojuara.patientbenchmarks;
+
+import com.ojuara.patientservice.PatientServiceApplication;
+import com.ojuara.patientservice.dto.PatientPageResponseDTO;
+import com.ojuara.patientservice.service.PatientSearchIndex;
+import com.ojuara.patientservice.service.PatientSearchQuery;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static com.ojuara.patientbenchmarks.PatientFixtures.FIRST_NAMES;
+import static com.ojuara.patientbenchmarks.PatientFixtures.LAST_NAMES;
+
+/**
+ * Buscas do {@link PatientSearchIndex} (páginas de 50) com {@code rows} pacientes indexados.
+ * Em {@code SampleTime} o JMH reporta p50/p99/p999 de cada tipo de consulta.
+ *
+ * <p>O setup popula o H2 e reconstrói o índice a partir da tabela, como na subida da
+ * aplicação, e imprime quanto tempo a reconstrução levou.</p>
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+@State(Scope.Benchmark)
+public class PatientSearchBenchmark {
+
+    private static final int PAGE_SIZE = 50;
+
+    @Param({"100000", "1000000"})
+    public int rows;
+
+    private ConfigurableApplicationContext context;
+    private PatientSearchIndex searchIndex;
+    // Cursor da segunda página da busca por cada sobrenome
+    private String[] secondPageCursors;
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(PatientServiceApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.datasource.url=jdbc:h2:mem:patient-search-bench-" + rows + ";DB_CLOSE_DELAY=-1",
+                        "spring.jpa.hibernate.ddl-auto=none",
+                        "logging.level.root=warn")
+                .run("--billing.outbox.relay.enabled=false");
+        searchIndex = context.getBean(PatientSearchIndex.class);
+
+        PatientFixtures.seed(context.getBean(JdbcTemplate.class), rows);
+        long start = System.nanoTime();
+        searchIndex.rebuild();
+        System.out.printf("Search index rebuilt with %d patients in %d ms%n",
+                rows, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+
+        secondPageCursors = new String[LAST_NAMES.length];
+        for (int i = 0; i < LAST_NAMES.length; i++) {
+            secondPageCursors[i] = search(new PatientSearchQuery(LAST_NAMES[i], null, null, null, null, false), null)
+                    .getNextCursor();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public PatientPageResponseDTO fullName() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String name = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " " + LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+        return search(new PatientSearchQuery(name, null, null, null, null, false), null);
+    }
+
+    @Benchmark
+    public PatientPageResponseDTO namePrefix() {
+        String lastName = LAST_NAMES[ThreadLocalRandom.current().nextInt(LAST_NAMES.length)];
+        return search(new PatientSearchQuery(lastName.substring(0, 3), null, null, null, null, false), null);
+    }
+
+    @Benchmark
+    public PatientPageResponseDTO fuzzyName() {
+        // Sobrenome com uma letra trocada ("Olixeira")
+        String lastName = LAST_NAMES[ThreadLocalRandom.current().nextInt(LAST_NAMES.length)];
+        String typo = lastName.substring(0, 3) + 'x' + lastName.substring(4);
+        return search(new PatientSearchQuery(typo, null, null, null, null, true), null);
+    }
+
+    @Benchmark
+    public PatientPageResponseDTO emailPrefix() {
+        return search(new PatientSearchQuery(null, "patient" + ThreadLocalRandom.current().nextInt(rows / 100), null,
+                null, null, false), null);
+    }
+
+    @Benchmark
+    public PatientPageResponseDTO nameWithDateOfBirthRange() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        LocalDate from = LocalDate.of(1950 + random.nextInt(50), 1, 1);
+        return search(new PatientSearchQuery(LAST_NAMES[random.nextInt(LAST_NAMES.length)], null, null,
+                from, from.plusYears(5), false), null);
+    }
+
+    @Benchmark
+    public PatientPageResponseDTO secondPage() {
+        int i = ThreadLocalRandom.current().nextInt(LAST_NAMES.length);
+        return search(new PatientSearchQuery(LAST_NAMES[i], null, null, null, null, false), secondPageCursors[i]);
+    }
+
+    private PatientPageResponseDTO search(PatientSearchQuery query, String cursor) {
+        return searchIndex.search(query, cursor, PAGE_SIZE);
+    }
+
+}
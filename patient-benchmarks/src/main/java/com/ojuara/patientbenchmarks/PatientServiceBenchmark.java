@@ -0,0 +1,107 @@
+package com.ojuara.patientbenchmarks;
+
+import com.ojuara.patientservice.PatientServiceApplication;
+import com.ojuara.patientservice.dto.PatientPageResponseDTO;
+import com.ojuara.patientservice.dto.PatientRequestDTO;
+import com.ojuara.patientservice.dto.PatientResponseDTO;
+import com.ojuara.patientservice.model.Patient;
+import com.ojuara.patientservice.service.EmailBloomFilter;
+import com.ojuara.patientservice.service.PatientCreationResult;
+import com.ojuara.patientservice.service.PatientCursor;
+import com.ojuara.patientservice.service.PatientService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link PatientService} de ponta a ponta (service → repository → H2 embarcado), com a
+ * tabela criada pelas migrações do Flyway do patient-service e populada com
+ * {@code rows} pacientes sintéticos.
+ */
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+@State(Scope.Benchmark)
+public class PatientServiceBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int rows;
+
+    private ConfigurableApplicationContext context;
+    private PatientService patientService;
+    private final AtomicLong createdCounter = new AtomicLong();
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(PatientServiceApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.datasource.url=jdbc:h2:mem:patient-bench-" + rows + ";DB_CLOSE_DELAY=-1",
+                        "spring.jpa.hibernate.ddl-auto=none",
+                        "logging.level.root=warn")
+                // Definida no application.properties: só como argumento tem precedência
+                .run("--billing.outbox.relay.enabled=false");
+        patientService = context.getBean(PatientService.class);
+
+        PatientFixtures.seed(context.getBean(JdbcTemplate.class), rows);
+        context.getBean(EmailBloomFilter.class).rebuild();
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public PatientCreationResult createPatient() {
+        long n = createdCounter.incrementAndGet();
+        PatientRequestDTO request = PatientFixtures.request(rows + 1);
+        request.setEmail("bench-create-" + n + "@example.com");
+        return patientService.createPatient(request);
+    }
+
+    @Benchmark
+    public PatientResponseDTO updatePatient() {
+        int i = ThreadLocalRandom.current().nextInt(rows);
+        Patient patient = PatientFixtures.patient(i);
+        PatientRequestDTO request = PatientFixtures.request(i);
+        request.setAddress("Updated " + System.nanoTime());
+        return patientService.updatePatient(patient.getId(), request);
+    }
+
+    @Benchmark
+    public PatientResponseDTO getPatientById() {
+        return patientService.getPatientById(PatientFixtures.patient(ThreadLocalRandom.current().nextInt(rows)).getId());
+    }
+
+    @Benchmark
+    public PatientPageResponseDTO listFirstPage() {
+        return patientService.getPatientsPage(null, 50);
+    }
+
+    @Benchmark
+    public PatientPageResponseDTO listPageAtRandomCursor() {
+        Patient after = PatientFixtures.patient(ThreadLocalRandom.current().nextInt(rows));
+        return patientService.getPatientsPage(new PatientCursor(after.getRegisteredDate(), after.getId()).encode(), 50);
+    }
+
+}
@@ -0,0 +1,76 @@
+package com.ojuara.patientbenchmarks;
+
+import com.ojuara.patientservice.dto.PatientRequestDTO;
+import com.ojuara.patientservice.dto.validators.CreatePatientValidationGroup;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import jakarta.validation.ValidatorFactory;
+import jakarta.validation.groups.Default;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bean Validation de {@link PatientRequestDTO} nos dois cenários usados pelo controller:
+ * update (grupo Default) e create (Default + CreatePatientValidationGroup), com payload
+ * válido e inválido.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PatientValidationBenchmark {
+
+    private ValidatorFactory validatorFactory;
+    private Validator validator;
+    private PatientRequestDTO valid;
+    private PatientRequestDTO invalid;
+
+    @Setup
+    public void setUp() {
+        validatorFactory = Validation.buildDefaultValidatorFactory();
+        validator = validatorFactory.getValidator();
+        valid = PatientFixtures.request(42);
+        invalid = new PatientRequestDTO("", "not-an-email", "", "", null);
+    }
+
+    @TearDown
+    public void tearDown() {
+        validatorFactory.close();
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<PatientRequestDTO>> updateGroupValid() {
+        return validator.validate(valid, Default.class);
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<PatientRequestDTO>> updateGroupInvalid() {
+        return validator.validate(invalid, Default.class);
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<PatientRequestDTO>> createGroupsValid() {
+        return validator.validate(valid, Default.class, CreatePatientValidationGroup.class);
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<PatientRequestDTO>> createGroupsInvalid() {
+        return validator.validate(invalid, Default.class, CreatePatientValidationGroup.class);
+    }
+
+}
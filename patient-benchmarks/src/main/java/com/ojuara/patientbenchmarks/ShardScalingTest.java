@@ -0,0 +1,196 @@
+package com.ojuara.patientbenchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.ojuara.patientservice.model.Patient;
+import com.ojuara.patientservice.repository.PatientShard;
+import com.ojuara.patientservice.repository.ShardedPatientRepository;
+import com.zaxxer.hikari.HikariDataSource;
+import org.flywaydb.core.Flyway;
+import org.springframework.boot.convert.DurationStyle;
+
+import java.io.File;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Vazão do {@link ShardedPatientRepository} conforme a quantidade de shards.
+ *
+ * <p>Cada shard é um H2 em memória atrás de um pool Hikari de {@code --pool-size} conexões, e cada
+ * comando SQL recebe {@code --db-latency} de atraso: o pool de cada shard faz o papel da capacidade
+ * de um banco, então a vazão das operações de um shard só deve crescer com mais shards. Os
+ * {@code --concurrency} clientes fazem 70% de leituras por id, 20% de criações (shard + diretório
+ * de emails) e 10% de páginas de 50 (em todos os shards). O diretório fica em um pool próprio de
+ * {@code --directory-pool-size} conexões, grande o bastante para não ser o gargalo.</p>
+ *
+ * <p>Opções no formato {@code --nome=valor}: {@code shards} (quantidades, separadas por vírgula),
+ * {@code concurrency}, {@code duration}, {@code warmup}, {@code rows}, {@code db-latency},
+ * {@code pool-size}, {@code directory-pool-size} e {@code result}. O resultado vai para
+ * {@code target/shard-scaling-result.json}.</p>
+ */
+public class ShardScalingTest {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = PatientLoadTest.parse(args);
+        int[] shardCounts = Arrays.stream(options.getOrDefault("shards", "1,2,4,8").split(","))
+                .mapToInt(count -> Integer.parseInt(count.trim()))
+                .toArray();
+        int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "256"));
+        Duration duration = Duration.parse("PT" + options.getOrDefault("duration", "10s"));
+        Duration warmup = Duration.parse("PT" + options.getOrDefault("warmup", "3s"));
+        int rows = Integer.parseInt(options.getOrDefault("rows", "10000"));
+
+        List<Map<String, Object>> results = new ArrayList<>();
+        for (int shards : shardCounts) {
+            results.add(run(shards, options, concurrency, rows, warmup, duration));
+        }
+
+        double baseline = (double) results.getFirst().get("throughputPerSecond");
+        System.out.printf("%n%8s %12s %10s %10s %10s%n", "shards", "ops/s", "speedup", "p50 ms", "p99 ms");
+        for (Map<String, Object> result : results) {
+            double throughput = (double) result.get("throughputPerSecond");
+            result.put("speedup", throughput / baseline);
+            System.out.printf("%8d %12.1f %10.2f %10.2f %10.2f%n", result.get("shards"), throughput,
+                    throughput / baseline, result.get("p50Millis"), result.get("p99Millis"));
+        }
+
+        File output = new File(options.getOrDefault("result", "target/shard-scaling-result.json"));
+        output.getParentFile().mkdirs();
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(output, results);
+        System.out.println("Result written to " + output);
+    }
+
+    private static Map<String, Object> run(int shardCount, Map<String, String> options, int concurrency, int rows,
+                                           Duration warmup, Duration duration) throws Exception {
+        int poolSize = Integer.parseInt(options.getOrDefault("pool-size", "4"));
+        int directoryPoolSize = Integer.parseInt(options.getOrDefault("directory-pool-size", "64"));
+        Duration latency = DurationStyle.detectAndParse(options.getOrDefault("db-latency", "2ms"));
+
+        List<HikariDataSource> pools = new ArrayList<>();
+        try {
+            HikariDataSource directory = pool("shard-scaling-" + shardCount + "-directory", directoryPoolSize);
+            pools.add(directory);
+            Flyway.configure().dataSource(directory).load().migrate();
+            List<PatientShard> shards = new ArrayList<>();
+            for (int i = 0; i < shardCount; i++) {
+                HikariDataSource pool = pool("shard-scaling-" + shardCount + "-" + i, poolSize);
+                pools.add(pool);
+                Flyway.configure().dataSource(pool).locations("classpath:db/shard").load().migrate();
+                shards.add(new PatientShard("shard-" + i, pool));
+            }
+
+            // Carga inicial sem o atraso artificial
+            try (ShardedPatientRepository seeding = new ShardedPatientRepository(directory, shards, 128)) {
+                for (int i = 0; i < rows; i++) {
+                    seeding.insertIfAbsent(PatientFixtures.patient(i));
+                }
+            }
+
+            List<PatientShard> delayed = shards.stream()
+                    .map(shard -> new PatientShard(shard.id(),
+                            new PatientLoadTest.LatencyDataSource(shard.dataSource(), latency)))
+                    .toList();
+            try (ShardedPatientRepository repository = new ShardedPatientRepository(
+                    new PatientLoadTest.LatencyDataSource(directory, latency), delayed, 128)) {
+                System.out.printf("[%d shard(s)] %d clients, warmup %s, measuring %s%n",
+                        shardCount, concurrency, warmup, duration);
+                drive(repository, concurrency, rows, warmup);
+                long[] latencies = drive(repository, concurrency, rows, duration);
+
+                Map<String, Object> summary = new LinkedHashMap<>();
+                summary.put("shards", shardCount);
+                summary.put("concurrency", concurrency);
+                summary.put("poolSizePerShard", poolSize);
+                summary.put("durationSeconds", duration.toSeconds());
+                summary.put("operations", latencies.length);
+                summary.put("throughputPerSecond", latencies.length / (double) duration.toMillis() * 1000);
+                summary.put("p50Millis", percentileMillis(latencies, 0.50));
+                summary.put("p99Millis", percentileMillis(latencies, 0.99));
+                return summary;
+            }
+        } finally {
+            pools.forEach(HikariDataSource::close);
+        }
+    }
+
+    private static long[] drive(ShardedPatientRepository repository, int concurrency, int rows, Duration duration) {
+        long deadline = System.nanoTime() + duration.toNanos();
+        AtomicLong created = new AtomicLong();
+        LongAdder errors = new LongAdder();
+        long[][] latencies = new long[concurrency][0];
+
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < concurrency; c++) {
+                int client = c;
+                clients.submit(() -> {
+                    long[] samples = new long[1024];
+                    int count = 0;
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    while (System.nanoTime() < deadline) {
+                        long start = System.nanoTime();
+                        try {
+                            operate(repository, random, rows, created);
+                        } catch (RuntimeException e) {
+                            errors.increment();
+                        }
+                        if (count == samples.length) {
+                            samples = Arrays.copyOf(samples, count * 2);
+                        }
+                        samples[count++] = System.nanoTime() - start;
+                    }
+                    latencies[client] = Arrays.copyOf(samples, count);
+                });
+            }
+        }
+
+        if (errors.sum() > 0) {
+            System.out.printf("  %d operation(s) failed%n", errors.sum());
+        }
+        return Arrays.stream(latencies).flatMapToLong(Arrays::stream).sorted().toArray();
+    }
+
+    private static void operate(ShardedPatientRepository repository, ThreadLocalRandom random, int rows,
+                                AtomicLong created) {
+        int roll = random.nextInt(100);
+        if (roll < 70) {
+            repository.findById(PatientFixtures.patient(random.nextInt(rows)).getId());
+        } else if (roll < 90) {
+            long n = created.incrementAndGet();
+            repository.insertIfAbsent(new Patient(null, "Scaling " + n, "scaling-" + System.nanoTime() + "-" + n
+                    + "@example.com", n + " Shard St", LocalDate.of(1990, 1, 1), LocalDate.of(2024, 1, 1)));
+        } else {
+            Patient from = PatientFixtures.patient(random.nextInt(rows));
+            repository.findResponsePageAfter(from.getRegisteredDate(), from.getId(), 50);
+        }
+    }
+
+    private static HikariDataSource pool(String name, int size) {
+        HikariDataSource pool = new HikariDataSource();
+        pool.setJdbcUrl("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        pool.setUsername("sa");
+        pool.setPassword("");
+        pool.setPoolName(name);
+        pool.setMaximumPoolSize(size);
+        pool.setMinimumIdle(size);
+        return pool;
+    }
+
+    private static double percentileMillis(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1);
+        return sorted[Math.max(index, 0)] / 1_000_000.0;
+    }
+
+}
@@ -0,0 +1,236 @@
+package com.ojuara.patientbenchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tempo até a primeira requisição bem-sucedida do patient-service, antes e depois do modo de
+ * subida rápida.
+ *
+ * <p>Cada execução inicia o jar executável em um processo novo e mede do {@code start()} até o
+ * primeiro {@code 200} de {@code GET /api/v1/patients?limit=1}. Os modos são:</p>
+ * <ul>
+ *     <li>{@code baseline}: configuração padrão, com as migrações do Flyway e o springdoc na
+ *     subida (H2 em memória novo a cada execução);</li>
+ *     <li>{@code faststart}: profile {@code faststart} sobre um H2 em arquivo já migrado pelo
+ *     profile {@code migrate};</li>
+ *     <li>{@code faststart-cds}: o mesmo, com o jar extraído e um arquivo CDS gerado por uma
+ *     execução de treino.</li>
+ * </ul>
+ *
+ * <p>Imprime mediana, mínimo e máximo por modo e grava tudo em
+ * {@code target/startup-result.json}. Opções no formato {@code --nome=valor}: {@code jar}
+ * (padrão: o jar {@code -exec} de {@code ../patient-service/target}), {@code modes} (separados por
+ * vírgula), {@code runs}, {@code aot} ({@code true} para rodar os modos rápidos com
+ * {@code -Dspring.aot.enabled=true}; exige o jar construído com {@code -Paot}), {@code timeout}
+ * e {@code result}.</p>
+ */
+public class StartupBenchmark {
+
+    private static final Duration POLL_INTERVAL = Duration.ofMillis(5);
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parse(args);
+        File jar = new File(options.getOrDefault("jar",
+                "../patient-service/target/patient-service-0.0.1-SNAPSHOT-exec.jar")).getAbsoluteFile();
+        if (!jar.isFile()) {
+            throw new IllegalArgumentException("Jar not found: " + jar + " (run ./mvnw package in patient-service)");
+        }
+        List<String> modes = List.of(options.getOrDefault("modes", "baseline,faststart,faststart-cds").split(","));
+        int runs = Integer.parseInt(options.getOrDefault("runs", "5"));
+        boolean aot = Boolean.parseBoolean(options.getOrDefault("aot", "false"));
+        Duration timeout = Duration.parse("PT" + options.getOrDefault("timeout", "120s"));
+
+        File work = new File("target/startup").getAbsoluteFile();
+        work.mkdirs();
+        String migratedUrl = "jdbc:h2:file:" + new File(work, "patients").getPath();
+        if (modes.stream().anyMatch(mode -> mode.startsWith("faststart"))) {
+            System.out.println("Migrating " + migratedUrl);
+            runToRefresh(List.of("-jar", jar.getPath(), "--spring.profiles.active=migrate",
+                    "--spring.datasource.url=" + migratedUrl, "--spring.datasource.username=sa"), timeout);
+        }
+
+        List<Map<String, Object>> results = new ArrayList<>();
+        for (String mode : modes) {
+            List<String> command = command(mode, jar, work, migratedUrl, aot, timeout);
+            long[] samples = new long[runs];
+            for (int run = 0; run < runs; run++) {
+                samples[run] = timeToFirstRequest(command, timeout);
+                System.out.printf("[%s] run %d: %d ms%n", mode, run + 1, TimeUnit.NANOSECONDS.toMillis(samples[run]));
+            }
+            Arrays.sort(samples);
+
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("mode", mode);
+            summary.put("aot", aot && !mode.equals("baseline"));
+            summary.put("runs", runs);
+            summary.put("medianMillis", samples[runs / 2] / 1_000_000.0);
+            summary.put("minMillis", samples[0] / 1_000_000.0);
+            summary.put("maxMillis", samples[runs - 1] / 1_000_000.0);
+            results.add(summary);
+        }
+
+        System.out.printf("%n%-15s %12s %10s %10s%n", "mode", "median ms", "min ms", "max ms");
+        for (Map<String, Object> result : results) {
+            System.out.printf("%-15s %12.1f %10.1f %10.1f%n", result.get("mode"), result.get("medianMillis"),
+                    result.get("minMillis"), result.get("maxMillis"));
+        }
+
+        File output = new File(options.getOrDefault("result", "target/startup-result.json"));
+        output.getParentFile().mkdirs();
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(output, results);
+        System.out.println("Result written to " + output);
+    }
+
+    private static List<String> command(String mode, File jar, File work, String migratedUrl, boolean aot,
+                                        Duration timeout) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        switch (mode) {
+            case "baseline" -> {
+                command.addAll(List.of("-jar", jar.getPath()));
+                command.add("--spring.datasource.url=jdbc:h2:mem:startup;DB_CLOSE_DELAY=-1");
+            }
+            case "faststart", "faststart-cds" -> {
+                List<String> application = new ArrayList<>();
+                if (aot) {
+                    application.add("-Dspring.aot.enabled=true");
+                }
+                if (mode.equals("faststart-cds")) {
+                    File extracted = extractWithArchive(jar, work, application, migratedUrl, timeout);
+                    application.addAll(List.of("-XX:SharedArchiveFile=" + new File(work, "app.jsa"),
+                            "-jar", extracted.getPath()));
+                } else {
+                    application.addAll(List.of("-jar", jar.getPath()));
+                }
+                command.addAll(application);
+                command.addAll(fastStartArguments(migratedUrl));
+            }
+            default -> throw new IllegalArgumentException("Unknown mode: " + mode);
+        }
+        command.add("--billing.outbox.relay.enabled=false");
+        command.add("--logging.level.root=warn");
+        return command;
+    }
+
+    private static List<String> fastStartArguments(String migratedUrl) {
+        return List.of("--spring.profiles.active=faststart",
+                "--spring.datasource.url=" + migratedUrl,
+                "--spring.datasource.username=sa");
+    }
+
+    /**
+     * Extrai o jar e gera o arquivo CDS com uma execução de treino que para logo após o refresh do
+     * contexto, como no Dockerfile. Devolve o jar extraído.
+     */
+    private static File extractWithArchive(File jar, File work, List<String> jvmOptions, String migratedUrl,
+                                           Duration timeout) throws IOException, InterruptedException {
+        File destination = new File(work, "application");
+        run(List.of(java(), "-Djarmode=tools", "-jar", jar.getPath(), "extract", "--force",
+                "--destination", destination.getPath()), timeout);
+
+        File extracted = new File(destination, jar.getName());
+        List<String> training = new ArrayList<>(jvmOptions);
+        training.addAll(List.of("-XX:ArchiveClassesAtExit=" + new File(work, "app.jsa"), "-jar", extracted.getPath()));
+        training.addAll(fastStartArguments(migratedUrl));
+        training.add("--billing.outbox.relay.enabled=false");
+        runToRefresh(training, timeout);
+        return extracted;
+    }
+
+    private static long timeToFirstRequest(List<String> arguments, Duration timeout) throws Exception {
+        int port = freePort();
+        List<String> command = new ArrayList<>();
+        command.add(java());
+        command.addAll(arguments);
+        command.add("--server.port=" + port);
+
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/v1/patients?limit=1"))
+                .timeout(Duration.ofSeconds(5))
+                .GET()
+                .build();
+        try (HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build()) {
+            long start = System.nanoTime();
+            Process process = new ProcessBuilder(command).inheritIO().start();
+            try {
+                long deadline = start + timeout.toNanos();
+                while (System.nanoTime() < deadline) {
+                    if (!process.isAlive()) {
+                        throw new IllegalStateException("Application exited with " + process.exitValue());
+                    }
+                    try {
+                        if (http.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                            return System.nanoTime() - start;
+                        }
+                    } catch (IOException e) {
+                        // Porta ainda fechada
+                    }
+                    Thread.sleep(POLL_INTERVAL);
+                }
+                throw new IllegalStateException("No successful request within " + timeout);
+            } finally {
+                process.destroy();
+                if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                    process.destroyForcibly().waitFor();
+                }
+            }
+        }
+    }
+
+    private static void runToRefresh(List<String> arguments, Duration timeout) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(java());
+        command.add("-Dspring.context.exit=onRefresh");
+        command.addAll(arguments);
+        command.add("--logging.level.root=warn");
+        run(command, timeout);
+    }
+
+    private static void run(List<String> command, Duration timeout) throws IOException, InterruptedException {
+        Process process = new ProcessBuilder(command).inheritIO().start();
+        if (!process.waitFor(timeout.toMillis(), TimeUnit.MILLISECONDS)) {
+            process.destroyForcibly().waitFor();
+            throw new IllegalStateException("Timed out: " + String.join(" ", command));
+        }
+        if (process.exitValue() != 0) {
+            throw new IllegalStateException("Exit code " + process.exitValue() + ": " + String.join(" ", command));
+        }
+    }
+
+    private static String java() {
+        return new File(System.getProperty("java.home"), "bin/java").getPath();
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            int eq = arg.indexOf('=');
+            options.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        return options;
+    }
+
+}
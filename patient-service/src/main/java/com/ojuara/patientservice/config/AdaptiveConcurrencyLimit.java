@@ -0,0 +1,116 @@
+package com.ojuara.patientservice.config;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limite de requisições simultâneas que se ajusta à latência observada (gradiente, no estilo do
+ * Gradient2 do concurrency-limits da Netflix).
+ *
+ * <p>Compara a latência de cada requisição com uma média longa: enquanto elas andam juntas o
+ * limite cresce devagar (a fila tolerada é √limite); quando a latência sobe acima da média, o
+ * limite cai na proporção, até a metade por amostra. Assim o serviço aceita só a concorrência que
+ * o banco atende sem enfileirar, e o excedente é recusado na hora em vez de esperar.</p>
+ *
+ * <p>A admissão é um CAS no contador de requisições em andamento. A atualização do limite fica
+ * sob um lock, mas com {@code tryLock}: se outra thread estiver atualizando, a amostra é descartada
+ * em vez de esperar.</p>
+ */
+public class AdaptiveConcurrencyLimit {
+
+    // Latência acima de 1,5x a média longa conta como sobrecarga
+    private static final double RTT_TOLERANCE = 1.5;
+    private static final double SMOOTHING = 0.2;
+    private static final int LONG_WINDOW = 600;
+    private static final int WARMUP_SAMPLES = 10;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final ReentrantLock updateLock = new ReentrantLock();
+
+    private volatile int limit;
+
+    // Protegidos por updateLock
+    private double estimatedLimit;
+    private double longRttNanos;
+    private long samples;
+
+    public AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.estimatedLimit = Math.clamp(initialLimit, minLimit, maxLimit);
+        this.limit = (int) estimatedLimit;
+    }
+
+    /**
+     * Admite uma requisição se houver vaga no limite atual.
+     *
+     * @return quantas requisições estavam em andamento antes desta, ou -1 se ela foi recusada
+     */
+    public int tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                return -1;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return current;
+            }
+        }
+    }
+
+    /**
+     * Libera a vaga de uma requisição admitida e usa a latência dela para ajustar o limite.
+     *
+     * @param rttNanos duração da requisição
+     * @param inFlightAtStart valor devolvido por {@link #tryAcquire()}
+     */
+    public void release(long rttNanos, int inFlightAtStart) {
+        inFlight.decrementAndGet();
+        if (rttNanos <= 0 || !updateLock.tryLock()) {
+            return;
+        }
+        try {
+            update(rttNanos, inFlightAtStart + 1);
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    private void update(double rtt, int inFlightAtStart) {
+        samples++;
+        if (samples <= WARMUP_SAMPLES) {
+            // Média simples até haver amostras para a exponencial
+            longRttNanos += (rtt - longRttNanos) / samples;
+            return;
+        }
+        longRttNanos += (rtt - longRttNanos) * (2.0 / (LONG_WINDOW + 1));
+
+        // Depois de uma sobrecarga a média longa fica inflada; traz de volta para a latência atual
+        if (longRttNanos / rtt > 2) {
+            longRttNanos *= 0.95;
+        }
+
+        // Com pouca concorrência a latência não diz nada sobre o limite: não cresce sem uso
+        if (inFlightAtStart < estimatedLimit / 2) {
+            return;
+        }
+
+        double gradient = Math.clamp(RTT_TOLERANCE * longRttNanos / rtt, 0.5, 1.0);
+        double queueSize = Math.sqrt(estimatedLimit);
+        double newLimit = estimatedLimit * gradient + queueSize;
+        newLimit = estimatedLimit * (1 - SMOOTHING) + newLimit * SMOOTHING;
+        estimatedLimit = Math.clamp(newLimit, minLimit, maxLimit);
+        limit = (int) estimatedLimit;
+    }
+
+}
@@ -0,0 +1,87 @@
+package com.ojuara.patientservice.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Registra o {@link AdmissionControlInterceptor} nas rotas de pacientes
+ * ({@code patient.admission.enabled}, ligado por padrão).
+ *
+ * <p>Os limites de taxa vêm de {@code patient.admission.client-rate}/{@code client-burst} (cada
+ * cliente em cada endpoint) e {@code endpoint-rate}/{@code endpoint-burst} (o endpoint inteiro), e
+ * podem ser trocados por endpoint em {@code patient.admission.endpoints.<método>.*}; taxa 0 desliga
+ * o balde. Os endpoints de {@code patient.admission.write-endpoints} recebem ainda um limite de
+ * concorrência adaptativo entre {@code write-limit.min} e {@code write-limit.max}.</p>
+ *
+ * <p>O cliente é o endereço remoto; o cabeçalho {@code patient.admission.client-id-header} só vale
+ * com {@code patient.admission.trusted-gateway=true}, quando um gateway o preenche.</p>
+ */
+@Configuration
+@ConditionalOnProperty(name = "patient.admission.enabled", havingValue = "true", matchIfMissing = true)
+public class AdmissionControlConfig implements WebMvcConfigurer {
+
+    private final AdmissionControlInterceptor interceptor;
+
+    public AdmissionControlConfig(Environment environment,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${patient.admission.client-id-header:X-Client-Id}") String clientIdHeader,
+                                  @Value("${patient.admission.trusted-gateway:false}") boolean trustedGateway,
+                                  @Value("${patient.admission.max-clients:100000}") long maxClients,
+                                  @Value("${patient.admission.write-endpoints:createPatient,updatePatient,deletePatient}")
+                                  String[] writeEndpoints,
+                                  @Value("${patient.admission.write-limit.initial:20}") int initialLimit,
+                                  @Value("${patient.admission.write-limit.min:2}") int minLimit,
+                                  @Value("${patient.admission.write-limit.max:200}") int maxLimit,
+                                  @Value("${patient.admission.write-limit.retry-after:1s}") Duration retryAfter) {
+        RateLimiter rateLimiter = new RateLimiter(endpoint -> rates(environment, endpoint), maxClients,
+                Duration.ofMinutes(10));
+
+        Map<String, AdaptiveConcurrencyLimit> concurrencyLimits = new LinkedHashMap<>();
+        for (String endpoint : writeEndpoints) {
+            AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(initialLimit, minLimit, maxLimit);
+            concurrencyLimits.put(endpoint.trim(), limit);
+            Gauge.builder("patient.admission.concurrency.limit", limit, AdaptiveConcurrencyLimit::getLimit)
+                    .tag("endpoint", endpoint.trim())
+                    .register(meterRegistry);
+            Gauge.builder("patient.admission.concurrency.in.flight", limit, AdaptiveConcurrencyLimit::getInFlight)
+                    .tag("endpoint", endpoint.trim())
+                    .register(meterRegistry);
+        }
+
+        this.interceptor = new AdmissionControlInterceptor(rateLimiter, concurrencyLimits, clientIdHeader,
+                trustedGateway, retryAfter, meterRegistry);
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(interceptor).addPathPatterns("/api/v1/patients", "/api/v1/patients/**");
+    }
+
+    private static RateLimiter.EndpointRates rates(Environment environment, String endpoint) {
+        return new RateLimiter.EndpointRates(
+                rate(environment, endpoint, "client", 100, 200),
+                rate(environment, endpoint, "endpoint", 5000, 10000));
+    }
+
+    // patient.admission.endpoints.<endpoint>.<scope>-rate, com patient.admission.<scope>-rate como padrão
+    private static RateLimiter.Rate rate(Environment environment, String endpoint, String scope,
+                                         double defaultRate, int defaultBurst) {
+        String prefix = "patient.admission.endpoints." + endpoint + "." + scope;
+        double perSecond = environment.getProperty(prefix + "-rate", Double.class,
+                environment.getProperty("patient.admission." + scope + "-rate", Double.class, defaultRate));
+        int burst = environment.getProperty(prefix + "-burst", Integer.class,
+                environment.getProperty("patient.admission." + scope + "-burst", Integer.class, defaultBurst));
+        return perSecond > 0 ? new RateLimiter.Rate(perSecond, burst) : null;
+    }
+
+}
@@ -0,0 +1,114 @@
+package com.ojuara.patientservice.config;
+
+import com.ojuara.patientservice.exception.ConcurrencyLimitExceededException;
+import com.ojuara.patientservice.exception.RateLimitExceededException;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Controle de admissão das requisições ao {@code PatientController}, antes de chegarem ao handler.
+ *
+ * <p>Toda requisição passa pelo {@link RateLimiter} do endpoint (429 quando o cliente ou o endpoint
+ * estoura a taxa); as de escrita passam também pelo {@link AdaptiveConcurrencyLimit} do endpoint
+ * (503 quando ele está cheio). As recusas viram exceções tratadas pelo
+ * {@link com.ojuara.patientservice.exception.GlobalExceptionHandler}, com {@code Retry-After}, e são
+ * contadas em {@code patient.admission.rejected} (tags {@code endpoint} e {@code reason}).</p>
+ *
+ * <p>O endpoint é o nome do método do controller; o cliente é o endereço remoto. O cabeçalho
+ * configurado (ex.: {@code X-Client-Id}) só é usado com {@code patient.admission.trusted-gateway}:
+ * qualquer cliente o preenche, e sem um gateway que o sobrescreva bastaria trocar o valor a cada
+ * requisição para ganhar um balde novo.</p>
+ *
+ * <p>Respostas assíncronas (os streams com {@code StreamingResponseBody}) passam pelo interceptor
+ * de novo no despacho {@code ASYNC}; a admissão vale só para o despacho original, e a permissão de
+ * concorrência tomada nele é devolvida no fim do despacho assíncrono.</p>
+ */
+public class AdmissionControlInterceptor implements HandlerInterceptor {
+
+    private static final String PERMIT = AdmissionControlInterceptor.class.getName() + ".permit";
+
+    private final RateLimiter rateLimiter;
+    private final Map<String, AdaptiveConcurrencyLimit> concurrencyLimits;
+    private final String clientIdHeader;
+    private final boolean trustClientIdHeader;
+    private final Duration concurrencyRetryAfter;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * @param concurrencyLimits limite de concorrência por endpoint (só os endpoints de escrita)
+     * @param trustClientIdHeader usar {@code clientIdHeader} como cliente (só atrás de um gateway que o preenche)
+     */
+    public AdmissionControlInterceptor(RateLimiter rateLimiter,
+                                       Map<String, AdaptiveConcurrencyLimit> concurrencyLimits,
+                                       String clientIdHeader,
+                                       boolean trustClientIdHeader,
+                                       Duration concurrencyRetryAfter,
+                                       MeterRegistry meterRegistry) {
+        this.rateLimiter = rateLimiter;
+        this.concurrencyLimits = concurrencyLimits;
+        this.clientIdHeader = clientIdHeader;
+        this.trustClientIdHeader = trustClientIdHeader;
+        this.concurrencyRetryAfter = concurrencyRetryAfter;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (request.getDispatcherType() == DispatcherType.ASYNC
+                || !(handler instanceof HandlerMethod handlerMethod)) {
+            return true;
+        }
+        String endpoint = handlerMethod.getMethod().getName();
+
+        try {
+            rateLimiter.acquire(endpoint, clientId(request));
+        } catch (RateLimitExceededException e) {
+            rejected(endpoint, "rate");
+            throw e;
+        }
+
+        AdaptiveConcurrencyLimit limit = concurrencyLimits.get(endpoint);
+        if (limit != null) {
+            int inFlight = limit.tryAcquire();
+            if (inFlight < 0) {
+                rejected(endpoint, "concurrency");
+                throw new ConcurrencyLimitExceededException("Concurrency limit of " + limit.getLimit()
+                        + " reached on " + endpoint, concurrencyRetryAfter);
+            }
+            request.setAttribute(PERMIT, new Permit(limit, System.nanoTime(), inFlight));
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception ex) {
+        if (request.getAttribute(PERMIT) instanceof Permit permit) {
+            request.removeAttribute(PERMIT);
+            permit.limit().release(System.nanoTime() - permit.startNanos(), permit.inFlightAtStart());
+        }
+    }
+
+    private String clientId(HttpServletRequest request) {
+        if (!trustClientIdHeader) {
+            return request.getRemoteAddr();
+        }
+        String client = request.getHeader(clientIdHeader);
+        return client == null || client.isBlank() ? request.getRemoteAddr() : client;
+    }
+
+    private void rejected(String endpoint, String reason) {
+        meterRegistry.counter("patient.admission.rejected", "endpoint", endpoint, "reason", reason).increment();
+    }
+
+    private record Permit(AdaptiveConcurrencyLimit limit, long startNanos, int inFlightAtStart) {
+    }
+
+}
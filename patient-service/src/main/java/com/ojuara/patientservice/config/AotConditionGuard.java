@@ -0,0 +1,86 @@
+package com.ojuara.patientservice.config;
+
+import com.ojuara.patientservice.service.PatientEventLog;
+import org.springframework.aot.AotDetector;
+import org.springframework.beans.factory.ListableBeanFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Falha a subida do jar com AOT ({@code -Dspring.aot.enabled=true}) quando uma configuração
+ * condicional não bate com as propriedades em runtime.
+ *
+ * <p>No processamento AOT ({@code mvn package -Paot}) as condições são avaliadas uma única vez, com o
+ * profile {@code faststart}: uma classe que ficou de fora não volta quando a propriedade aparece
+ * depois, e uma que entrou não sai. Sem esta verificação a imagem ignoraria em silêncio, por exemplo,
+ * {@code PATIENT_DB_REPLICA_URLS} ou {@code PATIENT_DB_SHARD_URLS}. A saída é gerar a imagem com a
+ * propriedade já definida no processamento ou subir sem {@code spring.aot.enabled}.</p>
+ *
+ * <p>Fora do modo AOT as condições são avaliadas na subida e nada é verificado.</p>
+ */
+@Component
+public class AotConditionGuard implements SmartInitializingSingleton {
+
+    private final Environment environment;
+    private final ListableBeanFactory beanFactory;
+
+    public AotConditionGuard(Environment environment, ListableBeanFactory beanFactory) {
+        this.environment = environment;
+        this.beanFactory = beanFactory;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (!AotDetector.useGeneratedArtifacts()) {
+            return;
+        }
+        List<String> mismatches = mismatches(environment,
+                type -> beanFactory.getBeanNamesForType(type, false, false).length > 0);
+        if (!mismatches.isEmpty()) {
+            throw new IllegalStateException("The AOT build fixed these conditions differently from the runtime "
+                    + "properties: " + String.join("; ", mismatches) + ". Rebuild the image with the properties "
+                    + "set during process-aot, or start without -Dspring.aot.enabled=true.");
+        }
+    }
+
+    /**
+     * Compara cada propriedade com a presença da configuração que ela ativa.
+     *
+     * @param registered se há bean do tipo no contexto
+     * @return uma descrição por divergência; vazia se tudo bate
+     */
+    static List<String> mismatches(Environment environment, Predicate<Class<?>> registered) {
+        List<String> mismatches = new ArrayList<>();
+        check(mismatches, "patient.db.replica-urls", isSet(environment, "patient.db.replica-urls"),
+                registered.test(ReadReplicaConfig.class));
+        check(mismatches, "patient.db.shard-urls", isSet(environment, "patient.db.shard-urls"),
+                registered.test(ShardingConfig.class));
+        // O limite é lido de novo em cada pool: com a configuração no build, zero em runtime só o desliga
+        boolean limited = environment.getProperty("patient.db.max-concurrency", Integer.class, 0) > 0;
+        boolean limiter = registered.test(DatabaseConcurrencyConfig.class);
+        check(mismatches, "patient.db.max-concurrency", limited, limited && limiter);
+        check(mismatches, "patient.events.directory", isSet(environment, "patient.events.directory"),
+                registered.test(PatientEventLog.class));
+        check(mismatches, "patient.admission.enabled",
+                environment.getProperty("patient.admission.enabled", Boolean.class, true),
+                registered.test(AdmissionControlConfig.class));
+        return mismatches;
+    }
+
+    private static void check(List<String> mismatches, String property, boolean enabled, boolean present) {
+        if (enabled != present) {
+            mismatches.add(property + " is " + (enabled ? "set" : "unset") + " but the build "
+                    + (present ? "included" : "left out") + " its configuration");
+        }
+    }
+
+    private static boolean isSet(Environment environment, String property) {
+        return !environment.getProperty(property, "").isBlank();
+    }
+
+}
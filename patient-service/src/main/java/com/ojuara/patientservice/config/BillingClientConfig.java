@@ -0,0 +1,71 @@
+package com.ojuara.patientservice.config;
+
+import com.ojuara.patientservice.grpc.BillingClientSettings;
+import com.ojuara.patientservice.grpc.BillingServiceGrpcClient;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.micrometer.observation.ObservationRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Canais gRPC para o billing-service: um por endpoint de {@code billing.service.endpoints},
+ * criados na subida e compartilhados por todas as chamadas (o HTTP/2 multiplexa as chamadas
+ * na mesma conexão).
+ *
+ * <p>O keepalive ({@code billing.service.keepalive-time}) detecta conexões mortas sem esperar o
+ * prazo de uma chamada, e o canal ocioso por {@code billing.service.idle-timeout} fecha a
+ * conexão. O billing-service precisa aceitar pings nesse intervalo
+ * ({@code grpc.server.permit-keep-alive-time}), senão encerra a conexão. Um endpoint cujo nome
+ * resolve para vários endereços também é balanceado em round-robin dentro do canal.</p>
+ */
+@Slf4j
+@Configuration
+public class BillingClientConfig {
+
+    @Bean
+    BillingServiceGrpcClient billingServiceGrpcClient(
+            @Value("${billing.service.endpoints:${billing.service.address:localhost}:${billing.service.grpc.port:9001}}")
+            String[] endpoints,
+            @Value("${billing.service.keepalive-time:30s}") Duration keepAliveTime,
+            @Value("${billing.service.keepalive-timeout:10s}") Duration keepAliveTimeout,
+            @Value("${billing.service.idle-timeout:5m}") Duration idleTimeout,
+            @Value("${billing.service.deadline:5s}") Duration deadline,
+            @Value("${billing.service.hedge.enabled:true}") boolean hedging,
+            @Value("${billing.service.hedge.percentile:0.95}") double hedgePercentile,
+            @Value("${billing.service.hedge.min-delay:10ms}") Duration minHedgeDelay,
+            @Value("${billing.service.hedge.max-delay:1s}") Duration maxHedgeDelay,
+            @Value("${billing.service.circuit.failure-rate-threshold:0.5}") double failureRateThreshold,
+            @Value("${billing.service.circuit.window-size:20}") int circuitWindowSize,
+            @Value("${billing.service.circuit.minimum-calls:10}") int circuitMinimumCalls,
+            @Value("${billing.service.circuit.open-duration:10s}") Duration circuitOpenDuration,
+            ObservationRegistry observationRegistry) {
+
+        List<ManagedChannel> channels = Arrays.stream(endpoints)
+                .map(String::trim)
+                .filter(endpoint -> !endpoint.isEmpty())
+                .map(endpoint -> ManagedChannelBuilder.forTarget(endpoint)
+                        .usePlaintext()
+                        .defaultLoadBalancingPolicy("round_robin")
+                        .keepAliveTime(keepAliveTime.toMillis(), TimeUnit.MILLISECONDS)
+                        .keepAliveTimeout(keepAliveTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                        .idleTimeout(idleTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                        .build())
+                .toList();
+
+        BillingClientSettings settings = new BillingClientSettings(deadline, hedging, hedgePercentile,
+                minHedgeDelay, maxHedgeDelay, failureRateThreshold, circuitWindowSize, circuitMinimumCalls,
+                circuitOpenDuration);
+        log.info("Connecting to Billing Service GRPC service at {} (deadline {}, hedging {}).",
+                String.join(", ", endpoints), deadline, hedging);
+        return new BillingServiceGrpcClient(channels, settings, observationRegistry);
+    }
+
+}
@@ -0,0 +1,66 @@
+package com.ojuara.patientservice.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Ativa o {@link ConcurrencyLimitingDataSource} quando {@code patient.db.max-concurrency}
+ * for maior que zero.
+ *
+ * <p>Com {@code spring.threads.virtual.enabled=true} o valor recomendado é o tamanho do pool
+ * do Hikari ({@code spring.datasource.hikari.maximum-pool-size}): nenhuma thread chega a
+ * esperar dentro do pool e o excedente fica na fila do semáforo, com timeout próprio.</p>
+ *
+ * <p>O limite é de cada pool Hikari, não do DataSource da aplicação: com réplicas
+ * ({@link ReadReplicaConfig}) o bean {@code dataSource} roteia entre vários pools e não é
+ * envolvido; o primário e cada réplica recebem o próprio semáforo, assim como cada shard
+ * ({@link ShardingConfig}). Um semáforo só na frente do roteamento somaria os pools e deixaria o
+ * primário receber conexões além do tamanho dele.</p>
+ */
+@Slf4j
+@Configuration
+@ConditionalOnExpression("${patient.db.max-concurrency:0} > 0")
+public class DatabaseConcurrencyConfig {
+
+    @Bean
+    static BeanPostProcessor concurrencyLimitingDataSourcePostProcessor(Environment environment) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                // Só pools: o roteamento das réplicas e outros proxies ficam como estão
+                if (!(bean instanceof HikariDataSource pool)) {
+                    return bean;
+                }
+                return limitPool(pool, beanName, environment);
+            }
+        };
+    }
+
+    /**
+     * Envolve um pool no {@link ConcurrencyLimitingDataSource}, com {@code patient.db.max-concurrency}
+     * permissões. Usado também nos pools que não são beans (primário e réplicas, shards).
+     *
+     * @return o próprio pool quando o limite está desligado
+     */
+    static DataSource limitPool(DataSource pool, String name, Environment environment) {
+        int maxConcurrency = environment.getProperty("patient.db.max-concurrency", Integer.class, 0);
+        if (maxConcurrency <= 0) {
+            return pool;
+        }
+        Duration acquireTimeout = environment.getProperty(
+                "patient.db.acquire-timeout", Duration.class, Duration.ofSeconds(2));
+
+        log.info("Limiting datasource '{}' to {} concurrent connections (acquire timeout {}).",
+                name, maxConcurrency, acquireTimeout);
+        return new ConcurrencyLimitingDataSource(pool, maxConcurrency, acquireTimeout);
+    }
+
+}
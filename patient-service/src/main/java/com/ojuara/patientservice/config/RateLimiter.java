@@ -0,0 +1,93 @@
+package com.ojuara.patientservice.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.ojuara.patientservice.exception.RateLimitExceededException;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Limites de taxa por endpoint: um {@link TokenBucket} para cada par (cliente, endpoint) e um para
+ * o endpoint como um todo, somando todos os clientes.
+ *
+ * <p>Os baldes dos clientes ficam em um cache Caffeine limitado e expiram depois de
+ * {@code clientIdle} sem uso (um balde parado estaria cheio de qualquer forma). Nenhum caminho
+ * usa lock global: a busca do balde é a do mapa concorrente e o consumo, um CAS no balde.</p>
+ */
+public class RateLimiter {
+
+    private final Function<String, EndpointRates> ratesByEndpoint;
+    private final ConcurrentHashMap<String, EndpointRates> rates = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Optional<TokenBucket>> endpointBuckets = new ConcurrentHashMap<>();
+    private final Cache<ClientKey, TokenBucket> clientBuckets;
+
+    /**
+     * @param ratesByEndpoint limites de cada endpoint, consultado uma vez por endpoint
+     * @param maxClients quantidade máxima de baldes de clientes mantidos
+     * @param clientIdle tempo sem uso até o balde de um cliente ser descartado
+     */
+    public RateLimiter(Function<String, EndpointRates> ratesByEndpoint, long maxClients, Duration clientIdle) {
+        this.ratesByEndpoint = ratesByEndpoint;
+        this.clientBuckets = Caffeine.newBuilder()
+                .maximumSize(maxClients)
+                .expireAfterAccess(clientIdle)
+                .build();
+    }
+
+    /**
+     * Consome um token do cliente e um do endpoint.
+     *
+     * @throws RateLimitExceededException se algum dos dois baldes estiver vazio, com o tempo até
+     *                                    haver token nele
+     */
+    public void acquire(String endpoint, String client) {
+        EndpointRates limits = rates.computeIfAbsent(endpoint, ratesByEndpoint);
+        long now = System.nanoTime();
+
+        if (limits.client() != null) {
+            TokenBucket bucket = clientBuckets.get(new ClientKey(endpoint, client), key -> limits.client().newBucket());
+            long wait = bucket.tryAcquire(now);
+            if (wait > 0) {
+                throw new RateLimitExceededException("Client rate limit of " + limits.client().perSecond()
+                        + "/s reached on " + endpoint, Duration.ofNanos(wait));
+            }
+        }
+
+        Optional<TokenBucket> shared = endpointBuckets.computeIfAbsent(endpoint,
+                key -> Optional.ofNullable(limits.endpoint()).map(Rate::newBucket));
+        if (shared.isPresent()) {
+            long wait = shared.get().tryAcquire(now);
+            if (wait > 0) {
+                throw new RateLimitExceededException("Endpoint rate limit of " + limits.endpoint().perSecond()
+                        + "/s reached on " + endpoint, Duration.ofNanos(wait));
+            }
+        }
+    }
+
+    /**
+     * Taxa sustentada e rajada de um balde.
+     */
+    public record Rate(double perSecond, int burst) {
+
+        TokenBucket newBucket() {
+            return new TokenBucket(perSecond, burst);
+        }
+
+    }
+
+    /**
+     * Limites de um endpoint; null desliga o respectivo balde.
+     *
+     * @param client limite de cada cliente
+     * @param endpoint limite de todos os clientes juntos
+     */
+    public record EndpointRates(Rate client, Rate endpoint) {
+    }
+
+    private record ClientKey(String endpoint, String client) {
+    }
+
+}
@@ -0,0 +1,143 @@
+package com.ojuara.patientservice.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Consistência exigida das leituras da thread atual, usada pelo {@link ReplicaRoutingDataSource}
+ * para escolher entre o primário e as réplicas.
+ *
+ * <p>Uma requisição HTTP traz a posição de replicação da última escrita do cliente
+ * ({@link ReadConsistencyFilter}) e só réplicas que já aplicaram essa posição atendem as leituras
+ * dela. Depois de uma escrita confirmada na própria requisição, a posição sobe para a dessa escrita.
+ * Trechos que não podem ler dados atrasados usam {@link #pinToPrimary()}.</p>
+ *
+ * <p>Sem réplicas configuradas nada disso tem efeito: todas as conexões vêm do primário.</p>
+ */
+@Slf4j
+public final class ReadConsistency {
+
+    private static final ThreadLocal<Context> CONTEXT = new ThreadLocal<>();
+
+    // Recurso da transação que marca a escrita já acompanhada (uma sincronização por transação)
+    private static final Object WRITE_TRACKED = new Object();
+
+    private ReadConsistency() {
+    }
+
+    /**
+     * Manda para o primário as leituras da thread até o {@code close()} do escopo. Basta abrir o
+     * escopo antes da primeira consulta da transação: a conexão só é escolhida nela.
+     */
+    public static Scope pinToPrimary() {
+        Context context = context();
+        context.pinned++;
+        return () -> {
+            context.pinned--;
+            removeIfUnused(context);
+        };
+    }
+
+    /**
+     * Posição que a réplica precisa ter aplicado para atender as leituras da thread;
+     * {@link Long#MAX_VALUE} quando só o primário serve.
+     */
+    static long requiredPosition() {
+        Context context = CONTEXT.get();
+        if (context == null) {
+            return 0;
+        }
+        return context.pinned > 0 ? Long.MAX_VALUE : context.requiredPosition;
+    }
+
+    /**
+     * Liga a thread a uma requisição.
+     *
+     * @param requiredPosition posição enviada pelo cliente (0 se nenhuma)
+     * @param writePosition chamado após o commit de cada escrita da requisição; devolve a posição
+     *                      que as réplicas precisam alcançar para mostrá-la
+     */
+    static void bind(long requiredPosition, LongSupplier writePosition) {
+        Context context = context();
+        context.requiredPosition = requiredPosition;
+        context.writePosition = writePosition;
+    }
+
+    static void unbind() {
+        Context context = CONTEXT.get();
+        if (context != null) {
+            context.requiredPosition = 0;
+            context.writePosition = null;
+            removeIfUnused(context);
+        }
+    }
+
+    /**
+     * Chamado quando a transação atual recebe uma conexão do primário para escrita; após o commit,
+     * as leituras seguintes da requisição passam a exigir a posição dessa escrita.
+     */
+    static void trackWrite() {
+        Context context = CONTEXT.get();
+        if (context == null || context.writePosition == null
+                || !TransactionSynchronizationManager.isSynchronizationActive()
+                || TransactionSynchronizationManager.hasResource(WRITE_TRACKED)) {
+            return;
+        }
+        TransactionSynchronizationManager.bindResource(WRITE_TRACKED, Boolean.TRUE);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                try {
+                    context.requiredPosition = Math.max(context.requiredPosition, context.writePosition.getAsLong());
+                } catch (RuntimeException e) {
+                    // A escrita já foi confirmada; sem a posição, o resto da requisição lê do primário
+                    log.warn("Could not read the replication position after a write: {}", e.getMessage());
+                    context.requiredPosition = Long.MAX_VALUE;
+                }
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(WRITE_TRACKED);
+            }
+        });
+    }
+
+    private static Context context() {
+        Context context = CONTEXT.get();
+        if (context == null) {
+            context = new Context();
+            CONTEXT.set(context);
+        }
+        return context;
+    }
+
+    private static void removeIfUnused(Context context) {
+        if (context.pinned == 0 && context.writePosition == null && CONTEXT.get() == context) {
+            CONTEXT.remove();
+        }
+    }
+
+    /**
+     * Escopo aberto por {@link #pinToPrimary()}.
+     */
+    @FunctionalInterface
+    public interface Scope extends AutoCloseable {
+
+        @Override
+        void close();
+
+    }
+
+    private static final class Context {
+
+        private long requiredPosition;
+        private LongSupplier writePosition;
+        private int pinned;
+
+    }
+
+}
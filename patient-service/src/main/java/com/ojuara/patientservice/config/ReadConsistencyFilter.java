@@ -0,0 +1,58 @@
+package com.ojuara.patientservice.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Leitura das próprias escritas com réplicas: liga cada requisição ao {@link ReadConsistency}.
+ *
+ * <p>Quando a requisição confirma uma escrita, a resposta traz em {@value #HEADER} a posição de
+ * replicação dela. O cliente reenvia o último valor recebido nas requisições seguintes e as leituras
+ * delas só vão para réplicas que já têm a escrita (ou para o primário). Sem o cabeçalho as leituras
+ * aceitam qualquer réplica em dia; um valor inválido manda a requisição para o primário.</p>
+ *
+ * <p>O corpo de {@code GET /api/v1/patients/stream} é escrito em outra thread, fora da requisição,
+ * e por isso não usa o cabeçalho.</p>
+ */
+public class ReadConsistencyFilter extends OncePerRequestFilter {
+
+    public static final String HEADER = "X-Consistency-Token";
+
+    private final ReplicationHeartbeat heartbeat;
+
+    public ReadConsistencyFilter(ReplicationHeartbeat heartbeat) {
+        this.heartbeat = heartbeat;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        ReadConsistency.bind(requiredPosition(request.getHeader(HEADER)), () -> {
+            long position = heartbeat.writePosition();
+            response.setHeader(HEADER, Long.toString(position));
+            return position;
+        });
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            ReadConsistency.unbind();
+        }
+    }
+
+    private static long requiredPosition(String header) {
+        if (header == null || header.isBlank()) {
+            return 0;
+        }
+        try {
+            return Math.max(Long.parseLong(header.trim()), 0);
+        } catch (NumberFormatException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+}
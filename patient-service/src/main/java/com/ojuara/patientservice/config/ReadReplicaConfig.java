@@ -0,0 +1,107 @@
+package com.ojuara.patientservice.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Leituras em réplicas, ativadas quando {@code patient.db.replica-urls} lista ao menos uma réplica.
+ *
+ * <p>O DataSource da aplicação passa a ser um {@link ReplicaRoutingDataSource} sobre um pool Hikari
+ * para o primário ({@code spring.datasource.*}) e um para cada réplica, com as mesmas opções de pool
+ * ({@code spring.datasource.hikari.*}). As réplicas usam o usuário e a senha do primário, salvo
+ * {@code patient.db.replica-username} e {@code patient.db.replica-password}.</p>
+ *
+ * <p>O schema vem só do primário: as migrações do Flyway rodam nele e chegam às réplicas pela
+ * replicação. No jar gerado com {@code -Paot} a condição fica fixa no build: a imagem com AOT só usa
+ * réplicas se elas estiverem configuradas no processamento, e o {@link AotConditionGuard} recusa a
+ * subida quando a propriedade aparece só em runtime.</p>
+ */
+@Slf4j
+@Configuration
+@ConditionalOnExpression("'${patient.db.replica-urls:}' != ''")
+public class ReadReplicaConfig {
+
+    @Bean
+    ReplicaSet replicaSet(DataSourceProperties properties,
+                          Environment environment,
+                          ObjectProvider<MeterRegistry> meterRegistry,
+                          @Value("${patient.db.replica-urls}") String[] replicaUrls,
+                          @Value("${patient.db.replica-max-lag:2s}") Duration maxLag) {
+        HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        configurePool(primary, "primary", environment);
+
+        String username = environment.getProperty("patient.db.replica-username", properties.determineUsername());
+        String password = environment.getProperty("patient.db.replica-password", properties.determinePassword());
+        List<HikariDataSource> replicas = new ArrayList<>();
+        for (String url : replicaUrls) {
+            HikariDataSource replica = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .url(url.trim())
+                    .username(username)
+                    .password(password)
+                    .build();
+            configurePool(replica, "replica-" + (replicas.size() + 1), environment);
+            // O pool do primário é medido pelo Spring Boot; os das réplicas não são beans
+            meterRegistry.ifAvailable(replica::setMetricRegistry);
+            replicas.add(replica);
+        }
+
+        ReplicaSet replicaSet = new ReplicaSet(primary, replicas, maxLag);
+        meterRegistry.ifAvailable(registry -> replicas.forEach(replica -> Gauge
+                .builder("patient.db.replica.lag", replicaSet, set -> lagSeconds(set, replica.getPoolName()))
+                .description("Time since the last primary heartbeat applied by the replica (NaN when unavailable)")
+                .baseUnit("seconds")
+                .tag("replica", replica.getPoolName())
+                .register(registry)));
+
+        log.info("Routing read-only transactions to {} replica(s) with max lag {}.", replicas.size(), maxLag);
+        return replicaSet;
+    }
+
+    @Bean
+    DataSource dataSource(ReplicaSet replicaSet, Environment environment) {
+        return new LazyConnectionDataSourceProxy(new ReplicaRoutingDataSource(replicaSet,
+                pool -> DatabaseConcurrencyConfig.limitPool(pool, ((HikariDataSource) pool).getPoolName(), environment)));
+    }
+
+    @Bean
+    ReplicationHeartbeat replicationHeartbeat(NamedParameterJdbcTemplate jdbcTemplate, ReplicaSet replicaSet) {
+        return new ReplicationHeartbeat(jdbcTemplate, replicaSet);
+    }
+
+    @Bean
+    ReadConsistencyFilter readConsistencyFilter(ReplicationHeartbeat heartbeat) {
+        return new ReadConsistencyFilter(heartbeat);
+    }
+
+    // Mesmas propriedades que o Spring Boot aplica ao pool padrão
+    static void configurePool(HikariDataSource pool, String name, Environment environment) {
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(pool));
+        pool.setPoolName(name);
+    }
+
+    private static double lagSeconds(ReplicaSet replicaSet, String replica) {
+        Duration lag = replicaSet.lags().get(replica);
+        return lag == null ? Double.NaN : lag.toNanos() / 1e9;
+    }
+
+}
@@ -0,0 +1,45 @@
+package com.ojuara.patientservice.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+/**
+ * Entrega conexões de uma réplica para transações {@code readOnly} e do primário para todo o
+ * resto (escritas, Flyway, acessos fora de transação).
+ *
+ * <p>Precisa ficar atrás de um {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}:
+ * o gerenciador de transações só marca a transação como somente leitura depois de abri-la, e o
+ * proxy adia a escolha da conexão até o primeiro comando.</p>
+ *
+ * <p>Cada pool passa por {@code perPool} (o limite de concorrência de
+ * {@link DatabaseConcurrencyConfig}), para que o primário e cada réplica tenham o próprio limite.</p>
+ */
+class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    private final ReplicaSet replicaSet;
+
+    ReplicaRoutingDataSource(ReplicaSet replicaSet, UnaryOperator<DataSource> perPool) {
+        this.replicaSet = replicaSet;
+        Map<Object, Object> targets = new LinkedHashMap<>();
+        replicaSet.targets().forEach((key, pool) -> targets.put(key, perPool.apply((DataSource) pool)));
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(targets.get(ReplicaSet.PRIMARY));
+        setLenientFallback(false);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            ReadConsistency.trackWrite();
+            return ReplicaSet.PRIMARY;
+        }
+        return replicaSet.route(ReadConsistency.requiredPosition());
+    }
+
+}
@@ -0,0 +1,131 @@
+package com.ojuara.patientservice.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool do primário e das réplicas de leitura, com o estado de replicação de cada réplica.
+ *
+ * <p>O estado vem da linha de {@code replication_heartbeat} que cada réplica recebeu do primário
+ * (ver {@link ReplicationHeartbeat}): a posição diz quais escritas ela já aplicou e o carimbo do
+ * batimento, há quanto tempo ela está atrasada. Uma réplica atrasada mais que {@code maxLag}, ou que
+ * não respondeu à última leitura do estado, não recebe leituras até se recuperar.</p>
+ */
+@Slf4j
+public class ReplicaSet implements Closeable {
+
+    static final String PRIMARY = "primary";
+
+    private static final String SELECT_HEARTBEAT = "SELECT position, beat_at FROM replication_heartbeat WHERE id = 1";
+
+    private final HikariDataSource primary;
+    private final List<Replica> replicas;
+    private final Duration maxLag;
+    private final AtomicInteger nextReplica = new AtomicInteger();
+
+    public ReplicaSet(HikariDataSource primary, List<HikariDataSource> replicas, Duration maxLag) {
+        this.primary = primary;
+        this.replicas = replicas.stream().map(Replica::new).toList();
+        this.maxLag = maxLag;
+    }
+
+    DataSource primary() {
+        return primary;
+    }
+
+    Map<Object, Object> targets() {
+        Map<Object, Object> targets = new LinkedHashMap<>();
+        targets.put(PRIMARY, primary);
+        replicas.forEach(replica -> targets.put(replica.name, replica.dataSource));
+        return targets;
+    }
+
+    /**
+     * Escolhe quem atende uma transação somente leitura: a próxima réplica (em rodízio) que já
+     * aplicou {@code requiredPosition} e está dentro do atraso máximo, ou o primário se nenhuma estiver.
+     *
+     * @return chave do datasource em {@link #targets()}
+     */
+    String route(long requiredPosition) {
+        int size = replicas.size();
+        int first = Math.floorMod(nextReplica.getAndIncrement(), size);
+        Instant oldestBeat = Instant.now().minus(maxLag);
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((first + i) % size);
+            ReplicaState state = replica.state;
+            if (state != null && state.position() >= requiredPosition && !state.beatAt().isBefore(oldestBeat)) {
+                return replica.name;
+            }
+        }
+        return PRIMARY;
+    }
+
+    /**
+     * Lê de novo o batimento recebido por cada réplica.
+     */
+    public void refresh() {
+        for (Replica replica : replicas) {
+            try {
+                replica.state = replica.jdbcTemplate.queryForObject(SELECT_HEARTBEAT, (rs, rowNum) ->
+                        new ReplicaState(rs.getLong(1), rs.getObject(2, OffsetDateTime.class).toInstant()));
+            } catch (DataAccessException e) {
+                if (replica.state != null) {
+                    log.warn("Replica '{}' unavailable, reading from the primary: {}", replica.name, e.getMessage());
+                }
+                replica.state = null;
+            }
+        }
+    }
+
+    /**
+     * Atraso de cada réplica em relação ao primário, medido pelo último batimento que ela aplicou;
+     * null para réplicas indisponíveis.
+     */
+    public Map<String, Duration> lags() {
+        Instant now = Instant.now();
+        Map<String, Duration> lags = new LinkedHashMap<>();
+        for (Replica replica : replicas) {
+            ReplicaState state = replica.state;
+            lags.put(replica.name, state == null ? null : Duration.between(state.beatAt(), now));
+        }
+        return lags;
+    }
+
+    @Override
+    public void close() {
+        replicas.forEach(replica -> replica.dataSource.close());
+        primary.close();
+    }
+
+    private record ReplicaState(long position, Instant beatAt) {
+    }
+
+    private static final class Replica {
+
+        private final String name;
+        private final HikariDataSource dataSource;
+        private final JdbcTemplate jdbcTemplate;
+        // null até a primeira leitura do estado e enquanto a réplica não responder
+        private volatile ReplicaState state;
+
+        private Replica(HikariDataSource dataSource) {
+            this.name = dataSource.getPoolName();
+            this.dataSource = dataSource;
+            this.jdbcTemplate = new JdbcTemplate(dataSource);
+        }
+
+    }
+
+}
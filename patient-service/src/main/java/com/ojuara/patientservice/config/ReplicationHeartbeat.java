@@ -0,0 +1,70 @@
+package com.ojuara.patientservice.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Batimento de replicação: um contador em {@code replication_heartbeat} que o primário incrementa
+ * periodicamente e que chega às réplicas pela própria replicação.
+ *
+ * <p>A réplica aplica as transações na ordem de commit, então ter aplicado o batimento de posição
+ * {@code n} implica ter aplicado tudo o que confirmou antes dele. A posição de uma escrita é a do
+ * batimento lido logo após o commit dela, mais um: esse próximo batimento ainda não tinha confirmado
+ * na leitura, logo confirma depois da escrita. Com várias instâncias todas batem na mesma linha,
+ * sem prejuízo.</p>
+ *
+ * <p>O carimbo do batimento serve só para medir o atraso das réplicas; a consistência não depende
+ * de relógios.</p>
+ */
+@Slf4j
+public class ReplicationHeartbeat {
+
+    private static final String BEAT =
+            "UPDATE replication_heartbeat SET position = position + 1, beat_at = :beatAt WHERE id = 1";
+
+    private static final String SELECT_POSITION = "SELECT position FROM replication_heartbeat WHERE id = 1";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final ReplicaSet replicaSet;
+
+    public ReplicationHeartbeat(NamedParameterJdbcTemplate jdbcTemplate, ReplicaSet replicaSet) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.replicaSet = replicaSet;
+    }
+
+    @Scheduled(fixedDelayString = "${patient.db.heartbeat-interval:200ms}")
+    public void beat() {
+        try {
+            jdbcTemplate.update(BEAT, new MapSqlParameterSource("beatAt",
+                    OffsetDateTime.now(ZoneOffset.UTC).truncatedTo(ChronoUnit.MICROS)));
+        } catch (RuntimeException e) {
+            // Sem batimento as réplicas parecem atrasadas e as leituras vão para o primário
+            log.warn("Replication heartbeat failed: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${patient.db.replica-poll-interval:200ms}")
+    public void poll() {
+        replicaSet.refresh();
+    }
+
+    /**
+     * Posição que uma réplica precisa ter aplicado para mostrar as escritas já confirmadas.
+     *
+     * <p>Chamado após o commit, ainda com a conexão da transação (a consulta não abre outra).</p>
+     */
+    public long writePosition() {
+        Long position = jdbcTemplate.getJdbcTemplate().queryForObject(SELECT_POSITION, Long.class);
+        if (position == null) {
+            throw new IllegalStateException("replication_heartbeat has no position");
+        }
+        return position + 1;
+    }
+
+}
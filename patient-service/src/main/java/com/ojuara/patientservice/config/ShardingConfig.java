@@ -0,0 +1,127 @@
+package com.ojuara.patientservice.config;
+
+import com.ojuara.patientservice.repository.PatientShard;
+import com.ojuara.patientservice.repository.ShardedPatientRepository;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.flywaydb.core.Flyway;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Armazenamento de pacientes em shards, ativado quando {@code patient.db.shard-urls} lista ao menos
+ * um banco.
+ *
+ * <p>Cada URL vira um pool Hikari com as opções de {@code spring.datasource.hikari.*} e o id
+ * {@code shard-<posição>}: a ordem da lista define o anel, então shards novos entram sempre no fim.
+ * Usuário e senha são os do primário, salvo {@code patient.db.shard-username} e
+ * {@code patient.db.shard-password}. O schema de {@code db/shard} é aplicado em cada shard quando
+ * {@code spring.flyway.enabled}; o diretório de emails fica no banco principal (migração V5).</p>
+ *
+ * <p>Com o bean presente, o cadastro, a listagem e o streaming, a importação, as operações em
+ * lote, a exportação, o feed de alterações e o filtro de emails passam a ler e gravar pacientes
+ * pelo {@link ShardedPatientRepository}. Do banco principal ficam o diretório, o outbox de
+ * cobrança, as remoções do feed e as exportações; a tabela {@code patient} dele não é mais lida
+ * nem copiada para os shards.</p>
+ *
+ * <p>Para incluir um shard, acrescente a URL e suba com {@code patient.db.shard-rebalance-from}
+ * igual à quantidade anterior: o anel começa sem o último shard e o inclui com rebalanceamento
+ * online ({@link ShardedPatientRepository#addShard(PatientShard)}). Como em
+ * {@link ReadReplicaConfig}, no jar gerado com {@code -Paot} a condição fica fixa no build e o
+ * {@link AotConditionGuard} recusa a subida se ela divergir da propriedade.</p>
+ */
+@Slf4j
+@Configuration
+@ConditionalOnExpression("'${patient.db.shard-urls:}' != ''")
+public class ShardingConfig {
+
+    @Bean(destroyMethod = "close")
+    ShardPools patientShardPools(DataSourceProperties properties,
+                                 Environment environment,
+                                 ObjectProvider<MeterRegistry> meterRegistry,
+                                 @Value("${patient.db.shard-urls}") String[] shardUrls) {
+        String username = environment.getProperty("patient.db.shard-username", properties.determineUsername());
+        String password = environment.getProperty("patient.db.shard-password", properties.determinePassword());
+        boolean migrate = environment.getProperty("spring.flyway.enabled", Boolean.class, true);
+
+        List<HikariDataSource> pools = new ArrayList<>();
+        for (String url : shardUrls) {
+            HikariDataSource pool = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .url(url.trim())
+                    .username(username)
+                    .password(password)
+                    .build();
+            ReadReplicaConfig.configurePool(pool, "shard-" + pools.size(), environment);
+            meterRegistry.ifAvailable(pool::setMetricRegistry);
+            pools.add(pool);
+            if (migrate) {
+                Flyway.configure().dataSource(pool).locations("classpath:db/shard").load().migrate();
+            }
+        }
+        return new ShardPools(pools);
+    }
+
+    @Bean
+    ShardedPatientRepository shardedPatientRepository(DataSource dataSource,
+                                                      ShardPools pools,
+                                                      Environment environment,
+                                                      ObjectProvider<MeterRegistry> meterRegistry,
+                                                      @Value("${patient.db.shard-virtual-nodes:128}") int virtualNodes,
+                                                      @Value("${patient.db.shard-rebalance-from:0}") int rebalanceFrom) {
+        List<PatientShard> shards = pools.shards(environment);
+        if (rebalanceFrom != 0 && rebalanceFrom != shards.size() - 1) {
+            throw new IllegalStateException("patient.db.shard-rebalance-from must be 0 or " + (shards.size() - 1)
+                    + " (one shard added at a time), was " + rebalanceFrom);
+        }
+
+        int initialShards = rebalanceFrom == 0 ? shards.size() : rebalanceFrom;
+        ShardedPatientRepository repository =
+                new ShardedPatientRepository(dataSource, shards.subList(0, initialShards), virtualNodes);
+        if (initialShards < shards.size()) {
+            repository.addShard(shards.getLast());
+        }
+
+        meterRegistry.ifAvailable(registry -> {
+            Gauge.builder("patient.db.shard.rebalancing", repository, r -> r.isRebalancing() ? 1 : 0)
+                    .description("1 while patients are being moved to a newly added shard")
+                    .register(registry);
+            Gauge.builder("patient.db.shard.moved", repository, ShardedPatientRepository::getMovedRows)
+                    .description("Patients moved between shards by rebalancing")
+                    .register(registry);
+        });
+        log.info("Storing patients in {} shard(s) with {} virtual nodes each.", shards.size(), virtualNodes);
+        return repository;
+    }
+
+    /**
+     * Pools dos shards, fechados junto com o contexto.
+     */
+    record ShardPools(List<HikariDataSource> pools) implements AutoCloseable {
+
+        // Cada shard com o próprio limite de concorrência (patient.db.max-concurrency)
+        List<PatientShard> shards(Environment environment) {
+            return pools.stream().map(pool -> new PatientShard(pool.getPoolName(),
+                    DatabaseConcurrencyConfig.limitPool(pool, pool.getPoolName(), environment))).toList();
+        }
+
+        @Override
+        public void close() {
+            pools.forEach(HikariDataSource::close);
+        }
+
+    }
+
+}
@@ -0,0 +1,48 @@
+package com.ojuara.patientservice.config;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Balde de tokens sem lock, no formato GCRA (generic cell rate algorithm): em vez de contar tokens,
+ * guarda o instante teórico em que o balde volta a ficar cheio. Cada pedido adianta esse instante
+ * em um intervalo de emissão ({@code 1 / rate}) e é aceito se ele não passar de {@code burst}
+ * intervalos à frente de agora. O estado é um único {@code long}, atualizado por CAS.
+ */
+final class TokenBucket {
+
+    private final long emissionIntervalNanos;
+    private final long capacityNanos;
+    private final AtomicLong fullAt;
+
+    /**
+     * @param ratePerSecond tokens repostos por segundo
+     * @param burst tokens disponíveis de uma vez (o balde começa cheio)
+     */
+    TokenBucket(double ratePerSecond, int burst) {
+        this.emissionIntervalNanos = Math.max(1, (long) (1_000_000_000L / ratePerSecond));
+        this.capacityNanos = emissionIntervalNanos * Math.max(burst, 1);
+        // Já cheio antes da criação: o "agora" de quem usa o balde novo é lido antes dela
+        this.fullAt = new AtomicLong(System.nanoTime() - capacityNanos);
+    }
+
+    /**
+     * Tenta consumir um token.
+     *
+     * @return 0 se o token foi consumido; senão, os nanossegundos até haver um token
+     */
+    long tryAcquire(long nowNanos) {
+        while (true) {
+            long current = fullAt.get();
+            // Diferenças em vez de comparações diretas: nanoTime pode ser negativo
+            long next = (current - nowNanos > 0 ? current : nowNanos) + emissionIntervalNanos;
+            long ahead = next - nowNanos;
+            if (ahead > capacityNanos) {
+                return ahead - capacityNanos;
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,108 @@
+package com.ojuara.patientservice.controller;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.ojuara.patientservice.service.BillingOutboxRelay;
+import com.ojuara.patientservice.service.EmailBloomFilter;
+import com.ojuara.patientservice.service.PatientCache;
+import com.ojuara.patientservice.service.PatientSearchIndex;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Endpoints operacionais do patient-service (estatísticas de componentes internos).
+ */
+@RestController
+@RequestMapping("/api/v1/admin/patients")
+@Tag(name = "Patient Admin Controller", description = "Operational endpoints for the patient service")
+public class PatientAdminController {
+
+    private final PatientCache patientCache;
+    private final EmailBloomFilter emailFilter;
+    private final BillingOutboxRelay billingOutboxRelay;
+    private final PatientSearchIndex searchIndex;
+
+    public PatientAdminController(PatientCache patientCache,
+                                  EmailBloomFilter emailFilter,
+                                  BillingOutboxRelay billingOutboxRelay,
+                                  PatientSearchIndex searchIndex) {
+        this.patientCache = patientCache;
+        this.emailFilter = emailFilter;
+        this.billingOutboxRelay = billingOutboxRelay;
+        this.searchIndex = searchIndex;
+    }
+
+    @GetMapping("/cache/stats")
+    @Operation(summary = "Patient Cache Stats", description = "Acertos, falhas e remoções do cache de pacientes.")
+    public ResponseEntity<Map<String, Object>> getCacheStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", patientCache.estimatedSize());
+        stats.put("byId", toMap(patientCache.stats()));
+        stats.put("byEmail", toMap(patientCache.emailIndexStats()));
+        return ResponseEntity.ok().body(stats);
+    }
+
+    @GetMapping("/email-filter/stats")
+    @Operation(summary = "Email Filter Stats", description = "Tamanho, ocupação e taxa de descartes do filtro de emails.")
+    public ResponseEntity<Map<String, Object>> getEmailFilterStats() {
+        return ResponseEntity.ok().body(emailFilter.stats());
+    }
+
+    @PostMapping("/email-filter/rebuild")
+    @Operation(summary = "Rebuild Email Filter", description = "Reconstrói o filtro de emails a partir da tabela de pacientes.")
+    public ResponseEntity<Map<String, Object>> rebuildEmailFilter() {
+        emailFilter.rebuild();
+        return ResponseEntity.ok().body(emailFilter.stats());
+    }
+
+    @GetMapping("/billing-outbox/stats")
+    @Operation(summary = "Billing Outbox Stats", description = "Pendências, atraso e vazão do envio de contas ao billing-service.")
+    public ResponseEntity<Map<String, Object>> getBillingOutboxStats() {
+        return ResponseEntity.ok().body(billingOutboxRelay.stats());
+    }
+
+    @PostMapping("/billing-outbox/relay")
+    @Operation(summary = "Relay Billing Outbox", description = "Envia agora as pendências prontas do outbox.")
+    public ResponseEntity<Map<String, Object>> relayBillingOutbox() {
+        billingOutboxRelay.relayPending();
+        return ResponseEntity.ok().body(billingOutboxRelay.stats());
+    }
+
+    @PostMapping("/billing-outbox/requeue-failed")
+    @Operation(summary = "Requeue Failed Billing Outbox", description = "Devolve à fila as pendências recusadas ou que esgotaram as tentativas.")
+    public ResponseEntity<Map<String, Object>> requeueFailedBillingOutbox() {
+        billingOutboxRelay.requeueFailed();
+        return ResponseEntity.ok().body(billingOutboxRelay.stats());
+    }
+
+    @GetMapping("/search-index/stats")
+    @Operation(summary = "Search Index Stats", description = "Documentos, buscas e falhas de indexação do índice de busca.")
+    public ResponseEntity<Map<String, Object>> getSearchIndexStats() {
+        return ResponseEntity.ok().body(searchIndex.stats());
+    }
+
+    @PostMapping("/search-index/rebuild")
+    @Operation(summary = "Rebuild Search Index", description = "Reconstrói o índice de busca a partir da tabela de pacientes.")
+    public ResponseEntity<Map<String, Object>> rebuildSearchIndex() {
+        searchIndex.rebuild();
+        return ResponseEntity.ok().body(searchIndex.stats());
+    }
+
+    private static Map<String, Object> toMap(CacheStats stats) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        values.put("hitCount", stats.hitCount());
+        values.put("missCount", stats.missCount());
+        values.put("hitRate", stats.hitRate());
+        values.put("evictionCount", stats.evictionCount());
+        values.put("loadFailureCount", stats.loadFailureCount());
+        return values;
+    }
+
+}
@@ -1,20 +1,42 @@
 package com.ojuara.patientservice.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ojuara.patientservice.dto.PatientBulkDeleteRequestDTO;
+import com.ojuara.patientservice.dto.PatientBulkResultDTO;
+import com.ojuara.patientservice.dto.PatientChangesResponseDTO;
+import com.ojuara.patientservice.dto.PatientImportResultDTO;
+import com.ojuara.patientservice.dto.PatientPageResponseDTO;
+import com.ojuara.patientservice.dto.PatientPatchDTO;
 import com.ojuara.patientservice.dto.PatientRequestDTO;
 import com.ojuara.patientservice.dto.PatientResponseDTO;
 import com.ojuara.patientservice.dto.validators.CreatePatientValidationGroup;
-import com.ojuara.patientservice.mapper.PatientMapper;
+import com.ojuara.patientservice.mapper.PatientResponseSerializer;
+import com.ojuara.patientservice.service.PatientBulkService;
+import com.ojuara.patientservice.service.PatientChangeService;
+import com.ojuara.patientservice.service.PatientCreationResult;
+import com.ojuara.patientservice.service.PatientImportService;
+import com.ojuara.patientservice.service.PatientSearchIndex;
+import com.ojuara.patientservice.service.PatientSearchQuery;
 import com.ojuara.patientservice.service.PatientService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import jakarta.validation.groups.Default;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
 import java.util.List;
 import java.util.UUID;
 
@@ -23,19 +45,170 @@ import java.util.UUID;
 @Tag(name = "Patient Controller", description = "API for managing patients")
 public class PatientController {
 
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 500;
+
     private final PatientService patientService;
+    private final PatientImportService patientImportService;
+    private final PatientBulkService patientBulkService;
+    private final PatientSearchIndex patientSearchIndex;
+    private final PatientChangeService patientChangeService;
+    private final ObjectMapper objectMapper;
 
 
-    public PatientController(PatientService patientService) {
+    public PatientController(PatientService patientService,
+                             PatientImportService patientImportService,
+                             PatientBulkService patientBulkService,
+                             PatientSearchIndex patientSearchIndex,
+                             PatientChangeService patientChangeService,
+                             ObjectMapper objectMapper) {
         this.patientService = patientService;
+        this.patientImportService = patientImportService;
+        this.patientBulkService = patientBulkService;
+        this.patientSearchIndex = patientSearchIndex;
+        this.patientChangeService = patientChangeService;
+        this.objectMapper = objectMapper;
     }
 
+    /**
+     * Lista pacientes paginando por cursor.
+     *
+     * <p>A resposta traz {@code nextCursor}; para buscar a página seguinte basta repetir
+     * a chamada com {@code ?cursor=<nextCursor>}. Quando {@code nextCursor} vem nulo,
+     * não há mais páginas.</p>
+     *
+     * <p>A resposta traz um ETag da página; repetindo a chamada com {@code If-None-Match}
+     * o cliente recebe 304 sem corpo se nada na página mudou.</p>
+     *
+     * @param cursor token opaco retornado pela página anterior (opcional)
+     * @param limit tamanho da página, limitado a {@value #MAX_PAGE_SIZE}
+     * @return página de pacientes e o cursor da próxima página
+     */
     @GetMapping
-    public ResponseEntity<List<PatientResponseDTO>>getPatients() {
-        List<PatientResponseDTO> patients = patientService.getAllPatients();
+    @Operation(summary = "List Patients",
+            description = "Lista pacientes com paginação por cursor. Use `nextCursor` para buscar a próxima página.")
+    @ApiResponse(responseCode = "200", description = "Página de pacientes")
+    @ApiResponse(responseCode = "304", description = "Página igual à do ETag enviado em If-None-Match")
+    @ApiResponse(responseCode = "400", description = "Cursor inválido")
+    public ResponseEntity<PatientPageResponseDTO> getPatients(
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", defaultValue = "" + DEFAULT_PAGE_SIZE) int limit) {
+
+        int pageSize = Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
+        PatientPageResponseDTO page = patientService.getPatientsPage(cursor, pageSize);
 
-        return ResponseEntity.ok().body(patients);
+        return ResponseEntity.ok().eTag(PatientETags.of(page)).body(page);
+
+    }
+
+    /**
+     * Alterações de pacientes desde o token, para sincronização incremental.
+     *
+     * <p>A primeira chamada vai sem {@code changesSince} e percorre todos os pacientes; as
+     * seguintes enviam o {@code changesSince} da resposta anterior e recebem só os pacientes
+     * criados ou atualizados e os ids removidos desde então. Enquanto {@code hasMore} vier
+     * verdadeiro, há mais alterações para buscar em seguida.</p>
+     *
+     * @param changesSince token da resposta anterior (opcional)
+     * @param limit quantidade máxima de alterações, limitada a {@value #MAX_PAGE_SIZE}
+     * @return alterações e o token para a próxima chamada
+     */
+    @GetMapping("/changes")
+    @Operation(summary = "Patient Changes",
+            description = "Pacientes criados, atualizados e removidos desde o token `changesSince`.")
+    @ApiResponse(responseCode = "200", description = "Alterações e o próximo token")
+    @ApiResponse(responseCode = "400", description = "Token inválido")
+    @ApiResponse(responseCode = "410", description = "Token mais antigo que o histórico de remoções; sincronize do início")
+    public ResponseEntity<PatientChangesResponseDTO> getPatientChanges(
+            @RequestParam(value = "changesSince", required = false) String changesSince,
+            @RequestParam(value = "limit", defaultValue = "" + MAX_PAGE_SIZE) int limit) {
 
+        int pageSize = Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
+        return ResponseEntity.ok().body(patientChangeService.getChanges(changesSince, pageSize));
+    }
+
+    /**
+     * Busca pacientes pelo índice de busca, paginando por cursor.
+     *
+     * <p>Nome e endereço casam por palavra inteira ou início de palavra, sem diferenciar
+     * maiúsculas nem acentos; com {@code fuzzy=true} aceitam também pequenos erros de
+     * digitação. O email casa pelo início. Os critérios informados são combinados com "e"
+     * e os resultados vêm por relevância.</p>
+     *
+     * @return página de pacientes e o cursor da próxima página
+     */
+    @GetMapping("/search")
+    @Operation(summary = "Search Patients",
+            description = "Busca por nome, email, endereço (prefixo ou aproximada) e faixa de data de nascimento.")
+    @ApiResponse(responseCode = "200", description = "Página de resultados")
+    @ApiResponse(responseCode = "400", description = "Nenhum critério informado, faixa de datas ou cursor inválidos")
+    @ApiResponse(responseCode = "503", description = "Índice de busca ainda em construção")
+    public ResponseEntity<PatientPageResponseDTO> searchPatients(
+            @RequestParam(value = "name", required = false) String name,
+            @RequestParam(value = "email", required = false) String email,
+            @RequestParam(value = "address", required = false) String address,
+            @RequestParam(value = "dateOfBirthFrom", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dateOfBirthFrom,
+            @RequestParam(value = "dateOfBirthTo", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dateOfBirthTo,
+            @RequestParam(value = "fuzzy", defaultValue = "false") boolean fuzzy,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", defaultValue = "" + DEFAULT_PAGE_SIZE) int limit) {
+
+        int pageSize = Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
+        PatientSearchQuery query = new PatientSearchQuery(name, email, address, dateOfBirthFrom, dateOfBirthTo, fuzzy);
+
+        return ResponseEntity.ok().body(patientSearchIndex.search(query, cursor, pageSize));
+    }
+
+    /**
+     * Exporta todos os pacientes como NDJSON (um objeto JSON por linha).
+     *
+     * <p>As linhas são escritas conforme saem do cursor do banco, então o consumo de
+     * memória não depende do tamanho da tabela.</p>
+     *
+     * @return corpo em streaming no formato {@code application/x-ndjson}
+     */
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "Stream Patients",
+            description = "Retorna todos os pacientes em NDJSON, escritos conforme são lidos do banco.")
+    public ResponseEntity<StreamingResponseBody> streamPatients() {
+        // Um único gerador JSON para a exportação inteira, escrevendo direto no buffer da resposta
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = objectMapper.createGenerator(outputStream)) {
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                generator.setRootValueSeparator(null);
+                patientService.streamPatients(patient -> {
+                    try {
+                        PatientResponseSerializer.write(patient, generator);
+                        generator.writeRaw('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        };
+
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    @GetMapping("/{id}")
+    @Operation(summary = "Get Patient",
+            description = "Busca um paciente pelo id. O ETag é a versão do paciente; com If-None-Match igual responde 304.")
+    @ApiResponse(responseCode = "200", description = "Paciente encontrado")
+    @ApiResponse(responseCode = "304", description = "Paciente não mudou desde o ETag enviado em If-None-Match")
+    @ApiResponse(responseCode = "404", description = "Paciente não encontrado")
+    public ResponseEntity<PatientResponseDTO> getPatient(@PathVariable("id") UUID id) {
+        PatientResponseDTO patient = patientService.getPatientById(id);
+        return ResponseEntity.ok().eTag(PatientETags.of(patient)).body(patient);
+    }
+
+    @GetMapping("/by-email")
+    @Operation(summary = "Get Patient By Email", description = "Busca um paciente pelo email.")
+    @ApiResponse(responseCode = "200", description = "Paciente encontrado")
+    @ApiResponse(responseCode = "404", description = "Paciente não encontrado")
+    public ResponseEntity<PatientResponseDTO> getPatientByEmail(@RequestParam("email") String email) {
+        return ResponseEntity.ok().body(patientService.getPatientByEmail(email));
     }
 
     /**
@@ -43,13 +216,12 @@ public class PatientController {
      *
      * <p>Fluxo:
      * - Valida o DTO usando os grupos Default e CreatePatientValidationGroup.
-     * - Verifica se já existe um paciente com o mesmo e-mail (para decidir o status HTTP).
      * - Solicita ao service que crie ou retorne o paciente correspondente.
      * - Retorna 201 CREATED se foi realmente criado, ou 200 OK se já existia.</p>
      *
-     * <p>Observação: a checagem de existência é feita aqui apenas para escolher o código HTTP.
-     * A responsabilidade de garantir inexistência de duplicatas e tratar condições de corrida
-     * deve ficar implementada em `PatientService.createPatient`.</p>
+     * <p>Observação: a decisão entre criar e retornar o existente é tomada pelo banco em uma
+     * única instrução (ver `PatientService.createPatient`), então não há checagem prévia de
+     * existência nem condição de corrida entre requisições com o mesmo e-mail.</p>
      *
      * @param patientRequestDTO DTO com os dados do paciente (payload da requisição)
      * @return ResponseEntity contendo o paciente criado ou o existente e o status apropriado
@@ -64,19 +236,77 @@ public class PatientController {
             @Validated({Default.class, CreatePatientValidationGroup.class})
             @RequestBody PatientRequestDTO patientRequestDTO) {
 
-        // 1) Verifica se já existe um paciente com o e-mail informado.
-        //    Isso é usado somente para definir o status HTTP de retorno (OK vs CREATED).
-        boolean exists = patientService.patientExists(patientRequestDTO.getEmail());
+        // 1) Delega ao service a criação ou recuperação do paciente (uma única ida ao banco).
+        PatientCreationResult result = patientService.createPatient(patientRequestDTO);
+
+        // 2) Escolhe o status HTTP: 201 se criou, 200 se já existia.
+        HttpStatus status = result.created() ? HttpStatus.CREATED : HttpStatus.OK;
+
+        // 3) Retorna o paciente e o status apropriado.
+        return ResponseEntity.status(status).body(result.patient());
+    }
+
+    /**
+     * Importa pacientes em lote a partir de um array JSON, NDJSON ou CSV.
+     *
+     * <p>Cada linha é validada com os mesmos grupos do endpoint de criação. Emails já
+     * cadastrados não são alterados (mesma semântica idempotente de {@code /create}).
+     * A resposta informa o resultado de cada linha: CREATED, EXISTING ou REJECTED.</p>
+     *
+     * @param contentType formato do corpo enviado
+     * @param body conteúdo do arquivo
+     * @return totais e resultado por linha
+     */
+    @PostMapping(value = "/bulk",
+            consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE, "text/csv"})
+    @Operation(summary = "Bulk Import Patients",
+            description = "Importa pacientes em lote (JSON array, NDJSON ou CSV) e retorna o resultado de cada linha.")
+    @ApiResponse(responseCode = "200", description = "Importação processada; ver o status de cada linha")
+    @ApiResponse(responseCode = "400", description = "Arquivo malformado")
+    public ResponseEntity<PatientImportResultDTO> importPatients(
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+            InputStream body) {
+
+        PatientImportResultDTO result = patientImportService.importPatients(body, contentType);
 
-        // 2) Delega ao service a criação ou recuperação do paciente.
-        //    O service deve garantir idempotência real (não criar duplicatas).
-        PatientResponseDTO createdPatient = patientService.createPatient(patientRequestDTO);
+        return ResponseEntity.ok().body(result);
+    }
 
-        // 3) Escolhe o status HTTP: 201 se criou, 200 se já existia.
-        HttpStatus status = exists ? HttpStatus.OK : HttpStatus.CREATED;
+    /**
+     * Atualiza vários pacientes de uma vez, com alterações parciais (campos ausentes ficam como
+     * estão).
+     *
+     * <p>Cada item pode trazer a {@code version} lida pelo cliente, com o mesmo efeito do
+     * If-Match na atualização individual. A resposta informa o resultado de cada item: UPDATED
+     * (com a nova versão), NOT_FOUND, VERSION_MISMATCH, EMAIL_CONFLICT ou REJECTED.</p>
+     *
+     * @param patches alterações, no máximo uma por paciente
+     * @return totais e resultado por item
+     */
+    @PatchMapping(value = "/bulk", consumes = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "Bulk Update Patients",
+            description = "Aplica alterações parciais a vários pacientes e retorna o resultado de cada item.")
+    @ApiResponse(responseCode = "200", description = "Lote processado; ver o status de cada item")
+    public ResponseEntity<PatientBulkResultDTO> updatePatients(@RequestBody List<PatientPatchDTO> patches) {
+
+        return ResponseEntity.ok().body(patientBulkService.updatePatients(patches));
+    }
+
+    /**
+     * Remove vários pacientes de uma vez: os da lista {@code ids} ou, para expurgo por retenção,
+     * todos os registrados antes de {@code registeredBefore}.
+     *
+     * @param request ids ou filtro (exatamente um dos dois)
+     * @return totais e resultado por paciente (DELETED ou NOT_FOUND)
+     */
+    @DeleteMapping(value = "/bulk", consumes = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "Bulk Delete Patients",
+            description = "Remove os pacientes da lista de ids ou os registrados antes de uma data.")
+    @ApiResponse(responseCode = "200", description = "Lote processado; ver o status de cada paciente")
+    @ApiResponse(responseCode = "400", description = "Pedido sem ids nem filtro, ou com os dois")
+    public ResponseEntity<PatientBulkResultDTO> deletePatients(@RequestBody PatientBulkDeleteRequestDTO request) {
 
-        // 4) Retorna o paciente e o status apropriado.
-        return ResponseEntity.status(status).body(createdPatient);
+        return ResponseEntity.ok().body(patientBulkService.deletePatients(request));
     }
 
 
@@ -93,20 +323,25 @@ public class PatientController {
         @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "200", description = "Paciente atualizado com sucesso"),
         @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "400", description = "Dados inválidos no payload"),
         @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "404", description = "Paciente não encontrado"),
+        @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "409", description = "Paciente alterado por outra requisição durante a atualização"),
+        @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "412", description = "If-Match não corresponde à versão atual do paciente"),
         @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "500", description = "Erro interno")
 })
 public ResponseEntity<PatientResponseDTO> updatePatient(
         @io.swagger.v3.oas.annotations.Parameter(description = "UUID do paciente a ser atualizado", required = true, example = "3fa85f64-5717-4562-b3fc-2c963f66afa6")
         @PathVariable("id") UUID id,
+        @io.swagger.v3.oas.annotations.Parameter(description = "ETag (versão) lido pelo cliente; a atualização só é aplicada se o paciente ainda estiver nessa versão", example = "\"3\"")
+        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
         @Validated({Default.class}) @RequestBody PatientRequestDTO patientRequestDTO) {
 
     // Delegar ao service para aplicar as alterações.
     // O service é responsável por lançar exceções apropriadas (ex: not found, validação de negócio),
     // que devem ser tratadas por um ControllerAdvice para retornar responses HTTP corretos.
-    PatientResponseDTO updatedPatient = patientService.updatePatient(id, patientRequestDTO);
+    PatientResponseDTO updatedPatient = patientService.updatePatient(
+            id, patientRequestDTO, PatientETags.versionFromIfMatch(ifMatch));
 
-    // Retorna 200 OK com o recurso atualizado no corpo.
-    return ResponseEntity.ok().body(updatedPatient);
+    // Retorna 200 OK com o recurso atualizado no corpo e o ETag da nova versão.
+    return ResponseEntity.ok().eTag(PatientETags.of(updatedPatient)).body(updatedPatient);
 
 }
 
@@ -0,0 +1,79 @@
+package com.ojuara.patientservice.controller;
+
+import com.ojuara.patientservice.dto.PatientPageResponseDTO;
+import com.ojuara.patientservice.dto.PatientResponseDTO;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * ETags fortes das respostas de pacientes, calculados sem serializar o corpo.
+ *
+ * <p>Com o ETag na {@code ResponseEntity}, o Spring MVC responde 304 sozinho a um GET cujo
+ * {@code If-None-Match} bata com ele, sem escrever o corpo.</p>
+ */
+final class PatientETags {
+
+    private PatientETags() {
+    }
+
+    /**
+     * ETag de um paciente: a versão dele, que muda a cada atualização.
+     */
+    static String of(PatientResponseDTO patient) {
+        return "\"" + patient.version() + "\"";
+    }
+
+    /**
+     * ETag de uma página: resumo SHA-256 de (id, versão) de cada paciente e do cursor seguinte.
+     * Muda quando um paciente da página é alterado, entra ou sai dela.
+     */
+    static String of(PatientPageResponseDTO page) {
+        MessageDigest digest = sha256();
+        for (PatientResponseDTO patient : page.getPatients()) {
+            digest.update(patient.id().toString().getBytes(StandardCharsets.US_ASCII));
+            digest.update((byte) ':');
+            digest.update(String.valueOf(patient.version()).getBytes(StandardCharsets.US_ASCII));
+            digest.update((byte) ';');
+        }
+        if (page.getNextCursor() != null) {
+            digest.update(page.getNextCursor().getBytes(StandardCharsets.US_ASCII));
+        }
+        // 128 bits bastam para distinguir versões de uma mesma URL
+        return "\"" + HexFormat.of().formatHex(digest.digest(), 0, 16) + "\"";
+    }
+
+    /**
+     * Versão pedida em um {@code If-Match}.
+     *
+     * @param ifMatch valor do cabeçalho (pode ser nulo)
+     * @return a versão; null se o cabeçalho estiver ausente ou for {@code *}; -1 se o valor não
+     * puder ser uma versão deste recurso (ETag fraco, lista ou texto), com o qual nenhuma versão casa
+     */
+    static Long versionFromIfMatch(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String value = ifMatch.trim();
+        // If-Match usa comparação forte: ETag fraco (W/"...") nunca casa
+        if (value.length() < 3 || value.charAt(0) != '"' || value.charAt(value.length() - 1) != '"') {
+            return -1L;
+        }
+        try {
+            return Long.parseLong(value.substring(1, value.length() - 1));
+        } catch (NumberFormatException e) {
+            return -1L;
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+}
@@ -0,0 +1,164 @@
+package com.ojuara.patientservice.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ojuara.patientservice.exception.InvalidCursorException;
+import com.ojuara.patientservice.service.PatientEvent;
+import com.ojuara.patientservice.service.PatientEventBatch;
+import com.ojuara.patientservice.service.PatientEventLog;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+/**
+ * Eventos de pacientes do {@link PatientEventLog} em Server-Sent Events.
+ *
+ * <p>Cada mensagem {@code patients} traz um lote de eventos em um array JSON e, no {@code id}, a
+ * sequência para continuar. Ao reconectar, o navegador (ou o cliente) reenvia esse id em
+ * {@code Last-Event-ID} e a leitura segue de onde parou; sem ele, {@code from} escolhe o início
+ * (0 é o log inteiro, compactado: o último estado de cada paciente). O envio acompanha o
+ * consumidor: cada lote só é lido depois que o anterior foi escrito na conexão.</p>
+ *
+ * <p>A sequência é a ordem de chegada ao log, não a dos commits: dois eventos do mesmo paciente
+ * podem vir invertidos. O consumidor aplica um evento só se a {@code version} dele for maior que a
+ * que já tem do paciente; uma remoção traz {@link PatientEvent#DELETED_VERSION} e vale sobre todos.</p>
+ */
+@RestController
+@RequestMapping("/api/v1/patients/events")
+@ConditionalOnExpression("'${patient.events.directory:}' != ''")
+@Tag(name = "Patient Event Controller", description = "Stream of patient change events")
+public class PatientEventController {
+
+    private static final int DEFAULT_BATCH_SIZE = 100;
+    private static final int MAX_BATCH_SIZE = 1000;
+    private static final byte[] KEEPALIVE = ": keepalive\n\n".getBytes(StandardCharsets.UTF_8);
+
+    private final PatientEventLog eventLog;
+    private final ObjectMapper objectMapper;
+    private final Duration maxStreamDuration;
+    private final Duration heartbeatInterval;
+
+    public PatientEventController(PatientEventLog eventLog,
+                                  ObjectMapper objectMapper,
+                                  @Value("${patient.events.stream-max-duration:25m}") Duration maxStreamDuration,
+                                  @Value("${patient.events.heartbeat-interval:15s}") Duration heartbeatInterval) {
+        this.eventLog = eventLog;
+        this.objectMapper = objectMapper;
+        this.maxStreamDuration = maxStreamDuration;
+        this.heartbeatInterval = heartbeatInterval;
+    }
+
+    /**
+     * Acompanha os eventos a partir de uma sequência.
+     *
+     * <p>A conexão dura até {@code patient.events.stream-max-duration}; depois o cliente reconecta
+     * com o último id recebido. Sem eventos, um comentário é enviado a cada
+     * {@code patient.events.heartbeat-interval} para manter a conexão aberta.</p>
+     *
+     * @param from primeira sequência, se não houver {@code Last-Event-ID}
+     * @param batchSize eventos por mensagem, limitado a {@value #MAX_BATCH_SIZE}
+     * @param lastEventId id da última mensagem recebida, enviado na reconexão
+     * @return eventos em {@code text/event-stream}
+     */
+    @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Stream Patient Events",
+            description = "Eventos de criação, atualização e remoção de pacientes em SSE, retomando pelo Last-Event-ID.")
+    @ApiResponse(responseCode = "200", description = "Fluxo de eventos")
+    @ApiResponse(responseCode = "400", description = "Last-Event-ID inválido")
+    @ApiResponse(responseCode = "410", description = "Posição anterior a remoções já compactadas; recomece do início")
+    public ResponseEntity<StreamingResponseBody> streamEvents(
+            @RequestParam(value = "from", defaultValue = "0") long from,
+            @RequestParam(value = "batchSize", defaultValue = "" + DEFAULT_BATCH_SIZE) int batchSize,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+
+        long start = lastEventId == null || lastEventId.isBlank() ? Math.max(from, 0) : parseEventId(lastEventId);
+        int size = Math.min(Math.max(batchSize, 1), MAX_BATCH_SIZE);
+        // Antes de abrir o stream, para o 410 sair como resposta normal
+        eventLog.checkRetained(start);
+
+        StreamingResponseBody body = outputStream -> {
+            long deadline = System.nanoTime() + maxStreamDuration.toNanos();
+            long next = start;
+            try {
+                while (System.nanoTime() < deadline) {
+                    PatientEventBatch batch = eventLog.read(next, size);
+                    if (!batch.events().isEmpty()) {
+                        writeBatch(batch, outputStream);
+                    } else if (next < batch.nextSequence()) {
+                        // Trecho removido pela compactação: só avança
+                        next = batch.nextSequence();
+                        continue;
+                    } else if (!eventLog.awaitEvents(next, heartbeatInterval)) {
+                        outputStream.write(KEEPALIVE);
+                    }
+                    outputStream.flush();
+                    next = batch.nextSequence();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.TEXT_EVENT_STREAM)
+                .cacheControl(CacheControl.noCache())
+                // Proxies como o nginx seguram a resposta em buffer sem isso
+                .header("X-Accel-Buffering", "no")
+                .body(body);
+    }
+
+    private void writeBatch(PatientEventBatch batch, OutputStream outputStream) throws IOException {
+        outputStream.write(("id: " + batch.nextSequence() + "\nevent: patients\ndata: ")
+                .getBytes(StandardCharsets.UTF_8));
+        // O JSON sai em uma linha só, como o campo data exige
+        try (JsonGenerator generator = objectMapper.createGenerator(outputStream)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.disable(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM);
+            generator.writeStartArray();
+            for (PatientEvent event : batch.events()) {
+                generator.writeStartObject();
+                generator.writeNumberField("sequence", event.sequence());
+                generator.writeStringField("type", event.type().name());
+                generator.writeStringField("patientId", event.patientId().toString());
+                generator.writeNumberField("version", event.version());
+                generator.writeStringField("timestamp", event.timestamp().toString());
+                if (event.snapshot().length > 0) {
+                    generator.writeFieldName("patient");
+                    generator.writeRawValue(new String(event.snapshot(), StandardCharsets.UTF_8));
+                }
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+        }
+        outputStream.write("\n\n".getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static long parseEventId(String lastEventId) {
+        try {
+            long sequence = Long.parseLong(lastEventId.trim());
+            if (sequence < 0) {
+                throw new NumberFormatException();
+            }
+            return sequence;
+        } catch (NumberFormatException e) {
+            throw new InvalidCursorException("Invalid Last-Event-ID: " + lastEventId);
+        }
+    }
+
+}
@@ -0,0 +1,93 @@
+package com.ojuara.patientservice.controller;
+
+import com.ojuara.patientservice.dto.PatientExportDTO;
+import com.ojuara.patientservice.model.PatientExportCompression;
+import com.ojuara.patientservice.model.PatientExportFormat;
+import com.ojuara.patientservice.service.PatientExportService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.UUID;
+
+/**
+ * Exportações de todos os pacientes para arquivo, executadas em segundo plano.
+ *
+ * <p>O cliente inicia a exportação, acompanha o estado pela URL do {@code Location} e, quando
+ * ela estiver COMPLETED, baixa o arquivo. Uma exportação FAILED pode ser retomada.</p>
+ */
+@RestController
+@RequestMapping("/api/v1/patients/exports")
+@Tag(name = "Patient Export Controller", description = "Bulk exports of all patients to files")
+public class PatientExportController {
+
+    private final PatientExportService exportService;
+
+    public PatientExportController(PatientExportService exportService) {
+        this.exportService = exportService;
+    }
+
+    @PostMapping
+    @Operation(summary = "Start Patient Export",
+            description = "Inicia a exportação de todos os pacientes (NDJSON ou CSV, com ou sem gzip).")
+    @ApiResponse(responseCode = "202", description = "Exportação iniciada; acompanhe pela URL do Location")
+    public ResponseEntity<PatientExportDTO> startExport(
+            @RequestParam(value = "format", defaultValue = "NDJSON") PatientExportFormat format,
+            @RequestParam(value = "compression", defaultValue = "GZIP") PatientExportCompression compression) {
+
+        PatientExportDTO export = exportService.startExport(format, compression);
+        return ResponseEntity.accepted().location(location(export)).body(export);
+    }
+
+    @GetMapping("/{id}")
+    @Operation(summary = "Get Patient Export", description = "Estado e andamento de uma exportação.")
+    @ApiResponse(responseCode = "200", description = "Estado da exportação")
+    @ApiResponse(responseCode = "404", description = "Exportação não encontrada")
+    public ResponseEntity<PatientExportDTO> getExport(@PathVariable("id") UUID id) {
+        return ResponseEntity.ok().body(exportService.getExport(id));
+    }
+
+    @PostMapping("/{id}/resume")
+    @Operation(summary = "Resume Patient Export",
+            description = "Retoma do último checkpoint uma exportação que falhou ou parou de avançar.")
+    @ApiResponse(responseCode = "202", description = "Exportação retomada")
+    @ApiResponse(responseCode = "404", description = "Exportação não encontrada")
+    @ApiResponse(responseCode = "409", description = "Exportação concluída ou ainda em andamento")
+    public ResponseEntity<PatientExportDTO> resumeExport(@PathVariable("id") UUID id) {
+        PatientExportDTO export = exportService.resumeExport(id);
+        return ResponseEntity.accepted().location(location(export)).body(export);
+    }
+
+    @GetMapping("/{id}/file")
+    @Operation(summary = "Download Patient Export", description = "Arquivo de uma exportação concluída.")
+    @ApiResponse(responseCode = "200", description = "Arquivo da exportação")
+    @ApiResponse(responseCode = "404", description = "Exportação não encontrada")
+    @ApiResponse(responseCode = "409", description = "Exportação ainda não concluída")
+    public ResponseEntity<Resource> downloadExport(@PathVariable("id") UUID id) {
+        Path file = exportService.getExportFile(id);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename(file.getFileName().toString()).build().toString())
+                .body(new FileSystemResource(file));
+    }
+
+    private static URI location(PatientExportDTO export) {
+        return URI.create("/api/v1/patients/exports/" + export.id());
+    }
+
+}
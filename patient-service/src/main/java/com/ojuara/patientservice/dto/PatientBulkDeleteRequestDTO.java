@@ -0,0 +1,24 @@
+package com.ojuara.patientservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Pacientes a remover em lote: uma lista de ids ou um filtro, nunca os dois.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PatientBulkDeleteRequestDTO {
+
+    private List<UUID> ids;
+
+    // Filtro de retenção: remove os pacientes registrados antes desta data
+    private LocalDate registeredBefore;
+
+}
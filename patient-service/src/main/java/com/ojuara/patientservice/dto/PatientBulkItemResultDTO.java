@@ -0,0 +1,26 @@
+package com.ojuara.patientservice.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+import java.util.UUID;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class PatientBulkItemResultDTO {
+
+    private UUID id;
+    private PatientBulkStatus status;
+
+    // Nova versão (ETag) do paciente, preenchida apenas quando status = UPDATED
+    private Long version;
+
+    // Erros por campo, preenchido apenas quando status = REJECTED
+    private Map<String, String> errors;
+
+}
@@ -0,0 +1,21 @@
+package com.ojuara.patientservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PatientBulkResultDTO {
+
+    // Quantidade de itens por status
+    private Map<PatientBulkStatus, Integer> totals;
+
+    // Resultado de cada item, na ordem do pedido
+    private List<PatientBulkItemResultDTO> results;
+
+}
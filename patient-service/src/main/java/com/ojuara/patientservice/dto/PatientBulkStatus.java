@@ -0,0 +1,23 @@
+package com.ojuara.patientservice.dto;
+
+public enum PatientBulkStatus {
+
+    // Alteração aplicada
+    UPDATED,
+
+    // Paciente removido
+    DELETED,
+
+    // Nenhum paciente com o id
+    NOT_FOUND,
+
+    // O paciente está em outra versão (a enviada pelo cliente ou alterado durante o lote); nada foi gravado
+    VERSION_MISMATCH,
+
+    // O email novo já pertence a outro paciente ou a outro item do lote; nada foi gravado
+    EMAIL_CONFLICT,
+
+    // Item inválido (validação, formato ou id repetido); nada foi gravado
+    REJECTED
+
+}
@@ -0,0 +1,26 @@
+package com.ojuara.patientservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PatientChangesResponseDTO {
+
+    // Pacientes criados ou atualizados desde o token, com os valores atuais
+    private List<PatientResponseDTO> patients;
+
+    // Ids dos pacientes removidos desde o token
+    private List<String> deletedIds;
+
+    // Token para a próxima chamada (sempre presente); guarde-o mesmo quando não houver alterações
+    private String changesSince;
+
+    // Há mais alterações além desta página: chame de novo logo em seguida com o novo token
+    private boolean hasMore;
+
+}
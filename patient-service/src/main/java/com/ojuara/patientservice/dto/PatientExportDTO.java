@@ -0,0 +1,34 @@
+package com.ojuara.patientservice.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.ojuara.patientservice.model.PatientExport;
+import com.ojuara.patientservice.model.PatientExportCompression;
+import com.ojuara.patientservice.model.PatientExportFormat;
+import com.ojuara.patientservice.model.PatientExportStatus;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Estado de uma exportação de pacientes.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record PatientExportDTO(
+        UUID id,
+        PatientExportFormat format,
+        PatientExportCompression compression,
+        PatientExportStatus status,
+        long rowsWritten,
+        long bytesWritten,
+        Instant createdAt,
+        Instant updatedAt,
+        Instant completedAt,
+        String error) {
+
+    public static PatientExportDTO of(PatientExport export) {
+        return new PatientExportDTO(export.getId(), export.getFormat(), export.getCompression(), export.getStatus(),
+                export.getRowsWritten(), export.getBytesWritten(), export.getCreatedAt(), export.getUpdatedAt(),
+                export.getCompletedAt(), export.getLastError());
+    }
+
+}
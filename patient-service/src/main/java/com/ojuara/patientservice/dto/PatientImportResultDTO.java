@@ -0,0 +1,19 @@
+package com.ojuara.patientservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PatientImportResultDTO {
+
+    private int created;
+    private int existing;
+    private int rejected;
+    private List<PatientImportRowResultDTO> rows;
+
+}
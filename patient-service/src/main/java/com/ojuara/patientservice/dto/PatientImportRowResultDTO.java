@@ -0,0 +1,25 @@
+package com.ojuara.patientservice.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class PatientImportRowResultDTO {
+
+    // Número da linha no arquivo enviado (1 = primeiro registro, sem contar cabeçalho)
+    private int row;
+    private PatientImportStatus status;
+    private String id;
+    private String email;
+
+    // Erros por campo, preenchido apenas quando status = REJECTED
+    private Map<String, String> errors;
+
+}
@@ -0,0 +1,14 @@
+package com.ojuara.patientservice.dto;
+
+public enum PatientImportStatus {
+
+    // Paciente inserido por esta importação
+    CREATED,
+
+    // Email já cadastrado (no banco ou em uma linha anterior do mesmo arquivo); nada foi alterado
+    EXISTING,
+
+    // Linha inválida (validação ou formato); nada foi gravado
+    REJECTED
+
+}
@@ -0,0 +1,19 @@
+package com.ojuara.patientservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PatientPageResponseDTO {
+
+    private List<PatientResponseDTO> patients;
+
+    // Token opaco para buscar a próxima página; null quando não há mais resultados
+    private String nextCursor;
+
+}
@@ -0,0 +1,38 @@
+package com.ojuara.patientservice.dto;
+
+import jakarta.validation.constraints.Email;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+/**
+ * Alteração parcial de um paciente na atualização em lote: os campos nulos ficam como estão.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PatientPatchDTO {
+
+    @NotNull(message = "Id is mandatory")
+    private UUID id;
+
+    @Size(min = 1, max = 100, message = "Name must have between 1 and 100 characters")
+    private String name;
+
+    @Size(max = 50, message = "Email can have at most 50 characters")
+    @Email(message = "Email should be valid")
+    private String email;
+
+    @Size(min = 1, max = 200, message = "Address must have between 1 and 200 characters")
+    private String address;
+
+    private String dateOfBirth;
+
+    // Versão lida pelo cliente (como o If-Match); sem ela a alteração vale sobre a versão atual
+    private Long version;
+
+}
@@ -1,19 +1,24 @@
 package com.ojuara.patientservice.dto;
 
-import lombok.AllArgsConstructor;
-import lombok.Data;
-import lombok.NoArgsConstructor;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.ojuara.patientservice.mapper.PatientResponseSerializer;
 
-@Data
-@AllArgsConstructor
-@NoArgsConstructor
-public class PatientResponseDTO {
-
-    private String id;
-    private String name;
-    private String email;
-    private String address;
-    private String dateOfBirth;
-    private String registeredDate;
+import java.time.LocalDate;
+import java.util.UUID;
 
+/**
+ * Paciente como sai na API. Os campos guardam os tipos nativos: a conversão para texto só
+ * acontece na escrita do JSON ({@link PatientResponseSerializer}), direto no buffer de saída.
+ *
+ * @param version muda a cada atualização; é o valor do ETag e do If-Match
+ */
+@JsonSerialize(using = PatientResponseSerializer.class)
+public record PatientResponseDTO(
+        UUID id,
+        String name,
+        String email,
+        String address,
+        LocalDate dateOfBirth,
+        LocalDate registeredDate,
+        Long version) {
 }
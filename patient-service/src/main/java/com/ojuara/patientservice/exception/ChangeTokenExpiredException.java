@@ -0,0 +1,9 @@
+package com.ojuara.patientservice.exception;
+
+public class ChangeTokenExpiredException extends RuntimeException {
+
+    public ChangeTokenExpiredException(String message) {
+        super(message);
+    }
+
+}
@@ -0,0 +1,9 @@
+package com.ojuara.patientservice.exception;
+
+public class DatabaseBusyException extends RuntimeException {
+
+    public DatabaseBusyException(String message) {
+        super(message);
+    }
+
+}
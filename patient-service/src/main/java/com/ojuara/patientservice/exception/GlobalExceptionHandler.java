@@ -1,11 +1,16 @@
 package com.ojuara.patientservice.exception;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.CannotCreateTransactionException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -53,4 +58,198 @@ public class GlobalExceptionHandler {
 
     }
 
+    @ExceptionHandler(InvalidCursorException.class)
+    public ResponseEntity<Map<String, String>>
+    handleInvalidCursorException(
+            InvalidCursorException ex) {
+
+        log.warn("Invalid pagination cursor: {}.", ex.getMessage());
+
+        Map<String, String> error = new HashMap<>();
+        error.put("message", "Invalid cursor");
+        return ResponseEntity.badRequest().body(error);
+
+    }
+
+    @ExceptionHandler(InvalidSearchQueryException.class)
+    public ResponseEntity<Map<String, String>>
+    handleInvalidSearchQueryException(
+            InvalidSearchQueryException ex) {
+
+        log.warn("Invalid search query: {}.", ex.getMessage());
+
+        Map<String, String> error = new HashMap<>();
+        error.put("message", ex.getMessage());
+        return ResponseEntity.badRequest().body(error);
+
+    }
+
+    // Índice de busca ainda na primeira construção
+    @ExceptionHandler(SearchIndexUnavailableException.class)
+    public ResponseEntity<Map<String, String>>
+    handleSearchIndexUnavailableException(
+            SearchIndexUnavailableException ex) {
+
+        log.warn("Search unavailable: {}.", ex.getMessage());
+        return serviceUnavailable();
+
+    }
+
+    @ExceptionHandler(PatientVersionMismatchException.class)
+    public ResponseEntity<Map<String, String>>
+    handlePatientVersionMismatchException(
+            PatientVersionMismatchException ex) {
+
+        log.warn("Patient version mismatch: {}.", ex.getMessage());
+
+        Map<String, String> error = new HashMap<>();
+        error.put("message", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).body(error);
+
+    }
+
+    // Outra transação atualizou o paciente entre a leitura e o flush (UPDATE ... WHERE version = ?)
+    @ExceptionHandler(ObjectOptimisticLockingFailureException.class)
+    public ResponseEntity<Map<String, String>>
+    handleObjectOptimisticLockingFailureException(
+            ObjectOptimisticLockingFailureException ex) {
+
+        log.warn("Concurrent patient update: {}.", ex.getMessage());
+
+        Map<String, String> error = new HashMap<>();
+        error.put("message", "Patient was modified by another request, reload it and try again");
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(error);
+
+    }
+
+    @ExceptionHandler(ChangeTokenExpiredException.class)
+    public ResponseEntity<Map<String, String>>
+    handleChangeTokenExpiredException(
+            ChangeTokenExpiredException ex) {
+
+        log.warn("Expired change token: {}.", ex.getMessage());
+
+        Map<String, String> error = new HashMap<>();
+        error.put("message", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.GONE).body(error);
+
+    }
+
+    @ExceptionHandler(InvalidImportFileException.class)
+    public ResponseEntity<Map<String, String>>
+    handleInvalidImportFileException(
+            InvalidImportFileException ex) {
+
+        log.warn("Invalid import file: {}.", ex.getMessage());
+
+        Map<String, String> error = new HashMap<>();
+        error.put("message", ex.getMessage());
+        return ResponseEntity.badRequest().body(error);
+
+    }
+
+    @ExceptionHandler(PatientExportNotFoundException.class)
+    public ResponseEntity<Map<String, String>>
+    handlePatientExportNotFoundException(
+            PatientExportNotFoundException ex) {
+
+        log.warn("Patient export not found: {}.", ex.getMessage());
+
+        Map<String, String> error = new HashMap<>();
+        error.put("message", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(error);
+
+    }
+
+    @ExceptionHandler(PatientExportStateException.class)
+    public ResponseEntity<Map<String, String>>
+    handlePatientExportStateException(
+            PatientExportStateException ex) {
+
+        log.warn("Patient export state conflict: {}.", ex.getMessage());
+
+        Map<String, String> error = new HashMap<>();
+        error.put("message", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(error);
+
+    }
+
+    @ExceptionHandler(InvalidBulkRequestException.class)
+    public ResponseEntity<Map<String, String>>
+    handleInvalidBulkRequestException(
+            InvalidBulkRequestException ex) {
+
+        log.warn("Invalid bulk request: {}.", ex.getMessage());
+
+        Map<String, String> error = new HashMap<>();
+        error.put("message", ex.getMessage());
+        return ResponseEntity.badRequest().body(error);
+
+    }
+
+    @ExceptionHandler(DatabaseBusyException.class)
+    public ResponseEntity<Map<String, String>>
+    handleDatabaseBusyException(
+            DatabaseBusyException ex) {
+
+        log.warn("Database busy: {}.", ex.getMessage());
+        return serviceUnavailable();
+
+    }
+
+    // Sem conexão disponível (limite de concorrência ou timeout do pool) ao abrir a transação
+    @ExceptionHandler(CannotCreateTransactionException.class)
+    public ResponseEntity<Map<String, String>>
+    handleCannotCreateTransactionException(
+            CannotCreateTransactionException ex) {
+
+        log.warn("Could not open transaction: {}.", ex.getMostSpecificCause().getMessage());
+        return serviceUnavailable();
+
+    }
+
+    // Recusas do controle de admissão: sob rajada são muitas, então não passam de debug
+    @ExceptionHandler(RateLimitExceededException.class)
+    public ResponseEntity<Map<String, String>>
+    handleRateLimitExceededException(
+            RateLimitExceededException ex) {
+
+        log.debug("Rate limited: {}.", ex.getMessage());
+
+        Map<String, String> error = new HashMap<>();
+        error.put("message", "Too many requests, try again later");
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, retryAfterSeconds(ex.getRetryAfter()))
+                .body(error);
+
+    }
+
+    @ExceptionHandler(ConcurrencyLimitExceededException.class)
+    public ResponseEntity<Map<String, String>>
+    handleConcurrencyLimitExceededException(
+            ConcurrencyLimitExceededException ex) {
+
+        log.debug("Load shed: {}.", ex.getMessage());
+        return serviceUnavailable(ex.getRetryAfter());
+
+    }
+
+    private ResponseEntity<Map<String, String>> serviceUnavailable() {
+        return serviceUnavailable(Duration.ofSeconds(1));
+    }
+
+    private ResponseEntity<Map<String, String>> serviceUnavailable(Duration retryAfter) {
+        Map<String, String> error = new HashMap<>();
+        error.put("message", "Service temporarily unavailable, try again later");
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, retryAfterSeconds(retryAfter))
+                .body(error);
+    }
+
+    // Retry-After só aceita segundos inteiros; arredonda para cima, no mínimo 1
+    private static String retryAfterSeconds(Duration retryAfter) {
+        long seconds = retryAfter.toSeconds() + (retryAfter.toNanosPart() > 0 ? 1 : 0);
+        return Long.toString(Math.max(seconds, 1));
+    }
+
 }
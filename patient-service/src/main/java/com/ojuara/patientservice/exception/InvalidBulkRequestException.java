@@ -0,0 +1,9 @@
+package com.ojuara.patientservice.exception;
+
+public class InvalidBulkRequestException extends RuntimeException {
+
+    public InvalidBulkRequestException(String message) {
+        super(message);
+    }
+
+}
@@ -0,0 +1,9 @@
+package com.ojuara.patientservice.exception;
+
+public class InvalidCursorException extends RuntimeException {
+
+    public InvalidCursorException(String message) {
+        super(message);
+    }
+
+}
@@ -0,0 +1,13 @@
+package com.ojuara.patientservice.exception;
+
+public class InvalidImportFileException extends RuntimeException {
+
+    public InvalidImportFileException(String message) {
+        super(message);
+    }
+
+    public InvalidImportFileException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+}
@@ -0,0 +1,9 @@
+package com.ojuara.patientservice.exception;
+
+public class InvalidSearchQueryException extends RuntimeException {
+
+    public InvalidSearchQueryException(String message) {
+        super(message);
+    }
+
+}
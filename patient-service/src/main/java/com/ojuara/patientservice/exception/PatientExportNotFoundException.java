@@ -0,0 +1,9 @@
+package com.ojuara.patientservice.exception;
+
+public class PatientExportNotFoundException extends RuntimeException {
+
+    public PatientExportNotFoundException(String message) {
+        super(message);
+    }
+
+}
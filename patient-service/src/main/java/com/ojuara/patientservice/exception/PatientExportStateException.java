@@ -0,0 +1,13 @@
+package com.ojuara.patientservice.exception;
+
+/**
+ * Operação incompatível com o estado atual da exportação (ex.: retomar uma exportação concluída
+ * ou baixar uma que ainda está em andamento).
+ */
+public class PatientExportStateException extends RuntimeException {
+
+    public PatientExportStateException(String message) {
+        super(message);
+    }
+
+}
@@ -0,0 +1,9 @@
+package com.ojuara.patientservice.exception;
+
+public class PatientVersionMismatchException extends RuntimeException {
+
+    public PatientVersionMismatchException(String message) {
+        super(message);
+    }
+
+}
@@ -0,0 +1,9 @@
+package com.ojuara.patientservice.exception;
+
+public class SearchIndexUnavailableException extends RuntimeException {
+
+    public SearchIndexUnavailableException(String message) {
+        super(message);
+    }
+
+}
@@ -0,0 +1,133 @@
+package com.ojuara.patientservice.grpc;
+
+/**
+ * Disjuntor de um endpoint do billing-service, pela taxa de falhas das últimas chamadas.
+ *
+ * <p>Fechado, deixa passar tudo e guarda o resultado das últimas {@code windowSize} chamadas;
+ * com ao menos {@code minimumCalls} resultados e a fração de falhas em
+ * {@code failureRateThreshold} ou mais, abre. Aberto, recusa chamadas por {@code openDuration} e
+ * então fica meio-aberto: passa uma única chamada de teste, que fecha o disjuntor se der certo e
+ * o reabre se falhar.</p>
+ */
+final class BillingCircuitBreaker {
+
+    enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final double failureRateThreshold;
+    private final int minimumCalls;
+    private final long openNanos;
+    // Últimos resultados em anel: true = falha
+    private final boolean[] outcomes;
+
+    private State state = State.CLOSED;
+    private int recorded;
+    private int next;
+    private int failures;
+    private long openedAt;
+    private boolean probeInFlight;
+
+    BillingCircuitBreaker(double failureRateThreshold, int windowSize, int minimumCalls, long openNanos) {
+        if (windowSize < 1 || minimumCalls < 1 || minimumCalls > windowSize) {
+            throw new IllegalArgumentException("Circuit window of " + windowSize + " needs 1 to "
+                    + windowSize + " minimum calls, was " + minimumCalls);
+        }
+        this.failureRateThreshold = failureRateThreshold;
+        this.minimumCalls = minimumCalls;
+        this.openNanos = openNanos;
+        this.outcomes = new boolean[windowSize];
+    }
+
+    /**
+     * Reserva uma chamada. Quem recebe {@code true} deve informar o resultado com
+     * {@link #onSuccess()}, {@link #onFailure()} ou {@link #release()}.
+     */
+    synchronized boolean tryAcquire() {
+        return switch (currentState()) {
+            case CLOSED -> true;
+            case OPEN -> false;
+            case HALF_OPEN -> {
+                if (probeInFlight) {
+                    yield false;
+                }
+                probeInFlight = true;
+                yield true;
+            }
+        };
+    }
+
+    /**
+     * @return {@code true} se uma chamada seria aceita agora, sem reservá-la
+     */
+    synchronized boolean isCallPermitted() {
+        State current = currentState();
+        return current == State.CLOSED || (current == State.HALF_OPEN && !probeInFlight);
+    }
+
+    synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            close();
+        } else if (state == State.CLOSED) {
+            record(false);
+        }
+    }
+
+    synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            open();
+        } else if (state == State.CLOSED) {
+            record(true);
+            if (recorded >= minimumCalls && failures >= failureRateThreshold * recorded) {
+                open();
+            }
+        }
+    }
+
+    /**
+     * Libera uma chamada reservada sem resultado (por exemplo, o hedge perdedor, cancelado).
+     */
+    synchronized void release() {
+        if (state == State.HALF_OPEN) {
+            probeInFlight = false;
+        }
+    }
+
+    synchronized State state() {
+        return currentState();
+    }
+
+    private State currentState() {
+        if (state == State.OPEN && System.nanoTime() - openedAt >= openNanos) {
+            state = State.HALF_OPEN;
+            probeInFlight = false;
+        }
+        return state;
+    }
+
+    private void record(boolean failure) {
+        if (recorded == outcomes.length) {
+            failures -= outcomes[next] ? 1 : 0;
+        } else {
+            recorded++;
+        }
+        outcomes[next] = failure;
+        failures += failure ? 1 : 0;
+        next = (next + 1) % outcomes.length;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = System.nanoTime();
+        probeInFlight = false;
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        recorded = 0;
+        next = 0;
+        failures = 0;
+        probeInFlight = false;
+    }
+
+}
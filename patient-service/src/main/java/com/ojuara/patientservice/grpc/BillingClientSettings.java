@@ -0,0 +1,36 @@
+package com.ojuara.patientservice.grpc;
+
+import java.time.Duration;
+
+/**
+ * Opções do {@link BillingServiceGrpcClient}.
+ *
+ * @param deadline prazo padrão de cada chamada, contando o hedge
+ * @param hedging envia a chamada também a outro endpoint quando a primeira demora
+ * @param hedgePercentile percentil das latências recentes usado como atraso do hedge
+ * @param minHedgeDelay atraso mínimo do hedge
+ * @param maxHedgeDelay atraso máximo do hedge, usado também enquanto há poucas amostras
+ * @param failureRateThreshold fração de falhas que abre o disjuntor de um endpoint
+ * @param circuitWindowSize quantidade de chamadas recentes avaliadas pelo disjuntor
+ * @param circuitMinimumCalls chamadas necessárias na janela antes de o disjuntor poder abrir
+ * @param circuitOpenDuration tempo aberto antes da chamada de teste
+ */
+public record BillingClientSettings(Duration deadline,
+                                    boolean hedging,
+                                    double hedgePercentile,
+                                    Duration minHedgeDelay,
+                                    Duration maxHedgeDelay,
+                                    double failureRateThreshold,
+                                    int circuitWindowSize,
+                                    int circuitMinimumCalls,
+                                    Duration circuitOpenDuration) {
+
+    /**
+     * Os valores padrão do application.properties, com o prazo informado.
+     */
+    public static BillingClientSettings withDeadline(Duration deadline) {
+        return new BillingClientSettings(deadline, true, 0.95, Duration.ofMillis(10), Duration.ofSeconds(1),
+                0.5, 20, 10, Duration.ofSeconds(10));
+    }
+
+}
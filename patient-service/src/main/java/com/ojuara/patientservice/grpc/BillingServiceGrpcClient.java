@@ -0,0 +1,276 @@
+package com.ojuara.patientservice.grpc;
+
+import billing.BillingBatchRequest;
+import billing.BillingBatchResponse;
+import billing.BillingRequest;
+import billing.BillingServiceGrpc;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import io.grpc.Channel;
+import io.grpc.ClientInterceptors;
+import io.grpc.Deadline;
+import io.grpc.ManagedChannel;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.micrometer.core.instrument.binder.grpc.ObservationGrpcClientInterceptor;
+import io.micrometer.observation.ObservationRegistry;
+import jakarta.annotation.PreDestroy;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cliente gRPC do billing-service, sobre um ou mais endpoints.
+ *
+ * <p>Cada chamada vai ao próximo endpoint em round-robin e tem um prazo único, que vale também
+ * para o hedge: se a resposta não chegar no percentil {@code hedgePercentile} das latências
+ * recentes (entre {@code minHedgeDelay} e {@code maxHedgeDelay}), a mesma chamada é enviada a
+ * outro endpoint, vale a primeira resposta e a outra é cancelada. Como o atraso é o p95, só cerca
+ * de 5% das chamadas geram hedge. Isso só é seguro porque {@code BatchCreateBillingAccounts} é
+ * idempotente por {@code patientId}. Uma falha rápida (endpoint fora do ar) dispara o envio ao
+ * outro endpoint na hora.</p>
+ *
+ * <p>Cada endpoint tem um {@link BillingCircuitBreaker}: com o disjuntor aberto ele sai do
+ * round-robin e, com todos abertos, a chamada falha com {@code UNAVAILABLE} sem rede. Quem chama
+ * consulta {@link #isAvailable()} para deixar as pendências na fila (o outbox) nesse meio tempo.</p>
+ *
+ * <p>As chamadas passam pelo {@link ObservationGrpcClientInterceptor}: cada uma gera o timer
+ * {@code grpc.client} (tags de método e status) e um span cujo contexto vai nos metadados
+ * ({@code traceparent}), continuando o trace no billing-service.</p>
+ */
+public class BillingServiceGrpcClient {
+
+    // Status que indicam um endpoint com problema (contam no disjuntor)
+    private static final Set<Status.Code> ENDPOINT_FAILURES = EnumSet.of(Status.Code.UNAVAILABLE,
+            Status.Code.DEADLINE_EXCEEDED, Status.Code.RESOURCE_EXHAUSTED, Status.Code.INTERNAL, Status.Code.UNKNOWN);
+    private static final int LATENCY_SAMPLES = 1024;
+    // Antes disso o hedge usa maxHedgeDelay
+    private static final int MIN_LATENCY_SAMPLES = 20;
+
+    private final List<Endpoint> endpoints;
+    private final List<ManagedChannel> managedChannels;
+    private final BillingClientSettings settings;
+    private final LatencyWindow latencies;
+    private final AtomicInteger nextEndpoint = new AtomicInteger();
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder hedges = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * Usa um canal já criado (por exemplo, in-process nos testes).
+     */
+    public BillingServiceGrpcClient(Channel channel, Duration deadline) {
+        this(channel, deadline, ObservationRegistry.NOOP);
+    }
+
+    /**
+     * Usa um canal já criado, medindo e propagando o trace das chamadas pelo registry informado.
+     */
+    public BillingServiceGrpcClient(Channel channel, Duration deadline, ObservationRegistry observationRegistry) {
+        this(List.of(channel), BillingClientSettings.withDeadline(deadline), observationRegistry);
+    }
+
+    /**
+     * Usa um canal por endpoint, já criados; os {@link ManagedChannel} são fechados em
+     * {@link #shutdown()}.
+     */
+    public BillingServiceGrpcClient(List<? extends Channel> channels, BillingClientSettings settings,
+                                    ObservationRegistry observationRegistry) {
+        if (channels.isEmpty()) {
+            throw new IllegalArgumentException("At least one billing-service channel is required");
+        }
+        ObservationGrpcClientInterceptor observation = new ObservationGrpcClientInterceptor(observationRegistry);
+        List<Endpoint> endpoints = new ArrayList<>(channels.size());
+        for (Channel channel : channels) {
+            endpoints.add(new Endpoint(channel.authority(),
+                    BillingServiceGrpc.newFutureStub(ClientInterceptors.intercept(channel, observation)),
+                    new BillingCircuitBreaker(settings.failureRateThreshold(), settings.circuitWindowSize(),
+                            settings.circuitMinimumCalls(), settings.circuitOpenDuration().toNanos())));
+        }
+        this.endpoints = List.copyOf(endpoints);
+        this.managedChannels = channels.stream()
+                .filter(ManagedChannel.class::isInstance)
+                .map(ManagedChannel.class::cast)
+                .toList();
+        this.settings = settings;
+        this.latencies = new LatencyWindow(LATENCY_SAMPLES, settings.hedgePercentile());
+    }
+
+    /**
+     * Cria as contas de cobrança de um lote de pacientes em uma única chamada, com o prazo padrão.
+     *
+     * @throws StatusRuntimeException se a chamada falhar, passar do prazo ou todos os disjuntores
+     *                                estiverem abertos ({@code UNAVAILABLE})
+     */
+    public BillingBatchResponse createBillingAccounts(List<BillingRequest> accounts) {
+        return createBillingAccounts(accounts, settings.deadline());
+    }
+
+    /**
+     * Cria as contas de cobrança de um lote de pacientes em uma única chamada.
+     *
+     * @param timeout prazo da chamada, incluindo o hedge
+     * @throws StatusRuntimeException se a chamada falhar, passar do prazo ou todos os disjuntores
+     *                                estiverem abertos ({@code UNAVAILABLE})
+     */
+    public BillingBatchResponse createBillingAccounts(List<BillingRequest> accounts, Duration timeout) {
+        BillingBatchRequest request = BillingBatchRequest.newBuilder()
+                .addAllAccounts(accounts)
+                .build();
+        Deadline deadline = Deadline.after(timeout.toNanos(), TimeUnit.NANOSECONDS);
+        calls.increment();
+
+        Endpoint primary = acquireEndpoint(null);
+        if (primary == null) {
+            rejected.increment();
+            throw Status.UNAVAILABLE.withDescription("Circuit open for every billing-service endpoint")
+                    .asRuntimeException();
+        }
+
+        BlockingQueue<Attempt> completed = new LinkedBlockingQueue<>();
+        List<Attempt> inFlight = new ArrayList<>(2);
+        inFlight.add(start(primary, request, deadline, completed, false));
+        boolean hedged = !settings.hedging() || endpoints.size() < 2;
+        long hedgeAt = System.nanoTime() + hedgeDelayNanos();
+        StatusRuntimeException failure = null;
+        try {
+            while (!inFlight.isEmpty()) {
+                Attempt done = hedged
+                        ? completed.take()
+                        : completed.poll(hedgeAt - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (done == null) {
+                    hedged = true;
+                    hedge(primary, request, deadline, completed, inFlight);
+                    continue;
+                }
+
+                inFlight.remove(done);
+                try {
+                    BillingBatchResponse response = Futures.getDone(done.future());
+                    done.endpoint().breaker().onSuccess();
+                    latencies.record(System.nanoTime() - done.startNanos());
+                    if (done.hedge()) {
+                        hedgeWins.increment();
+                    }
+                    return response;
+                } catch (ExecutionException e) {
+                    failure = e.getCause() instanceof StatusRuntimeException status
+                            ? status
+                            : Status.fromThrowable(e.getCause()).asRuntimeException();
+                    Status.Code code = failure.getStatus().getCode();
+                    if (ENDPOINT_FAILURES.contains(code)) {
+                        done.endpoint().breaker().onFailure();
+                    } else {
+                        done.endpoint().breaker().onSuccess();
+                    }
+                    // Falhou antes do atraso do hedge: tenta o outro endpoint já
+                    if (!hedged && inFlight.isEmpty() && ENDPOINT_FAILURES.contains(code)
+                            && code != Status.Code.DEADLINE_EXCEEDED && !deadline.isExpired()) {
+                        hedged = true;
+                        hedge(primary, request, deadline, completed, inFlight);
+                    }
+                }
+            }
+            throw failure;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw Status.CANCELLED.withDescription("Interrupted while calling billing-service").withCause(e)
+                    .asRuntimeException();
+        } finally {
+            // A chamada que perdeu é cancelada e não conta no disjuntor
+            for (Attempt attempt : inFlight) {
+                attempt.future().cancel(true);
+                attempt.endpoint().breaker().release();
+            }
+        }
+    }
+
+    /**
+     * @return {@code false} se os disjuntores de todos os endpoints estão abertos
+     */
+    public boolean isAvailable() {
+        return endpoints.stream().anyMatch(endpoint -> endpoint.breaker().isCallPermitted());
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("endpoints", endpoints.stream()
+                .map(endpoint -> Map.of("endpoint", endpoint.name(), "circuit", endpoint.breaker().state().name()))
+                .toList());
+        stats.put("calls", calls.sum());
+        stats.put("hedges", hedges.sum());
+        stats.put("hedgeWins", hedgeWins.sum());
+        stats.put("rejectedByCircuit", rejected.sum());
+        stats.put("hedgeDelayMillis", hedgeDelayNanos() / 1_000_000.0);
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        managedChannels.forEach(ManagedChannel::shutdown);
+    }
+
+    private void hedge(Endpoint primary, BillingBatchRequest request, Deadline deadline,
+                       BlockingQueue<Attempt> completed, List<Attempt> inFlight) {
+        Endpoint other = acquireEndpoint(primary);
+        if (other != null) {
+            hedges.increment();
+            inFlight.add(start(other, request, deadline, completed, true));
+        }
+    }
+
+    private Attempt start(Endpoint endpoint, BillingBatchRequest request, Deadline deadline,
+                          BlockingQueue<Attempt> completed, boolean hedge) {
+        long start = System.nanoTime();
+        ListenableFuture<BillingBatchResponse> future = endpoint.stub()
+                .withDeadline(deadline)
+                .batchCreateBillingAccounts(request);
+        Attempt attempt = new Attempt(endpoint, future, start, hedge);
+        future.addListener(() -> completed.add(attempt), MoreExecutors.directExecutor());
+        return attempt;
+    }
+
+    // Próximo endpoint em round-robin cujo disjuntor aceita a chamada
+    private Endpoint acquireEndpoint(Endpoint exclude) {
+        int first = Math.floorMod(nextEndpoint.getAndIncrement(), endpoints.size());
+        for (int i = 0; i < endpoints.size(); i++) {
+            Endpoint endpoint = endpoints.get((first + i) % endpoints.size());
+            if (endpoint != exclude && endpoint.breaker().tryAcquire()) {
+                return endpoint;
+            }
+        }
+        return null;
+    }
+
+    private long hedgeDelayNanos() {
+        long percentile = latencies.percentileNanos(MIN_LATENCY_SAMPLES);
+        long max = settings.maxHedgeDelay().toNanos();
+        if (percentile < 0) {
+            return max;
+        }
+        return Math.min(max, Math.max(settings.minHedgeDelay().toNanos(), percentile));
+    }
+
+    private record Endpoint(String name, BillingServiceGrpc.BillingServiceFutureStub stub,
+                            BillingCircuitBreaker breaker) {
+    }
+
+    private record Attempt(Endpoint endpoint, ListenableFuture<BillingBatchResponse> future, long startNanos,
+                           boolean hedge) {
+    }
+
+}
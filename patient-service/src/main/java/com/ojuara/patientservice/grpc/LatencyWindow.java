@@ -0,0 +1,54 @@
+package com.ojuara.patientservice.grpc;
+
+import java.util.Arrays;
+
+/**
+ * Latências das últimas chamadas, para calcular um percentil recente (o atraso do hedge).
+ *
+ * <p>Guarda as últimas {@code capacity} amostras em anel. O percentil é recalculado (cópia e
+ * ordenação) a cada {@value #REFRESH_EVERY} amostras novas, não a cada consulta.</p>
+ */
+final class LatencyWindow {
+
+    private static final int REFRESH_EVERY = 16;
+
+    private final long[] samples;
+    private final double percentile;
+
+    private int count;
+    private int next;
+    private int sinceRefresh;
+    private long cached = -1;
+
+    LatencyWindow(int capacity, double percentile) {
+        if (percentile <= 0 || percentile > 1) {
+            throw new IllegalArgumentException("Percentile must be in (0, 1], was " + percentile);
+        }
+        this.samples = new long[capacity];
+        this.percentile = percentile;
+    }
+
+    synchronized void record(long nanos) {
+        samples[next] = nanos;
+        next = (next + 1) % samples.length;
+        count = Math.min(count + 1, samples.length);
+        sinceRefresh++;
+    }
+
+    /**
+     * @return o percentil das amostras em nanossegundos, ou -1 com menos de {@code minimumSamples}
+     */
+    synchronized long percentileNanos(int minimumSamples) {
+        if (count < minimumSamples) {
+            return -1;
+        }
+        if (cached < 0 || sinceRefresh >= REFRESH_EVERY) {
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            cached = sorted[(int) Math.min(count - 1, Math.max(0, Math.ceil(percentile * count) - 1))];
+            sinceRefresh = 0;
+        }
+        return cached;
+    }
+
+}
@@ -4,19 +4,19 @@ import com.ojuara.patientservice.dto.PatientRequestDTO;
 import com.ojuara.patientservice.dto.PatientResponseDTO;
 import com.ojuara.patientservice.model.Patient;
 
+import java.time.LocalDate;
+
 public class PatientMapper {
 
     public static PatientResponseDTO toDTO(Patient patient){
-        PatientResponseDTO dto = new PatientResponseDTO();
-
-        dto.setId(patient.getId().toString());
-        dto.setName(patient.getName());
-        dto.setEmail(patient.getEmail());
-        dto.setAddress(patient.getAddress());
-        dto.setDateOfBirth(patient.getDateOfBirth().toString());
-        dto.setRegisteredDate(patient.getRegisteredDate().toString());
-
-        return dto;
+        return new PatientResponseDTO(
+                patient.getId(),
+                patient.getName(),
+                patient.getEmail(),
+                patient.getAddress(),
+                patient.getDateOfBirth(),
+                patient.getRegisteredDate(),
+                patient.getVersion());
     }
 
     public static Patient toEntity(PatientRequestDTO dto){
@@ -25,10 +25,40 @@ public class PatientMapper {
         patient.setName(dto.getName());
         patient.setEmail(dto.getEmail());
         patient.setAddress(dto.getAddress());
-        patient.setDateOfBirth(java.time.LocalDate.parse(dto.getDateOfBirth()));
-        patient.setRegisteredDate(java.time.LocalDate.parse(dto.getRegisteredDate()));
+        patient.setDateOfBirth(parseDate(dto.getDateOfBirth()));
+        patient.setRegisteredDate(parseDate(dto.getRegisteredDate()));
 
         return patient;
     }
 
+    /**
+     * Converte uma data ISO ({@code yyyy-MM-dd}) lendo os dígitos diretamente, sem o
+     * {@code DateTimeFormatter}; outros formatos seguem para {@link LocalDate#parse}.
+     *
+     * @throws java.time.DateTimeException se o texto não for uma data válida
+     */
+    public static LocalDate parseDate(String value) {
+        if (value.length() == 10 && value.charAt(4) == '-' && value.charAt(7) == '-') {
+            int year = digits(value, 0, 4);
+            int month = digits(value, 5, 7);
+            int day = digits(value, 8, 10);
+            if (year >= 0 && month >= 0 && day >= 0) {
+                return LocalDate.of(year, month, day);
+            }
+        }
+        return LocalDate.parse(value);
+    }
+
+    private static int digits(String value, int from, int to) {
+        int result = 0;
+        for (int i = from; i < to; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            result = result * 10 + (c - '0');
+        }
+        return result;
+    }
+
 }
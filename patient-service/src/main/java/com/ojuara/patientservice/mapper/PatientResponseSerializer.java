@@ -0,0 +1,133 @@
+package com.ojuara.patientservice.mapper;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.ojuara.patientservice.dto.PatientResponseDTO;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * Escreve um {@link PatientResponseDTO} direto no {@link JsonGenerator}, sem reflexão.
+ *
+ * <p>Os nomes dos campos já vêm codificados e o UUID e as datas são formatados em um
+ * {@code char[]} reaproveitado por thread, então nenhum {@code String} intermediário é
+ * criado por paciente. O JSON é o mesmo da serialização padrão do Jackson com o ObjectMapper do
+ * Spring Boot.</p>
+ *
+ * <p>As datas saem sempre como texto ISO ({@code yyyy-MM-dd}), que é o padrão do Spring Boot
+ * ({@code WRITE_DATES_AS_TIMESTAMPS} desligado). As opções de data do ObjectMapper em uso
+ * ({@code WRITE_DATES_AS_TIMESTAMPS}, {@code @JsonFormat}, formato configurado) são ignoradas.</p>
+ */
+public class PatientResponseSerializer extends StdSerializer<PatientResponseDTO> {
+
+    private static final SerializableString ID = new SerializedString("id");
+    private static final SerializableString NAME = new SerializedString("name");
+    private static final SerializableString EMAIL = new SerializedString("email");
+    private static final SerializableString ADDRESS = new SerializedString("address");
+    private static final SerializableString DATE_OF_BIRTH = new SerializedString("dateOfBirth");
+    private static final SerializableString REGISTERED_DATE = new SerializedString("registeredDate");
+    private static final SerializableString VERSION = new SerializedString("version");
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final int UUID_LENGTH = 36;
+    private static final int DATE_LENGTH = 10;
+
+    private static final ThreadLocal<char[]> BUFFER = ThreadLocal.withInitial(() -> new char[UUID_LENGTH]);
+
+    public PatientResponseSerializer() {
+        super(PatientResponseDTO.class);
+    }
+
+    @Override
+    public void serialize(PatientResponseDTO patient, JsonGenerator generator, SerializerProvider provider)
+            throws IOException {
+        write(patient, generator);
+    }
+
+    /**
+     * Escreve o paciente como um objeto JSON; usado também fora do ObjectMapper, no streaming NDJSON.
+     */
+    public static void write(PatientResponseDTO patient, JsonGenerator generator) throws IOException {
+        char[] buffer = BUFFER.get();
+
+        generator.writeStartObject(patient);
+        generator.writeFieldName(ID);
+        writeUuid(patient.id(), buffer, generator);
+        generator.writeFieldName(NAME);
+        generator.writeString(patient.name());
+        generator.writeFieldName(EMAIL);
+        generator.writeString(patient.email());
+        generator.writeFieldName(ADDRESS);
+        generator.writeString(patient.address());
+        generator.writeFieldName(DATE_OF_BIRTH);
+        writeDate(patient.dateOfBirth(), buffer, generator);
+        generator.writeFieldName(REGISTERED_DATE);
+        writeDate(patient.registeredDate(), buffer, generator);
+        generator.writeFieldName(VERSION);
+        if (patient.version() == null) {
+            generator.writeNull();
+        } else {
+            generator.writeNumber(patient.version());
+        }
+        generator.writeEndObject();
+    }
+
+    private static void writeUuid(UUID uuid, char[] buffer, JsonGenerator generator) throws IOException {
+        if (uuid == null) {
+            generator.writeNull();
+            return;
+        }
+        long msb = uuid.getMostSignificantBits();
+        long lsb = uuid.getLeastSignificantBits();
+        // Mesmo formato de UUID.toString(): 8-4-4-4-12 dígitos hexadecimais minúsculos
+        hex(msb >>> 32, buffer, 0, 8);
+        buffer[8] = '-';
+        hex(msb >>> 16, buffer, 9, 4);
+        buffer[13] = '-';
+        hex(msb, buffer, 14, 4);
+        buffer[18] = '-';
+        hex(lsb >>> 48, buffer, 19, 4);
+        buffer[23] = '-';
+        hex(lsb, buffer, 24, 12);
+        generator.writeString(buffer, 0, UUID_LENGTH);
+    }
+
+    private static void writeDate(LocalDate date, char[] buffer, JsonGenerator generator) throws IOException {
+        if (date == null) {
+            generator.writeNull();
+            return;
+        }
+        int year = date.getYear();
+        if (year < 0 || year > 9999) {
+            // Fora de yyyy-MM-dd o ISO usa sinal e mais dígitos
+            generator.writeString(date.toString());
+            return;
+        }
+        digits(year, buffer, 0, 4);
+        buffer[4] = '-';
+        digits(date.getMonthValue(), buffer, 5, 2);
+        buffer[7] = '-';
+        digits(date.getDayOfMonth(), buffer, 8, 2);
+        generator.writeString(buffer, 0, DATE_LENGTH);
+    }
+
+    private static void hex(long value, char[] buffer, int offset, int length) {
+        for (int i = offset + length - 1; i >= offset; i--) {
+            buffer[i] = HEX[(int) (value & 0xF)];
+            value >>>= 4;
+        }
+    }
+
+    private static void digits(int value, char[] buffer, int offset, int length) {
+        for (int i = offset + length - 1; i >= offset; i--) {
+            buffer[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+}
@@ -0,0 +1,62 @@
+package com.ojuara.patientservice.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Pendência de criação da conta de cobrança de um paciente (outbox transacional).
+ *
+ * <p>É gravada na mesma transação que cria o paciente e removida pelo
+ * {@link com.ojuara.patientservice.service.BillingOutboxRelay} quando o billing-service
+ * confirma a conta. Recusada pelo billing ou sem sucesso depois de
+ * {@code billing.outbox.max-attempts} tentativas, fica no outbox com {@code failedAt} preenchido
+ * e o relay deixa de enviá-la.</p>
+ */
+@Entity
+@Table(name = "billing_outbox",
+        indexes = @Index(name = "idx_billing_outbox_next_attempt_at", columnList = "next_attempt_at"))
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BillingOutboxEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+
+    // Chave de idempotência no billing-service: no máximo uma pendência por paciente
+    @Column(nullable = false, unique = true)
+    private UUID patientId;
+
+    @Column(nullable = false)
+    private String name;
+
+    @Column(nullable = false)
+    private String email;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+
+    @Column(nullable = false)
+    private Instant nextAttemptAt;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(length = 1000)
+    private String lastError;
+
+    // Preenchido quando a pendência desiste (fora da fila até ser reenfileirada)
+    private Instant failedAt;
+
+    public static BillingOutboxEvent forPatient(Patient patient) {
+        Instant now = Instant.now();
+        return new BillingOutboxEvent(null, patient.getId(), patient.getName(), patient.getEmail(), now, now, 0, null, null);
+    }
+
+}
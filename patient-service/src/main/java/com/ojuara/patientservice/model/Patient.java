@@ -7,18 +7,29 @@ import jakarta.validation.constraints.NotNull;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.ColumnDefault;
 
+import java.time.Instant;
 import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
 import java.util.UUID;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "patient")
+@Table(indexes = {
+        @Index(name = "idx_patient_registered_date_id", columnList = "registered_date, id"),
+        @Index(name = "idx_patient_updated_at_id", columnList = "updated_at, id")})
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
 public class Patient {
 
+    // UUID gerado em memória pelo Hibernate (sem ida ao banco), o que mantém o batching de inserts
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.UUID)
     private UUID id;
 
     @NotNull
@@ -38,13 +49,27 @@ public class Patient {
     @NotNull
     private LocalDate registeredDate;
 
-
-
-
-
-
-
-
-
+    // Controle de concorrência otimista: o Hibernate incrementa a cada update e o usa no WHERE;
+    // também é o ETag do paciente na API. Os defaults batem com a migração V1, e a V2 insere sem essas colunas
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private Long version;
+
+    // Carimbo da última escrita; ordena o feed de alterações (GET /api/v1/patients/changes)
+    @ColumnDefault("CURRENT_TIMESTAMP")
+    @Column(nullable = false)
+    private Instant updatedAt;
+
+    public Patient(UUID id, String name, String email, String address, LocalDate dateOfBirth, LocalDate registeredDate) {
+        this(id, name, email, address, dateOfBirth, registeredDate, null, null);
+    }
+
+    // Microssegundos: a mesma precisão da coluna, para o valor em memória ser igual ao gravado
+    @PrePersist
+    @PreUpdate
+    void touch() {
+        updatedAt = Instant.now().truncatedTo(ChronoUnit.MICROS);
+    }
 
 }
@@ -0,0 +1,75 @@
+package com.ojuara.patientservice.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * Exportação de todos os pacientes para um arquivo (ver
+ * {@link com.ojuara.patientservice.service.PatientExportService}).
+ *
+ * <p>Depois de cada bloco gravado, o checkpoint guarda a chave (registeredDate, id) do último
+ * paciente e o tamanho do arquivo até ele. Uma exportação que falhar é retomada dali: o arquivo
+ * é cortado nesse tamanho e a leitura continua depois dessa chave.</p>
+ *
+ * <p>Cada execução recebe um {@code runToken} novo ao iniciar ou retomar, e checkpoints e o estado
+ * final só são gravados com o token vigente: uma execução assumida por outra para na próxima
+ * gravação em vez de sobrescrever o checkpoint dela.</p>
+ */
+@Entity
+@Table(name = "patient_export")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PatientExport {
+
+    // Atribuído pelo service, que já usa o id no nome do arquivo
+    @Id
+    private UUID id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private PatientExportFormat format;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private PatientExportCompression compression;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private PatientExportStatus status;
+
+    // Execução dona da exportação (ver PatientExportRepository#checkpoint)
+    private UUID runToken;
+
+    @Column(nullable = false, length = 1000)
+    private String filePath;
+
+    // Checkpoint: chave do último paciente gravado (nula antes do primeiro bloco)
+    private LocalDate lastRegisteredDate;
+    private UUID lastId;
+
+    @Column(nullable = false)
+    private long rowsWritten;
+
+    // Checkpoint: tamanho do arquivo até o último bloco confirmado
+    @Column(nullable = false)
+    private long bytesWritten;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+
+    @Column(nullable = false)
+    private Instant updatedAt;
+
+    private Instant completedAt;
+
+    @Column(length = 1000)
+    private String lastError;
+
+}
@@ -0,0 +1,11 @@
+package com.ojuara.patientservice.model;
+
+public enum PatientExportCompression {
+
+    NONE,
+
+    // Um membro gzip por bloco: o arquivo inteiro é um gzip válido (membros concatenados) e
+    // pode ser cortado em qualquer fronteira de bloco para retomar a exportação
+    GZIP
+
+}
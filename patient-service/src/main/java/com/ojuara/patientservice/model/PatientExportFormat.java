@@ -0,0 +1,11 @@
+package com.ojuara.patientservice.model;
+
+public enum PatientExportFormat {
+
+    // Um objeto JSON por linha, com os campos de PatientResponseDTO
+    NDJSON,
+
+    // Cabeçalho e uma linha por paciente, campos entre aspas quando preciso (RFC 4180)
+    CSV
+
+}
@@ -0,0 +1,14 @@
+package com.ojuara.patientservice.model;
+
+public enum PatientExportStatus {
+
+    // Gravando blocos; updatedAt avança a cada checkpoint
+    RUNNING,
+
+    // Arquivo completo, pronto para download
+    COMPLETED,
+
+    // Parou com erro; pode ser retomada do último checkpoint
+    FAILED
+
+}
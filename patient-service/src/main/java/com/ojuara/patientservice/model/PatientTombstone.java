@@ -0,0 +1,35 @@
+package com.ojuara.patientservice.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Registro de um paciente removido, para que a remoção apareça no feed de alterações
+ * ({@code GET /api/v1/patients/changes}). A linha do paciente é apagada de fato; só o id e
+ * o momento da remoção ficam aqui, até passar o prazo de retenção.
+ */
+@Entity
+@Table(name = "patient_tombstone",
+        indexes = @Index(name = "idx_patient_tombstone_deleted_at_id", columnList = "deleted_at, id"))
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PatientTombstone {
+
+    // Id do paciente removido
+    @Id
+    private UUID id;
+
+    @Column(nullable = false)
+    private Instant deletedAt;
+
+}
@@ -0,0 +1,61 @@
+package com.ojuara.patientservice.repository;
+
+import com.ojuara.patientservice.model.BillingOutboxEvent;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface BillingOutboxRepository extends JpaRepository<BillingOutboxEvent, UUID> {
+
+    /**
+     * Reserva as próximas pendências prontas para envio ({@code FOR UPDATE SKIP LOCKED}).
+     *
+     * <p>O timeout de lock {@code -2} é o SKIP LOCKED do Hibernate: linhas já reservadas por
+     * outra instância do relay são puladas em vez de esperadas, então várias instâncias
+     * drenam o outbox em paralelo sem enviar a mesma pendência duas vezes ao mesmo tempo.</p>
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("""
+            select e from BillingOutboxEvent e
+            where e.nextAttemptAt <= :now and e.failedAt is null
+            order by e.nextAttemptAt""")
+    List<BillingOutboxEvent> claimReady(@Param("now") Instant now, Limit limit);
+
+    @Query("select min(e.createdAt) from BillingOutboxEvent e where e.failedAt is null")
+    Optional<Instant> findOldestCreatedAt();
+
+    long countByFailedAtIsNull();
+
+    long countByFailedAtIsNotNull();
+
+    /**
+     * Devolve à fila as pendências que desistiram, com as tentativas zeradas.
+     */
+    @Modifying
+    @Query("""
+            update BillingOutboxEvent e set e.failedAt = null, e.attempts = 0, e.nextAttemptAt = :now
+            where e.failedAt is not null""")
+    int requeueFailed(@Param("now") Instant now);
+
+    /**
+     * Libera para o relay pendências reservadas antes do insert do paciente (ver
+     * {@link com.ojuara.patientservice.service.PatientBillingOutbox}).
+     */
+    @Modifying
+    @Query("update BillingOutboxEvent e set e.nextAttemptAt = :now where e.id in :ids")
+    int release(@Param("ids") Collection<UUID> ids, @Param("now") Instant now);
+
+}
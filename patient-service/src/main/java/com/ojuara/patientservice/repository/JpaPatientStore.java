@@ -0,0 +1,153 @@
+package com.ojuara.patientservice.repository;
+
+import com.ojuara.patientservice.dto.PatientResponseDTO;
+import com.ojuara.patientservice.model.Patient;
+import jakarta.persistence.EntityManager;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.data.domain.Limit;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Pacientes na tabela {@code patient} do banco principal, pelo {@link PatientRepository}. É o
+ * {@link PatientStore} sem {@code patient.db.shard-urls}; tudo roda na transação do chamador.
+ */
+@Component
+@ConditionalOnExpression("'${patient.db.shard-urls:}' == ''")
+public class JpaPatientStore implements PatientStore {
+
+    private final PatientRepository patientRepository;
+    private final EntityManager entityManager;
+
+    public JpaPatientStore(PatientRepository patientRepository, EntityManager entityManager) {
+        this.patientRepository = patientRepository;
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    public boolean writesOutsideTransaction() {
+        return false;
+    }
+
+    @Override
+    public PatientInsertResult insertIfAbsent(Patient patient) {
+        return patientRepository.insertIfAbsent(patient);
+    }
+
+    // Batching JDBC do Hibernate; o clear solta as entidades do bloco
+    @Override
+    public List<PatientInsertResult> insertAllIfAbsent(List<Patient> patients) {
+        patientRepository.saveAll(patients);
+        patientRepository.flush();
+        entityManager.clear();
+        return patients.stream().map(patient -> new PatientInsertResult(patient, true)).toList();
+    }
+
+    @Override
+    public Optional<Patient> findById(UUID id) {
+        return patientRepository.findById(id);
+    }
+
+    @Override
+    public Optional<Patient> findByEmail(String email) {
+        return patientRepository.findByEmail(email);
+    }
+
+    @Override
+    public boolean existsByEmailAndIdNot(String email, UUID id) {
+        return patientRepository.existsByEmailAndIdNot(email, id);
+    }
+
+    // A versão é conferida pelo Hibernate no UPDATE ... WHERE version = ?, e o flush já a incrementa
+    @Override
+    public boolean update(Patient patient) {
+        try {
+            patientRepository.saveAndFlush(patient);
+            return true;
+        } catch (ObjectOptimisticLockingFailureException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public boolean deleteById(UUID id) {
+        if (patientRepository.findById(id).isEmpty()) {
+            return false;
+        }
+        patientRepository.deleteById(id);
+        return true;
+    }
+
+    @Override
+    public List<PatientResponseDTO> findFirstResponsePage(int limit) {
+        return patientRepository.findFirstResponsePage(limit);
+    }
+
+    @Override
+    public List<PatientResponseDTO> findResponsePageAfter(LocalDate registeredDate, UUID id, int limit) {
+        return patientRepository.findResponsePageAfter(registeredDate, id, limit);
+    }
+
+    @Override
+    public void streamAllResponses(Consumer<PatientResponseDTO> consumer) {
+        patientRepository.streamAllResponses(consumer);
+    }
+
+    @Override
+    public List<PatientResponseDTO> findResponsesByIdIn(Collection<UUID> ids) {
+        return patientRepository.findResponsesByIdIn(ids);
+    }
+
+    @Override
+    public Map<String, UUID> findIdsByEmailIn(Collection<String> emails) {
+        if (emails.isEmpty()) {
+            return Map.of();
+        }
+        return patientRepository.findEmailViewsByEmailIn(emails).stream()
+                .collect(Collectors.toMap(PatientEmailView::getEmail, PatientEmailView::getId));
+    }
+
+    @Override
+    public List<PatientResponseDTO> bulkUpdate(List<PatientPatch> patches) {
+        return patientRepository.bulkUpdate(patches);
+    }
+
+    @Override
+    public List<UUID> findIdsRegisteredBefore(LocalDate registeredBefore, int limit) {
+        return patientRepository.findIdsRegisteredBefore(registeredBefore, limit);
+    }
+
+    @Override
+    public List<UUID> deleteAllWithTombstones(Collection<UUID> ids, Instant deletedAt) {
+        return patientRepository.deleteAllWithTombstones(ids, deletedAt);
+    }
+
+    @Override
+    public List<Patient> findChangedAfter(Instant updatedAt, UUID id, Instant until, int limit) {
+        return patientRepository.findChangedAfter(updatedAt, id, until, Limit.of(limit));
+    }
+
+    @Override
+    public long countEmails() {
+        return patientRepository.count();
+    }
+
+    @Override
+    public void streamAllEmails(Consumer<String> consumer) {
+        try (Stream<String> emails = patientRepository.streamAllEmails()) {
+            emails.forEach(consumer);
+        }
+    }
+
+}
@@ -0,0 +1,15 @@
+package com.ojuara.patientservice.repository;
+
+import java.util.UUID;
+
+/**
+ * Projeção com apenas id e email, usada nas checagens de unicidade em lote
+ * (evita carregar a entidade inteira).
+ */
+public interface PatientEmailView {
+
+    UUID getId();
+
+    String getEmail();
+
+}
@@ -0,0 +1,65 @@
+package com.ojuara.patientservice.repository;
+
+import com.ojuara.patientservice.model.PatientExport;
+import com.ojuara.patientservice.model.PatientExportStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.UUID;
+
+public interface PatientExportRepository extends JpaRepository<PatientExport, UUID> {
+
+    /**
+     * Marca a exportação como em andamento se ela tiver falhado ou se estiver em andamento sem
+     * checkpoint desde {@code staleBefore} (a instância que a executava caiu). A condição está
+     * no próprio update, então duas retomadas simultâneas não executam a mesma exportação; o
+     * {@code runToken} novo tira da exportação a execução anterior, se ela ainda estiver viva.
+     *
+     * <p>Limpa o contexto de persistência, para leituras seguintes não verem o estado anterior.</p>
+     *
+     * @return 1 se a exportação foi assumida, 0 se não pode ser retomada agora
+     */
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("""
+            update PatientExport e set e.status = :running, e.runToken = :runToken, e.updatedAt = :now,
+                e.lastError = null
+            where e.id = :id
+              and (e.status = :failed or (e.status = :running and e.updatedAt < :staleBefore))
+            """)
+    int claimForResume(UUID id, UUID runToken, Instant now, Instant staleBefore,
+                       PatientExportStatus running, PatientExportStatus failed);
+
+    /**
+     * Grava o checkpoint de {@code export}, se o {@code runToken} dele ainda for o da exportação.
+     *
+     * @return 1 se gravou, 0 se outra execução assumiu a exportação
+     */
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("""
+            update PatientExport e set e.lastRegisteredDate = :#{#export.lastRegisteredDate},
+                e.lastId = :#{#export.lastId}, e.rowsWritten = :#{#export.rowsWritten},
+                e.bytesWritten = :#{#export.bytesWritten}, e.updatedAt = :#{#export.updatedAt}
+            where e.id = :#{#export.id} and e.runToken = :#{#export.runToken}
+            """)
+    int checkpoint(PatientExport export);
+
+    /**
+     * Grava o estado final de {@code export}, se o {@code runToken} dele ainda for o da exportação.
+     *
+     * @return 1 se gravou, 0 se outra execução assumiu a exportação
+     */
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("""
+            update PatientExport e set e.status = :#{#export.status}, e.completedAt = :#{#export.completedAt},
+                e.lastError = :#{#export.lastError}, e.updatedAt = :#{#export.updatedAt}
+            where e.id = :#{#export.id} and e.runToken = :#{#export.runToken}
+            """)
+    int finish(PatientExport export);
+
+}
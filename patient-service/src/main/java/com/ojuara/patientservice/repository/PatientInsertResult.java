@@ -0,0 +1,12 @@
+package com.ojuara.patientservice.repository;
+
+import com.ojuara.patientservice.model.Patient;
+
+/**
+ * Resultado de {@link PatientRepositoryCustom#insertIfAbsent(Patient)}.
+ *
+ * @param patient paciente gravado, ou o já existente com o mesmo email
+ * @param created {@code true} se o paciente foi inserido agora, {@code false} se já existia
+ */
+public record PatientInsertResult(Patient patient, boolean created) {
+}
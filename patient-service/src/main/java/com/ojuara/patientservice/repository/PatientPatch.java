@@ -0,0 +1,14 @@
+package com.ojuara.patientservice.repository;
+
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * Alteração de um paciente na atualização em lote ({@link PatientRepositoryCustom#bulkUpdate}).
+ * Campos nulos ficam como estão.
+ *
+ * @param version versão em que o paciente precisa estar para a alteração valer
+ */
+public record PatientPatch(UUID id, String name, String email, String address, LocalDate dateOfBirth,
+                           long version) {
+}
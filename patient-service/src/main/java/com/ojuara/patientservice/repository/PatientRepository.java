@@ -1,14 +1,24 @@
 package com.ojuara.patientservice.repository;
 
 import com.ojuara.patientservice.model.Patient;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
 
 @Repository
-public interface PatientRepository extends JpaRepository<Patient, UUID> {
+public interface PatientRepository extends JpaRepository<Patient, UUID>, PatientRepositoryCustom {
 
     boolean existsByEmail(String email);
 
@@ -25,5 +35,44 @@ public interface PatientRepository extends JpaRepository<Patient, UUID> {
      */
     boolean existsByEmailAndIdNot(String email, UUID id);
 
+    /**
+     * Busca de uma só vez quais emails já estão cadastrados. Usado pela importação em lote
+     * para resolver colisões com uma única consulta por bloco de registros.
+     *
+     * @param emails emails a verificar
+     * @return id e email dos pacientes já existentes
+     */
+    @Query("select p.id as id, p.email as email from Patient p where p.email in :emails")
+    List<PatientEmailView> findEmailViewsByEmailIn(Collection<String> emails);
+
+    /**
+     * Pacientes criados ou atualizados estritamente depois da chave (updatedAt, id) e até
+     * {@code until}, para o feed de alterações. A ordenação casa com o índice
+     * `idx_patient_updated_at_id`.
+     *
+     * @param updatedAt carimbo da última alteração já entregue
+     * @param id id da última alteração já entregue
+     * @param until limite superior (inclusivo) de updatedAt
+     * @param limit quantidade máxima de pacientes retornados
+     * @return pacientes alterados em seguida
+     */
+    @Query("""
+            select p from Patient p
+            where (p.updatedAt > :updatedAt or (p.updatedAt = :updatedAt and p.id > :id))
+              and p.updatedAt <= :until
+            order by p.updatedAt asc, p.id asc
+            """)
+    List<Patient> findChangedAfter(Instant updatedAt, UUID id, Instant until, Limit limit);
+
+    /**
+     * Percorre apenas os emails de todos os pacientes com um cursor JDBC, sem carregar
+     * entidades. Deve ser consumido dentro de uma transação e fechado ao final.
+     *
+     * @return stream com o email de cada paciente
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query("select p.email from Patient p")
+    Stream<String> streamAllEmails();
+
 
 }
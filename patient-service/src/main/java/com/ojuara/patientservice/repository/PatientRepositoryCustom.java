@@ -0,0 +1,101 @@
+package com.ojuara.patientservice.repository;
+
+import com.ojuara.patientservice.dto.PatientResponseDTO;
+import com.ojuara.patientservice.model.Patient;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Operações do repositório de pacientes implementadas com SQL nativo
+ * (ver {@link PatientRepositoryImpl}).
+ */
+public interface PatientRepositoryCustom {
+
+    /**
+     * Insere o paciente se ainda não existir outro com o mesmo email; caso exista,
+     * retorna o paciente existente sem alterá-lo.
+     *
+     * <p>A decisão é tomada pelo banco na própria instrução de insert (restrição única
+     * de email), então duas requisições concorrentes com o mesmo email não geram erro:
+     * uma cria o paciente e a outra recebe o registro criado.</p>
+     *
+     * @param patient paciente a inserir; se o id for nulo, um novo UUID é gerado
+     * @return o paciente gravado ou o existente, e se ele foi criado agora
+     */
+    PatientInsertResult insertIfAbsent(Patient patient);
+
+    /**
+     * Primeira página da listagem por cursor, ordenada por (registeredDate, id), lida direto
+     * para DTOs de resposta (sem entidades). A ordenação casa com o índice
+     * `idx_patient_registered_date_id`.
+     *
+     * @param limit quantidade máxima de pacientes retornados
+     * @return pacientes da primeira página
+     */
+    List<PatientResponseDTO> findFirstResponsePage(int limit);
+
+    /**
+     * Página seguinte da listagem por cursor (keyset): os pacientes posicionados estritamente
+     * depois da chave (registeredDate, id) informada, lidos direto para DTOs de resposta.
+     *
+     * @param registeredDate data de registro do último paciente da página anterior
+     * @param id id do último paciente da página anterior
+     * @param limit quantidade máxima de pacientes retornados
+     * @return pacientes da página seguinte
+     */
+    List<PatientResponseDTO> findResponsePageAfter(LocalDate registeredDate, UUID id, int limit);
+
+    /**
+     * Percorre todos os pacientes em ordem (registeredDate, id) com um cursor JDBC, entregando
+     * cada linha como DTO de resposta. Deve ser chamado dentro de uma transação.
+     *
+     * @param consumer recebe cada paciente assim que é lido
+     */
+    void streamAllResponses(Consumer<PatientResponseDTO> consumer);
+
+    /**
+     * Pacientes com os ids informados, lidos direto para DTOs de resposta (ids inexistentes
+     * são ignorados).
+     *
+     * @param ids ids dos pacientes
+     * @return pacientes encontrados, sem ordem definida
+     */
+    List<PatientResponseDTO> findResponsesByIdIn(Collection<UUID> ids);
+
+    /**
+     * Aplica as alterações com SQL em conjunto, sem carregar entidades: no Postgres uma única
+     * instrução {@code UPDATE ... FROM (VALUES ...)}; nos outros bancos um batch JDBC. Cada
+     * alteração só vale se o paciente ainda estiver na versão informada, e incrementa a versão.
+     *
+     * @param patches alterações, no máximo uma por paciente
+     * @return os pacientes alterados, com os valores gravados
+     */
+    List<PatientResponseDTO> bulkUpdate(List<PatientPatch> patches);
+
+    /**
+     * Ids dos primeiros pacientes registrados antes da data, na ordem do índice
+     * {@code idx_patient_registered_date_id}.
+     *
+     * @param registeredBefore data de registro limite (exclusiva)
+     * @param limit quantidade máxima de ids
+     * @return ids encontrados
+     */
+    List<UUID> findIdsRegisteredBefore(LocalDate registeredBefore, int limit);
+
+    /**
+     * Remove os pacientes com uma única instrução e grava as remoções para o feed de
+     * alterações em batch, sem carregar entidades. Os pacientes encontrados ficam bloqueados
+     * até o fim da transação, então duas remoções concorrentes não gravam a mesma remoção.
+     *
+     * @param ids ids dos pacientes (ids inexistentes são ignorados)
+     * @param deletedAt momento registrado nas remoções
+     * @return ids dos pacientes removidos
+     */
+    List<UUID> deleteAllWithTombstones(Collection<UUID> ids, Instant deletedAt);
+
+}
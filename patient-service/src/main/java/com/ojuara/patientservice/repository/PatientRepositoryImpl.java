@@ -0,0 +1,345 @@
+package com.ojuara.patientservice.repository;
+
+import com.ojuara.patientservice.dto.PatientResponseDTO;
+import com.ojuara.patientservice.model.Patient;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Implementação das operações de {@link PatientRepositoryCustom}.
+ *
+ * <p>Usa o mesmo DataSource (e a mesma transação) do JPA através do
+ * {@link NamedParameterJdbcTemplate}.</p>
+ */
+public class PatientRepositoryImpl implements PatientRepositoryCustom {
+
+    static final String COLUMNS = "id, name, email, address, date_of_birth, registered_date, version, updated_at";
+
+    // Postgres: insert e leitura do registro existente em uma única instrução
+    private static final String POSTGRES_INSERT_IF_ABSENT = """
+            WITH inserted AS (
+                INSERT INTO patient (%1$s)
+                VALUES (:id, :name, :email, :address, :dateOfBirth, :registeredDate, :version, :updatedAt)
+                ON CONFLICT (email) DO NOTHING
+                RETURNING %1$s
+            )
+            SELECT %1$s, TRUE AS created FROM inserted
+            UNION ALL
+            SELECT %1$s, FALSE AS created FROM patient
+            WHERE email = :email AND NOT EXISTS (SELECT 1 FROM inserted)
+            """.formatted(COLUMNS);
+
+    // H2: MERGE só insere quando o email não existe; a contagem de linhas indica se criou
+    private static final String H2_INSERT_IF_ABSENT = """
+            MERGE INTO patient t
+            USING (SELECT CAST(:email AS VARCHAR(255)) AS email) s
+            ON t.email = s.email
+            WHEN NOT MATCHED THEN INSERT (%s)
+            VALUES (:id, :name, :email, :address, :dateOfBirth, :registeredDate, :version, :updatedAt)
+            """.formatted(COLUMNS);
+
+    static final String INSERT = """
+            INSERT INTO patient (%s)
+            VALUES (:id, :name, :email, :address, :dateOfBirth, :registeredDate, :version, :updatedAt)
+            """.formatted(COLUMNS);
+
+    private static final String SELECT_BY_EMAIL =
+            "SELECT " + COLUMNS + " FROM patient WHERE email = :email";
+
+    static final String RESPONSE_COLUMNS = "id, name, email, address, date_of_birth, registered_date, version";
+
+    static final String SELECT_FIRST_RESPONSE_PAGE = """
+            SELECT %s FROM patient
+            ORDER BY registered_date, id
+            LIMIT :limit
+            """.formatted(RESPONSE_COLUMNS);
+
+    static final String SELECT_RESPONSE_PAGE_AFTER = """
+            SELECT %s FROM patient
+            WHERE registered_date > :registeredDate
+               OR (registered_date = :registeredDate AND id > :id)
+            ORDER BY registered_date, id
+            LIMIT :limit
+            """.formatted(RESPONSE_COLUMNS);
+
+    private static final String SELECT_ALL_RESPONSES =
+            "SELECT " + RESPONSE_COLUMNS + " FROM patient ORDER BY registered_date, id";
+
+    static final int STREAM_FETCH_SIZE = 500;
+
+    private static final String SELECT_RESPONSES_BY_ID_IN =
+            "SELECT " + RESPONSE_COLUMNS + " FROM patient WHERE id IN (:ids)";
+
+    // Postgres: o lote inteiro em uma instrução, juntando a tabela com as alterações em VALUES
+    // (linhas montadas com POSTGRES_BULK_UPDATE_ROW); colunas nulas em v ficam como estão.
+    // O RETURNING segue a ordem de RESPONSE_COLUMNS
+    private static final String POSTGRES_BULK_UPDATE = """
+            UPDATE patient p
+            SET name = COALESCE(v.name, p.name),
+                email = COALESCE(v.email, p.email),
+                address = COALESCE(v.address, p.address),
+                date_of_birth = COALESCE(v.date_of_birth, p.date_of_birth),
+                version = p.version + 1,
+                updated_at = :updatedAt
+            FROM (VALUES %s) AS v (id, name, email, address, date_of_birth, version)
+            WHERE p.id = v.id AND p.version = v.version
+            RETURNING p.id, p.name, p.email, p.address, p.date_of_birth, p.registered_date, p.version
+            """;
+
+    private static final String POSTGRES_BULK_UPDATE_ROW = "(CAST(:id%1$d AS UUID), CAST(:name%1$d AS VARCHAR), "
+            + "CAST(:email%1$d AS VARCHAR), CAST(:address%1$d AS VARCHAR), CAST(:dateOfBirth%1$d AS DATE), "
+            + "CAST(:version%1$d AS BIGINT))";
+
+    // Demais bancos: a mesma alteração por paciente, enviada em batch JDBC
+    private static final String UPDATE_PATCH = """
+            UPDATE patient
+            SET name = COALESCE(:name, name),
+                email = COALESCE(:email, email),
+                address = COALESCE(:address, address),
+                date_of_birth = COALESCE(:dateOfBirth, date_of_birth),
+                version = version + 1,
+                updated_at = :updatedAt
+            WHERE id = :id AND version = :version
+            """;
+
+    private static final String SELECT_IDS_REGISTERED_BEFORE = """
+            SELECT id FROM patient
+            WHERE registered_date < :registeredBefore
+            ORDER BY registered_date, id
+            LIMIT :limit
+            """;
+
+    private static final String LOCK_IDS_BY_ID_IN = "SELECT id FROM patient WHERE id IN (:ids) FOR UPDATE";
+
+    private static final String DELETE_BY_ID_IN = "DELETE FROM patient WHERE id IN (:ids)";
+
+    static final String INSERT_TOMBSTONE =
+            "INSERT INTO patient_tombstone (id, deleted_at) VALUES (:id, :deletedAt)";
+
+    // Colunas por posição, na ordem de RESPONSE_COLUMNS
+    static final RowMapper<PatientResponseDTO> RESPONSE_ROW_MAPPER = (rs, rowNum) -> new PatientResponseDTO(
+            rs.getObject(1, UUID.class),
+            rs.getString(2),
+            rs.getString(3),
+            rs.getString(4),
+            rs.getObject(5, LocalDate.class),
+            rs.getObject(6, LocalDate.class),
+            rs.getLong(7));
+
+    static final RowMapper<Patient> PATIENT_ROW_MAPPER = (rs, rowNum) -> new Patient(
+            rs.getObject("id", UUID.class),
+            rs.getString("name"),
+            rs.getString("email"),
+            rs.getString("address"),
+            rs.getObject("date_of_birth", LocalDate.class),
+            rs.getObject("registered_date", LocalDate.class),
+            rs.getLong("version"),
+            rs.getObject("updated_at", OffsetDateTime.class).toInstant());
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    // Detectado na primeira chamada para não abrir conexão durante a criação do bean
+    private volatile SqlDialect dialect;
+
+    public PatientRepositoryImpl(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public PatientInsertResult insertIfAbsent(Patient patient) {
+        if (patient.getId() == null) {
+            patient.setId(UUID.randomUUID());
+        }
+        // Sem passar pelo Hibernate: versão inicial e carimbo de escrita como no persist
+        patient.setVersion(0L);
+        patient.setUpdatedAt(Instant.now().truncatedTo(ChronoUnit.MICROS));
+
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("id", patient.getId())
+                .addValue("name", patient.getName())
+                .addValue("email", patient.getEmail())
+                .addValue("address", patient.getAddress())
+                .addValue("dateOfBirth", patient.getDateOfBirth())
+                .addValue("registeredDate", patient.getRegisteredDate())
+                .addValue("version", patient.getVersion())
+                .addValue("updatedAt", OffsetDateTime.ofInstant(patient.getUpdatedAt(), ZoneOffset.UTC));
+
+        return switch (dialect()) {
+            case POSTGRESQL -> insertIfAbsentPostgres(params);
+            case H2 -> insertIfAbsentWithUpdateCount(H2_INSERT_IF_ABSENT, patient, params);
+            case OTHER -> insertIfAbsentWithUpdateCount(INSERT, patient, params);
+        };
+    }
+
+    @Override
+    public List<PatientResponseDTO> findFirstResponsePage(int limit) {
+        return jdbcTemplate.query(SELECT_FIRST_RESPONSE_PAGE, new MapSqlParameterSource("limit", limit),
+                RESPONSE_ROW_MAPPER);
+    }
+
+    @Override
+    public List<PatientResponseDTO> findResponsePageAfter(LocalDate registeredDate, UUID id, int limit) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("registeredDate", registeredDate)
+                .addValue("id", id)
+                .addValue("limit", limit);
+        return jdbcTemplate.query(SELECT_RESPONSE_PAGE_AFTER, params, RESPONSE_ROW_MAPPER);
+    }
+
+    @Override
+    public void streamAllResponses(Consumer<PatientResponseDTO> consumer) {
+        // Fetch size no próprio statement: o Postgres só usa cursor (em vez de trazer a tabela
+        // inteira) com fetch size definido e dentro de uma transação
+        jdbcTemplate.getJdbcTemplate().query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(SELECT_ALL_RESPONSES);
+            statement.setFetchSize(STREAM_FETCH_SIZE);
+            return statement;
+        }, (RowCallbackHandler) rs -> consumer.accept(RESPONSE_ROW_MAPPER.mapRow(rs, rs.getRow())));
+    }
+
+    @Override
+    public List<PatientResponseDTO> findResponsesByIdIn(Collection<UUID> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        return jdbcTemplate.query(SELECT_RESPONSES_BY_ID_IN, new MapSqlParameterSource("ids", ids),
+                RESPONSE_ROW_MAPPER);
+    }
+
+    @Override
+    public List<PatientResponseDTO> bulkUpdate(List<PatientPatch> patches) {
+        if (patches.isEmpty()) {
+            return List.of();
+        }
+        // Mesmo carimbo para o lote, na precisão da coluna
+        OffsetDateTime updatedAt = OffsetDateTime.ofInstant(
+                Instant.now().truncatedTo(ChronoUnit.MICROS), ZoneOffset.UTC);
+
+        if (dialect() == SqlDialect.POSTGRESQL) {
+            return bulkUpdatePostgres(patches, updatedAt);
+        }
+
+        SqlParameterSource[] batch = patches.stream()
+                .map(patch -> addPatch(new MapSqlParameterSource("updatedAt", updatedAt), patch, ""))
+                .toArray(SqlParameterSource[]::new);
+        int[] counts = jdbcTemplate.batchUpdate(UPDATE_PATCH, batch);
+
+        List<UUID> updated = new ArrayList<>(patches.size());
+        for (int i = 0; i < counts.length; i++) {
+            // Alguns drivers não informam a contagem de cada comando do batch
+            if (counts[i] > 0 || counts[i] == Statement.SUCCESS_NO_INFO) {
+                updated.add(patches.get(i).id());
+            }
+        }
+        return findResponsesByIdIn(updated);
+    }
+
+    @Override
+    public List<UUID> findIdsRegisteredBefore(LocalDate registeredBefore, int limit) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("registeredBefore", registeredBefore)
+                .addValue("limit", limit);
+        return jdbcTemplate.queryForList(SELECT_IDS_REGISTERED_BEFORE, params, UUID.class);
+    }
+
+    @Override
+    public List<UUID> deleteAllWithTombstones(Collection<UUID> ids, Instant deletedAt) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        MapSqlParameterSource params = new MapSqlParameterSource("ids", ids);
+        List<UUID> existing = jdbcTemplate.queryForList(LOCK_IDS_BY_ID_IN, params, UUID.class);
+        if (existing.isEmpty()) {
+            return existing;
+        }
+
+        jdbcTemplate.update(DELETE_BY_ID_IN, new MapSqlParameterSource("ids", existing));
+
+        OffsetDateTime deletedAtUtc = OffsetDateTime.ofInstant(deletedAt, ZoneOffset.UTC);
+        jdbcTemplate.batchUpdate(INSERT_TOMBSTONE, existing.stream()
+                .map(id -> new MapSqlParameterSource()
+                        .addValue("id", id)
+                        .addValue("deletedAt", deletedAtUtc))
+                .toArray(SqlParameterSource[]::new));
+        return existing;
+    }
+
+    private List<PatientResponseDTO> bulkUpdatePostgres(List<PatientPatch> patches, OffsetDateTime updatedAt) {
+        MapSqlParameterSource params = new MapSqlParameterSource("updatedAt", updatedAt);
+        StringBuilder values = new StringBuilder();
+        for (int i = 0; i < patches.size(); i++) {
+            if (i > 0) {
+                values.append(", ");
+            }
+            values.append(POSTGRES_BULK_UPDATE_ROW.formatted(i));
+            addPatch(params, patches.get(i), Integer.toString(i));
+        }
+        return jdbcTemplate.query(POSTGRES_BULK_UPDATE.formatted(values), params, RESPONSE_ROW_MAPPER);
+    }
+
+    // Tipos explícitos: os campos nulos ainda precisam de tipo no statement
+    private static MapSqlParameterSource addPatch(MapSqlParameterSource params, PatientPatch patch, String suffix) {
+        return params
+                .addValue("id" + suffix, patch.id())
+                .addValue("name" + suffix, patch.name(), Types.VARCHAR)
+                .addValue("email" + suffix, patch.email(), Types.VARCHAR)
+                .addValue("address" + suffix, patch.address(), Types.VARCHAR)
+                .addValue("dateOfBirth" + suffix, patch.dateOfBirth(), Types.DATE)
+                .addValue("version" + suffix, patch.version());
+    }
+
+    private PatientInsertResult insertIfAbsentPostgres(MapSqlParameterSource params) {
+        List<PatientInsertResult> rows = jdbcTemplate.query(POSTGRES_INSERT_IF_ABSENT, params,
+                (rs, rowNum) -> new PatientInsertResult(PATIENT_ROW_MAPPER.mapRow(rs, rowNum), rs.getBoolean("created")));
+
+        if (!rows.isEmpty()) {
+            return rows.get(0);
+        }
+        // O conflito veio de uma transação concorrente que confirmou depois do snapshot
+        // desta instrução; o registro só fica visível em uma nova leitura
+        return new PatientInsertResult(findExistingByEmail(params), false);
+    }
+
+    private PatientInsertResult insertIfAbsentWithUpdateCount(String sql, Patient patient, MapSqlParameterSource params) {
+        try {
+            if (jdbcTemplate.update(sql, params) == 1) {
+                return new PatientInsertResult(patient, true);
+            }
+        } catch (DuplicateKeyException e) {
+            // Outra transação inseriu o mesmo email entre a verificação e o insert
+        }
+        return new PatientInsertResult(findExistingByEmail(params), false);
+    }
+
+    private Patient findExistingByEmail(MapSqlParameterSource params) {
+        return jdbcTemplate.queryForObject(SELECT_BY_EMAIL, params, PATIENT_ROW_MAPPER);
+    }
+
+    private SqlDialect dialect() {
+        SqlDialect current = dialect;
+        if (current == null) {
+            current = SqlDialect.detect(jdbcTemplate.getJdbcTemplate().getDataSource());
+            dialect = current;
+        }
+        return current;
+    }
+
+}
@@ -0,0 +1,12 @@
+package com.ojuara.patientservice.repository;
+
+import javax.sql.DataSource;
+
+/**
+ * Um banco do armazenamento de pacientes em shards, com o schema de {@code db/shard}.
+ *
+ * @param id identificador estável do shard no {@link ShardRing}; trocar o id muda os donos das chaves
+ * @param dataSource conexões do shard
+ */
+public record PatientShard(String id, DataSource dataSource) {
+}
@@ -0,0 +1,114 @@
+package com.ojuara.patientservice.repository;
+
+import com.ojuara.patientservice.dto.PatientResponseDTO;
+import com.ojuara.patientservice.model.Patient;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Onde os serviços leem e gravam pacientes: o banco principal ({@link JpaPatientStore}) ou, com
+ * {@code patient.db.shard-urls}, os shards ({@link ShardedPatientRepository}). Há sempre exatamente
+ * uma implementação no contexto.
+ *
+ * <p>As operações seguem os contratos de {@link PatientRepository} e {@link PatientRepositoryCustom}.
+ * A diferença que os serviços precisam conhecer está em {@link #writesOutsideTransaction()}.</p>
+ */
+public interface PatientStore {
+
+    /**
+     * Se as gravações são confirmadas na hora, fora da transação do chamador (shards). Nesse caso
+     * repetir um bloco depois de uma falha grava de novo, e o que precisa sobreviver ao insert
+     * (a pendência de cobrança) tem de ser confirmado antes dele.
+     */
+    boolean writesOutsideTransaction();
+
+    /**
+     * Insere o paciente se o email ainda não for de outro; caso seja, retorna o existente.
+     *
+     * @param patient paciente a inserir; se o id for nulo, um novo UUID é gerado
+     * @return o paciente gravado ou o existente, e se ele foi criado agora
+     */
+    PatientInsertResult insertIfAbsent(Patient patient);
+
+    /**
+     * Insere pacientes cujos emails o chamador já conferiu com {@link #findIdsByEmailIn}, para a
+     * importação em lote.
+     *
+     * <p>Um email gravado por outra requisição depois da conferência ou sobe como
+     * {@link org.springframework.dao.DataIntegrityViolationException} (banco principal, e o bloco
+     * pode ser repetido) ou volta como paciente existente (shards). Um paciente cujo email está
+     * preso por uma troca de email inacabada fica fora do resultado.</p>
+     *
+     * @return um resultado por paciente gravado ou encontrado
+     */
+    List<PatientInsertResult> insertAllIfAbsent(List<Patient> patients);
+
+    Optional<Patient> findById(UUID id);
+
+    Optional<Patient> findByEmail(String email);
+
+    /**
+     * @return {@code true} se outro paciente, que não {@code id}, tem o email
+     */
+    boolean existsByEmailAndIdNot(String email, UUID id);
+
+    /**
+     * Grava nome, email, endereço e nascimento de um paciente lido por {@link #findById}, se ele
+     * ainda estiver na versão lida; em caso de sucesso ele sai com a versão nova.
+     *
+     * @return {@code false} se o paciente foi alterado ou removido depois da leitura
+     * @throws org.springframework.dao.DataIntegrityViolationException se o novo email já é de outro
+     * paciente ({@link org.springframework.dao.DuplicateKeyException} nos shards)
+     */
+    boolean update(Patient patient);
+
+    /**
+     * @return {@code false} se o paciente não existe
+     */
+    boolean deleteById(UUID id);
+
+    List<PatientResponseDTO> findFirstResponsePage(int limit);
+
+    List<PatientResponseDTO> findResponsePageAfter(LocalDate registeredDate, UUID id, int limit);
+
+    void streamAllResponses(Consumer<PatientResponseDTO> consumer);
+
+    List<PatientResponseDTO> findResponsesByIdIn(Collection<UUID> ids);
+
+    /**
+     * @return id do dono de cada email já cadastrado
+     */
+    Map<String, UUID> findIdsByEmailIn(Collection<String> emails);
+
+    List<PatientResponseDTO> bulkUpdate(List<PatientPatch> patches);
+
+    List<UUID> findIdsRegisteredBefore(LocalDate registeredBefore, int limit);
+
+    List<UUID> deleteAllWithTombstones(Collection<UUID> ids, Instant deletedAt);
+
+    /**
+     * Pacientes alterados depois da chave (updatedAt, id) e até {@code until}, para o feed de
+     * alterações (ver {@link PatientRepository#findChangedAfter}).
+     */
+    List<Patient> findChangedAfter(Instant updatedAt, UUID id, Instant until, int limit);
+
+    /**
+     * @return quantidade de emails para dimensionar o filtro de emails (com shards, pode contar
+     * sobras de trocas de email)
+     */
+    long countEmails();
+
+    /**
+     * Percorre os emails de todos os pacientes com um cursor JDBC. Deve ser chamado dentro de
+     * uma transação do banco principal.
+     */
+    void streamAllEmails(Consumer<String> consumer);
+
+}
@@ -0,0 +1,47 @@
+package com.ojuara.patientservice.repository;
+
+import com.ojuara.patientservice.model.PatientTombstone;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface PatientTombstoneRepository extends JpaRepository<PatientTombstone, UUID> {
+
+    /**
+     * Remoções posicionadas estritamente depois da chave (deletedAt, id) e até {@code until},
+     * na ordem do índice {@code idx_patient_tombstone_deleted_at_id}.
+     *
+     * @param deletedAt momento da última remoção já entregue
+     * @param id id da última remoção já entregue
+     * @param until limite superior (inclusivo) de deletedAt
+     * @param limit quantidade máxima de remoções retornadas
+     * @return remoções seguintes
+     */
+    @Query("""
+            select t from PatientTombstone t
+            where (t.deletedAt > :deletedAt or (t.deletedAt = :deletedAt and t.id > :id))
+              and t.deletedAt <= :until
+            order by t.deletedAt asc, t.id asc
+            """)
+    List<PatientTombstone> findDeletedAfter(Instant deletedAt, UUID id, Instant until, Limit limit);
+
+    /**
+     * Apaga as remoções anteriores ao prazo de retenção.
+     *
+     * @param cutoff remoções com deletedAt anterior a este instante são apagadas
+     * @return quantidade de remoções apagadas
+     */
+    @Transactional
+    @Modifying
+    @Query("delete from PatientTombstone t where t.deletedAt < :cutoff")
+    int deleteDeletedBefore(Instant cutoff);
+
+}
@@ -0,0 +1,86 @@
+package com.ojuara.patientservice.repository;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Anel de hash consistente que diz em qual shard fica cada paciente, pelo id.
+ *
+ * <p>Cada shard ocupa {@code virtualNodes} posições no anel (hash de {@code "<shard>#<n>"}) e o
+ * paciente vai para a primeira posição a partir do hash do seu id. Com posições suficientes a carga
+ * fica equilibrada, e ao entrar um shard novo só passam para ele as chaves que caem nas posições
+ * dele (cerca de 1/N do total); nenhuma chave troca entre os shards antigos.</p>
+ *
+ * <p>Imutável: {@link #withShard(String)} devolve um anel novo.</p>
+ */
+public final class ShardRing {
+
+    private final List<String> shardIds;
+    private final int virtualNodes;
+    private final NavigableMap<Long, String> ring = new TreeMap<>();
+
+    public ShardRing(List<String> shardIds, int virtualNodes) {
+        if (shardIds.isEmpty()) {
+            throw new IllegalArgumentException("A shard ring needs at least one shard");
+        }
+        this.shardIds = List.copyOf(shardIds);
+        this.virtualNodes = virtualNodes;
+        for (String shardId : this.shardIds) {
+            for (int node = 0; node < virtualNodes; node++) {
+                // Colisão de 64 bits: a posição fica com o primeiro shard, o que é determinístico
+                ring.putIfAbsent(hash(shardId + "#" + node), shardId);
+            }
+        }
+    }
+
+    /**
+     * @return id do shard dono do paciente
+     */
+    public String shardFor(UUID id) {
+        long hash = mix(id.getMostSignificantBits() ^ Long.rotateLeft(id.getLeastSignificantBits(), 32));
+        Map.Entry<Long, String> owner = ring.ceilingEntry(hash);
+        return (owner != null ? owner : ring.firstEntry()).getValue();
+    }
+
+    /**
+     * @return anel com os mesmos shards e mais {@code shardId}
+     */
+    public ShardRing withShard(String shardId) {
+        if (shardIds.contains(shardId)) {
+            throw new IllegalArgumentException("Shard " + shardId + " is already in the ring");
+        }
+        List<String> ids = new ArrayList<>(shardIds);
+        ids.add(shardId);
+        return new ShardRing(ids, virtualNodes);
+    }
+
+    public List<String> shardIds() {
+        return shardIds;
+    }
+
+    // FNV-1a de 64 bits, espalhado pelo mix: as posições não dependem do hashCode da JVM
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    // Finalizador de 64 bits do MurmurHash3
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+}
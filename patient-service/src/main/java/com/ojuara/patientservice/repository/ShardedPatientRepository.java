@@ -0,0 +1,835 @@
+package com.ojuara.patientservice.repository;
+
+import com.ojuara.patientservice.dto.PatientResponseDTO;
+import com.ojuara.patientservice.model.Patient;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+
+import javax.sql.DataSource;
+import java.sql.PreparedStatement;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import static com.ojuara.patientservice.repository.PatientRepositoryImpl.COLUMNS;
+import static com.ojuara.patientservice.repository.PatientRepositoryImpl.INSERT;
+import static com.ojuara.patientservice.repository.PatientRepositoryImpl.INSERT_TOMBSTONE;
+import static com.ojuara.patientservice.repository.PatientRepositoryImpl.PATIENT_ROW_MAPPER;
+import static com.ojuara.patientservice.repository.PatientRepositoryImpl.RESPONSE_ROW_MAPPER;
+import static com.ojuara.patientservice.repository.PatientRepositoryImpl.SELECT_FIRST_RESPONSE_PAGE;
+import static com.ojuara.patientservice.repository.PatientRepositoryImpl.SELECT_RESPONSE_PAGE_AFTER;
+import static com.ojuara.patientservice.repository.PatientRepositoryImpl.STREAM_FETCH_SIZE;
+
+/**
+ * Pacientes distribuídos em vários bancos ({@link PatientShard}), com o dono de cada id dado pelo
+ * {@link ShardRing}. É o {@link PatientStore} com {@code patient.db.shard-urls}.
+ *
+ * <ul>
+ *   <li>Por id: um único shard.</li>
+ *   <li>Por email: o diretório {@code patient_email_directory}, no banco principal, diz o id e daí
+ *       o shard. Ele também garante o email único entre os shards: o paciente só existe para quem
+ *       procura pelo email depois que a entrada do diretório foi gravada, e a entrada só é gravada
+ *       depois da linha no shard.</li>
+ *   <li>Páginas: a mesma consulta por cursor em todos os shards, em paralelo (virtual threads), e
+ *       intercalação k-way das páginas por {@code (registered_date, id)}.</li>
+ * </ul>
+ *
+ * <p>Cada comando roda sozinho no seu banco (sem transação distribuída), então o diretório pode
+ * ficar diferente dos shards:</p>
+ * <ul>
+ *   <li>Inclusão e remoção gravam numa ordem em que uma falha no meio deixa no máximo o paciente
+ *       sem entrada (não é achado pelo email).</li>
+ *   <li>A troca de email grava a entrada nova antes do shard e apaga a antiga depois. Até o fim da
+ *       troca, ou para sempre se ela falhar no meio (o UPDATE que falha desfaz a entrada nova, mas
+ *       isso também pode falhar), há uma entrada do paciente com um email que a linha dele não
+ *       tem. A busca por email confere o email na linha e ignora essas entradas; enquanto existem,
+ *       elas ainda ocupam o email. A próxima atualização ou remoção do paciente as apaga.</li>
+ * </ul>
+ *
+ * <p>{@link #addShard(PatientShard)} inclui um shard sem parar o serviço. Enquanto os pacientes
+ * que passaram a ser dele são movidos (cópia, depois remoção da origem), as leituras por id olham
+ * também o dono anterior e as escritas movem o paciente antes de gravar, sob um lock por id que
+ * o rebalanceamento também usa. O lock é local: com várias instâncias, o shard deve ser incluído
+ * com as escritas concentradas na instância que rebalanceia.</p>
+ */
+@Slf4j
+public class ShardedPatientRepository implements PatientStore, AutoCloseable {
+
+    /**
+     * Ordem das páginas: a do {@code ORDER BY registered_date, id} dos bancos, que comparam UUIDs
+     * byte a byte (sem sinal), ao contrário de {@link UUID#compareTo(UUID)}.
+     */
+    static final Comparator<PatientResponseDTO> PAGE_ORDER = Comparator
+            .comparing(PatientResponseDTO::registeredDate)
+            .thenComparing(PatientResponseDTO::id, ShardedPatientRepository::compareUnsigned);
+
+    // Ordem do feed de alterações: ORDER BY updated_at, id, com a mesma comparação de UUIDs
+    static final Comparator<Patient> CHANGE_ORDER = Comparator
+            .comparing(Patient::getUpdatedAt)
+            .thenComparing(Patient::getId, ShardedPatientRepository::compareUnsigned);
+
+    private static final String SELECT_BY_ID = "SELECT " + COLUMNS + " FROM patient WHERE id = :id";
+
+    private static final String UPDATE = """
+            UPDATE patient
+            SET name = :name, email = :email, address = :address, date_of_birth = :dateOfBirth,
+                version = version + 1, updated_at = :updatedAt
+            WHERE id = :id AND version = :version
+            """;
+
+    private static final String DELETE_BY_ID = "DELETE FROM patient WHERE id = :id";
+
+    private static final String SELECT_FIRST_ROWS = """
+            SELECT %s FROM patient
+            ORDER BY registered_date, id
+            LIMIT :limit
+            """.formatted(COLUMNS);
+
+    private static final String SELECT_ROWS_AFTER = """
+            SELECT %s FROM patient
+            WHERE registered_date > :registeredDate
+               OR (registered_date = :registeredDate AND id > :id)
+            ORDER BY registered_date, id
+            LIMIT :limit
+            """.formatted(COLUMNS);
+
+    private static final String INSERT_EMAIL =
+            "INSERT INTO patient_email_directory (email, patient_id) VALUES (:email, :id)";
+
+    private static final String SELECT_EMAIL_OWNER =
+            "SELECT patient_id FROM patient_email_directory WHERE email = :email";
+
+    private static final String SELECT_EMAIL_OWNERS =
+            "SELECT email, patient_id FROM patient_email_directory WHERE email IN (:emails)";
+
+    private static final String DELETE_EMAIL =
+            "DELETE FROM patient_email_directory WHERE email = :email AND patient_id = :id";
+
+    // Entradas do paciente com outro email: sobras de trocas de email que falharam no meio
+    private static final String DELETE_OTHER_EMAILS =
+            "DELETE FROM patient_email_directory WHERE patient_id = :id AND email <> :email";
+
+    private static final String DELETE_EMAILS_OF =
+            "DELETE FROM patient_email_directory WHERE patient_id = :id";
+
+    private static final String COUNT_EMAILS = "SELECT COUNT(*) FROM patient_email_directory";
+
+    private static final String SELECT_ALL_EMAILS = "SELECT email FROM patient_email_directory";
+
+    private static final String SELECT_CHANGED_AFTER = """
+            SELECT %s FROM patient
+            WHERE (updated_at > :updatedAt OR (updated_at = :updatedAt AND id > :id))
+              AND updated_at <= :until
+            ORDER BY updated_at, id
+            LIMIT :limit
+            """.formatted(COLUMNS);
+
+    private static final String SELECT_IDS_REGISTERED_BEFORE = """
+            SELECT id FROM patient
+            WHERE registered_date < :registeredBefore
+            ORDER BY registered_date, id
+            LIMIT :limit
+            """;
+
+    private static final int ROW_LOCK_STRIPES = 256;
+    private static final int REBALANCE_CHUNK_SIZE = 500;
+    private static final Duration REBALANCE_MAX_BACKOFF = Duration.ofSeconds(30);
+
+    private final NamedParameterJdbcTemplate directory;
+    private final Map<String, NamedParameterJdbcTemplate> shards = new ConcurrentHashMap<>();
+    private final ExecutorService shardReaders = Executors.newVirtualThreadPerTaskExecutor();
+    // Escritas seguram a leitura enquanto gravam; a troca do anel espera por elas
+    private final ReentrantReadWriteLock ringLock = new ReentrantReadWriteLock();
+    private final ReentrantLock[] rowLocks = new ReentrantLock[ROW_LOCK_STRIPES];
+    private final AtomicLong movedRows = new AtomicLong();
+
+    private volatile ShardRing ring;
+    // Anel de antes do shard novo enquanto os pacientes são movidos; null fora do rebalanceamento
+    private volatile ShardRing previousRing;
+    private volatile Thread rebalancer;
+
+    /**
+     * @param directory banco com a tabela {@code patient_email_directory}
+     * @param shards shards já migrados, na ordem do anel
+     * @param virtualNodes posições de cada shard no anel
+     */
+    public ShardedPatientRepository(DataSource directory, List<PatientShard> shards, int virtualNodes) {
+        this.directory = new NamedParameterJdbcTemplate(directory);
+        for (PatientShard shard : shards) {
+            this.shards.put(shard.id(), new NamedParameterJdbcTemplate(shard.dataSource()));
+        }
+        for (int i = 0; i < rowLocks.length; i++) {
+            rowLocks[i] = new ReentrantLock();
+        }
+        this.ring = new ShardRing(shards.stream().map(PatientShard::id).toList(), virtualNodes);
+    }
+
+    // Cada comando é confirmado no seu banco na hora (ver a nota da classe)
+    @Override
+    public boolean writesOutsideTransaction() {
+        return true;
+    }
+
+    /**
+     * Insere o paciente no shard do seu id, a menos que o email já seja de outro paciente.
+     * Preenche id (se ausente), versão e carimbo de escrita.
+     */
+    @Override
+    public PatientInsertResult insertIfAbsent(Patient patient) {
+        if (patient.getId() == null) {
+            patient.setId(UUID.randomUUID());
+        }
+        patient.setVersion(0L);
+        patient.setUpdatedAt(Instant.now().truncatedTo(ChronoUnit.MICROS));
+
+        ringLock.readLock().lock();
+        try {
+            NamedParameterJdbcTemplate shard = shard(ring.shardFor(patient.getId()));
+            shard.update(INSERT, insertParams(patient));
+            try {
+                directory.update(INSERT_EMAIL, emailParams(patient.getEmail(), patient.getId()));
+            } catch (DuplicateKeyException e) {
+                shard.update(DELETE_BY_ID, new MapSqlParameterSource("id", patient.getId()));
+                // Se o dono do email foi removido nesse meio tempo, o conflito sobe como está
+                Patient existing = findByEmail(patient.getEmail()).orElseThrow(() -> e);
+                return new PatientInsertResult(existing, false);
+            }
+            return new PatientInsertResult(patient, true);
+        } finally {
+            ringLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Um {@link #insertIfAbsent} por paciente. Um email preso por uma troca de email inacabada (o
+     * diretório tem a entrada, mas a linha do dono não tem o email) deixa o paciente fora do resultado.
+     */
+    @Override
+    public List<PatientInsertResult> insertAllIfAbsent(List<Patient> patients) {
+        List<PatientInsertResult> results = new ArrayList<>(patients.size());
+        for (Patient patient : patients) {
+            try {
+                results.add(insertIfAbsent(patient));
+            } catch (DuplicateKeyException e) {
+                log.debug("Email {} is held by an unfinished email change; skipping.", patient.getEmail());
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public Optional<Patient> findById(UUID id) {
+        ShardRing current = ring;
+        ShardRing previous = previousRing;
+        if (previous != null) {
+            // Primeiro o dono anterior: o rebalanceamento copia antes de remover, então quem não
+            // está mais lá já está no dono novo
+            String previousOwner = previous.shardFor(id);
+            Optional<Patient> found = find(previousOwner, id);
+            if (found.isPresent() || previousOwner.equals(current.shardFor(id))) {
+                return found;
+            }
+        }
+        return find(current.shardFor(id), id);
+    }
+
+    /**
+     * Paciente dono do email. A entrada do diretório só vale se a linha do paciente ainda tiver o
+     * email (ver a nota da classe sobre trocas de email).
+     */
+    @Override
+    public Optional<Patient> findByEmail(String email) {
+        return emailOwner(email).flatMap(this::findById).filter(patient -> email.equals(patient.getEmail()));
+    }
+
+    public boolean existsByEmail(String email) {
+        return findByEmail(email).isPresent();
+    }
+
+    @Override
+    public boolean existsByEmailAndIdNot(String email, UUID id) {
+        return findByEmail(email).filter(patient -> !patient.getId().equals(id)).isPresent();
+    }
+
+    /**
+     * Grava nome, email, endereço e nascimento se o paciente ainda estiver na versão
+     * {@code patient.getVersion()}; em caso de sucesso ele sai com a versão e o carimbo novos.
+     *
+     * @return {@code false} se o paciente não existe ou está em outra versão
+     * @throws DuplicateKeyException se o novo email já é de outro paciente
+     */
+    @Override
+    public boolean update(Patient patient) {
+        return write(patient.getId(), owner -> {
+            Optional<Patient> current = find(owner, patient.getId());
+            if (current.isEmpty() || !current.get().getVersion().equals(patient.getVersion())) {
+                return false;
+            }
+            boolean emailChanged = !current.get().getEmail().equals(patient.getEmail());
+            if (emailChanged) {
+                claimEmail(patient.getEmail(), patient.getId());
+            }
+
+            Instant updatedAt = Instant.now().truncatedTo(ChronoUnit.MICROS);
+            MapSqlParameterSource params = new MapSqlParameterSource()
+                    .addValue("id", patient.getId())
+                    .addValue("name", patient.getName())
+                    .addValue("email", patient.getEmail())
+                    .addValue("address", patient.getAddress())
+                    .addValue("dateOfBirth", patient.getDateOfBirth())
+                    .addValue("version", patient.getVersion())
+                    .addValue("updatedAt", OffsetDateTime.ofInstant(updatedAt, ZoneOffset.UTC));
+            int updated;
+            try {
+                updated = shard(owner).update(UPDATE, params);
+            } catch (RuntimeException e) {
+                if (emailChanged) {
+                    releaseEmail(patient.getEmail(), patient.getId(), e);
+                }
+                throw e;
+            }
+            if (updated == 0) {
+                if (emailChanged) {
+                    directory.update(DELETE_EMAIL, emailParams(patient.getEmail(), patient.getId()));
+                }
+                return false;
+            }
+            // O email antigo e as sobras de trocas anteriores que falharam no meio
+            directory.update(DELETE_OTHER_EMAILS, emailParams(patient.getEmail(), patient.getId()));
+            patient.setVersion(patient.getVersion() + 1);
+            patient.setUpdatedAt(updatedAt);
+            return true;
+        });
+    }
+
+    /**
+     * @return {@code false} se o paciente não existe
+     */
+    @Override
+    public boolean deleteById(UUID id) {
+        return write(id, owner -> {
+            Optional<Patient> current = find(owner, id);
+            if (current.isEmpty()) {
+                return false;
+            }
+            directory.update(DELETE_EMAILS_OF, new MapSqlParameterSource("id", id));
+            return shard(owner).update(DELETE_BY_ID, new MapSqlParameterSource("id", id)) > 0;
+        });
+    }
+
+    @Override
+    public List<PatientResponseDTO> findFirstResponsePage(int limit) {
+        MapSqlParameterSource params = new MapSqlParameterSource("limit", limit);
+        return merge(fanOut(shard -> shard.query(SELECT_FIRST_RESPONSE_PAGE, params, RESPONSE_ROW_MAPPER)),
+                PAGE_ORDER, PatientResponseDTO::id, limit);
+    }
+
+    @Override
+    public List<PatientResponseDTO> findResponsePageAfter(LocalDate registeredDate, UUID id, int limit) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("registeredDate", registeredDate)
+                .addValue("id", id)
+                .addValue("limit", limit);
+        return merge(fanOut(shard -> shard.query(SELECT_RESPONSE_PAGE_AFTER, params, RESPONSE_ROW_MAPPER)),
+                PAGE_ORDER, PatientResponseDTO::id, limit);
+    }
+
+    /**
+     * Percorre todos os pacientes na ordem da paginação, em páginas intercaladas dos shards
+     * (é o que alimenta a reconstrução do índice de busca).
+     */
+    @Override
+    public void streamAllResponses(Consumer<PatientResponseDTO> consumer) {
+        List<PatientResponseDTO> page = findFirstResponsePage(STREAM_FETCH_SIZE);
+        while (!page.isEmpty()) {
+            page.forEach(consumer);
+            if (page.size() < STREAM_FETCH_SIZE) {
+                return;
+            }
+            PatientResponseDTO last = page.getLast();
+            page = findResponsePageAfter(last.registeredDate(), last.id(), STREAM_FETCH_SIZE);
+        }
+    }
+
+    /**
+     * Equivalente a {@link PatientRepository#findChangedAfter} para o feed de alterações: a mesma
+     * consulta em cada shard (índice {@code idx_patient_updated_at_id}) e intercalação por
+     * {@code (updated_at, id)}.
+     */
+    @Override
+    public List<Patient> findChangedAfter(Instant updatedAt, UUID id, Instant until, int limit) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("updatedAt", OffsetDateTime.ofInstant(updatedAt, ZoneOffset.UTC))
+                .addValue("id", id)
+                .addValue("until", OffsetDateTime.ofInstant(until, ZoneOffset.UTC))
+                .addValue("limit", limit);
+        return merge(fanOut(shard -> shard.query(SELECT_CHANGED_AFTER, params, PATIENT_ROW_MAPPER)),
+                CHANGE_ORDER, Patient::getId, limit);
+    }
+
+    /**
+     * Até {@code limit} ids de pacientes registrados antes da data, de qualquer shard (para o
+     * expurgo por retenção, que repete a busca até ela voltar vazia).
+     */
+    @Override
+    public List<UUID> findIdsRegisteredBefore(LocalDate registeredBefore, int limit) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("registeredBefore", registeredBefore)
+                .addValue("limit", limit);
+        return fanOut(shard -> shard.queryForList(SELECT_IDS_REGISTERED_BEFORE, params, UUID.class)).stream()
+                .flatMap(List::stream)
+                .distinct()
+                .limit(limit)
+                .toList();
+    }
+
+    // Um shard por paciente, como findById
+    @Override
+    public List<PatientResponseDTO> findResponsesByIdIn(Collection<UUID> ids) {
+        return ids.stream()
+                .map(this::findById)
+                .flatMap(Optional::stream)
+                .map(ShardedPatientRepository::toResponse)
+                .toList();
+    }
+
+    /**
+     * Donos dos emails pelo diretório, em uma consulta; entradas que sobraram de trocas de email
+     * que falharam são descartadas conferindo a linha do paciente.
+     */
+    @Override
+    public Map<String, UUID> findIdsByEmailIn(Collection<String> emails) {
+        if (emails.isEmpty()) {
+            return Map.of();
+        }
+        Map<String, UUID> owners = new HashMap<>();
+        directory.query(SELECT_EMAIL_OWNERS, new MapSqlParameterSource("emails", emails),
+                (RowCallbackHandler) rs -> owners.put(rs.getString(1), rs.getObject(2, UUID.class)));
+        owners.entrySet().removeIf(owner -> findById(owner.getValue())
+                .filter(patient -> owner.getKey().equals(patient.getEmail()))
+                .isEmpty());
+        return owners;
+    }
+
+    /**
+     * Sem SQL de conjunto entre bancos: cada alteração é um {@link #update} no shard do paciente,
+     * confirmado na hora. Uma alteração cujo email novo já é de outro paciente fica fora do
+     * resultado, como uma de versão diferente.
+     */
+    @Override
+    public List<PatientResponseDTO> bulkUpdate(List<PatientPatch> patches) {
+        List<PatientResponseDTO> updated = new ArrayList<>(patches.size());
+        for (PatientPatch patch : patches) {
+            Optional<Patient> found = findById(patch.id());
+            if (found.isEmpty() || found.get().getVersion() != patch.version()) {
+                continue;
+            }
+            Patient patient = found.get();
+            if (patch.name() != null) {
+                patient.setName(patch.name());
+            }
+            if (patch.email() != null) {
+                patient.setEmail(patch.email());
+            }
+            if (patch.address() != null) {
+                patient.setAddress(patch.address());
+            }
+            if (patch.dateOfBirth() != null) {
+                patient.setDateOfBirth(patch.dateOfBirth());
+            }
+            try {
+                if (update(patient)) {
+                    updated.add(toResponse(patient));
+                }
+            } catch (DuplicateKeyException e) {
+                log.debug("Email {} was taken before patient {} was updated.", patch.email(), patch.id());
+            }
+        }
+        return updated;
+    }
+
+    /**
+     * Remove cada paciente no seu shard e grava as remoções para o feed no banco principal, na
+     * transação do chamador. Só quem foi removido aqui ganha a remoção.
+     */
+    @Override
+    public List<UUID> deleteAllWithTombstones(Collection<UUID> ids, Instant deletedAt) {
+        List<UUID> deleted = ids.stream().filter(this::deleteById).toList();
+        OffsetDateTime deletedAtUtc = OffsetDateTime.ofInstant(deletedAt, ZoneOffset.UTC);
+        directory.batchUpdate(INSERT_TOMBSTONE, deleted.stream()
+                .map(id -> new MapSqlParameterSource()
+                        .addValue("id", id)
+                        .addValue("deletedAt", deletedAtUtc))
+                .toArray(SqlParameterSource[]::new));
+        return deleted;
+    }
+
+    /**
+     * @return entradas do diretório de emails (pode contar sobras de trocas de email)
+     */
+    @Override
+    public long countEmails() {
+        Long count = directory.getJdbcTemplate().queryForObject(COUNT_EMAILS, Long.class);
+        return count != null ? count : 0;
+    }
+
+    /**
+     * Percorre os emails do diretório com um cursor JDBC, para montar o filtro de emails.
+     * Deve ser chamado dentro de uma transação do banco principal.
+     */
+    @Override
+    public void streamAllEmails(Consumer<String> consumer) {
+        directory.getJdbcTemplate().query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(SELECT_ALL_EMAILS);
+            statement.setFetchSize(STREAM_FETCH_SIZE);
+            return statement;
+        }, (RowCallbackHandler) rs -> consumer.accept(rs.getString(1)));
+    }
+
+    /**
+     * Inclui um shard já migrado e começa, em uma virtual thread, a mover para ele os pacientes
+     * que passaram a ser dele. Leituras e escritas continuam durante a movimentação.
+     *
+     * @throws IllegalStateException se outro rebalanceamento ainda estiver em andamento
+     */
+    public synchronized void addShard(PatientShard shard) {
+        if (isRebalancing()) {
+            throw new IllegalStateException("A shard rebalance is already in progress");
+        }
+        ShardRing previous;
+        ShardRing current;
+        ringLock.writeLock().lock();
+        try {
+            previous = ring;
+            current = previous.withShard(shard.id());
+            shards.put(shard.id(), new NamedParameterJdbcTemplate(shard.dataSource()));
+            previousRing = previous;
+            ring = current;
+        } finally {
+            ringLock.writeLock().unlock();
+        }
+        log.info("Added patient shard {}; moving its patients from {}.", shard.id(), previous.shardIds());
+        rebalancer = Thread.ofVirtual()
+                .name("patient-shard-rebalance")
+                .start(() -> rebalance(previous, current));
+    }
+
+    public boolean isRebalancing() {
+        return previousRing != null;
+    }
+
+    /**
+     * @return pacientes movidos entre shards desde a criação do repositório
+     */
+    public long getMovedRows() {
+        return movedRows.get();
+    }
+
+    public List<String> getShardIds() {
+        return ring.shardIds();
+    }
+
+    /**
+     * Espera o rebalanceamento em andamento, se houver.
+     *
+     * @return {@code false} se ele não terminou dentro do prazo
+     */
+    public boolean awaitRebalance(Duration timeout) throws InterruptedException {
+        Thread thread = rebalancer;
+        return thread == null || thread.join(timeout);
+    }
+
+    @Override
+    public void close() {
+        Thread thread = rebalancer;
+        if (thread != null) {
+            thread.interrupt();
+        }
+        shardReaders.shutdownNow();
+    }
+
+    private void rebalance(ShardRing previous, ShardRing current) {
+        long movedBefore = movedRows.get();
+        for (String shardId : previous.shardIds()) {
+            Duration backoff = Duration.ofMillis(100);
+            while (true) {
+                try {
+                    moveMisplaced(shardId, current);
+                    break;
+                } catch (RuntimeException e) {
+                    // Recomeça o shard do início: quem já foi movido não aparece mais na varredura
+                    log.warn("Shard rebalance failed on {}; retrying in {}.", shardId, backoff, e);
+                    try {
+                        Thread.sleep(backoff);
+                    } catch (InterruptedException interrupted) {
+                        log.warn("Shard rebalance interrupted; reads keep checking the previous owners.");
+                        return;
+                    }
+                    backoff = backoff.multipliedBy(2);
+                    if (backoff.compareTo(REBALANCE_MAX_BACKOFF) > 0) {
+                        backoff = REBALANCE_MAX_BACKOFF;
+                    }
+                }
+            }
+        }
+
+        ringLock.writeLock().lock();
+        try {
+            previousRing = null;
+        } finally {
+            ringLock.writeLock().unlock();
+        }
+        log.info("Shard rebalance finished: {} patient(s) moved.", movedRows.get() - movedBefore);
+    }
+
+    // Varre o shard por cursor e move quem tem outro dono no anel novo
+    private void moveMisplaced(String shardId, ShardRing current) {
+        NamedParameterJdbcTemplate source = shard(shardId);
+        List<Patient> chunk = source.query(SELECT_FIRST_ROWS,
+                new MapSqlParameterSource("limit", REBALANCE_CHUNK_SIZE), PATIENT_ROW_MAPPER);
+        while (!chunk.isEmpty()) {
+            for (Patient patient : chunk) {
+                String owner = current.shardFor(patient.getId());
+                if (!owner.equals(shardId)) {
+                    ReentrantLock lock = rowLock(patient.getId());
+                    lock.lock();
+                    try {
+                        move(patient.getId(), shardId, owner);
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+            }
+            if (chunk.size() < REBALANCE_CHUNK_SIZE || Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            Patient last = chunk.getLast();
+            chunk = source.query(SELECT_ROWS_AFTER, new MapSqlParameterSource()
+                    .addValue("registeredDate", last.getRegisteredDate())
+                    .addValue("id", last.getId())
+                    .addValue("limit", REBALANCE_CHUNK_SIZE), PATIENT_ROW_MAPPER);
+        }
+    }
+
+    // Com o lock do id: relê na origem, copia e só então remove, para o paciente nunca sumir dos dois
+    private void move(UUID id, String from, String to) {
+        Optional<Patient> patient = find(from, id);
+        if (patient.isEmpty()) {
+            return;
+        }
+        try {
+            shard(to).update(INSERT, insertParams(patient.get()));
+        } catch (DuplicateKeyException e) {
+            // Cópia de uma tentativa interrompida entre a cópia e a remoção: é igual à da origem
+        }
+        shard(from).update(DELETE_BY_ID, new MapSqlParameterSource("id", id));
+        movedRows.incrementAndGet();
+    }
+
+    // Fora do rebalanceamento basta o dono atual; durante, o paciente vai para o dono novo antes
+    private <T> T write(UUID id, Function<String, T> action) {
+        ringLock.readLock().lock();
+        try {
+            ShardRing previous = previousRing;
+            String owner = ring.shardFor(id);
+            if (previous == null) {
+                return action.apply(owner);
+            }
+            ReentrantLock lock = rowLock(id);
+            lock.lock();
+            try {
+                String previousOwner = previous.shardFor(id);
+                if (!previousOwner.equals(owner)) {
+                    move(id, previousOwner, owner);
+                }
+                return action.apply(owner);
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            ringLock.readLock().unlock();
+        }
+    }
+
+    // A mesma consulta em todos os shards, em paralelo; uma página por shard
+    private <T> List<List<T>> fanOut(Function<NamedParameterJdbcTemplate, List<T>> query) {
+        List<Future<List<T>>> futures = new ArrayList<>(shards.size());
+        for (NamedParameterJdbcTemplate shard : shards.values()) {
+            futures.add(shardReaders.submit(() -> query.apply(shard)));
+        }
+        List<List<T>> pages = new ArrayList<>(futures.size());
+        try {
+            for (Future<List<T>> future : futures) {
+                pages.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new DataAccessResourceFailureException("Interrupted while reading the patient shards", e);
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new DataAccessResourceFailureException("Could not read the patient shards", e.getCause());
+        }
+        return pages;
+    }
+
+    /**
+     * Intercala páginas já ordenadas por {@code order} e devolve as {@code limit} primeiras
+     * linhas. Um mesmo id vindo de dois shards (no meio de uma movimentação) tem a mesma chave, sai
+     * em seguida do outro e aparece uma vez só.
+     */
+    static <T> List<T> merge(List<List<T>> pages, Comparator<T> order, Function<T, UUID> id, int limit) {
+        PriorityQueue<PageCursor<T>> heap = new PriorityQueue<>(Math.max(pages.size(), 1),
+                Comparator.comparing(PageCursor::head, order));
+        for (List<T> page : pages) {
+            if (!page.isEmpty()) {
+                heap.add(new PageCursor<>(page.iterator()));
+            }
+        }
+
+        List<T> merged = new ArrayList<>(limit);
+        T last = null;
+        while (merged.size() < limit && !heap.isEmpty()) {
+            PageCursor<T> cursor = heap.poll();
+            T head = cursor.head();
+            if (last == null || !id.apply(last).equals(id.apply(head))) {
+                merged.add(head);
+                last = head;
+            }
+            if (cursor.advance()) {
+                heap.add(cursor);
+            }
+        }
+        return merged;
+    }
+
+    private Optional<Patient> find(String shardId, UUID id) {
+        return shard(shardId).query(SELECT_BY_ID, new MapSqlParameterSource("id", id), PATIENT_ROW_MAPPER)
+                .stream()
+                .findFirst();
+    }
+
+    // Uma entrada do próprio paciente (sobra de uma troca de email que falhou) já serve
+    private void claimEmail(String email, UUID id) {
+        try {
+            directory.update(INSERT_EMAIL, emailParams(email, id));
+        } catch (DuplicateKeyException e) {
+            if (emailOwner(email).filter(id::equals).isEmpty()) {
+                throw e;
+            }
+        }
+    }
+
+    // Desfaz a entrada do email novo de um UPDATE que falhou; se isso também falhar, ela fica
+    // para a próxima escrita do paciente
+    private void releaseEmail(String email, UUID id, RuntimeException failure) {
+        try {
+            directory.update(DELETE_EMAIL, emailParams(email, id));
+        } catch (RuntimeException e) {
+            failure.addSuppressed(e);
+        }
+    }
+
+    private Optional<UUID> emailOwner(String email) {
+        return directory.queryForList(SELECT_EMAIL_OWNER, new MapSqlParameterSource("email", email), UUID.class)
+                .stream()
+                .findFirst();
+    }
+
+    private NamedParameterJdbcTemplate shard(String shardId) {
+        NamedParameterJdbcTemplate shard = shards.get(shardId);
+        if (shard == null) {
+            throw new IllegalStateException("Unknown patient shard " + shardId);
+        }
+        return shard;
+    }
+
+    private ReentrantLock rowLock(UUID id) {
+        return rowLocks[Math.floorMod(id.hashCode(), rowLocks.length)];
+    }
+
+    private static MapSqlParameterSource insertParams(Patient patient) {
+        return new MapSqlParameterSource()
+                .addValue("id", patient.getId())
+                .addValue("name", patient.getName())
+                .addValue("email", patient.getEmail())
+                .addValue("address", patient.getAddress())
+                .addValue("dateOfBirth", patient.getDateOfBirth())
+                .addValue("registeredDate", patient.getRegisteredDate())
+                .addValue("version", patient.getVersion())
+                .addValue("updatedAt", OffsetDateTime.ofInstant(patient.getUpdatedAt(), ZoneOffset.UTC));
+    }
+
+    private static PatientResponseDTO toResponse(Patient patient) {
+        return new PatientResponseDTO(patient.getId(), patient.getName(), patient.getEmail(), patient.getAddress(),
+                patient.getDateOfBirth(), patient.getRegisteredDate(), patient.getVersion());
+    }
+
+    private static MapSqlParameterSource emailParams(String email, UUID id) {
+        return new MapSqlParameterSource()
+                .addValue("email", email)
+                .addValue("id", id);
+    }
+
+    private static int compareUnsigned(UUID a, UUID b) {
+        int high = Long.compareUnsigned(a.getMostSignificantBits(), b.getMostSignificantBits());
+        return high != 0 ? high : Long.compareUnsigned(a.getLeastSignificantBits(), b.getLeastSignificantBits());
+    }
+
+    // Posição de leitura em uma página de um shard
+    private static final class PageCursor<T> {
+
+        private final Iterator<T> rest;
+        private T head;
+
+        private PageCursor(Iterator<T> page) {
+            this.rest = page;
+            this.head = page.next();
+        }
+
+        T head() {
+            return head;
+        }
+
+        boolean advance() {
+            if (!rest.hasNext()) {
+                return false;
+            }
+            head = rest.next();
+            return true;
+        }
+
+    }
+
+}
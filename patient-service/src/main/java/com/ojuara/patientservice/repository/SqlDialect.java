@@ -0,0 +1,38 @@
+package com.ojuara.patientservice.repository;
+
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+
+import javax.sql.DataSource;
+import java.sql.DatabaseMetaData;
+
+/**
+ * Bancos para os quais existem consultas nativas específicas nos repositórios.
+ * Qualquer outro banco cai no caminho genérico ({@link #OTHER}).
+ */
+public enum SqlDialect {
+
+    POSTGRESQL,
+    H2,
+    OTHER;
+
+    /**
+     * Descobre o dialeto a partir dos metadados da conexão.
+     *
+     * @param dataSource datasource da aplicação
+     * @return dialeto correspondente ao banco conectado
+     */
+    public static SqlDialect detect(DataSource dataSource) {
+        try {
+            String product = JdbcUtils.extractDatabaseMetaData(dataSource, DatabaseMetaData::getDatabaseProductName);
+            return switch (product) {
+                case "PostgreSQL" -> POSTGRESQL;
+                case "H2" -> H2;
+                default -> OTHER;
+            };
+        } catch (MetaDataAccessException e) {
+            throw new IllegalStateException("Could not detect database product", e);
+        }
+    }
+
+}
@@ -0,0 +1,310 @@
+package com.ojuara.patientservice.service;
+
+import billing.BillingAccountResult;
+import billing.BillingBatchResponse;
+import billing.BillingRequest;
+import com.ojuara.patientservice.grpc.BillingServiceGrpcClient;
+import com.ojuara.patientservice.model.BillingOutboxEvent;
+import com.ojuara.patientservice.repository.BillingOutboxRepository;
+import io.grpc.StatusRuntimeException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Envia ao billing-service as pendências do outbox ({@link BillingOutboxEvent}), em lotes.
+ *
+ * <p>Cada lote passa por duas transações curtas, e a chamada ao billing fica fora das duas:</p>
+ * <ol>
+ *     <li>reserva: as pendências prontas são lidas com {@code SKIP LOCKED} e recebem uma reserva
+ *     ({@code nextAttemptAt} adiado por {@code billing.outbox.lease}), que as tira da fila das
+ *     outras instâncias sem segurar locks nem conexão durante a chamada;</li>
+ *     <li>uma única chamada {@code BatchCreateBillingAccounts}, sem transação aberta;</li>
+ *     <li>confirmação: as pendências aceitas são removidas e as demais voltam para a fila com
+ *     backoff exponencial com jitter.</li>
+ * </ol>
+ *
+ * <p>Uma pendência que o billing recusa ({@code REJECTED}, dados que ele nunca vai aceitar) ou
+ * que falha {@code billing.outbox.max-attempts} vezes não volta para a fila: fica no outbox com
+ * {@code failedAt} e o último erro, aparece em {@code failed} nas estatísticas e só é enviada de
+ * novo por {@link #requeueFailed()}.</p>
+ *
+ * <p>Se a instância cair no meio, a reserva vence e outro relay reenvia o lote. A reserva
+ * precisa ser maior que o prazo da chamada ({@code billing.service.deadline}); mesmo assim, uma
+ * pendência cuja reserva venceu e foi assumida por outro relay não é reagendada por este. A
+ * entrega é "pelo menos uma vez" (uma confirmação perdida faz o lote ser reenviado) e o
+ * billing-service deduplica por {@code patientId}, então cada paciente recebe uma única conta.</p>
+ *
+ * <p>Com os disjuntores do {@link BillingServiceGrpcClient} abertos, nenhum lote é reservado: as
+ * pendências esperam no outbox, sem gastar tentativas, até o billing-service voltar.</p>
+ */
+@Slf4j
+@Component
+public class BillingOutboxRelay {
+
+    static final String ACTIVE = "ACTIVE";
+    static final String REJECTED = "REJECTED";
+
+    private final BillingOutboxRepository outboxRepository;
+    private final BillingServiceGrpcClient billingClient;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int batchSize;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+    private final Duration lease;
+    private final int maxAttempts;
+
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder failedBatches = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder deadLettered = new LongAdder();
+    private final RateWindow deliveryRate = new RateWindow();
+    private volatile long lastBatchMillis = -1;
+    private volatile long lastDeliveryLagMillis = -1;
+    private volatile String lastError;
+
+    public BillingOutboxRelay(BillingOutboxRepository outboxRepository,
+                              BillingServiceGrpcClient billingClient,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${billing.outbox.relay.enabled:true}") boolean enabled,
+                              @Value("${billing.outbox.batch-size:100}") int batchSize,
+                              @Value("${billing.outbox.initial-backoff:1s}") Duration initialBackoff,
+                              @Value("${billing.outbox.max-backoff:5m}") Duration maxBackoff,
+                              @Value("${billing.outbox.lease:30s}") Duration lease,
+                              @Value("${billing.outbox.max-attempts:20}") int maxAttempts) {
+        this.outboxRepository = outboxRepository;
+        this.billingClient = billingClient;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        this.lease = lease;
+        this.maxAttempts = maxAttempts;
+    }
+
+    @Scheduled(fixedDelayString = "${billing.outbox.poll-interval:500ms}")
+    public void scheduledRelay() {
+        if (enabled) {
+            relayPending();
+        }
+    }
+
+    /**
+     * Envia lotes enquanto houver pendências prontas e o billing estiver respondendo.
+     *
+     * @return quantidade de pendências confirmadas
+     */
+    public int relayPending() {
+        int total = 0;
+        BatchOutcome outcome;
+        do {
+            outcome = relayBatch();
+            total += outcome.delivered();
+        } while (!outcome.failed() && outcome.claimed() == batchSize);
+        return total;
+    }
+
+    /**
+     * Reserva, envia e confirma (ou reagenda) um lote.
+     */
+    public BatchOutcome relayBatch() {
+        if (!billingClient.isAvailable()) {
+            return new BatchOutcome(0, 0, true);
+        }
+        long start = System.nanoTime();
+
+        // Em milissegundos: a reserva é comparada com o valor lido do banco na confirmação
+        Instant leaseUntil = Instant.now().plus(lease).truncatedTo(ChronoUnit.MILLIS);
+        List<BillingOutboxEvent> events = transactionTemplate.execute(status -> {
+            List<BillingOutboxEvent> claimed = outboxRepository.claimReady(Instant.now(), Limit.of(batchSize));
+            claimed.forEach(event -> event.setNextAttemptAt(leaseUntil));
+            return claimed;
+        });
+        if (events.isEmpty()) {
+            return new BatchOutcome(0, 0, false);
+        }
+
+        BatchOutcome outcome = send(events, leaseUntil);
+        lastBatchMillis = (System.nanoTime() - start) / 1_000_000;
+        delivered.add(outcome.delivered());
+        deliveryRate.add(outcome.delivered());
+        return outcome;
+    }
+
+    // Chama o billing fora de transação e confirma o resultado em uma transação nova
+    private BatchOutcome send(List<BillingOutboxEvent> events, Instant leaseUntil) {
+        BillingBatchResponse response;
+        try {
+            response = billingClient.createBillingAccounts(events.stream().map(BillingOutboxRelay::toRequest).toList());
+        } catch (StatusRuntimeException e) {
+            failedBatches.increment();
+            String error = e.getStatus().getCode() + ": " + e.getStatus().getDescription();
+            lastError = error;
+            log.warn("Billing batch of {} accounts failed, rescheduling: {}", events.size(), error);
+            Map<UUID, String> errors = new HashMap<>();
+            events.forEach(event -> errors.put(event.getId(), error));
+            transactionTemplate.executeWithoutResult(status -> rescheduleLeased(errors, Set.of(), leaseUntil));
+            return new BatchOutcome(events.size(), 0, true);
+        }
+
+        Map<String, BillingAccountResult> results = new HashMap<>();
+        response.getResultsList().forEach(result -> results.put(result.getPatientId(), result));
+
+        Instant now = Instant.now();
+        List<UUID> confirmed = new ArrayList<>(events.size());
+        Map<UUID, String> errors = new HashMap<>();
+        Set<UUID> refused = new HashSet<>();
+        for (BillingOutboxEvent event : events) {
+            BillingAccountResult result = results.get(event.getPatientId().toString());
+            if (result != null && ACTIVE.equals(result.getStatus())) {
+                confirmed.add(event.getId());
+                lastDeliveryLagMillis = Duration.between(event.getCreatedAt(), now).toMillis();
+            } else if (result != null && REJECTED.equals(result.getStatus())) {
+                // O billing não aceita estes dados: reenviar não muda a resposta
+                rejected.increment();
+                refused.add(event.getId());
+                errors.put(event.getId(), REJECTED + ": " + result.getError());
+            } else {
+                errors.put(event.getId(), result == null ? "missing result" : "status " + result.getStatus());
+            }
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            // Confirmada pelo billing: pode sair mesmo que a reserva já tenha passado para outro relay
+            outboxRepository.deleteAllByIdInBatch(confirmed);
+            rescheduleLeased(errors, refused, leaseUntil);
+        });
+        return new BatchOutcome(events.size(), confirmed.size(), false);
+    }
+
+    // Reagenda (ou tira da fila, se recusada) só as pendências que ainda estão com a reserva deste lote
+    private void rescheduleLeased(Map<UUID, String> errors, Set<UUID> refused, Instant leaseUntil) {
+        for (BillingOutboxEvent event : outboxRepository.findAllById(errors.keySet())) {
+            if (leaseUntil.equals(event.getNextAttemptAt())) {
+                reschedule(event, errors.get(event.getId()), refused.contains(event.getId()));
+            }
+        }
+    }
+
+    /**
+     * Devolve à fila as pendências que desistiram (depois de corrigir a causa).
+     *
+     * @return quantidade de pendências reenfileiradas
+     */
+    public int requeueFailed() {
+        Integer requeued = transactionTemplate.execute(status -> outboxRepository.requeueFailed(Instant.now()));
+        return requeued == null ? 0 : requeued;
+    }
+
+    public Map<String, Object> stats() {
+        Instant oldest = outboxRepository.findOldestCreatedAt().orElse(null);
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("pending", outboxRepository.countByFailedAtIsNull());
+        stats.put("failed", outboxRepository.countByFailedAtIsNotNull());
+        stats.put("lagMillis", oldest == null ? 0 : Duration.between(oldest, Instant.now()).toMillis());
+        stats.put("delivered", delivered.sum());
+        stats.put("deliveredPerSecond", deliveryRate.perSecond());
+        stats.put("failedBatches", failedBatches.sum());
+        stats.put("rejected", rejected.sum());
+        stats.put("deadLettered", deadLettered.sum());
+        stats.put("lastBatchMillis", lastBatchMillis);
+        stats.put("lastDeliveryLagMillis", lastDeliveryLagMillis);
+        stats.put("lastError", lastError);
+        stats.put("client", billingClient.stats());
+        return stats;
+    }
+
+    private void reschedule(BillingOutboxEvent event, String error, boolean refused) {
+        int attempts = event.getAttempts() + 1;
+        event.setAttempts(attempts);
+        event.setLastError(error.length() > 1000 ? error.substring(0, 1000) : error);
+        if (refused || attempts >= maxAttempts) {
+            event.setFailedAt(Instant.now());
+            deadLettered.increment();
+            log.warn("Billing account for patient {} gave up after {} attempts: {}",
+                    event.getPatientId(), attempts, event.getLastError());
+            return;
+        }
+        event.setNextAttemptAt(Instant.now().plus(backoff(attempts)));
+    }
+
+    /**
+     * Backoff exponencial limitado a {@code maxBackoff}, com jitter entre 50% e 100% do valor
+     * para que pendências que falharam juntas não voltem todas no mesmo instante.
+     */
+    Duration backoff(int attempts) {
+        long base = initialBackoff.toMillis() << Math.min(attempts - 1, 20);
+        long capped = Math.min(base, maxBackoff.toMillis());
+        return Duration.ofMillis(capped / 2 + ThreadLocalRandom.current().nextLong(capped / 2 + 1));
+    }
+
+    private static BillingRequest toRequest(BillingOutboxEvent event) {
+        return BillingRequest.newBuilder()
+                .setPatientId(event.getPatientId().toString())
+                .setName(event.getName())
+                .setEmail(event.getEmail())
+                .build();
+    }
+
+    /**
+     * Resultado de um lote: pendências reservadas, confirmadas e se a chamada falhou.
+     */
+    public record BatchOutcome(int claimed, int delivered, boolean failed) {
+    }
+
+    /**
+     * Confirmações por segundo nos últimos {@value #SECONDS} segundos (um contador por segundo).
+     */
+    private static final class RateWindow {
+
+        private static final int SECONDS = 60;
+
+        private final AtomicLongArray counts = new AtomicLongArray(SECONDS);
+        private final AtomicLongArray epochSeconds = new AtomicLongArray(SECONDS);
+
+        void add(long value) {
+            long second = System.currentTimeMillis() / 1000;
+            int slot = (int) (second % SECONDS);
+            long slotSecond = epochSeconds.get(slot);
+            if (slotSecond != second && epochSeconds.compareAndSet(slot, slotSecond, second)) {
+                counts.set(slot, 0);
+            }
+            counts.addAndGet(slot, value);
+        }
+
+        double perSecond() {
+            long now = System.currentTimeMillis() / 1000;
+            long total = 0;
+            for (int slot = 0; slot < SECONDS; slot++) {
+                if (now - epochSeconds.get(slot) < SECONDS) {
+                    total += counts.get(slot);
+                }
+            }
+            return total / (double) SECONDS;
+        }
+
+    }
+
+}
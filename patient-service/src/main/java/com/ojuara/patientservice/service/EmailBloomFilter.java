@@ -0,0 +1,384 @@
+package com.ojuara.patientservice.service;
+
+import com.ojuara.patientservice.config.ReadConsistency;
+import com.ojuara.patientservice.repository.PatientStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Filtro de Bloom com os emails cadastrados, usado para responder sem ir ao banco as
+ * buscas por email que certamente não existe ({@link PatientService#getPatientByEmail}, ou seja,
+ * {@code GET /patients/by-email}). Nenhum outro caminho consulta o filtro.
+ *
+ * <p>Um "não" do filtro é definitivo; um "talvez" segue para o banco (ou para o
+ * {@link PatientCache}). Emails removidos ou trocados continuam no filtro até a próxima
+ * reconstrução, o que só gera falsos positivos (consultas a mais), nunca respostas erradas.</p>
+ *
+ * <p>O filtro é da instância: só vê os emails lidos na construção e os gravados por ela
+ * depois. Com várias réplicas, um paciente criado em outra seria respondido como inexistente até
+ * a próxima reconstrução. Por isso vem desligado ({@code patient.email-filter.enabled=false}) e
+ * só deve ser ligado quando uma única instância escreve no banco. A verificação de unicidade
+ * na criação e na atualização nunca depende dele.</p>
+ *
+ * <p>O filtro é construído na subida da aplicação percorrendo a tabela com um cursor
+ * (sem {@code findAll()}) e pode ser reconstruído sob demanda. Enquanto não estiver
+ * pronto, todas as verificações seguem para o banco. Com shards, a leitura é a do diretório de
+ * emails no banco principal.</p>
+ */
+@Slf4j
+@Component
+public class EmailBloomFilter {
+
+    private final PatientStore patientStore;
+    private final TransactionTemplate readOnlyTransaction;
+    private final boolean enabled;
+    private final long expectedInsertions;
+    private final double falsePositiveRate;
+
+    // Filtro em uso; null enquanto a primeira construção não termina
+    private volatile BitSetFilter current;
+    // Filtro em construção; recebe também as escritas feitas durante a reconstrução
+    private volatile BitSetFilter rebuilding;
+
+    // ReentrantLock em vez de synchronized: a reconstrução faz I/O de JDBC e, no Java 21,
+    // um monitor segurado durante I/O prende a virtual thread à thread carregadora
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+
+    private final LongAdder checks = new LongAdder();
+    private final LongAdder definiteMisses = new LongAdder();
+    private volatile long lastRebuildMillis = -1;
+
+    public EmailBloomFilter(PatientStore patientStore,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${patient.email-filter.enabled:false}") boolean enabled,
+                            @Value("${patient.email-filter.expected-insertions:1000000}") long expectedInsertions,
+                            @Value("${patient.email-filter.false-positive-rate:0.01}") double falsePositiveRate) {
+        this.patientStore = patientStore;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.enabled = enabled;
+        this.expectedInsertions = expectedInsertions;
+        this.falsePositiveRate = falsePositiveRate;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        if (!enabled) {
+            return;
+        }
+        Thread.ofVirtual().name("email-filter-build").start(() -> {
+            try {
+                rebuild();
+            } catch (RuntimeException e) {
+                log.warn("Email filter build failed; uniqueness checks will query the database.", e);
+            }
+        });
+    }
+
+    /**
+     * @param email email a verificar
+     * @return {@code false} se o email certamente não está cadastrado; {@code true} se
+     * talvez esteja (ou se o filtro ainda não foi construído)
+     */
+    public boolean mightContain(String email) {
+        BitSetFilter filter = current;
+        if (filter == null) {
+            return true;
+        }
+
+        checks.increment();
+        if (filter.mightContain(email)) {
+            return true;
+        }
+        definiteMisses.increment();
+        return false;
+    }
+
+    /**
+     * Registra um email gravado. Adiciona na hora (para o filtro atual) e de novo após o
+     * commit, para que uma reconstrução iniciada no meio da transação também o receba.
+     *
+     * @param email email criado ou atualizado
+     */
+    public void add(String email) {
+        put(email);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    put(email);
+                }
+            });
+        }
+    }
+
+    /**
+     * Reconstrói o filtro a partir da tabela, dimensionado para o maior valor entre
+     * a quantidade configurada e o dobro dos pacientes atuais.
+     */
+    public void rebuild() {
+        rebuildLock.lock();
+        try {
+            doRebuild();
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    private void doRebuild() {
+        long start = System.nanoTime();
+
+        // Do primário: emails confirmados antes da leitura e ainda não replicados faltariam no
+        // filtro, e um "não" do filtro é definitivo
+        BitSetFilter filter;
+        try (ReadConsistency.Scope primary = ReadConsistency.pinToPrimary()) {
+            filter = readOnlyTransaction.execute(status -> {
+                long patients = patientStore.countEmails();
+                BitSetFilter building = new BitSetFilter(Math.max(expectedInsertions, patients * 2), falsePositiveRate);
+                rebuilding = building;
+
+                // A leitura começa depois de publicar o filtro em construção: o que for confirmado
+                // depois do início da leitura chega pelo add() pós-commit
+                patientStore.streamAllEmails(building::put);
+                return building;
+            });
+        }
+
+        current = filter;
+        rebuilding = null;
+        lastRebuildMillis = (System.nanoTime() - start) / 1_000_000;
+
+        log.info("Email filter built: {} bits, {} hash functions, ~{} emails in {} ms.",
+                filter.bitSize(), filter.hashFunctions(), filter.approximateElementCount(), lastRebuildMillis);
+    }
+
+    public Map<String, Object> stats() {
+        BitSetFilter filter = current;
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("ready", filter != null);
+        stats.put("rebuilding", rebuilding != null);
+        stats.put("checks", checks.sum());
+        stats.put("definiteMisses", definiteMisses.sum());
+        stats.put("lastRebuildMillis", lastRebuildMillis);
+        if (filter != null) {
+            stats.put("bitSize", filter.bitSize());
+            stats.put("sizeInBytes", filter.bitSize() / 8);
+            stats.put("hashFunctions", filter.hashFunctions());
+            stats.put("approximateElementCount", filter.approximateElementCount());
+            stats.put("expectedFalsePositiveRate", filter.expectedFalsePositiveRate());
+        }
+        return stats;
+    }
+
+    public long checkCount() {
+        return checks.sum();
+    }
+
+    public long definiteMissCount() {
+        return definiteMisses.sum();
+    }
+
+    private void put(String email) {
+        BitSetFilter building = rebuilding;
+        BitSetFilter filter = current;
+        if (filter != null) {
+            filter.put(email);
+        }
+        if (building != null) {
+            building.put(email);
+        }
+    }
+
+    /**
+     * Filtro de Bloom sobre um vetor de bits atômico (seguro para escrita concorrente).
+     * Usa double hashing (Kirsch-Mitzenmacher) sobre um MurmurHash3 de 128 bits.
+     */
+    static final class BitSetFilter {
+
+        private final AtomicLongArray words;
+        private final long bitSize;
+        private final int hashFunctions;
+
+        BitSetFilter(long expectedInsertions, double falsePositiveRate) {
+            long n = Math.max(1, expectedInsertions);
+            long bits = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+            int words = (int) Math.min(Integer.MAX_VALUE - 8, (bits + 63) / 64);
+            this.words = new AtomicLongArray(words);
+            this.bitSize = (long) words * 64;
+            this.hashFunctions = Math.max(1, (int) Math.round((double) bitSize / n * Math.log(2)));
+        }
+
+        void put(String value) {
+            long[] hash = murmur3(value.getBytes(StandardCharsets.UTF_8));
+            long combined = hash[0];
+            for (int i = 0; i < hashFunctions; i++) {
+                setBit((combined & Long.MAX_VALUE) % bitSize);
+                combined += hash[1];
+            }
+        }
+
+        boolean mightContain(String value) {
+            long[] hash = murmur3(value.getBytes(StandardCharsets.UTF_8));
+            long combined = hash[0];
+            for (int i = 0; i < hashFunctions; i++) {
+                if (!getBit((combined & Long.MAX_VALUE) % bitSize)) {
+                    return false;
+                }
+                combined += hash[1];
+            }
+            return true;
+        }
+
+        long bitSize() {
+            return bitSize;
+        }
+
+        int hashFunctions() {
+            return hashFunctions;
+        }
+
+        long approximateElementCount() {
+            long setBits = 0;
+            for (int i = 0; i < words.length(); i++) {
+                setBits += Long.bitCount(words.get(i));
+            }
+            double fractionOfBitsSet = (double) setBits / bitSize;
+            return Math.round(-Math.log1p(-fractionOfBitsSet) * bitSize / hashFunctions);
+        }
+
+        double expectedFalsePositiveRate() {
+            long setBits = 0;
+            for (int i = 0; i < words.length(); i++) {
+                setBits += Long.bitCount(words.get(i));
+            }
+            return Math.pow((double) setBits / bitSize, hashFunctions);
+        }
+
+        private void setBit(long index) {
+            int word = (int) (index >>> 6);
+            long mask = 1L << index;
+            long value;
+            while (((value = words.get(word)) & mask) == 0) {
+                if (words.compareAndSet(word, value, value | mask)) {
+                    return;
+                }
+            }
+        }
+
+        private boolean getBit(long index) {
+            return (words.get((int) (index >>> 6)) & (1L << index)) != 0;
+        }
+
+        // MurmurHash3 x64 128 bits (seed 0)
+        private static long[] murmur3(byte[] data) {
+            final long c1 = 0x87c37b91114253d5L;
+            final long c2 = 0x4cf5ad432745937fL;
+            long h1 = 0;
+            long h2 = 0;
+            int length = data.length;
+            int blocks = length / 16;
+
+            for (int i = 0; i < blocks; i++) {
+                long k1 = getLong(data, i * 16);
+                long k2 = getLong(data, i * 16 + 8);
+
+                k1 *= c1;
+                k1 = Long.rotateLeft(k1, 31);
+                k1 *= c2;
+                h1 ^= k1;
+                h1 = Long.rotateLeft(h1, 27);
+                h1 += h2;
+                h1 = h1 * 5 + 0x52dce729;
+
+                k2 *= c2;
+                k2 = Long.rotateLeft(k2, 33);
+                k2 *= c1;
+                h2 ^= k2;
+                h2 = Long.rotateLeft(h2, 31);
+                h2 += h1;
+                h2 = h2 * 5 + 0x38495ab5;
+            }
+
+            long k1 = 0;
+            long k2 = 0;
+            int tail = blocks * 16;
+            switch (length & 15) {
+                case 15: k2 ^= (long) (data[tail + 14] & 0xff) << 48;
+                case 14: k2 ^= (long) (data[tail + 13] & 0xff) << 40;
+                case 13: k2 ^= (long) (data[tail + 12] & 0xff) << 32;
+                case 12: k2 ^= (long) (data[tail + 11] & 0xff) << 24;
+                case 11: k2 ^= (long) (data[tail + 10] & 0xff) << 16;
+                case 10: k2 ^= (long) (data[tail + 9] & 0xff) << 8;
+                case 9:
+                    k2 ^= data[tail + 8] & 0xff;
+                    k2 *= c2;
+                    k2 = Long.rotateLeft(k2, 33);
+                    k2 *= c1;
+                    h2 ^= k2;
+                case 8: k1 ^= (long) (data[tail + 7] & 0xff) << 56;
+                case 7: k1 ^= (long) (data[tail + 6] & 0xff) << 48;
+                case 6: k1 ^= (long) (data[tail + 5] & 0xff) << 40;
+                case 5: k1 ^= (long) (data[tail + 4] & 0xff) << 32;
+                case 4: k1 ^= (long) (data[tail + 3] & 0xff) << 24;
+                case 3: k1 ^= (long) (data[tail + 2] & 0xff) << 16;
+                case 2: k1 ^= (long) (data[tail + 1] & 0xff) << 8;
+                case 1:
+                    k1 ^= data[tail] & 0xff;
+                    k1 *= c1;
+                    k1 = Long.rotateLeft(k1, 31);
+                    k1 *= c2;
+                    h1 ^= k1;
+                default:
+                    break;
+            }
+
+            h1 ^= length;
+            h2 ^= length;
+            h1 += h2;
+            h2 += h1;
+            h1 = fmix64(h1);
+            h2 = fmix64(h2);
+            h1 += h2;
+            h2 += h1;
+            return new long[]{h1, h2};
+        }
+
+        private static long getLong(byte[] data, int offset) {
+            return (data[offset] & 0xffL)
+                    | (data[offset + 1] & 0xffL) << 8
+                    | (data[offset + 2] & 0xffL) << 16
+                    | (data[offset + 3] & 0xffL) << 24
+                    | (data[offset + 4] & 0xffL) << 32
+                    | (data[offset + 5] & 0xffL) << 40
+                    | (data[offset + 6] & 0xffL) << 48
+                    | (data[offset + 7] & 0xffL) << 56;
+        }
+
+        private static long fmix64(long k) {
+            k ^= k >>> 33;
+            k *= 0xff51afd7ed558ccdL;
+            k ^= k >>> 33;
+            k *= 0xc4ceb9fe1a85ec53L;
+            k ^= k >>> 33;
+            return k;
+        }
+
+    }
+
+}
@@ -0,0 +1,103 @@
+package com.ojuara.patientservice.service;
+
+import com.ojuara.patientservice.model.BillingOutboxEvent;
+import com.ojuara.patientservice.model.Patient;
+import com.ojuara.patientservice.repository.BillingOutboxRepository;
+import com.ojuara.patientservice.repository.PatientStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Pendências de cobrança ({@link BillingOutboxEvent}) dos pacientes criados, gravadas de forma que
+ * nenhum paciente criado fique sem a sua.
+ *
+ * <p>Quando o {@link PatientStore} grava na transação do chamador, {@link #settle} grava as
+ * pendências na mesma transação do insert. Com shards o insert é confirmado antes dela:
+ * {@link #reserve} grava e confirma as pendências antes do insert, com a primeira tentativa adiada
+ * por {@code billing.outbox.reservation-grace}, e {@link #settle} libera para o relay as dos
+ * pacientes criados e remove as dos emails que já existiam. Se a requisição cair entre as duas, a
+ * pendência vai para o relay depois do prazo: ou o paciente foi gravado e ganha a conta, ou não foi
+ * e o billing cria uma conta que ninguém usa — nunca um paciente sem conta.</p>
+ */
+@Component
+public class PatientBillingOutbox {
+
+    private final BillingOutboxRepository outboxRepository;
+    private final PatientStore patientStore;
+    private final TransactionTemplate newTransaction;
+    private final Duration reservationGrace;
+
+    public PatientBillingOutbox(BillingOutboxRepository outboxRepository,
+                                PatientStore patientStore,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${billing.outbox.reservation-grace:1m}") Duration reservationGrace) {
+        this.outboxRepository = outboxRepository;
+        this.patientStore = patientStore;
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.reservationGrace = reservationGrace;
+    }
+
+    /**
+     * Com shards, atribui o id dos pacientes e confirma as pendências deles antes do insert. Deve
+     * ser chamado fora de transação: dentro de uma, seriam duas conexões presas por requisição.
+     *
+     * @param patients pacientes que vão ser inseridos
+     * @return as pendências reservadas, para {@link #settle}; vazia sem shards
+     */
+    public List<BillingOutboxEvent> reserve(Collection<Patient> patients) {
+        if (!patientStore.writesOutsideTransaction() || patients.isEmpty()) {
+            return List.of();
+        }
+        Instant releaseAt = Instant.now().plus(reservationGrace);
+        List<BillingOutboxEvent> events = new ArrayList<>(patients.size());
+        for (Patient patient : patients) {
+            if (patient.getId() == null) {
+                patient.setId(UUID.randomUUID());
+            }
+            BillingOutboxEvent event = BillingOutboxEvent.forPatient(patient);
+            event.setNextAttemptAt(releaseAt);
+            events.add(event);
+        }
+        return newTransaction.execute(status -> outboxRepository.saveAll(events));
+    }
+
+    /**
+     * Na transação do insert: grava as pendências dos pacientes criados ou, com shards, libera as
+     * reservadas para eles e remove as demais.
+     *
+     * @param reserved retorno de {@link #reserve}
+     * @param created pacientes inseridos agora
+     */
+    public void settle(List<BillingOutboxEvent> reserved, Collection<Patient> created) {
+        if (!patientStore.writesOutsideTransaction()) {
+            outboxRepository.saveAll(created.stream().map(BillingOutboxEvent::forPatient).toList());
+            return;
+        }
+        Set<UUID> createdIds = created.stream().map(Patient::getId).collect(Collectors.toSet());
+        List<UUID> release = new ArrayList<>();
+        List<UUID> cancel = new ArrayList<>();
+        for (BillingOutboxEvent event : reserved) {
+            (createdIds.contains(event.getPatientId()) ? release : cancel).add(event.getId());
+        }
+        if (!release.isEmpty()) {
+            outboxRepository.release(release, Instant.now());
+        }
+        if (!cancel.isEmpty()) {
+            outboxRepository.deleteAllByIdInBatch(cancel);
+        }
+    }
+
+}
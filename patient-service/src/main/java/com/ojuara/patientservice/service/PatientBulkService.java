@@ -0,0 +1,324 @@
+package com.ojuara.patientservice.service;
+
+import com.ojuara.patientservice.dto.PatientBulkDeleteRequestDTO;
+import com.ojuara.patientservice.dto.PatientBulkItemResultDTO;
+import com.ojuara.patientservice.dto.PatientBulkResultDTO;
+import com.ojuara.patientservice.dto.PatientBulkStatus;
+import com.ojuara.patientservice.dto.PatientPatchDTO;
+import com.ojuara.patientservice.dto.PatientResponseDTO;
+import com.ojuara.patientservice.exception.InvalidBulkRequestException;
+import com.ojuara.patientservice.mapper.PatientMapper;
+import com.ojuara.patientservice.model.Patient;
+import com.ojuara.patientservice.repository.PatientPatch;
+import com.ojuara.patientservice.repository.PatientStore;
+import com.ojuara.patientservice.repository.ShardedPatientRepository;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Atualização e remoção de pacientes em lote, para as rotinas noturnas (normalização de
+ * endereços, expurgo por retenção) que alcançam centenas de milhares de linhas.
+ *
+ * <p>Como na importação ({@link PatientImportService}), os itens são processados em blocos de
+ * {@value #CHUNK_SIZE}, cada um na sua transação: uma consulta traz o estado atual dos pacientes
+ * do bloco, outra os donos dos emails novos, e as alterações vão em SQL de conjunto (ver
+ * {@link PatientStore#bulkUpdate} e {@link PatientStore#deleteAllWithTombstones}), sem
+ * carregar entidades. Uma falha em um bloco não desfaz os anteriores; o andamento é registrado no
+ * log a cada bloco.</p>
+ *
+ * <p>Com shards ({@code patient.db.shard-urls}) não há SQL de conjunto entre bancos: o
+ * {@link ShardedPatientRepository} lê e grava cada paciente do bloco no seu shard, com as mesmas
+ * conferências (versão no {@code UPDATE}, email pelo diretório), e ele fica gravado mesmo que o
+ * resto do bloco falhe. As remoções para o feed e os eventos continuam na transação do bloco.</p>
+ */
+@Slf4j
+@Service
+public class PatientBulkService {
+
+    static final int CHUNK_SIZE = 500;
+
+    private final PatientStore patientStore;
+    private final Validator validator;
+    private final TransactionTemplate transactionTemplate;
+    private final EntityManagerFactory entityManagerFactory;
+    private final PatientCache patientCache;
+    private final EmailBloomFilter emailFilter;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public PatientBulkService(PatientStore patientStore,
+                              Validator validator,
+                              TransactionTemplate transactionTemplate,
+                              EntityManagerFactory entityManagerFactory,
+                              PatientCache patientCache,
+                              EmailBloomFilter emailFilter,
+                              ApplicationEventPublisher eventPublisher) {
+        this.patientStore = patientStore;
+        this.validator = validator;
+        this.transactionTemplate = transactionTemplate;
+        this.entityManagerFactory = entityManagerFactory;
+        this.patientCache = patientCache;
+        this.emailFilter = emailFilter;
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * Aplica alterações parciais a vários pacientes.
+     *
+     * <p>Um item com email já usado por outro paciente (ou por um item anterior do lote) recebe
+     * EMAIL_CONFLICT; por isso dois pacientes não trocam de email no mesmo lote.</p>
+     *
+     * @param patches alterações, no máximo uma por id
+     * @return totais e o resultado de cada item, na ordem recebida
+     */
+    public PatientBulkResultDTO updatePatients(List<PatientPatchDTO> patches) {
+        PatientBulkItemResultDTO[] results = new PatientBulkItemResultDTO[patches.size()];
+        List<Integer> chunk = new ArrayList<>(CHUNK_SIZE);
+        Set<UUID> seen = new HashSet<>();
+        int processed = 0;
+
+        for (int i = 0; i < patches.size(); i++) {
+            PatientPatchDTO patch = patches.get(i);
+            Map<String, String> errors = validate(patch);
+            if (errors.isEmpty() && !seen.add(patch.getId())) {
+                errors.put("id", "Patient appears more than once in the request");
+            }
+            if (!errors.isEmpty()) {
+                results[i] = new PatientBulkItemResultDTO(
+                        patch != null ? patch.getId() : null, PatientBulkStatus.REJECTED, null, errors);
+                continue;
+            }
+
+            chunk.add(i);
+            if (chunk.size() == CHUNK_SIZE) {
+                processed += updateChunk(patches, chunk, results);
+                log.info("Bulk update progress: {} of {} patients processed.", processed, patches.size());
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            updateChunk(patches, chunk, results);
+        }
+
+        PatientBulkResultDTO result = summarize(Arrays.asList(results));
+        log.info("Bulk update finished: {}.", result.getTotals());
+        return result;
+    }
+
+    /**
+     * Remove os pacientes da lista de ids ou, com {@code registeredBefore}, todos os registrados
+     * antes da data.
+     *
+     * @param request ids ou filtro (exatamente um dos dois)
+     * @return totais e o resultado de cada paciente (na ordem recebida, quando por ids)
+     * @throws InvalidBulkRequestException se o pedido não tiver ids nem filtro, ou tiver os dois
+     */
+    public PatientBulkResultDTO deletePatients(PatientBulkDeleteRequestDTO request) {
+        boolean byIds = request.getIds() != null && !request.getIds().isEmpty();
+        if (byIds == (request.getRegisteredBefore() != null)) {
+            throw new InvalidBulkRequestException("Send either a non-empty ids list or registeredBefore.");
+        }
+
+        PatientBulkResultDTO result = byIds
+                ? deleteByIds(request.getIds())
+                : deleteRegisteredBefore(request.getRegisteredBefore());
+        log.info("Bulk delete finished: {}.", result.getTotals());
+        return result;
+    }
+
+    private PatientBulkResultDTO deleteByIds(List<UUID> requested) {
+        List<UUID> ids = new ArrayList<>(new LinkedHashSet<>(requested));
+        List<PatientBulkItemResultDTO> results = new ArrayList<>(ids.size());
+
+        for (int from = 0; from < ids.size(); from += CHUNK_SIZE) {
+            List<UUID> chunk = ids.subList(from, Math.min(from + CHUNK_SIZE, ids.size()));
+            List<UUID> deletedIds = inChunkTransaction(() -> deleteChunk(chunk));
+            evictFromSecondLevelCache(deletedIds);
+            Set<UUID> deleted = new HashSet<>(deletedIds);
+            for (UUID id : chunk) {
+                results.add(new PatientBulkItemResultDTO(id,
+                        deleted.contains(id) ? PatientBulkStatus.DELETED : PatientBulkStatus.NOT_FOUND, null, null));
+            }
+            log.info("Bulk delete progress: {} of {} patients processed.", from + chunk.size(), ids.size());
+        }
+        return summarize(results);
+    }
+
+    private PatientBulkResultDTO deleteRegisteredBefore(LocalDate registeredBefore) {
+        List<PatientBulkItemResultDTO> results = new ArrayList<>();
+        while (true) {
+            // Busca e remove na mesma transação: o próximo bloco já não enxerga os removidos
+            List<UUID> deleted = inChunkTransaction(() -> deleteChunk(
+                    patientStore.findIdsRegisteredBefore(registeredBefore, CHUNK_SIZE)));
+            if (deleted.isEmpty()) {
+                return summarize(results);
+            }
+            evictFromSecondLevelCache(deleted);
+            deleted.forEach(id -> results.add(
+                    new PatientBulkItemResultDTO(id, PatientBulkStatus.DELETED, null, null)));
+            log.info("Bulk delete progress: {} patients registered before {} deleted.",
+                    results.size(), registeredBefore);
+        }
+    }
+
+    private int updateChunk(List<PatientPatchDTO> patches, List<Integer> chunk, PatientBulkItemResultDTO[] results) {
+        List<PatientPatchDTO> items = chunk.stream().map(patches::get).toList();
+        List<PatientBulkItemResultDTO> chunkResults = inChunkTransaction(() -> applyChunk(items));
+        for (int i = 0; i < chunk.size(); i++) {
+            results[chunk.get(i)] = chunkResults.get(i);
+        }
+        evictFromSecondLevelCache(chunkResults.stream()
+                .filter(result -> result.getStatus() == PatientBulkStatus.UPDATED)
+                .map(PatientBulkItemResultDTO::getId)
+                .toList());
+        return chunk.size();
+    }
+
+    private List<PatientBulkItemResultDTO> applyChunk(List<PatientPatchDTO> chunk) {
+        // Estado atual do bloco em uma consulta
+        Map<UUID, PatientResponseDTO> current = patientStore.findResponsesByIdIn(
+                        chunk.stream().map(PatientPatchDTO::getId).toList()).stream()
+                .collect(Collectors.toMap(PatientResponseDTO::id, Function.identity()));
+
+        // Donos dos emails novos em outra
+        Set<String> newEmails = chunk.stream()
+                .filter(patch -> patch.getEmail() != null && current.containsKey(patch.getId())
+                        && !patch.getEmail().equals(current.get(patch.getId()).email()))
+                .map(PatientPatchDTO::getEmail)
+                .collect(Collectors.toSet());
+        Map<String, UUID> owners = patientStore.findIdsByEmailIn(newEmails);
+
+        List<PatientBulkItemResultDTO> results = new ArrayList<>(chunk.size());
+        List<PatientPatch> accepted = new ArrayList<>(chunk.size());
+        Set<String> claimed = new HashSet<>();
+        for (PatientPatchDTO patch : chunk) {
+            PatientResponseDTO patient = current.get(patch.getId());
+            PatientBulkStatus status = null;
+            if (patient == null) {
+                status = PatientBulkStatus.NOT_FOUND;
+            } else if (patch.getVersion() != null && !patch.getVersion().equals(patient.version())) {
+                status = PatientBulkStatus.VERSION_MISMATCH;
+            } else if (newEmails.contains(patch.getEmail()) && !patch.getEmail().equals(patient.email())
+                    && (owners.containsKey(patch.getEmail()) || !claimed.add(patch.getEmail()))) {
+                status = PatientBulkStatus.EMAIL_CONFLICT;
+            } else {
+                // Sempre sobre a versão lida: uma escrita concorrente depois desta consulta não é sobrescrita
+                accepted.add(new PatientPatch(patch.getId(), patch.getName(), patch.getEmail(), patch.getAddress(),
+                        patch.getDateOfBirth() != null ? PatientMapper.parseDate(patch.getDateOfBirth()) : null,
+                        patient.version()));
+            }
+            results.add(new PatientBulkItemResultDTO(patch.getId(), status, null, null));
+        }
+
+        accepted.stream().map(PatientPatch::email).filter(Objects::nonNull).forEach(emailFilter::add);
+        List<PatientResponseDTO> updated = patientStore.bulkUpdate(accepted);
+        Map<UUID, PatientResponseDTO> updatedById = updated.stream()
+                .collect(Collectors.toMap(PatientResponseDTO::id, Function.identity()));
+
+        for (PatientBulkItemResultDTO result : results) {
+            if (result.getStatus() != null) {
+                continue;
+            }
+            PatientResponseDTO patient = updatedById.get(result.getId());
+            if (patient != null) {
+                result.setStatus(PatientBulkStatus.UPDATED);
+                result.setVersion(patient.version());
+                patientCache.invalidate(patient.id());
+            } else {
+                result.setStatus(PatientBulkStatus.VERSION_MISMATCH);
+            }
+        }
+
+        // Índice de busca: aplicado só se o bloco for confirmado
+        if (!updated.isEmpty()) {
+            eventPublisher.publishEvent(PatientsChangedEvent.saved(updated));
+        }
+        return results;
+    }
+
+    private List<UUID> deleteChunk(List<UUID> ids) {
+        Instant deletedAt = Instant.now().truncatedTo(ChronoUnit.MICROS);
+        List<UUID> deleted = patientStore.deleteAllWithTombstones(ids, deletedAt);
+        if (!deleted.isEmpty()) {
+            deleted.forEach(patientCache::invalidate);
+            eventPublisher.publishEvent(PatientsChangedEvent.deleted(deleted));
+        }
+        return deleted;
+    }
+
+    private <T> T inChunkTransaction(Supplier<T> work) {
+        try {
+            return transactionTemplate.execute(status -> work.get());
+        } catch (DataIntegrityViolationException e) {
+            if (patientStore.writesOutsideTransaction()) {
+                // As gravações nos shards já foram confirmadas: repetir o bloco as aplicaria de novo
+                throw e;
+            }
+            // Outra requisição gravou um destes emails ou removeu um destes pacientes entre a
+            // consulta e a escrita. O bloco foi desfeito; na nova tentativa a consulta já enxerga a mudança
+            log.warn("Conflict while applying bulk chunk, retrying: {}", e.getMostSpecificCause().getMessage());
+            return transactionTemplate.execute(status -> work.get());
+        }
+    }
+
+    // O SQL de conjunto não passa pelo Hibernate; o cache L2 (profile "l2cache") precisa ser
+    // limpo à mão, depois do commit para não ser preenchido de novo com a versão antiga
+    private void evictFromSecondLevelCache(List<UUID> ids) {
+        ids.forEach(id -> entityManagerFactory.getCache().evict(Patient.class, id));
+    }
+
+    private Map<String, String> validate(PatientPatchDTO patch) {
+        Map<String, String> errors = new HashMap<>();
+        if (patch == null) {
+            errors.put("item", "Item must be an object");
+            return errors;
+        }
+        for (ConstraintViolation<PatientPatchDTO> violation : validator.validate(patch)) {
+            errors.put(violation.getPropertyPath().toString(), violation.getMessage());
+        }
+        if (patch.getDateOfBirth() != null && !isDate(patch.getDateOfBirth())) {
+            errors.put("dateOfBirth", "Date of Birth must be a valid date (yyyy-MM-dd)");
+        }
+        return errors;
+    }
+
+    private static boolean isDate(String value) {
+        try {
+            PatientMapper.parseDate(value);
+            return true;
+        } catch (DateTimeException e) {
+            return false;
+        }
+    }
+
+    private static PatientBulkResultDTO summarize(List<PatientBulkItemResultDTO> results) {
+        Map<PatientBulkStatus, Integer> totals = new EnumMap<>(PatientBulkStatus.class);
+        results.forEach(result -> totals.merge(result.getStatus(), 1, Integer::sum));
+        return new PatientBulkResultDTO(totals, results);
+    }
+
+}
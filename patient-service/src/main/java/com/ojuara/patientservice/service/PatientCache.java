@@ -0,0 +1,159 @@
+package com.ojuara.patientservice.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.ojuara.patientservice.dto.PatientResponseDTO;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Cache em memória de pacientes, na frente do {@link com.ojuara.patientservice.repository.PatientRepository}.
+ *
+ * <p>Guarda o DTO de resposta por id (Caffeine, política W-TinyLFU, limitado por tamanho e
+ * por tempo desde a escrita) e um índice secundário email → id. Somente resultados
+ * encontrados são guardados; um email ou id inexistente sempre consulta o banco.</p>
+ *
+ * <p>As escritas do {@link PatientService} invalidam as entradas afetadas na hora e de
+ * novo após o commit, para que uma leitura concorrente que carregou o valor antigo não o
+ * deixe no cache.</p>
+ */
+@Component
+public class PatientCache {
+
+    private final Cache<UUID, PatientResponseDTO> patientsById;
+    private final Cache<String, UUID> idsByEmail;
+
+    public PatientCache(@Value("${patient.cache.maximum-size:100000}") long maximumSize,
+                        @Value("${patient.cache.ttl:10m}") Duration ttl) {
+        this.patientsById = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        this.idsByEmail = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Busca o paciente pelo id, carregando do banco em caso de ausência.
+     *
+     * @param id id do paciente
+     * @param loader consulta ao banco usada quando o paciente não está no cache
+     * @return o paciente, ou vazio se não existir
+     */
+    public Optional<PatientResponseDTO> getById(UUID id, Function<UUID, Optional<PatientResponseDTO>> loader) {
+        PatientResponseDTO patient = patientsById.get(id, key -> loader.apply(key).orElse(null));
+        if (patient != null) {
+            idsByEmail.put(patient.email(), id);
+        }
+        return Optional.ofNullable(patient);
+    }
+
+    /**
+     * Busca o paciente pelo email, carregando do banco em caso de ausência.
+     *
+     * @param email email do paciente
+     * @param loader consulta ao banco usada quando o paciente não está no cache
+     * @return o paciente, ou vazio se não existir
+     */
+    public Optional<PatientResponseDTO> getByEmail(String email, Function<String, Optional<PatientResponseDTO>> loader) {
+        Optional<PatientResponseDTO> cached = findByEmail(email);
+        if (cached.isPresent()) {
+            return cached;
+        }
+
+        Optional<PatientResponseDTO> loaded = loader.apply(email);
+        loaded.ifPresent(this::put);
+        return loaded;
+    }
+
+    /**
+     * Id do paciente dono do email, se a informação estiver no cache. Não consulta o banco:
+     * vazio significa apenas "não sei", não "não existe".
+     *
+     * @param email email a verificar
+     * @return id do paciente com esse email, quando conhecido
+     */
+    public Optional<UUID> findIdByEmail(String email) {
+        return findByEmail(email).map(PatientResponseDTO::id);
+    }
+
+    public void put(PatientResponseDTO patient) {
+        UUID id = patient.id();
+        patientsById.put(id, patient);
+        idsByEmail.put(patient.email(), id);
+    }
+
+    /**
+     * Remove o paciente do cache agora e, se houver transação ativa, de novo após o commit.
+     *
+     * @param id id do paciente alterado ou removido
+     */
+    public void invalidate(UUID id) {
+        evict(id);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    evict(id);
+                }
+            });
+        }
+    }
+
+    /**
+     * Esvazia o cache, para quando os pacientes forem alterados por fora do
+     * {@link PatientService} (por exemplo, direto no repositório).
+     */
+    public void invalidateAll() {
+        patientsById.invalidateAll();
+        idsByEmail.invalidateAll();
+    }
+
+    public CacheStats stats() {
+        return patientsById.stats();
+    }
+
+    public CacheStats emailIndexStats() {
+        return idsByEmail.stats();
+    }
+
+    public long estimatedSize() {
+        return patientsById.estimatedSize();
+    }
+
+    private Optional<PatientResponseDTO> findByEmail(String email) {
+        UUID id = idsByEmail.getIfPresent(email);
+        if (id == null) {
+            return Optional.empty();
+        }
+
+        // O índice pode apontar para um paciente já removido ou com outro email
+        PatientResponseDTO patient = patientsById.getIfPresent(id);
+        if (patient == null || !patient.email().equals(email)) {
+            idsByEmail.invalidate(email);
+            return Optional.empty();
+        }
+        return Optional.of(patient);
+    }
+
+    private void evict(UUID id) {
+        PatientResponseDTO removed = patientsById.asMap().remove(id);
+        if (removed != null) {
+            idsByEmail.asMap().remove(removed.email(), id);
+        }
+    }
+
+}
@@ -0,0 +1,147 @@
+package com.ojuara.patientservice.service;
+
+import com.ojuara.patientservice.config.ReadConsistency;
+import com.ojuara.patientservice.dto.PatientChangesResponseDTO;
+import com.ojuara.patientservice.dto.PatientResponseDTO;
+import com.ojuara.patientservice.exception.ChangeTokenExpiredException;
+import com.ojuara.patientservice.mapper.PatientMapper;
+import com.ojuara.patientservice.model.Patient;
+import com.ojuara.patientservice.model.PatientTombstone;
+import com.ojuara.patientservice.repository.PatientStore;
+import com.ojuara.patientservice.repository.PatientTombstoneRepository;
+import com.ojuara.patientservice.repository.ShardedPatientRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Feed de alterações de pacientes, para clientes que sincronizam só o que mudou.
+ *
+ * <p>Junta, na ordem (momento, id), os pacientes criados ou atualizados (por
+ * {@code updatedAt}) e os removidos (pelas {@link PatientTombstone}). O cliente guarda o
+ * token devolvido e o envia na chamada seguinte. Com shards, os pacientes vêm da mesma consulta
+ * em cada shard, intercalada ({@link ShardedPatientRepository#findChangedAfter}); as remoções
+ * continuam no banco principal.</p>
+ *
+ * <p>O carimbo de uma escrita é gerado antes do commit, então uma transação lenta pode
+ * confirmar uma alteração com carimbo anterior ao de outra já entregue. Por isso o feed só
+ * entrega alterações com mais de {@code patient.changes.commit-grace}: nesse prazo as
+ * transações já confirmaram e nenhuma fica para trás do token.</p>
+ *
+ * <p>As remoções são guardadas por {@code patient.changes.tombstone-retention}; um token mais
+ * antigo que isso é recusado e o cliente precisa sincronizar de novo desde o início.</p>
+ */
+@Slf4j
+@Service
+public class PatientChangeService {
+
+    private final PatientStore patientStore;
+    private final PatientTombstoneRepository tombstoneRepository;
+    private final Duration commitGrace;
+    private final Duration tombstoneRetention;
+
+    public PatientChangeService(PatientStore patientStore,
+                                PatientTombstoneRepository tombstoneRepository,
+                                @Value("${patient.changes.commit-grace:2s}") Duration commitGrace,
+                                @Value("${patient.changes.tombstone-retention:30d}") Duration tombstoneRetention) {
+        this.patientStore = patientStore;
+        this.tombstoneRepository = tombstoneRepository;
+        this.commitGrace = commitGrace;
+        this.tombstoneRetention = tombstoneRetention;
+    }
+
+    /**
+     * Alterações posteriores ao token.
+     *
+     * @param changesSince token devolvido pela chamada anterior, ou null para começar do início
+     * @param limit quantidade máxima de alterações (atualizações + remoções) na resposta
+     * @return alterações, o token para a próxima chamada e se há mais alterações pendentes
+     * @throws ChangeTokenExpiredException se o token for mais antigo que a retenção das remoções
+     */
+    @Transactional(readOnly = true)
+    public PatientChangesResponseDTO getChanges(String changesSince, int limit) {
+        // Uma réplica atrasada entregaria um token além de alterações que ainda não recebeu, e o
+        // cliente nunca mais as buscaria: o feed lê sempre do primário
+        try (ReadConsistency.Scope primary = ReadConsistency.pinToPrimary()) {
+            return readChanges(changesSince, limit);
+        }
+    }
+
+    private PatientChangesResponseDTO readChanges(String changesSince, int limit) {
+        PatientChangeToken since = changesSince == null || changesSince.isBlank()
+                ? PatientChangeToken.START
+                : PatientChangeToken.decode(changesSince);
+
+        Instant now = Instant.now();
+        if (!since.equals(PatientChangeToken.START) && since.changedAt().isBefore(now.minus(tombstoneRetention))) {
+            throw new ChangeTokenExpiredException("Change token is older than the " + tombstoneRetention
+                    + " deletion history; sync again without changesSince");
+        }
+        Instant until = now.minus(commitGrace).truncatedTo(ChronoUnit.MICROS);
+
+        // Um a mais de cada lado para saber se sobrou alguma alteração depois da página
+        Limit fetchLimit = Limit.of(limit + 1);
+        List<Patient> patients = patientStore.findChangedAfter(since.changedAt(), since.id(), until, fetchLimit.max());
+        List<PatientTombstone> tombstones = tombstoneRepository.findDeletedAfter(since.changedAt(), since.id(), until, fetchLimit);
+
+        List<PatientResponseDTO> changed = new ArrayList<>();
+        List<String> deletedIds = new ArrayList<>();
+        PatientChangeToken last = since;
+        int p = 0;
+        int t = 0;
+        while (changed.size() + deletedIds.size() < limit && (p < patients.size() || t < tombstones.size())) {
+            PatientChangeToken nextPatient = p < patients.size() ? tokenOf(patients.get(p)) : null;
+            PatientChangeToken nextTombstone = t < tombstones.size() ? tokenOf(tombstones.get(t)) : null;
+            if (nextTombstone == null || (nextPatient != null && nextPatient.compareTo(nextTombstone) < 0)) {
+                changed.add(PatientMapper.toDTO(patients.get(p++)));
+                last = nextPatient;
+            } else {
+                deletedIds.add(tombstones.get(t++).getId().toString());
+                last = nextTombstone;
+            }
+        }
+
+        boolean hasMore = p < patients.size() || t < tombstones.size();
+        // Tudo até "until" foi entregue: o próximo token parte dali, mesmo sem alterações,
+        // para que clientes em dia não fiquem com um token cada vez mais antigo
+        PatientChangeToken next = hasMore ? last : max(last, new PatientChangeToken(until, PatientChangeToken.MAX_ID));
+
+        return new PatientChangesResponseDTO(changed, deletedIds, next.encode(), hasMore);
+    }
+
+    /**
+     * Apaga as remoções mais antigas que a retenção.
+     *
+     * @return quantidade de remoções apagadas
+     */
+    @Scheduled(fixedDelayString = "${patient.changes.purge-interval:1h}")
+    public int purgeTombstones() {
+        int purged = tombstoneRepository.deleteDeletedBefore(Instant.now().minus(tombstoneRetention));
+        if (purged > 0) {
+            log.info("Purged {} patient tombstones older than {}.", purged, tombstoneRetention);
+        }
+        return purged;
+    }
+
+    private static PatientChangeToken tokenOf(Patient patient) {
+        return new PatientChangeToken(patient.getUpdatedAt(), patient.getId());
+    }
+
+    private static PatientChangeToken tokenOf(PatientTombstone tombstone) {
+        return new PatientChangeToken(tombstone.getDeletedAt(), tombstone.getId());
+    }
+
+    private static PatientChangeToken max(PatientChangeToken a, PatientChangeToken b) {
+        return a.compareTo(b) >= 0 ? a : b;
+    }
+
+}
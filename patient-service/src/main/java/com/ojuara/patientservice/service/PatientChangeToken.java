@@ -0,0 +1,73 @@
+package com.ojuara.patientservice.service;
+
+import com.ojuara.patientservice.exception.InvalidCursorException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Posição no feed de alterações de pacientes: (momento da alteração, id) da última
+ * alteração entregue ao cliente.
+ *
+ * <p>Para o cliente é um token opaco (Base64 URL-safe), como o {@link PatientCursor}.</p>
+ */
+public record PatientChangeToken(Instant changedAt, UUID id) implements Comparable<PatientChangeToken> {
+
+    static final UUID MIN_ID = new UUID(0L, 0L);
+    static final UUID MAX_ID = new UUID(-1L, -1L);
+
+    /**
+     * Antes de qualquer alteração: o feed começa do início.
+     */
+    public static final PatientChangeToken START = new PatientChangeToken(Instant.EPOCH, MIN_ID);
+
+    private static final char SEPARATOR = '|';
+
+    public String encode() {
+        long micros = ChronoUnit.MICROS.between(Instant.EPOCH, changedAt);
+        String raw = Long.toString(micros) + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodifica um token recebido do cliente.
+     *
+     * @param token token opaco gerado por {@link #encode()}
+     * @return posição decodificada
+     * @throws InvalidCursorException se o token estiver malformado
+     */
+    public static PatientChangeToken decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(SEPARATOR);
+            if (separator < 0) {
+                throw new InvalidCursorException("Invalid change token: " + token);
+            }
+            return new PatientChangeToken(
+                    Instant.EPOCH.plus(Long.parseLong(raw.substring(0, separator)), ChronoUnit.MICROS),
+                    UUID.fromString(raw.substring(separator + 1)));
+        } catch (IllegalArgumentException | DateTimeException | ArithmeticException e) {
+            throw new InvalidCursorException("Invalid change token: " + token);
+        }
+    }
+
+    /**
+     * Mesma ordem do banco: momento e, no empate, id comparado byte a byte sem sinal
+     * (o {@link UUID#compareTo} do Java compara com sinal).
+     */
+    @Override
+    public int compareTo(PatientChangeToken other) {
+        int byTime = changedAt.compareTo(other.changedAt);
+        if (byTime != 0) {
+            return byTime;
+        }
+        int byHigh = Long.compareUnsigned(id.getMostSignificantBits(), other.id.getMostSignificantBits());
+        return byHigh != 0 ? byHigh : Long.compareUnsigned(id.getLeastSignificantBits(), other.id.getLeastSignificantBits());
+    }
+
+}
@@ -0,0 +1,12 @@
+package com.ojuara.patientservice.service;
+
+import com.ojuara.patientservice.dto.PatientResponseDTO;
+
+/**
+ * Resultado da criação idempotente de paciente.
+ *
+ * @param patient paciente criado, ou o existente com o mesmo email
+ * @param created {@code true} se o paciente foi criado nesta chamada
+ */
+public record PatientCreationResult(PatientResponseDTO patient, boolean created) {
+}
@@ -0,0 +1,54 @@
+package com.ojuara.patientservice.service;
+
+import com.ojuara.patientservice.dto.PatientResponseDTO;
+import com.ojuara.patientservice.exception.InvalidCursorException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Posição de continuação da listagem de pacientes (keyset em registeredDate + id).
+ *
+ * <p>Para o cliente o cursor é um token opaco (Base64 URL-safe); o formato interno
+ * pode mudar sem quebrar a API.</p>
+ */
+public record PatientCursor(LocalDate registeredDate, UUID id) {
+
+    private static final char SEPARATOR = '|';
+
+    public static PatientCursor of(PatientResponseDTO patient) {
+        return new PatientCursor(patient.registeredDate(), patient.id());
+    }
+
+    public String encode() {
+        String raw = registeredDate.toString() + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodifica um token recebido do cliente.
+     *
+     * @param token token opaco gerado por {@link #encode()}
+     * @return posição decodificada
+     * @throws InvalidCursorException se o token estiver malformado
+     */
+    public static PatientCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(SEPARATOR);
+            if (separator < 0) {
+                throw new InvalidCursorException("Invalid cursor: " + token);
+            }
+            return new PatientCursor(
+                    LocalDate.parse(raw.substring(0, separator)),
+                    UUID.fromString(raw.substring(separator + 1)));
+        } catch (IllegalArgumentException | DateTimeException e) {
+            throw new InvalidCursorException("Invalid cursor: " + token);
+        }
+    }
+
+}
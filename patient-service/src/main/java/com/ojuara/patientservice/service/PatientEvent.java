@@ -0,0 +1,25 @@
+package com.ojuara.patientservice.service;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Uma alteração de paciente no {@link PatientEventLog}.
+ *
+ * <p>A sequência é a ordem em que os eventos chegaram ao log, que entre transações concorrentes
+ * pode não ser a dos commits. A ordem das alterações de um mesmo paciente é a da {@code version}:
+ * vale o evento de versão maior, e uma remoção ({@link #DELETED_VERSION}) vale sobre qualquer
+ * outro, pois ids não são reaproveitados e nenhuma escrita confirma depois da remoção (a
+ * verificação de versão falha).</p>
+ *
+ * @param sequence posição no log, crescente (com lacunas depois da compactação)
+ * @param version versão do paciente gravado; {@link #DELETED_VERSION} em {@link PatientEventType#DELETED}
+ * @param timestamp momento em que o evento entrou no log, logo após o commit
+ * @param snapshot paciente como gravado, em JSON UTF-8 (o mesmo da API); vazio em {@link PatientEventType#DELETED}
+ */
+public record PatientEvent(long sequence, PatientEventType type, UUID patientId, long version, Instant timestamp,
+                           byte[] snapshot) {
+
+    public static final long DELETED_VERSION = Long.MAX_VALUE;
+
+}
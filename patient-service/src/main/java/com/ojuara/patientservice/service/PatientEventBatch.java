@@ -0,0 +1,13 @@
+package com.ojuara.patientservice.service;
+
+import java.util.List;
+
+/**
+ * Resultado de {@link PatientEventLog#read(long, int)}.
+ *
+ * @param events eventos na ordem do log
+ * @param nextSequence de onde continuar a leitura; pode passar da última sequência de
+ *                     {@code events} quando a compactação removeu os eventos seguintes
+ */
+public record PatientEventBatch(List<PatientEvent> events, long nextSequence) {
+}
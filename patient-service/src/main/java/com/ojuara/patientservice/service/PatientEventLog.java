@@ -0,0 +1,569 @@
+package com.ojuara.patientservice.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ojuara.patientservice.dto.PatientResponseDTO;
+import com.ojuara.patientservice.exception.ChangeTokenExpiredException;
+import com.ojuara.patientservice.mapper.PatientResponseSerializer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Log append-only dos eventos de pacientes (criado, atualizado, removido), para consumidores
+ * externos acompanharem as alterações sem consultar a listagem (ver {@code PatientEventController}).
+ *
+ * <p>Os eventos entram depois do commit, a partir dos {@link PatientsChangedEvent}, com uma
+ * sequência crescente, a versão e o paciente como gravado. Os listeners de transações
+ * concorrentes rodam em qualquer ordem, então a sequência não é a ordem dos commits: para um mesmo
+ * paciente, vale o evento de maior versão (ver {@link PatientEvent}), tanto na compactação quanto
+ * para os consumidores. Ficam em segmentos de
+ * {@code patient.events.segment-size} em {@code patient.events.directory}, mapeados em memória:
+ * o append é uma cópia para a memória e a gravação em disco é feita a cada
+ * {@code patient.events.flush-interval}. Um evento de uma transação confirmada pode se perder se o
+ * processo cair entre o commit e o append; o consumidor recupera o estado pelo feed de alterações.</p>
+ *
+ * <p>Cheio, o segmento ativo é selado e outro começa. A compactação sela o segmento ativo e
+ * reescreve os selados mantendo só o evento de maior versão de cada paciente, juntando segmentos pequenos:
+ * depois dela, cada paciente tem um único evento entre os gravados até ali (só os que chegam
+ * depois repetem pacientes). Assim o disco usado acompanha a quantidade de pacientes, não a de
+ * alterações. Remoções saem depois de
+ * {@code patient.events.tombstone-retention}; a partir daí, retomar a leitura de antes delas é
+ * recusado, pois o consumidor perderia remoções. Ler desde o início continua valendo como carga
+ * completa.</p>
+ */
+@Slf4j
+@Service
+@ConditionalOnExpression("'${patient.events.directory:}' != ''")
+public class PatientEventLog {
+
+    private static final String SEGMENT_SUFFIX = ".log";
+    // Segmentos compactados, nomeados "<primeira base>-<última base>.compacted" até substituírem o grupo
+    private static final String COMPACTED_SUFFIX = ".compacted";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String HORIZON_FILE = "tombstone-horizon";
+    private static final byte[] NO_SNAPSHOT = new byte[0];
+    private static final Comparator<PatientEventSegment.StoredEvent> LATEST_FIRST = Comparator
+            .comparingLong(PatientEventSegment.StoredEvent::version)
+            .thenComparingLong(PatientEventSegment.StoredEvent::sequence)
+            .reversed();
+
+    private final Path directory;
+    private final int segmentSize;
+    private final Duration tombstoneRetention;
+    private final JsonFactory jsonFactory;
+    private final FileChannel lockChannel;
+    private final FileLock directoryLock;
+    private final Counter appendFailures;
+
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final Condition appended = appendLock.newCondition();
+    // Trocas da lista de segmentos (rolagem e compactação); a lista em si é imutável
+    private final Object segmentsMonitor = new Object();
+    private final Object compactionMonitor = new Object();
+
+    // Selados em ordem de sequência, com o ativo por último
+    private volatile List<PatientEventSegment> segments;
+    private volatile long nextSequence;
+    // Retomar antes disso pode ter perdido remoções descartadas pela compactação
+    private volatile long tombstoneHorizon;
+
+    public PatientEventLog(@Value("${patient.events.directory}") String directory,
+                           @Value("${patient.events.segment-size:64MB}") DataSize segmentSize,
+                           @Value("${patient.events.tombstone-retention:7d}") Duration tombstoneRetention,
+                           ObjectMapper objectMapper,
+                           MeterRegistry meterRegistry) throws IOException {
+        if (segmentSize.toBytes() > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("patient.events.segment-size must be below 2GB, was " + segmentSize);
+        }
+        this.directory = Path.of(directory);
+        this.segmentSize = (int) segmentSize.toBytes();
+        this.tombstoneRetention = tombstoneRetention;
+        this.jsonFactory = objectMapper.getFactory();
+
+        Files.createDirectories(this.directory);
+        // Dois processos no mesmo diretório corromperiam os segmentos
+        this.lockChannel = FileChannel.open(this.directory.resolve(".lock"), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE);
+        this.directoryLock = lockChannel.tryLock();
+        if (directoryLock == null) {
+            lockChannel.close();
+            throw new IllegalStateException("Patient event log " + directory + " is in use by another process");
+        }
+
+        finishCompactions();
+        this.segments = openSegments();
+        PatientEventSegment active = segments.getLast();
+        this.nextSequence = Math.max(active.baseSequence(), active.lastSequence() + 1);
+        this.tombstoneHorizon = readHorizon();
+
+        this.appendFailures = Counter.builder("patient.events.append.failures")
+                .description("Committed patient changes that could not be appended to the event log")
+                .register(meterRegistry);
+        Gauge.builder("patient.events.next.sequence", this, log -> log.nextSequence)
+                .description("Sequence number of the next patient event")
+                .register(meterRegistry);
+        Gauge.builder("patient.events.disk.bytes", this, PatientEventLog::diskBytes)
+                .description("Bytes of event records in the patient event log segments")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+
+        log.info("Patient event log at {}: {} segment(s), next sequence {}.",
+                this.directory, segments.size(), nextSequence);
+    }
+
+    /**
+     * Registra os eventos de uma transação confirmada. Uma falha fica na métrica
+     * {@code patient.events.append.failures} e não afeta a escrita já confirmada.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onPatientsChanged(PatientsChangedEvent event) {
+        try {
+            PatientEventType savedType = event.created() ? PatientEventType.CREATED : PatientEventType.UPDATED;
+            // Serializa fora do lock
+            List<byte[]> snapshots = new ArrayList<>(event.saved().size());
+            for (PatientResponseDTO patient : event.saved()) {
+                snapshots.add(snapshot(patient));
+            }
+
+            Instant now = Instant.now();
+            appendLock.lock();
+            try {
+                for (int i = 0; i < snapshots.size(); i++) {
+                    PatientResponseDTO patient = event.saved().get(i);
+                    long version = patient.version() == null ? 0 : patient.version();
+                    append(savedType, patient.id(), version, now, snapshots.get(i));
+                }
+                for (UUID id : event.deleted()) {
+                    append(PatientEventType.DELETED, id, PatientEvent.DELETED_VERSION, now, NO_SNAPSHOT);
+                }
+                appended.signalAll();
+            } finally {
+                appendLock.unlock();
+            }
+        } catch (IOException | RuntimeException e) {
+            appendFailures.increment();
+            log.error("Failed to append {} saved and {} deleted patients to the event log.",
+                    event.saved().size(), event.deleted().size(), e);
+        }
+    }
+
+    /**
+     * Lê até {@code max} eventos a partir de {@code fromSequence}.
+     *
+     * @param fromSequence primeira sequência a ler; 0 lê desde o início
+     * @throws ChangeTokenExpiredException se remoções posteriores a {@code fromSequence} já foram
+     *                                     descartadas pela compactação
+     */
+    public PatientEventBatch read(long fromSequence, int max) {
+        checkRetained(fromSequence);
+        // Capturado antes da leitura: o que entrar durante ela é lido na próxima chamada
+        long upTo = nextSequence;
+        List<PatientEvent> events = new ArrayList<>(Math.min(max, 1024));
+        for (PatientEventSegment segment : segments) {
+            if (events.size() >= max) {
+                break;
+            }
+            if (segment.lastSequence() >= fromSequence) {
+                segment.read(fromSequence, max, events);
+            }
+        }
+        long next = events.size() < max ? Math.max(upTo, fromSequence) : events.getLast().sequence() + 1;
+        if (!events.isEmpty()) {
+            next = Math.max(next, events.getLast().sequence() + 1);
+        }
+        return new PatientEventBatch(events, next);
+    }
+
+    /**
+     * Recusa a retomada de uma posição cujas remoções seguintes já foram descartadas.
+     *
+     * @throws ChangeTokenExpiredException nesse caso
+     */
+    public void checkRetained(long fromSequence) {
+        if (fromSequence > 1 && fromSequence < tombstoneHorizon) {
+            throw new ChangeTokenExpiredException("Event sequence " + fromSequence
+                    + " is older than the retained deletions (" + tombstoneRetention
+                    + "); read again from the start");
+        }
+    }
+
+    /**
+     * Espera até existir um evento a partir de {@code fromSequence}.
+     *
+     * @return {@code false} se o prazo acabou antes
+     */
+    public boolean awaitEvents(long fromSequence, Duration timeout) throws InterruptedException {
+        if (nextSequence > fromSequence) {
+            return true;
+        }
+        long remaining = timeout.toNanos();
+        appendLock.lock();
+        try {
+            while (nextSequence <= fromSequence) {
+                if (remaining <= 0) {
+                    return false;
+                }
+                remaining = appended.awaitNanos(remaining);
+            }
+            return true;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * @return sequência que o próximo evento vai receber
+     */
+    public long getNextSequence() {
+        return nextSequence;
+    }
+
+    /**
+     * Grava em disco os eventos acrescentados desde a última vez.
+     */
+    @Scheduled(fixedDelayString = "${patient.events.flush-interval:1s}")
+    public void flush() {
+        segments.getLast().force();
+    }
+
+    /**
+     * Sela o segmento ativo e compacta os selados. Uma falha deixa os segmentos como estavam e é
+     * tentada de novo no próximo ciclo.
+     */
+    @Scheduled(fixedDelayString = "${patient.events.compaction-interval:10m}",
+            initialDelayString = "${patient.events.compaction-interval:10m}")
+    public void compact() {
+        try {
+            compactSealedSegments();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Patient event log compaction failed; will retry.", e);
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        appendLock.lock();
+        try {
+            for (PatientEventSegment segment : segments) {
+                segment.force();
+                segment.close();
+            }
+        } finally {
+            appendLock.unlock();
+        }
+        directoryLock.release();
+        lockChannel.close();
+    }
+
+    // Chamado com appendLock
+    private void append(PatientEventType type, UUID patientId, long version, Instant timestamp, byte[] snapshot)
+            throws IOException {
+        long sequence = nextSequence;
+        PatientEventSegment active = segments.getLast();
+        if (!active.append(sequence, type, timestamp, patientId, version, snapshot)) {
+            if (active.size() > 0) {
+                active = roll(active);
+            }
+            if (!active.append(sequence, type, timestamp, patientId, version, snapshot)) {
+                throw new IllegalStateException("Event of " + snapshot.length
+                        + " bytes does not fit in a segment of " + segmentSize + " bytes");
+            }
+        }
+        nextSequence = sequence + 1;
+    }
+
+    // Chamado com appendLock
+    private PatientEventSegment roll(PatientEventSegment active) throws IOException {
+        active.seal();
+        PatientEventSegment next = PatientEventSegment.openActive(segmentPath(nextSequence), nextSequence,
+                segmentSize);
+        synchronized (segmentsMonitor) {
+            List<PatientEventSegment> rolled = new ArrayList<>(segments);
+            rolled.add(next);
+            segments = List.copyOf(rolled);
+        }
+        return next;
+    }
+
+    void compactSealedSegments() throws IOException {
+        synchronized (compactionMonitor) {
+            // Sela o ativo para que os eventos dele também sejam compactados
+            appendLock.lock();
+            try {
+                PatientEventSegment active = segments.getLast();
+                if (active.size() > 0) {
+                    roll(active);
+                }
+            } finally {
+                appendLock.unlock();
+            }
+
+            List<PatientEventSegment> current = segments;
+            List<PatientEventSegment> sealed = current.subList(0, current.size() - 1);
+            if (sealed.isEmpty()) {
+                return;
+            }
+
+            // Evento de maior versão de cada paciente no log inteiro, inclusive no segmento ativo; a
+            // sequência só desempata (um evento que chegou atrasado tem versão menor)
+            Map<UUID, PatientEventSegment.StoredEvent> latest = new HashMap<>();
+            for (PatientEventSegment segment : current) {
+                segment.forEachRecord(record -> latest.merge(record.patientId(), record,
+                        (a, b) -> LATEST_FIRST.compare(a, b) <= 0 ? a : b));
+            }
+            long expiredBefore = ChronoUnit.MICROS.between(Instant.EPOCH, Instant.now().minus(tombstoneRetention));
+
+            // Grupos de segmentos vizinhos cujo conteúdo mantido cabe em um segmento
+            List<CompactionGroup> groups = new ArrayList<>();
+            CompactionGroup group = null;
+            long horizon = tombstoneHorizon;
+            for (PatientEventSegment segment : sealed) {
+                List<PatientEventSegment.StoredEvent> kept = new ArrayList<>();
+                long[] keptBytes = {0};
+                long[] droppedTombstone = {0};
+                segment.forEachRecord(record -> {
+                    boolean isLatest = latest.get(record.patientId()).sequence() == record.sequence();
+                    boolean expired = record.type() == PatientEventType.DELETED
+                            && record.timestampMicros() < expiredBefore;
+                    if (isLatest && !expired) {
+                        kept.add(record);
+                        keptBytes[0] += record.size();
+                    } else if (isLatest) {
+                        droppedTombstone[0] = Math.max(droppedTombstone[0], record.sequence() + 1);
+                    }
+                });
+                horizon = Math.max(horizon, droppedTombstone[0]);
+
+                if (group == null || group.bytes + keptBytes[0] > segmentSize) {
+                    group = new CompactionGroup();
+                    groups.add(group);
+                }
+                group.add(segment, kept, keptBytes[0]);
+            }
+
+            // A posição das remoções descartadas é gravada antes de elas sumirem do disco
+            if (horizon > tombstoneHorizon) {
+                writeHorizon(horizon);
+                tombstoneHorizon = horizon;
+            }
+
+            Map<PatientEventSegment, PatientEventSegment> replaced = new HashMap<>();
+            int rewritten = 0;
+            for (CompactionGroup candidate : groups) {
+                if (candidate.segments.size() == 1 && candidate.unchanged()) {
+                    continue;
+                }
+                PatientEventSegment replacement = rewrite(candidate);
+                candidate.segments.forEach(segment -> replaced.put(segment, replacement));
+                rewritten++;
+            }
+            if (replaced.isEmpty()) {
+                return;
+            }
+
+            synchronized (segmentsMonitor) {
+                List<PatientEventSegment> compacted = new ArrayList<>();
+                for (PatientEventSegment segment : segments) {
+                    if (!replaced.containsKey(segment)) {
+                        compacted.add(segment);
+                    } else {
+                        PatientEventSegment replacement = replaced.get(segment);
+                        if (replacement != null && !compacted.contains(replacement)) {
+                            compacted.add(replacement);
+                        }
+                    }
+                }
+                segments = List.copyOf(compacted);
+            }
+            for (PatientEventSegment segment : replaced.keySet()) {
+                segment.close();
+            }
+            log.info("Compacted {} sealed event segment(s) into {}.", replaced.size(), rewritten);
+        }
+    }
+
+    // Grava o grupo em um arquivo novo e o coloca no lugar dos originais; null se nada ficou
+    private PatientEventSegment rewrite(CompactionGroup group) throws IOException {
+        long firstBase = group.segments.getFirst().baseSequence();
+        long lastBase = group.segments.getLast().baseSequence();
+        Path compacted = directory.resolve(sequenceName(firstBase) + "-" + sequenceName(lastBase) + COMPACTED_SUFFIX);
+        Path temp = directory.resolve(compacted.getFileName() + TEMP_SUFFIX);
+
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (int i = 0; i < group.segments.size(); i++) {
+                PatientEventSegment segment = group.segments.get(i);
+                for (PatientEventSegment.StoredEvent record : group.kept.get(i)) {
+                    ByteBuffer bytes = segment.bytes(record);
+                    while (bytes.hasRemaining()) {
+                        out.write(bytes);
+                    }
+                }
+            }
+            out.force(true);
+        }
+        // A partir daqui o compactado vale: uma queda é concluída por finishCompactions
+        Files.move(temp, compacted, StandardCopyOption.ATOMIC_MOVE);
+        Path target = finishCompaction(compacted);
+        return target == null ? null : PatientEventSegment.openSealed(target, firstBase);
+    }
+
+    // Conclui compactações interrompidas e apaga arquivos temporários
+    private void finishCompactions() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(TEMP_SUFFIX)) {
+                    Files.delete(file);
+                } else if (name.endsWith(COMPACTED_SUFFIX)) {
+                    finishCompaction(file);
+                }
+            }
+        }
+    }
+
+    // Troca os segmentos do intervalo do nome pelo compactado; devolve o caminho final, ou null se vazio
+    private Path finishCompaction(Path compacted) throws IOException {
+        String name = compacted.getFileName().toString();
+        String[] range = name.substring(0, name.length() - COMPACTED_SUFFIX.length()).split("-");
+        long firstBase = Long.parseLong(range[0]);
+        long lastBase = Long.parseLong(range[1]);
+        for (Path segment : segmentFiles()) {
+            long base = baseOf(segment);
+            if (base >= firstBase && base <= lastBase) {
+                Files.delete(segment);
+            }
+        }
+        if (Files.size(compacted) == 0) {
+            Files.delete(compacted);
+            return null;
+        }
+        Path target = segmentPath(firstBase);
+        Files.move(compacted, target, StandardCopyOption.ATOMIC_MOVE);
+        return target;
+    }
+
+    private List<PatientEventSegment> openSegments() throws IOException {
+        List<Path> files = segmentFiles();
+        List<PatientEventSegment> opened = new ArrayList<>();
+        for (int i = 0; i < files.size() - 1; i++) {
+            opened.add(PatientEventSegment.openSealed(files.get(i), baseOf(files.get(i))));
+        }
+        if (files.isEmpty()) {
+            opened.add(PatientEventSegment.openActive(segmentPath(1), 1, segmentSize));
+        } else {
+            Path last = files.getLast();
+            opened.add(PatientEventSegment.openActive(last, baseOf(last), segmentSize));
+        }
+        return List.copyOf(opened);
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted((a, b) -> Long.compare(baseOf(a), baseOf(b)))
+                    .toList();
+        }
+    }
+
+    private long readHorizon() throws IOException {
+        Path file = directory.resolve(HORIZON_FILE);
+        return Files.exists(file) ? Long.parseLong(Files.readString(file).trim()) : 0;
+    }
+
+    private void writeHorizon(long horizon) throws IOException {
+        Path file = directory.resolve(HORIZON_FILE);
+        Path temp = directory.resolve(HORIZON_FILE + TEMP_SUFFIX);
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            out.write(ByteBuffer.wrap(Long.toString(horizon).getBytes(StandardCharsets.US_ASCII)));
+            out.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private byte[] snapshot(PatientResponseDTO patient) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+        try (JsonGenerator generator = jsonFactory.createGenerator(out)) {
+            PatientResponseSerializer.write(patient, generator);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private double diskBytes() {
+        return segments.stream().mapToLong(PatientEventSegment::size).sum();
+    }
+
+    private Path segmentPath(long baseSequence) {
+        return directory.resolve(sequenceName(baseSequence) + SEGMENT_SUFFIX);
+    }
+
+    // Zeros à esquerda para a ordem alfabética ser a das sequências
+    private static String sequenceName(long sequence) {
+        return "%020d".formatted(sequence);
+    }
+
+    private static long baseOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    // Segmentos vizinhos reescritos juntos, com os registros mantidos de cada um
+    private static final class CompactionGroup {
+
+        private final List<PatientEventSegment> segments = new ArrayList<>();
+        private final List<List<PatientEventSegment.StoredEvent>> kept = new ArrayList<>();
+        private long bytes;
+        private long originalBytes;
+
+        void add(PatientEventSegment segment, List<PatientEventSegment.StoredEvent> keptRecords, long keptBytes) {
+            segments.add(segment);
+            kept.add(keptRecords);
+            bytes += keptBytes;
+            originalBytes += segment.size();
+        }
+
+        boolean unchanged() {
+            return bytes == originalBytes;
+        }
+
+    }
+
+}
@@ -0,0 +1,274 @@
+package com.ojuara.patientservice.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * Um arquivo do {@link PatientEventLog}, mapeado em memória, com eventos em sequência crescente.
+ *
+ * <p>Cada registro (big-endian) é o tamanho do corpo (int), o CRC32C do corpo (int) e o corpo:
+ * sequência (long), tipo (byte), instante em microssegundos (long), id do paciente (dois longs),
+ * versão do paciente (long), tamanho do snapshot (int) e o snapshot. Na abertura os registros são conferidos pelo CRC e a
+ * leitura para no primeiro inválido, que é o resto de uma escrita interrompida.</p>
+ *
+ * <p>O segmento ativo é mapeado com a capacidade inteira e recebe os appends de uma thread por vez
+ * (sob o lock do log). Os leitores não usam lock: só leem até {@link #size()}, que é publicado
+ * depois de cada registro completo. Ao ser selado, o arquivo é cortado no fim dos dados e
+ * remapeado só para leitura.</p>
+ */
+@Slf4j
+final class PatientEventSegment implements Closeable {
+
+    static final int HEADER_SIZE = 8;
+    private static final int FIXED_BODY_SIZE = 8 + 1 + 8 + 16 + 8 + 4;
+    // Uma entrada no índice esparso a cada 4 KB de registros
+    private static final int INDEX_INTERVAL = 4096;
+    private static final byte[] ZEROS = new byte[64 * 1024];
+
+    private final Path path;
+    private final long baseSequence;
+    private final FileChannel channel;
+    private final ConcurrentSkipListMap<Long, Integer> index = new ConcurrentSkipListMap<>();
+
+    private volatile MappedByteBuffer buffer;
+    private volatile int size;
+    private volatile long lastSequence;
+    private int lastIndexedPosition = -INDEX_INTERVAL;
+
+    private PatientEventSegment(Path path, long baseSequence, FileChannel channel, MappedByteBuffer buffer) {
+        this.path = path;
+        this.baseSequence = baseSequence;
+        this.channel = channel;
+        this.buffer = buffer;
+    }
+
+    /**
+     * Abre (ou cria) o segmento que recebe os appends, com ao menos {@code capacity} bytes.
+     */
+    static PatientEventSegment openActive(Path path, long baseSequence, int capacity) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        long mapped = Math.max(capacity, channel.size());
+        PatientEventSegment segment = new PatientEventSegment(path, baseSequence, channel,
+                channel.map(FileChannel.MapMode.READ_WRITE, 0, mapped));
+        segment.recover(true);
+        return segment;
+    }
+
+    /**
+     * Abre um segmento selado, só para leitura.
+     */
+    static PatientEventSegment openSealed(Path path, long baseSequence) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        PatientEventSegment segment = new PatientEventSegment(path, baseSequence, channel,
+                channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        segment.recover(false);
+        return segment;
+    }
+
+    /**
+     * Acrescenta um evento. Chamado por uma thread por vez.
+     *
+     * @return {@code false} se o registro não cabe no que resta do segmento
+     */
+    boolean append(long sequence, PatientEventType type, Instant timestamp, UUID patientId, long version,
+                   byte[] snapshot) {
+        MappedByteBuffer target = buffer;
+        int position = size;
+        int bodySize = FIXED_BODY_SIZE + snapshot.length;
+        if ((long) position + HEADER_SIZE + bodySize > target.capacity()) {
+            return false;
+        }
+
+        int body = position + HEADER_SIZE;
+        target.putLong(body, sequence);
+        target.put(body + 8, type.code());
+        target.putLong(body + 9, ChronoUnit.MICROS.between(Instant.EPOCH, timestamp));
+        target.putLong(body + 17, patientId.getMostSignificantBits());
+        target.putLong(body + 25, patientId.getLeastSignificantBits());
+        target.putLong(body + 33, version);
+        target.putInt(body + 41, snapshot.length);
+        target.put(body + FIXED_BODY_SIZE, snapshot);
+        target.putInt(position + 4, crc(target, body, bodySize));
+        target.putInt(position, bodySize);
+
+        lastSequence = sequence;
+        indexRecord(sequence, position);
+        // Publica o registro para os leitores
+        size = body + bodySize;
+        return true;
+    }
+
+    /**
+     * Acrescenta a {@code out} os eventos com sequência a partir de {@code fromSequence}, até
+     * {@code out} ter {@code max} eventos.
+     */
+    void read(long fromSequence, int max, List<PatientEvent> out) {
+        MappedByteBuffer source = buffer;
+        int end = size;
+        Map.Entry<Long, Integer> start = index.floorEntry(fromSequence);
+        int position = start == null ? 0 : start.getValue();
+        while (position < end && out.size() < max) {
+            int body = position + HEADER_SIZE;
+            if (source.getLong(body) >= fromSequence) {
+                out.add(decode(source, body));
+            }
+            position = body + source.getInt(position);
+        }
+    }
+
+    /**
+     * Percorre os registros sem decodificar o snapshot (usado pela compactação).
+     */
+    void forEachRecord(Consumer<StoredEvent> action) {
+        MappedByteBuffer source = buffer;
+        int end = size;
+        int position = 0;
+        while (position < end) {
+            int bodySize = source.getInt(position);
+            int body = position + HEADER_SIZE;
+            action.accept(new StoredEvent(
+                    source.getLong(body),
+                    PatientEventType.fromCode(source.get(body + 8)),
+                    source.getLong(body + 9),
+                    new UUID(source.getLong(body + 17), source.getLong(body + 25)),
+                    source.getLong(body + 33),
+                    position,
+                    HEADER_SIZE + bodySize));
+            position = body + bodySize;
+        }
+    }
+
+    /**
+     * Bytes de um registro, com o cabeçalho, para copiá-lo como está.
+     */
+    ByteBuffer bytes(StoredEvent record) {
+        return buffer.slice(record.position(), record.size()).asReadOnlyBuffer();
+    }
+
+    /**
+     * Grava em disco o que foi acrescentado.
+     */
+    void force() {
+        if (channel.isOpen()) {
+            buffer.force(0, size);
+        }
+    }
+
+    /**
+     * Fecha o segmento para appends: grava em disco, corta o arquivo no fim dos dados e o
+     * remapeia só para leitura. Leitores com o mapeamento anterior continuam válidos, pois só
+     * leem até o fim dos dados.
+     */
+    void seal() throws IOException {
+        int end = size;
+        buffer.force(0, end);
+        channel.truncate(end);
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, end);
+    }
+
+    Path path() {
+        return path;
+    }
+
+    long baseSequence() {
+        return baseSequence;
+    }
+
+    /**
+     * @return última sequência gravada, ou {@code baseSequence - 1} se o segmento estiver vazio
+     */
+    long lastSequence() {
+        return lastSequence;
+    }
+
+    int size() {
+        return size;
+    }
+
+    @Override
+    public void close() throws IOException {
+        // O mapeamento continua válido para quem ainda o lê; é liberado pelo GC
+        channel.close();
+    }
+
+    private void recover(boolean active) throws IOException {
+        MappedByteBuffer source = buffer;
+        int position = 0;
+        long last = baseSequence - 1;
+        while (position + HEADER_SIZE <= source.capacity()) {
+            int bodySize = source.getInt(position);
+            int body = position + HEADER_SIZE;
+            if (bodySize < FIXED_BODY_SIZE || (long) body + bodySize > source.capacity()
+                    || crc(source, body, bodySize) != source.getInt(position + 4)) {
+                break;
+            }
+            last = source.getLong(body);
+            indexRecord(last, position);
+            position = body + bodySize;
+        }
+        size = position;
+        lastSequence = last;
+
+        if (active && position + 4 <= source.capacity() && source.getInt(position) != 0) {
+            log.warn("Discarding a partial event record at byte {} of {}.", position, path);
+            // Zera o resto para que ele não seja lido como continuação depois dos próximos appends
+            for (int offset = position; offset < source.capacity(); offset += ZEROS.length) {
+                source.put(offset, ZEROS, 0, Math.min(ZEROS.length, source.capacity() - offset));
+            }
+        } else if (!active && position < source.capacity()) {
+            log.warn("Event segment {} is corrupt after byte {}; the rest of it is ignored.", path, position);
+        }
+    }
+
+    private void indexRecord(long sequence, int position) {
+        if (position - lastIndexedPosition >= INDEX_INTERVAL) {
+            index.put(sequence, position);
+            lastIndexedPosition = position;
+        }
+    }
+
+    private PatientEvent decode(ByteBuffer source, int body) {
+        byte[] snapshot = new byte[source.getInt(body + 41)];
+        source.get(body + FIXED_BODY_SIZE, snapshot);
+        return new PatientEvent(
+                source.getLong(body),
+                PatientEventType.fromCode(source.get(body + 8)),
+                new UUID(source.getLong(body + 17), source.getLong(body + 25)),
+                source.getLong(body + 33),
+                Instant.EPOCH.plus(source.getLong(body + 9), ChronoUnit.MICROS),
+                snapshot);
+    }
+
+    private static int crc(ByteBuffer source, int offset, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(source.slice(offset, length));
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Posição de um registro no segmento.
+     *
+     * @param timestampMicros instante do evento em microssegundos desde a época
+     * @param size tamanho com o cabeçalho
+     */
+    record StoredEvent(long sequence, PatientEventType type, long timestampMicros, UUID patientId,
+                       long version, int position, int size) {
+    }
+
+}
@@ -0,0 +1,31 @@
+package com.ojuara.patientservice.service;
+
+/**
+ * Tipo de um {@link PatientEvent}. O código é o byte gravado no log: não reaproveite códigos.
+ */
+public enum PatientEventType {
+
+    CREATED((byte) 1),
+    UPDATED((byte) 2),
+    DELETED((byte) 3);
+
+    private final byte code;
+
+    PatientEventType(byte code) {
+        this.code = code;
+    }
+
+    public byte code() {
+        return code;
+    }
+
+    public static PatientEventType fromCode(byte code) {
+        for (PatientEventType type : values()) {
+            if (type.code == code) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("Unknown patient event type " + code);
+    }
+
+}
@@ -0,0 +1,348 @@
+package com.ojuara.patientservice.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ojuara.patientservice.dto.PatientExportDTO;
+import com.ojuara.patientservice.dto.PatientResponseDTO;
+import com.ojuara.patientservice.exception.PatientExportNotFoundException;
+import com.ojuara.patientservice.exception.PatientExportStateException;
+import com.ojuara.patientservice.mapper.PatientResponseSerializer;
+import com.ojuara.patientservice.model.PatientExport;
+import com.ojuara.patientservice.model.PatientExportCompression;
+import com.ojuara.patientservice.model.PatientExportFormat;
+import com.ojuara.patientservice.model.PatientExportStatus;
+import com.ojuara.patientservice.repository.PatientExportRepository;
+import com.ojuara.patientservice.repository.PatientStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exportação de todos os pacientes para arquivos NDJSON ou CSV, opcionalmente com gzip, para os
+ * extratos diários de analytics.
+ *
+ * <p>A exportação roda em uma virtual thread própria e percorre a tabela em blocos de
+ * {@code patient.export.chunk-size} pacientes, cada um uma consulta keyset em
+ * (registeredDate, id) — a mesma da listagem por cursor — em uma transação curta de leitura.
+ * Cada bloco é codificado (e comprimido) em um buffer reaproveitado, gravado no arquivo por um
+ * {@link FileChannel} e confirmado com {@code force}; só então o checkpoint é salvo em
+ * {@link PatientExport}. A memória usada é a de um bloco, qualquer que seja o tamanho da tabela.
+ * Com shards, cada bloco é a página intercalada de todos eles, como na listagem.</p>
+ *
+ * <p>Uma exportação que falhar (ou cuja instância caiu, sem checkpoint há mais de
+ * {@code patient.export.stale-after}) pode ser retomada: o arquivo é cortado no tamanho do
+ * checkpoint, descartando um bloco gravado pela metade, e a leitura continua depois da chave
+ * salva. Com gzip cada bloco é um membro gzip separado, então o corte sempre cai entre membros
+ * e o arquivo continua válido.</p>
+ *
+ * <p>A retomada troca o {@code runToken} da exportação. Se a execução anterior só estava lenta, o
+ * próximo checkpoint dela não encontra o token e ela para sem gravar mais nada; para estreitar a
+ * janela em que ela ainda escreve no arquivo, cada bloco renova o checkpoint antes de ser gravado.</p>
+ */
+@Slf4j
+@Service
+public class PatientExportService {
+
+    private static final String CSV_HEADER = "id,name,email,address,dateOfBirth,registeredDate,version\n";
+
+    private final PatientStore patientStore;
+    private final PatientExportRepository exportRepository;
+    private final TransactionTemplate readOnlyTransaction;
+    private final JsonFactory jsonFactory;
+    private final Path directory;
+    private final int chunkSize;
+    private final Duration staleAfter;
+
+    public PatientExportService(PatientStore patientStore,
+                                PatientExportRepository exportRepository,
+                                TransactionTemplate transactionTemplate,
+                                ObjectMapper objectMapper,
+                                @Value("${patient.export.directory:${java.io.tmpdir}/patient-exports}") String directory,
+                                @Value("${patient.export.chunk-size:1000}") int chunkSize,
+                                @Value("${patient.export.stale-after:5m}") Duration staleAfter) {
+        this.patientStore = patientStore;
+        this.exportRepository = exportRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        this.readOnlyTransaction.setReadOnly(true);
+        this.jsonFactory = objectMapper.getFactory();
+        this.directory = Path.of(directory);
+        this.chunkSize = chunkSize;
+        this.staleAfter = staleAfter;
+    }
+
+    /**
+     * Cria a exportação e a inicia em segundo plano.
+     *
+     * @param format formato das linhas
+     * @param compression compressão do arquivo
+     * @return estado inicial da exportação (RUNNING)
+     */
+    public PatientExportDTO startExport(PatientExportFormat format, PatientExportCompression compression) {
+        UUID id = UUID.randomUUID();
+        Instant now = now();
+        String fileName = "patients-" + id + switch (format) {
+            case NDJSON -> ".ndjson";
+            case CSV -> ".csv";
+        } + (compression == PatientExportCompression.GZIP ? ".gz" : "");
+
+        PatientExport export = new PatientExport(id, format, compression, PatientExportStatus.RUNNING,
+                UUID.randomUUID(), directory.resolve(fileName).toString(), null, null, 0, 0, now, now, null, null);
+        export = exportRepository.save(export);
+
+        launch(export.getId(), export.getRunToken());
+        return PatientExportDTO.of(export);
+    }
+
+    /**
+     * Retoma uma exportação que falhou, ou cuja execução parou de registrar checkpoints, do
+     * último bloco confirmado.
+     *
+     * @param id id da exportação
+     * @return estado da exportação retomada (RUNNING)
+     * @throws PatientExportNotFoundException se a exportação não existir
+     * @throws PatientExportStateException se ela já estiver concluída ou em andamento
+     */
+    public PatientExportDTO resumeExport(UUID id) {
+        PatientExport export = find(id);
+        Instant now = now();
+        UUID runToken = UUID.randomUUID();
+        if (exportRepository.claimForResume(id, runToken, now, now.minus(staleAfter),
+                PatientExportStatus.RUNNING, PatientExportStatus.FAILED) == 0) {
+            throw new PatientExportStateException("Export " + id + " is " + export.getStatus()
+                    + " and cannot be resumed.");
+        }
+
+        log.info("Resuming patient export {} after {} rows.", id, export.getRowsWritten());
+        launch(id, runToken);
+        return PatientExportDTO.of(find(id));
+    }
+
+    /**
+     * Estado atual da exportação.
+     *
+     * @throws PatientExportNotFoundException se a exportação não existir
+     */
+    public PatientExportDTO getExport(UUID id) {
+        return PatientExportDTO.of(find(id));
+    }
+
+    /**
+     * Arquivo de uma exportação concluída.
+     *
+     * @throws PatientExportNotFoundException se a exportação não existir
+     * @throws PatientExportStateException se ela ainda não estiver concluída
+     */
+    public Path getExportFile(UUID id) {
+        PatientExport export = find(id);
+        if (export.getStatus() != PatientExportStatus.COMPLETED) {
+            throw new PatientExportStateException("Export " + id + " is " + export.getStatus() + ", not COMPLETED.");
+        }
+        return Path.of(export.getFilePath());
+    }
+
+    private void launch(UUID id, UUID runToken) {
+        Thread.ofVirtual().name("patient-export-" + id).start(() -> run(id, runToken));
+    }
+
+    private void run(UUID id, UUID runToken) {
+        PatientExport export = find(id);
+        if (!runToken.equals(export.getRunToken())) {
+            log.warn("Patient export {} was taken over before it started; not running it.", id);
+            return;
+        }
+        try {
+            write(export);
+            export.setStatus(PatientExportStatus.COMPLETED);
+            export.setCompletedAt(now());
+            log.info("Patient export {} finished: {} rows, {} bytes.", id, export.getRowsWritten(),
+                    export.getBytesWritten());
+        } catch (SupersededRunException e) {
+            log.warn("Patient export {} was taken over by another run after {} rows; stopping.", id,
+                    export.getRowsWritten());
+            return;
+        } catch (Exception e) {
+            log.error("Patient export {} failed after {} rows.", id, export.getRowsWritten(), e);
+            export.setStatus(PatientExportStatus.FAILED);
+            String error = e.getClass().getSimpleName() + ": " + e.getMessage();
+            export.setLastError(error.length() > 1000 ? error.substring(0, 1000) : error);
+        }
+        export.setUpdatedAt(now());
+        if (exportRepository.finish(export) == 0) {
+            log.warn("Patient export {} was taken over by another run; its final state was not saved.", id);
+        }
+    }
+
+    private void write(PatientExport export) throws IOException {
+        Path file = Path.of(export.getFilePath());
+        Files.createDirectories(file.getParent());
+        ChunkBuffer buffer = new ChunkBuffer();
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            if (channel.size() < export.getBytesWritten()) {
+                throw new IOException("Export file " + file + " is shorter than its checkpoint ("
+                        + channel.size() + " < " + export.getBytesWritten() + " bytes)");
+            }
+            // Descarta o que foi gravado depois do último checkpoint
+            channel.truncate(export.getBytesWritten());
+            channel.position(export.getBytesWritten());
+
+            if (export.getBytesWritten() == 0 && export.getFormat() == PatientExportFormat.CSV) {
+                buffer.reset();
+                try (OutputStream out = compress(buffer, export.getCompression())) {
+                    out.write(CSV_HEADER.getBytes(StandardCharsets.UTF_8));
+                }
+                append(channel, buffer);
+                checkpoint(export, List.of(), channel.position());
+            }
+
+            while (true) {
+                List<PatientResponseDTO> chunk = readChunk(export);
+                if (chunk.isEmpty()) {
+                    return;
+                }
+                buffer.reset();
+                try (OutputStream out = compress(buffer, export.getCompression())) {
+                    encode(chunk, export.getFormat(), out);
+                }
+                // Confirma que a exportação ainda é desta execução antes de escrever no arquivo
+                checkpoint(export, List.of(), export.getBytesWritten());
+                append(channel, buffer);
+                checkpoint(export, chunk, channel.position());
+            }
+        }
+    }
+
+    private List<PatientResponseDTO> readChunk(PatientExport export) {
+        return readOnlyTransaction.execute(status -> export.getLastId() == null
+                ? patientStore.findFirstResponsePage(chunkSize)
+                : patientStore.findResponsePageAfter(export.getLastRegisteredDate(), export.getLastId(), chunkSize));
+    }
+
+    private static void append(FileChannel channel, ChunkBuffer buffer) throws IOException {
+        ByteBuffer bytes = buffer.toByteBuffer();
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        // O checkpoint só pode apontar para bytes que já estão no disco
+        channel.force(false);
+    }
+
+    private void checkpoint(PatientExport export, List<PatientResponseDTO> chunk, long bytesWritten) {
+        if (!chunk.isEmpty()) {
+            PatientResponseDTO last = chunk.getLast();
+            export.setLastRegisteredDate(last.registeredDate());
+            export.setLastId(last.id());
+            export.setRowsWritten(export.getRowsWritten() + chunk.size());
+        }
+        export.setBytesWritten(bytesWritten);
+        // updatedAt também indica que a exportação segue viva (ver resumeExport)
+        export.setUpdatedAt(now());
+        if (exportRepository.checkpoint(export) == 0) {
+            throw new SupersededRunException();
+        }
+    }
+
+    private static OutputStream compress(OutputStream out, PatientExportCompression compression) throws IOException {
+        return switch (compression) {
+            case NONE -> out;
+            case GZIP -> new GZIPOutputStream(out, 64 * 1024);
+        };
+    }
+
+    private void encode(List<PatientResponseDTO> chunk, PatientExportFormat format, OutputStream out)
+            throws IOException {
+        switch (format) {
+            case NDJSON -> {
+                try (JsonGenerator generator = jsonFactory.createGenerator(out)) {
+                    generator.setRootValueSeparator(null);
+                    for (PatientResponseDTO patient : chunk) {
+                        PatientResponseSerializer.write(patient, generator);
+                        generator.writeRaw('\n');
+                    }
+                }
+            }
+            case CSV -> {
+                try (Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8)) {
+                    for (PatientResponseDTO patient : chunk) {
+                        writer.write(patient.id().toString());
+                        writer.write(',');
+                        writeCsvField(writer, patient.name());
+                        writer.write(',');
+                        writeCsvField(writer, patient.email());
+                        writer.write(',');
+                        writeCsvField(writer, patient.address());
+                        writer.write(',');
+                        writer.write(patient.dateOfBirth().toString());
+                        writer.write(',');
+                        writer.write(patient.registeredDate().toString());
+                        writer.write(',');
+                        writer.write(patient.version() == null ? "" : patient.version().toString());
+                        writer.write('\n');
+                    }
+                }
+            }
+        }
+    }
+
+    // Aspas só quando o campo tem separador, aspas ou quebra de linha; aspas internas dobradas
+    private static void writeCsvField(Writer writer, String value) throws IOException {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    private PatientExport find(UUID id) {
+        return exportRepository.findById(id)
+                .orElseThrow(() -> new PatientExportNotFoundException("Export with id " + id + " not found."));
+    }
+
+    private static Instant now() {
+        return Instant.now().truncatedTo(ChronoUnit.MICROS);
+    }
+
+    /**
+     * A exportação foi retomada por outra execução, que agora é a dona do checkpoint e do arquivo.
+     */
+    private static final class SupersededRunException extends RuntimeException {
+    }
+
+    /**
+     * Buffer de um bloco, reaproveitado entre blocos e lido sem cópia pelo canal.
+     */
+    private static final class ChunkBuffer extends ByteArrayOutputStream {
+
+        ChunkBuffer() {
+            super(256 * 1024);
+        }
+
+        ByteBuffer toByteBuffer() {
+            return ByteBuffer.wrap(buf, 0, count);
+        }
+
+    }
+
+}
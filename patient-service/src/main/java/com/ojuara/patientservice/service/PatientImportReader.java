@@ -0,0 +1,196 @@
+package com.ojuara.patientservice.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ojuara.patientservice.dto.PatientRequestDTO;
+import com.ojuara.patientservice.exception.InvalidImportFileException;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Lê o arquivo de importação em lote registro a registro, sem carregar o corpo inteiro
+ * em memória.
+ *
+ * <p>Formatos aceitos:
+ * - {@code application/json}: array de objetos {@link PatientRequestDTO};
+ * - {@code application/x-ndjson}: um objeto por linha;
+ * - {@code text/csv}: cabeçalho com as colunas name, email, address, dateOfBirth e registeredDate.</p>
+ *
+ * <p>Erros em um registro isolado (linha NDJSON malformada, linha CSV com colunas a menos)
+ * viram um {@link ImportRow} com {@code error} preenchido. Erros que impedem continuar a
+ * leitura lançam {@link InvalidImportFileException}.</p>
+ */
+@Component
+public class PatientImportReader {
+
+    public static final MediaType TEXT_CSV = MediaType.valueOf("text/csv");
+
+    private static final List<String> CSV_COLUMNS =
+            List.of("name", "email", "address", "dateOfBirth", "registeredDate");
+
+    private final ObjectMapper objectMapper;
+
+    public PatientImportReader(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Registro lido do arquivo.
+     *
+     * @param row número do registro (1 = primeiro registro, sem contar cabeçalho)
+     * @param patient dados do paciente, ou null quando o registro não pôde ser lido
+     * @param error motivo da falha de leitura, ou null quando o registro foi lido
+     */
+    public record ImportRow(int row, PatientRequestDTO patient, String error) {
+    }
+
+    public void read(InputStream body, MediaType contentType, Consumer<ImportRow> consumer) {
+        Charset charset = contentType.getCharset() != null ? contentType.getCharset() : StandardCharsets.UTF_8;
+
+        try {
+            if (MediaType.APPLICATION_NDJSON.isCompatibleWith(contentType)) {
+                readNdjson(new BufferedReader(new InputStreamReader(body, charset)), consumer);
+            } else if (TEXT_CSV.isCompatibleWith(contentType)) {
+                readCsv(new BufferedReader(new InputStreamReader(body, charset)), consumer);
+            } else if (MediaType.APPLICATION_JSON.isCompatibleWith(contentType)) {
+                readJson(body, consumer);
+            } else {
+                throw new InvalidImportFileException("Unsupported content type: " + contentType);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void readJson(InputStream body, Consumer<ImportRow> consumer) throws IOException {
+        // Um array na raiz é percorrido elemento a elemento pelo MappingIterator
+        try (MappingIterator<PatientRequestDTO> patients =
+                     objectMapper.readerFor(PatientRequestDTO.class).readValues(body)) {
+            int row = 0;
+            while (patients.hasNextValue()) {
+                consumer.accept(new ImportRow(++row, patients.nextValue(), null));
+            }
+        } catch (JsonProcessingException e) {
+            throw new InvalidImportFileException("Malformed JSON import file: " + e.getOriginalMessage(), e);
+        }
+    }
+
+    private void readNdjson(BufferedReader reader, Consumer<ImportRow> consumer) throws IOException {
+        int row = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            row++;
+            try {
+                consumer.accept(new ImportRow(row, objectMapper.readValue(line, PatientRequestDTO.class), null));
+            } catch (JsonProcessingException e) {
+                consumer.accept(new ImportRow(row, null, "Malformed JSON: " + e.getOriginalMessage()));
+            }
+        }
+    }
+
+    private void readCsv(Reader reader, Consumer<ImportRow> consumer) throws IOException {
+        List<String> header = nextCsvRecord(reader);
+        if (header == null) {
+            return;
+        }
+
+        // Posição de cada coluna conhecida no cabeçalho (ignora colunas extras)
+        Map<String, Integer> positions = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            String column = header.get(i).replace("\uFEFF", "").trim().toLowerCase(Locale.ROOT);
+            positions.put(column, i);
+        }
+        for (String column : CSV_COLUMNS) {
+            if (!positions.containsKey(column.toLowerCase(Locale.ROOT))) {
+                throw new InvalidImportFileException("CSV header is missing column: " + column);
+            }
+        }
+
+        int row = 0;
+        List<String> fields;
+        while ((fields = nextCsvRecord(reader)) != null) {
+            if (fields.size() == 1 && fields.get(0).isBlank()) {
+                continue;
+            }
+            row++;
+            if (fields.size() != header.size()) {
+                consumer.accept(new ImportRow(row, null,
+                        "Expected " + header.size() + " columns but found " + fields.size()));
+                continue;
+            }
+
+            PatientRequestDTO patient = new PatientRequestDTO(
+                    fields.get(positions.get("name")),
+                    fields.get(positions.get("email")),
+                    fields.get(positions.get("address")),
+                    fields.get(positions.get("dateofbirth")),
+                    fields.get(positions.get("registereddate")));
+            consumer.accept(new ImportRow(row, patient, null));
+        }
+    }
+
+    /**
+     * Lê um registro CSV (RFC 4180): campos separados por vírgula, aspas duplas para
+     * campos com vírgula/quebra de linha e {@code ""} como aspas escapadas.
+     *
+     * @return campos do registro, ou null no fim do arquivo
+     */
+    private static List<String> nextCsvRecord(Reader reader) throws IOException {
+        int c = reader.read();
+        if (c == -1) {
+            return null;
+        }
+
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+
+        while (true) {
+            if (quoted) {
+                if (c == -1) {
+                    throw new InvalidImportFileException("Unterminated quoted field in CSV import file");
+                }
+                if (c == '"') {
+                    int next = reader.read();
+                    if (next != '"') {
+                        quoted = false;
+                        c = next;
+                        continue;
+                    }
+                }
+                field.append((char) c);
+            } else if (c == -1 || c == '\n') {
+                fields.add(field.toString());
+                return fields;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '"' && field.isEmpty()) {
+                quoted = true;
+            } else if (c != '\r') {
+                field.append((char) c);
+            }
+            c = reader.read();
+        }
+    }
+
+}
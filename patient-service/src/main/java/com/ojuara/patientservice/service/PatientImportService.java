@@ -0,0 +1,241 @@
+package com.ojuara.patientservice.service;
+
+import com.ojuara.patientservice.config.ReadConsistency;
+import com.ojuara.patientservice.dto.PatientImportResultDTO;
+import com.ojuara.patientservice.dto.PatientImportRowResultDTO;
+import com.ojuara.patientservice.dto.PatientImportStatus;
+import com.ojuara.patientservice.dto.PatientRequestDTO;
+import com.ojuara.patientservice.dto.validators.CreatePatientValidationGroup;
+import com.ojuara.patientservice.mapper.PatientMapper;
+import com.ojuara.patientservice.model.BillingOutboxEvent;
+import com.ojuara.patientservice.model.Patient;
+import com.ojuara.patientservice.repository.PatientInsertResult;
+import com.ojuara.patientservice.repository.PatientStore;
+import com.ojuara.patientservice.repository.ShardedPatientRepository;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import jakarta.validation.groups.Default;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.InputStream;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Importação de pacientes em lote.
+ *
+ * <p>Os registros são processados em blocos de {@value #CHUNK_SIZE}: cada bloco faz uma
+ * única consulta para descobrir quais emails já existem e grava os novos pacientes com
+ * batching JDBC do Hibernate, em uma transação própria. Assim uma falha em um bloco não
+ * desfaz os blocos anteriores e a memória usada não depende do tamanho do arquivo
+ * (exceto pelo relatório por linha).</p>
+ *
+ * <p>Com shards ({@code patient.db.shard-urls}) cada linha vai para o seu shard pelo
+ * {@link ShardedPatientRepository#insertIfAbsent}, que também resolve os emails repetidos, fora da
+ * transação do bloco: as pendências de cobrança são reservadas antes dele
+ * ({@link PatientBillingOutbox}) e o índice de busca continua na transação do bloco.</p>
+ */
+@Slf4j
+@Service
+public class PatientImportService {
+
+    static final int CHUNK_SIZE = 500;
+
+    private final PatientStore patientStore;
+    private final PatientImportReader importReader;
+    private final Validator validator;
+    private final TransactionTemplate transactionTemplate;
+    private final EmailBloomFilter emailFilter;
+    private final PatientBillingOutbox billingOutbox;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public PatientImportService(PatientStore patientStore,
+                                PatientImportReader importReader,
+                                Validator validator,
+                                TransactionTemplate transactionTemplate,
+                                EmailBloomFilter emailFilter,
+                                PatientBillingOutbox billingOutbox,
+                                ApplicationEventPublisher eventPublisher) {
+        this.patientStore = patientStore;
+        this.importReader = importReader;
+        this.validator = validator;
+        this.transactionTemplate = transactionTemplate;
+        this.emailFilter = emailFilter;
+        this.billingOutbox = billingOutbox;
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * Importa os pacientes do arquivo enviado.
+     *
+     * @param body corpo da requisição (JSON array, NDJSON ou CSV)
+     * @param contentType formato do corpo
+     * @return totais e o resultado de cada linha (CREATED, EXISTING ou REJECTED)
+     */
+    public PatientImportResultDTO importPatients(InputStream body, MediaType contentType) {
+        List<PatientImportRowResultDTO> results = new ArrayList<>();
+        List<PatientImportReader.ImportRow> chunk = new ArrayList<>(CHUNK_SIZE);
+
+        importReader.read(body, contentType, row -> {
+            Map<String, String> errors = validate(row);
+            if (!errors.isEmpty()) {
+                String email = row.patient() != null ? row.patient().getEmail() : null;
+                results.add(new PatientImportRowResultDTO(
+                        row.row(), PatientImportStatus.REJECTED, null, email, errors));
+                return;
+            }
+
+            chunk.add(row);
+            if (chunk.size() == CHUNK_SIZE) {
+                results.addAll(importChunk(chunk));
+                chunk.clear();
+            }
+        });
+
+        if (!chunk.isEmpty()) {
+            results.addAll(importChunk(chunk));
+        }
+
+        results.sort(Comparator.comparingInt(PatientImportRowResultDTO::getRow));
+
+        Map<PatientImportStatus, Long> totals = results.stream()
+                .collect(Collectors.groupingBy(PatientImportRowResultDTO::getStatus, Collectors.counting()));
+
+        log.info("Patient import finished: {} created, {} existing, {} rejected.",
+                totals.getOrDefault(PatientImportStatus.CREATED, 0L),
+                totals.getOrDefault(PatientImportStatus.EXISTING, 0L),
+                totals.getOrDefault(PatientImportStatus.REJECTED, 0L));
+
+        return new PatientImportResultDTO(
+                totals.getOrDefault(PatientImportStatus.CREATED, 0L).intValue(),
+                totals.getOrDefault(PatientImportStatus.EXISTING, 0L).intValue(),
+                totals.getOrDefault(PatientImportStatus.REJECTED, 0L).intValue(),
+                results);
+    }
+
+    private List<PatientImportRowResultDTO> importChunk(List<PatientImportReader.ImportRow> chunk) {
+        try {
+            return insertChunk(chunk);
+        } catch (DataIntegrityViolationException e) {
+            if (patientStore.writesOutsideTransaction()) {
+                // Sem nova tentativa: as linhas já gravadas nos shards voltariam como EXISTING
+                throw e;
+            }
+            // Outra requisição gravou algum destes emails entre a consulta e o insert.
+            // A transação do bloco foi desfeita; na nova tentativa a consulta já enxerga esses emails.
+            log.warn("Email collision while importing chunk, retrying: {}", e.getMostSpecificCause().getMessage());
+            return insertChunk(chunk);
+        }
+    }
+
+    private List<PatientImportRowResultDTO> insertChunk(List<PatientImportReader.ImportRow> chunk) {
+        Set<String> emails = chunk.stream()
+                .map(row -> row.patient().getEmail())
+                .collect(Collectors.toSet());
+
+        // Uma única consulta por bloco para todos os emails, no primário como o insert que vem depois
+        Map<String, UUID> existing;
+        try (ReadConsistency.Scope primary = ReadConsistency.pinToPrimary()) {
+            existing = patientStore.findIdsByEmailIn(emails);
+        }
+
+        // Entidades novas por email; a primeira linha com o email é a que cria o paciente
+        Map<String, Patient> candidates = new LinkedHashMap<>();
+        for (PatientImportReader.ImportRow row : chunk) {
+            String email = row.patient().getEmail();
+            if (!existing.containsKey(email) && !candidates.containsKey(email)) {
+                candidates.put(email, PatientMapper.toEntity(row.patient()));
+            }
+        }
+
+        // Antes da transação do bloco (ver PatientBillingOutbox)
+        List<BillingOutboxEvent> reserved = billingOutbox.reserve(candidates.values());
+
+        return transactionTemplate.execute(status -> {
+            candidates.keySet().forEach(emailFilter::add);
+            Map<String, PatientInsertResult> inserted = new HashMap<>();
+            for (PatientInsertResult result : patientStore.insertAllIfAbsent(new ArrayList<>(candidates.values()))) {
+                inserted.put(result.patient().getEmail(), result);
+            }
+            List<Patient> created = inserted.values().stream()
+                    .filter(PatientInsertResult::created)
+                    .map(PatientInsertResult::patient)
+                    .toList();
+
+            // Pendências de conta de cobrança na mesma transação do bloco
+            billingOutbox.settle(reserved, created);
+            // Índice de busca: aplicado só se o bloco for confirmado
+            eventPublisher.publishEvent(PatientsChangedEvent.created(created.stream().map(PatientMapper::toDTO).toList()));
+
+            List<PatientImportRowResultDTO> results = new ArrayList<>(chunk.size());
+            Set<String> reported = new HashSet<>();
+            for (PatientImportReader.ImportRow row : chunk) {
+                String email = row.patient().getEmail();
+                PatientInsertResult result = inserted.get(email);
+                if (existing.containsKey(email)) {
+                    results.add(new PatientImportRowResultDTO(
+                            row.row(), PatientImportStatus.EXISTING, existing.get(email).toString(), email, null));
+                } else if (result == null) {
+                    // Email preso por uma troca de email que não terminou (ver ShardedPatientRepository)
+                    results.add(new PatientImportRowResultDTO(row.row(), PatientImportStatus.REJECTED, null,
+                            email, Map.of("email", "Email is being changed by another patient")));
+                } else if (result.created() && reported.add(email)) {
+                    results.add(new PatientImportRowResultDTO(
+                            row.row(), PatientImportStatus.CREATED, result.patient().getId().toString(), email, null));
+                } else {
+                    results.add(new PatientImportRowResultDTO(
+                            row.row(), PatientImportStatus.EXISTING, result.patient().getId().toString(), email, null));
+                }
+            }
+            return results;
+        });
+    }
+
+    private Map<String, String> validate(PatientImportReader.ImportRow row) {
+        Map<String, String> errors = new HashMap<>();
+        if (row.error() != null) {
+            errors.put("row", row.error());
+            return errors;
+        }
+
+        PatientRequestDTO patient = row.patient();
+        for (ConstraintViolation<PatientRequestDTO> violation :
+                validator.validate(patient, Default.class, CreatePatientValidationGroup.class)) {
+            errors.put(violation.getPropertyPath().toString(), violation.getMessage());
+        }
+
+        // As datas chegam como texto; valida o formato antes de montar a entidade
+        if (!errors.containsKey("dateOfBirth") && !isIsoDate(patient.getDateOfBirth())) {
+            errors.put("dateOfBirth", "Date of Birth must be a valid date (yyyy-MM-dd)");
+        }
+        if (!errors.containsKey("registeredDate") && !isIsoDate(patient.getRegisteredDate())) {
+            errors.put("registeredDate", "Registered Date must be a valid date (yyyy-MM-dd)");
+        }
+        return errors;
+    }
+
+    private static boolean isIsoDate(String value) {
+        try {
+            LocalDate.parse(value);
+            return true;
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+}
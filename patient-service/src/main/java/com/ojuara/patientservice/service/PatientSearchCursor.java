@@ -0,0 +1,63 @@
+package com.ojuara.patientservice.service;
+
+import com.ojuara.patientservice.exception.InvalidCursorException;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.util.BytesRef;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Posição de continuação da busca de pacientes (score + id do último resultado),
+ * na mesma ordenação usada pelo {@link PatientSearchIndex}.
+ *
+ * <p>O score de um paciente pode mudar um pouco entre refreshes do índice (as estatísticas
+ * de frequência dos termos mudam com as escritas), então um cursor antigo pode repetir ou
+ * pular resultados com score muito próximo do último paciente da página.</p>
+ */
+public record PatientSearchCursor(float score, String id) {
+
+    private static final char SEPARATOR = '|';
+
+    static PatientSearchCursor of(FieldDoc last) {
+        return new PatientSearchCursor((Float) last.fields[0], ((BytesRef) last.fields[1]).utf8ToString());
+    }
+
+    /**
+     * @param maxDoc {@code maxDoc()} do leitor usado na busca: com o maior doc possível como
+     * desempate, o próprio paciente do cursor fica de fora da página seguinte
+     */
+    FieldDoc toFieldDoc(int maxDoc) {
+        return new FieldDoc(maxDoc - 1, score, new Object[]{score, new BytesRef(id)});
+    }
+
+    public String encode() {
+        // Bits do float em hexadecimal: o score volta exatamente igual
+        String raw = Integer.toHexString(Float.floatToIntBits(score)) + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodifica um token recebido do cliente.
+     *
+     * @param token token opaco gerado por {@link #encode()}
+     * @return posição decodificada
+     * @throws InvalidCursorException se o token estiver malformado
+     */
+    public static PatientSearchCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(SEPARATOR);
+            if (separator < 0 || separator == raw.length() - 1) {
+                throw new InvalidCursorException("Invalid cursor: " + token);
+            }
+            return new PatientSearchCursor(
+                    Float.intBitsToFloat(Integer.parseUnsignedInt(raw.substring(0, separator), 16)),
+                    raw.substring(separator + 1));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidCursorException("Invalid cursor: " + token);
+        }
+    }
+
+}
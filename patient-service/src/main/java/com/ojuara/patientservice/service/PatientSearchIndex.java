@@ -0,0 +1,533 @@
+package com.ojuara.patientservice.service;
+
+import com.ojuara.patientservice.config.ReadConsistency;
+import com.ojuara.patientservice.dto.PatientPageResponseDTO;
+import com.ojuara.patientservice.dto.PatientResponseDTO;
+import com.ojuara.patientservice.exception.InvalidSearchQueryException;
+import com.ojuara.patientservice.exception.SearchIndexUnavailableException;
+import com.ojuara.patientservice.mapper.PatientMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.LowerCaseFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.miscellaneous.ASCIIFoldingFilter;
+import org.apache.lucene.analysis.standard.StandardTokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.KeywordField;
+import org.apache.lucene.document.LongField;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.StoredFields;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.FuzzyQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.PrefixQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.SortedSetSelector;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TopFieldDocs;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Índice de busca de pacientes (Lucene embarcado): termos e prefixos de nome e endereço,
+ * prefixo de email, busca aproximada (fuzzy) e faixa de data de nascimento.
+ *
+ * <p>O índice acompanha as escritas pelos {@link PatientsChangedEvent} publicados nas
+ * transações do {@link PatientService} e da importação, aplicados só depois do commit. Uma
+ * escrita aparece nas buscas no próximo refresh ({@code patient.search.refresh-interval}).
+ * Os resultados saem dos campos armazenados no próprio índice, sem consulta ao banco.</p>
+ *
+ * <p>Na subida (e sob demanda) o índice é reconstruído percorrendo a tabela com um cursor.
+ * Os documentos são regravados com uma geração nova e os da geração anterior só são removidos
+ * no final, então as buscas seguem respondendo durante a reconstrução. Se um paciente é
+ * gravado ou removido durante a reconstrução, vale o evento, não o que o cursor leu.</p>
+ *
+ * <p>Os listeners de transações concorrentes rodam em qualquer ordem, então um evento pode chegar
+ * depois de outro mais novo do mesmo paciente. Um documento só é substituído por uma versão maior
+ * que a já aplicada: a lembrada dos últimos {@code patient.search.version-retention} (o índice só
+ * mostra uma escrita no próximo refresh) ou, fora dela, a gravada no documento. Remoções também
+ * ficam lembradas nesse prazo, para que uma atualização atrasada não devolva o paciente.</p>
+ */
+@Slf4j
+@Component
+public class PatientSearchIndex {
+
+    private static final String ID = "id";
+    private static final String NAME = "name";
+    private static final String EMAIL = "email";
+    private static final String EMAIL_STORED = "email_stored";
+    private static final String ADDRESS = "address";
+    private static final String DATE_OF_BIRTH = "date_of_birth";
+    private static final String DATE_OF_BIRTH_STORED = "date_of_birth_stored";
+    private static final String REGISTERED_DATE = "registered_date";
+    private static final String VERSION = "version";
+    private static final String GENERATION = "generation";
+
+    // Termo exato vale mais que prefixo, que vale mais que termo aproximado
+    private static final float EXACT_BOOST = 3f;
+    private static final float PREFIX_BOOST = 2f;
+    private static final int MIN_PREFIX_LENGTH = 2;
+    private static final int MIN_FUZZY_LENGTH = 3;
+    // Versão lembrada de um paciente removido: nenhuma gravação vem depois da remoção
+    private static final long DELETED = Long.MAX_VALUE;
+
+    // Relevância e, no empate (ou em buscas só por data), id
+    private static final Sort SORT = new Sort(
+            SortField.FIELD_SCORE,
+            KeywordField.newSortField(ID, false, SortedSetSelector.Type.MIN));
+
+    private final PatientService patientService;
+    private final Analyzer analyzer = new PatientAnalyzer();
+    private final Directory directory;
+    private final IndexWriter writer;
+    private final SearcherManager searcherManager;
+
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+    // Escritas dos eventos usam a trava compartilhada; a troca de geração, a exclusiva
+    private final ReentrantReadWriteLock generationLock = new ReentrantReadWriteLock();
+    private volatile long generation;
+    // Ids gravados pelos eventos durante a reconstrução; null fora dela
+    private volatile ConcurrentHashMap<String, Boolean> writtenDuringRebuild;
+    // Versão aplicada por id nos últimos versionRetention (DELETED para removidos)
+    private final ConcurrentHashMap<String, AppliedVersion> appliedVersions = new ConcurrentHashMap<>();
+    private final Duration versionRetention;
+    private volatile boolean ready;
+
+    private final LongAdder searches = new LongAdder();
+    private final LongAdder indexFailures = new LongAdder();
+    private final LongAdder staleEvents = new LongAdder();
+    private volatile long lastRebuildMillis = -1;
+
+    public PatientSearchIndex(PatientService patientService,
+                              @Value("${patient.search.index-path:}") String indexPath,
+                              @Value("${patient.search.version-retention:10m}") Duration versionRetention) throws IOException {
+        this.patientService = patientService;
+        this.versionRetention = versionRetention;
+        // Sem caminho o índice fica só na memória; com caminho, o FSDirectory usa arquivos mapeados (mmap)
+        this.directory = indexPath.isBlank() ? new ByteBuffersDirectory() : FSDirectory.open(Path.of(indexPath));
+        this.writer = new IndexWriter(directory, new IndexWriterConfig(analyzer)
+                .setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND));
+        this.searcherManager = new SearcherManager(writer, null);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        Thread.ofVirtual().name("patient-search-build").start(() -> {
+            try {
+                rebuild();
+            } catch (RuntimeException e) {
+                log.warn("Patient search index build failed; searches will be unavailable until a rebuild succeeds.", e);
+            }
+        });
+    }
+
+    /**
+     * Aplica no índice o que a transação gravou. Roda depois do commit; uma falha aqui não
+     * desfaz a escrita no banco, fica nas estatísticas e é corrigida na próxima reconstrução.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onPatientsChanged(PatientsChangedEvent event) {
+        try {
+            apply(event);
+        } catch (RuntimeException e) {
+            indexFailures.increment();
+            log.error("Failed to index {} saved and {} deleted patients.",
+                    event.saved().size(), event.deleted().size(), e);
+        }
+    }
+
+    /**
+     * Busca pacientes, paginando por cursor.
+     *
+     * @param query critérios da busca (ao menos um)
+     * @param cursor token da página anterior, ou null para a primeira página
+     * @param limit quantidade máxima de pacientes na página
+     * @return página ordenada por relevância e o cursor da próxima (null se for a última)
+     * @throws InvalidSearchQueryException se nenhum critério utilizável for informado
+     * @throws SearchIndexUnavailableException enquanto a primeira construção não termina
+     */
+    public PatientPageResponseDTO search(PatientSearchQuery query, String cursor, int limit) {
+        Query luceneQuery = toLuceneQuery(query);
+        PatientSearchCursor after = cursor == null || cursor.isBlank() ? null : PatientSearchCursor.decode(cursor);
+        if (!ready) {
+            throw new SearchIndexUnavailableException("Patient search index is still being built");
+        }
+
+        searches.increment();
+        try {
+            IndexSearcher searcher = searcherManager.acquire();
+            try {
+                FieldDoc afterDoc = after == null ? null : after.toFieldDoc(searcher.getIndexReader().maxDoc());
+                // Um a mais para saber se existe próxima página
+                TopFieldDocs top = searcher.searchAfter(afterDoc, luceneQuery, limit + 1, SORT, true);
+
+                boolean hasNext = top.scoreDocs.length > limit;
+                int size = Math.min(top.scoreDocs.length, limit);
+                StoredFields storedFields = searcher.storedFields();
+                List<PatientResponseDTO> patients = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    patients.add(toDTO(storedFields.document(top.scoreDocs[i].doc)));
+                }
+
+                String nextCursor = hasNext ? PatientSearchCursor.of((FieldDoc) top.scoreDocs[size - 1]).encode() : null;
+                return new PatientPageResponseDTO(patients, nextCursor);
+            } finally {
+                searcherManager.release(searcher);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reconstrói o índice a partir da tabela de pacientes.
+     */
+    public void rebuild() {
+        rebuildLock.lock();
+        try {
+            doRebuild();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    /**
+     * Torna visíveis nas buscas as escritas aplicadas desde o último refresh.
+     */
+    @Scheduled(fixedDelayString = "${patient.search.refresh-interval:200ms}")
+    public void refresh() {
+        try {
+            searcherManager.maybeRefreshBlocking();
+        } catch (IOException e) {
+            log.warn("Patient search index refresh failed.", e);
+        }
+    }
+
+    /**
+     * Grava em disco as alterações pendentes (só faz diferença com {@code patient.search.index-path}).
+     */
+    @Scheduled(fixedDelayString = "${patient.search.commit-interval:30s}")
+    public void commit() {
+        try {
+            if (writer.hasUncommittedChanges()) {
+                writer.commit();
+            }
+        } catch (IOException e) {
+            log.warn("Patient search index commit failed.", e);
+        }
+    }
+
+    /**
+     * Esquece as versões aplicadas há mais de {@code patient.search.version-retention}; a partir
+     * daí a comparação é com a versão gravada no documento.
+     */
+    @Scheduled(fixedDelayString = "${patient.search.version-retention:10m}")
+    public void forgetAppliedVersions() {
+        long cutoff = System.nanoTime() - versionRetention.toNanos();
+        appliedVersions.values().removeIf(applied -> applied.appliedAtNanos() - cutoff < 0);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("ready", ready);
+        stats.put("rebuilding", writtenDuringRebuild != null);
+        stats.put("documents", writer.getDocStats().numDocs);
+        stats.put("searches", searches.sum());
+        stats.put("indexFailures", indexFailures.sum());
+        stats.put("staleEvents", staleEvents.sum());
+        stats.put("lastRebuildMillis", lastRebuildMillis);
+        stats.put("directory", directory.getClass().getSimpleName());
+        return stats;
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        searcherManager.close();
+        writer.close();
+        directory.close();
+    }
+
+    private void doRebuild() throws IOException {
+        long start = System.nanoTime();
+        ConcurrentHashMap<String, Boolean> writtenLive = new ConcurrentHashMap<>();
+
+        long rebuildGeneration;
+        generationLock.writeLock().lock();
+        try {
+            // Baseada no relógio para continuar crescendo entre reinícios com índice em disco
+            rebuildGeneration = Math.max(generation + 1, System.currentTimeMillis());
+            generation = rebuildGeneration;
+            writtenDuringRebuild = writtenLive;
+        } finally {
+            generationLock.writeLock().unlock();
+        }
+
+        LongAdder indexed = new LongAdder();
+        try {
+            // O cursor começa depois da troca de geração: o que for confirmado depois disso chega pelos
+            // eventos, e o compute() por id impede que a versão lida pelo cursor sobrescreva a do evento.
+            // Lê do primário, para não perder o que foi confirmado antes e ainda não chegou às réplicas
+            try (ReadConsistency.Scope primary = ReadConsistency.pinToPrimary()) {
+                patientService.streamPatients(patient -> writtenLive.compute(patient.id().toString(), (id, live) -> {
+                    if (live == null) {
+                        update(patient, rebuildGeneration);
+                        indexed.increment();
+                    }
+                    return live;
+                }));
+            }
+
+            generationLock.writeLock().lock();
+            try {
+                writer.deleteDocuments(LongPoint.newRangeQuery(GENERATION, Long.MIN_VALUE, rebuildGeneration - 1));
+            } finally {
+                generationLock.writeLock().unlock();
+            }
+        } finally {
+            writtenDuringRebuild = null;
+        }
+
+        writer.commit();
+        searcherManager.maybeRefreshBlocking();
+        ready = true;
+        lastRebuildMillis = (System.nanoTime() - start) / 1_000_000;
+
+        log.info("Patient search index built: {} patients from the table, {} written concurrently, in {} ms.",
+                indexed.sum(), writtenLive.size(), lastRebuildMillis);
+    }
+
+    private void apply(PatientsChangedEvent event) {
+        generationLock.readLock().lock();
+        try {
+            long current = generation;
+            ConcurrentHashMap<String, Boolean> writtenLive = writtenDuringRebuild;
+
+            for (PatientResponseDTO patient : event.saved()) {
+                long version = patient.version() == null ? 0 : patient.version();
+                applyVersion(patient.id().toString(), version, writtenLive, () -> update(patient, current));
+            }
+            for (UUID deletedId : event.deleted()) {
+                String id = deletedId.toString();
+                applyVersion(id, DELETED, writtenLive, () -> delete(id));
+            }
+        } finally {
+            generationLock.readLock().unlock();
+        }
+    }
+
+    // Escreve só se a versão for maior que a já aplicada; o compute() por id serializa os eventos do paciente
+    private void applyVersion(String id, long version, ConcurrentHashMap<String, Boolean> writtenLive, Runnable write) {
+        appliedVersions.compute(id, (key, applied) -> {
+            long known = applied != null ? applied.version() : storedVersion(id);
+            if (version <= known) {
+                staleEvents.increment();
+                return applied;
+            }
+            if (writtenLive == null) {
+                write.run();
+            } else {
+                writtenLive.compute(id, (liveId, live) -> {
+                    write.run();
+                    return Boolean.TRUE;
+                });
+            }
+            return new AppliedVersion(version, System.nanoTime());
+        });
+    }
+
+    // Versão gravada no documento visível nas buscas; -1 sem documento
+    private long storedVersion(String id) {
+        try {
+            IndexSearcher searcher = searcherManager.acquire();
+            try {
+                TopDocs top = searcher.search(new TermQuery(new Term(ID, id)), 1);
+                if (top.scoreDocs.length == 0) {
+                    return -1;
+                }
+                return searcher.storedFields().document(top.scoreDocs[0].doc, Set.of(VERSION))
+                        .getField(VERSION).numericValue().longValue();
+            } finally {
+                searcherManager.release(searcher);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void update(PatientResponseDTO patient, long documentGeneration) {
+        try {
+            writer.updateDocument(new Term(ID, patient.id().toString()), toDocument(patient, documentGeneration));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void delete(String id) {
+        try {
+            writer.deleteDocuments(new Term(ID, id));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Query toLuceneQuery(PatientSearchQuery query) {
+        LocalDate from = query.dateOfBirthFrom();
+        LocalDate to = query.dateOfBirthTo();
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new InvalidSearchQueryException("dateOfBirthFrom must not be after dateOfBirthTo");
+        }
+
+        BooleanQuery.Builder builder = new BooleanQuery.Builder();
+        for (String token : tokens(NAME, query.name())) {
+            builder.add(tokenQuery(NAME, token, query.fuzzy()), BooleanClause.Occur.MUST);
+        }
+        for (String token : tokens(ADDRESS, query.address())) {
+            builder.add(tokenQuery(ADDRESS, token, query.fuzzy()), BooleanClause.Occur.MUST);
+        }
+        if (query.email() != null && !query.email().isBlank()) {
+            builder.add(new PrefixQuery(new Term(EMAIL, normalizeEmail(query.email()))), BooleanClause.Occur.MUST);
+        }
+        if (from != null || to != null) {
+            // Filtro: não altera a relevância dos demais critérios
+            builder.add(LongField.newRangeQuery(DATE_OF_BIRTH,
+                            from == null ? Long.MIN_VALUE : from.toEpochDay(),
+                            to == null ? Long.MAX_VALUE : to.toEpochDay()),
+                    BooleanClause.Occur.FILTER);
+        }
+
+        BooleanQuery luceneQuery = builder.build();
+        if (luceneQuery.clauses().isEmpty()) {
+            throw new InvalidSearchQueryException(
+                    "Provide at least one of name, email, address, dateOfBirthFrom or dateOfBirthTo");
+        }
+        return luceneQuery;
+    }
+
+    private static Query tokenQuery(String field, String token, boolean fuzzy) {
+        Term term = new Term(field, token);
+        BooleanQuery.Builder anyOf = new BooleanQuery.Builder();
+        anyOf.add(new BoostQuery(new TermQuery(term), EXACT_BOOST), BooleanClause.Occur.SHOULD);
+        if (token.length() >= MIN_PREFIX_LENGTH) {
+            anyOf.add(new BoostQuery(new PrefixQuery(term), PREFIX_BOOST), BooleanClause.Occur.SHOULD);
+        }
+        if (fuzzy && token.length() >= MIN_FUZZY_LENGTH) {
+            // Primeira letra fixa: restringe bastante os termos visitados
+            anyOf.add(new FuzzyQuery(term, token.length() >= 6 ? 2 : 1, 1), BooleanClause.Occur.SHOULD);
+        }
+        return anyOf.build();
+    }
+
+    private List<String> tokens(String field, String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null || text.isBlank()) {
+            return tokens;
+        }
+        try (TokenStream stream = analyzer.tokenStream(field, text)) {
+            CharTermAttribute term = stream.addAttribute(CharTermAttribute.class);
+            stream.reset();
+            while (stream.incrementToken()) {
+                tokens.add(term.toString());
+            }
+            stream.end();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return tokens;
+    }
+
+    private static String normalizeEmail(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static Document toDocument(PatientResponseDTO patient, long documentGeneration) {
+        Document document = new Document();
+        document.add(new KeywordField(ID, patient.id().toString(), Field.Store.YES));
+        document.add(new TextField(NAME, patient.name(), Field.Store.YES));
+        document.add(new StringField(EMAIL, normalizeEmail(patient.email()), Field.Store.NO));
+        document.add(new StoredField(EMAIL_STORED, patient.email()));
+        document.add(new TextField(ADDRESS, patient.address(), Field.Store.YES));
+        document.add(new LongField(DATE_OF_BIRTH, patient.dateOfBirth().toEpochDay(), Field.Store.NO));
+        document.add(new StoredField(DATE_OF_BIRTH_STORED, patient.dateOfBirth().toString()));
+        document.add(new StoredField(REGISTERED_DATE, patient.registeredDate().toString()));
+        document.add(new StoredField(VERSION, patient.version()));
+        document.add(new LongPoint(GENERATION, documentGeneration));
+        return document;
+    }
+
+    private static PatientResponseDTO toDTO(Document document) {
+        return new PatientResponseDTO(
+                UUID.fromString(document.get(ID)),
+                document.get(NAME),
+                document.get(EMAIL_STORED),
+                document.get(ADDRESS),
+                PatientMapper.parseDate(document.get(DATE_OF_BIRTH_STORED)),
+                PatientMapper.parseDate(document.get(REGISTERED_DATE)),
+                document.getField(VERSION).numericValue().longValue());
+    }
+
+    private record AppliedVersion(long version, long appliedAtNanos) {
+    }
+
+    /**
+     * Separa em palavras, passa para minúsculas e remove acentos ("João" casa com "joao").
+     */
+    private static final class PatientAnalyzer extends Analyzer {
+
+        @Override
+        protected TokenStreamComponents createComponents(String fieldName) {
+            Tokenizer tokenizer = new StandardTokenizer();
+            return new TokenStreamComponents(tokenizer, new ASCIIFoldingFilter(new LowerCaseFilter(tokenizer)));
+        }
+
+        @Override
+        protected TokenStream normalize(String fieldName, TokenStream in) {
+            return new ASCIIFoldingFilter(new LowerCaseFilter(in));
+        }
+
+    }
+
+}
@@ -0,0 +1,22 @@
+package com.ojuara.patientservice.service;
+
+import java.time.LocalDate;
+
+/**
+ * Critérios da busca de pacientes. Os critérios informados são combinados com "e";
+ * os nulos ou em branco são ignorados.
+ *
+ * @param name termos do nome; cada termo casa com uma palavra inteira ou com o início dela
+ * @param email início do email (sem diferenciar maiúsculas)
+ * @param address termos do endereço, com a mesma regra do nome
+ * @param dateOfBirthFrom data de nascimento mínima (inclusiva)
+ * @param dateOfBirthTo data de nascimento máxima (inclusiva)
+ * @param fuzzy aceita também termos de nome e endereço com até 2 letras de diferença
+ */
+public record PatientSearchQuery(String name,
+                                 String email,
+                                 String address,
+                                 LocalDate dateOfBirthFrom,
+                                 LocalDate dateOfBirthTo,
+                                 boolean fuzzy) {
+}
@@ -1,66 +1,190 @@
 package com.ojuara.patientservice.service;
 
+import com.ojuara.patientservice.config.ReadConsistency;
+import com.ojuara.patientservice.dto.PatientPageResponseDTO;
 import com.ojuara.patientservice.dto.PatientRequestDTO;
 import com.ojuara.patientservice.dto.PatientResponseDTO;
 import com.ojuara.patientservice.exception.EmailAlreadyExistsException;
 import com.ojuara.patientservice.exception.PatientNotFoundException;
+import com.ojuara.patientservice.exception.PatientVersionMismatchException;
 import com.ojuara.patientservice.mapper.PatientMapper;
+import com.ojuara.patientservice.model.BillingOutboxEvent;
 import com.ojuara.patientservice.model.Patient;
-import com.ojuara.patientservice.repository.PatientRepository;
+import com.ojuara.patientservice.model.PatientTombstone;
+import com.ojuara.patientservice.repository.PatientInsertResult;
+import com.ojuara.patientservice.repository.PatientStore;
+import com.ojuara.patientservice.repository.PatientTombstoneRepository;
+import com.ojuara.patientservice.repository.ShardedPatientRepository;
+import io.micrometer.observation.annotation.Observed;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
+// Cada método público gera o timer "patient.service" (tags class e method) e um span dentro do
+// span da requisição HTTP
+@Observed(name = "patient.service")
 @Service
 public class PatientService {
 
 
-    private final PatientRepository patientRepository;
+    // Banco principal ou, com patient.db.shard-urls, os shards (ver ShardingConfig)
+    private final PatientStore patientStore;
+    private final PatientCache patientCache;
+    private final EmailBloomFilter emailFilter;
+    private final PatientBillingOutbox billingOutbox;
+    private final PatientTombstoneRepository tombstoneRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
 
-    public PatientService(PatientRepository patientRepository) {
-        this.patientRepository = patientRepository;
+    public PatientService(PatientStore patientStore,
+                          PatientCache patientCache,
+                          EmailBloomFilter emailFilter,
+                          PatientBillingOutbox billingOutbox,
+                          PatientTombstoneRepository tombstoneRepository,
+                          TransactionTemplate transactionTemplate,
+                          ApplicationEventPublisher eventPublisher) {
+        this.patientStore = patientStore;
+        this.patientCache = patientCache;
+        this.emailFilter = emailFilter;
+        this.billingOutbox = billingOutbox;
+        this.tombstoneRepository = tombstoneRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.eventPublisher = eventPublisher;
     }
 
-    public boolean patientExists(String email) {
-        return patientRepository.existsByEmail(email);
+    /**
+     * Busca um paciente pelo id (leitura via cache).
+     *
+     * @param id UUID do paciente
+     * @return PatientResponseDTO com os dados do paciente
+     * @throws PatientNotFoundException se nenhum paciente for encontrado para o id
+     */
+    @Transactional(readOnly = true)
+    public PatientResponseDTO getPatientById(UUID id) {
+        // O cache é preenchido pelo primário: uma linha atrasada de réplica ficaria nele até o TTL
+        try (ReadConsistency.Scope primary = ReadConsistency.pinToPrimary()) {
+            return patientCache.getById(id, key -> findPatient(key).map(PatientMapper::toDTO))
+                    .orElseThrow(() -> new PatientNotFoundException("Patient with id " + id + " not found."));
+        }
+    }
+
+    /**
+     * Busca um paciente pelo email (leitura via cache).
+     *
+     * @param email email do paciente
+     * @return PatientResponseDTO com os dados do paciente
+     * @throws PatientNotFoundException se nenhum paciente for encontrado para o email
+     */
+    @Transactional(readOnly = true)
+    public PatientResponseDTO getPatientByEmail(String email) {
+        if (!emailFilter.mightContain(email)) {
+            throw new PatientNotFoundException("Patient with email " + email + " not found.");
+        }
+        // Preenche o cache, então lê do primário como getPatientById
+        try (ReadConsistency.Scope primary = ReadConsistency.pinToPrimary()) {
+            return patientCache.getByEmail(email, key -> findPatientByEmail(key).map(PatientMapper::toDTO))
+                    .orElseThrow(() -> new PatientNotFoundException("Patient with email " + email + " not found."));
+        }
     }
 
-    public List<PatientResponseDTO> getAllPatients() {
-        List<Patient> patients = patientRepository.findAll();
+    /**
+     * Lista pacientes paginando por cursor (keyset em registeredDate + id).
+     *
+     * <p>Busca {@code limit + 1} registros para saber se existe uma próxima página
+     * sem precisar de um {@code count(*)}.</p>
+     *
+     * @param cursor token opaco da página anterior, ou null para a primeira página
+     * @param limit quantidade máxima de pacientes na página
+     * @return página com os pacientes e o cursor da próxima página (null se for a última)
+     */
+    @Transactional(readOnly = true)
+    public PatientPageResponseDTO getPatientsPage(String cursor, int limit) {
+        int fetchLimit = limit + 1;
+
+        // Somente leitura: as linhas viram DTOs direto do ResultSet, sem hidratar entidades
+        List<PatientResponseDTO> patients;
+        if (cursor == null || cursor.isBlank()) {
+            patients = patientStore.findFirstResponsePage(fetchLimit);
+        } else {
+            PatientCursor after = PatientCursor.decode(cursor);
+            patients = patientStore.findResponsePageAfter(after.registeredDate(), after.id(), fetchLimit);
+        }
 
-        return patients.stream().map(PatientMapper::toDTO).toList();
+        boolean hasNext = patients.size() > limit;
+        List<PatientResponseDTO> page = hasNext ? patients.subList(0, limit) : patients;
+        String nextCursor = hasNext ? PatientCursor.of(page.get(page.size() - 1)).encode() : null;
 
+        return new PatientPageResponseDTO(page, nextCursor);
     }
 
-/**
- * Cria um novo paciente ou retorna o existente quando o email já está cadastrado.
- *
- * @param patientRequestDTO DTO contendo os dados do paciente a ser criado
- * @return PatientResponseDTO com os dados do paciente criado ou do paciente existente
- */
-public PatientResponseDTO createPatient(PatientRequestDTO patientRequestDTO) {
-    // Extrai o email do DTO e tenta localizar um paciente existente com esse email
-    Optional<Patient> patient = patientRepository.findByEmail(patientRequestDTO.getEmail());
-
-    // Se um paciente com o mesmo email já existir, converte a entidade encontrada para DTO e retorna
-    if (patient.isPresent()) {
-        return PatientMapper.toDTO(patient.get());
+    /**
+     * Percorre todos os pacientes em ordem (registeredDate, id) usando um cursor JDBC
+     * somente leitura, entregando cada paciente ao consumidor assim que é lido.
+     *
+     * <p>As linhas viram DTOs direto do ResultSet, sem entidades nem contexto de persistência,
+     * então a memória consumida não cresce com o tamanho da tabela. Com shards, a leitura é feita
+     * em páginas intercaladas de todos eles ({@link ShardedPatientRepository#streamAllResponses}).</p>
+     *
+     * @param consumer recebe cada paciente já convertido para DTO
+     */
+    @Transactional(readOnly = true)
+    public void streamPatients(Consumer<PatientResponseDTO> consumer) {
+        patientStore.streamAllResponses(consumer);
     }
 
-    // Converte o DTO de requisição para a entidade Patient (preparando para persistir)
-    Patient patientEntity = PatientMapper.toEntity(patientRequestDTO);
+    /**
+     * Cria um novo paciente ou retorna o existente quando o email já está cadastrado.
+     *
+     * <p>Usa um único insert condicional no banco ({@link PatientStore#insertIfAbsent}),
+     * então não há janela entre verificar o email e gravar: requisições concorrentes com o
+     * mesmo email recebem o mesmo paciente em vez de um erro de restrição única.</p>
+     *
+     * <p>A conta de cobrança não é criada aqui: a pendência vai para o outbox e o
+     * {@link BillingOutboxRelay} a envia ao billing-service depois. No banco principal ela vai na
+     * transação do insert; com shards, o insert é confirmado fora dessa transação e a pendência é
+     * reservada antes dele ({@link PatientBillingOutbox}), por isso a transação é aberta aqui e não
+     * com {@code @Transactional}.</p>
+     *
+     * @param patientRequestDTO DTO contendo os dados do paciente a ser criado
+     * @return o paciente criado ou o existente, e se ele foi criado nesta chamada
+     */
+    public PatientCreationResult createPatient(PatientRequestDTO patientRequestDTO) {
+        // Converte o DTO de requisição para a entidade Patient (preparando para persistir)
+        Patient patientEntity = PatientMapper.toEntity(patientRequestDTO);
+        List<BillingOutboxEvent> reserved = billingOutbox.reserve(List.of(patientEntity));
+
+        return transactionTemplate.execute(status -> {
+            // Registra o email no filtro antes do insert, para que checagens concorrentes não o descartem
+            emailFilter.add(patientEntity.getEmail());
 
-    // Persiste a nova entidade no repositório (retorna a entidade salva com id/valores gerados)
-    Patient newPatient = patientRepository.save(patientEntity);
+            // Insere se o email ainda não existir; caso contrário recebe o paciente existente
+            PatientInsertResult result = patientStore.insertIfAbsent(patientEntity);
 
-    // Converte a entidade persistida para DTO de resposta e retorna ao chamador
-    return PatientMapper.toDTO(newPatient);
-}
+            PatientResponseDTO patient = PatientMapper.toDTO(result.patient());
+
+            // Só pacientes novos geram conta de cobrança e entram no índice de busca
+            billingOutbox.settle(reserved, result.created() ? List.of(result.patient()) : List.of());
+            if (result.created()) {
+                eventPublisher.publishEvent(PatientsChangedEvent.created(patient));
+            }
+
+            // Informa se houve criação
+            return new PatientCreationResult(patient, result.created());
+        });
+    }
 
     /**
      * Atualiza um paciente existente.
@@ -71,14 +195,42 @@ public PatientResponseDTO createPatient(PatientRequestDTO patientRequestDTO) {
      * @throws PatientNotFoundException se nenhum paciente for encontrado para o id
      * @throws EmailAlreadyExistsException se o email informado já estiver em uso por outro paciente
      */
+    @Transactional
     public PatientResponseDTO updatePatient(UUID id, PatientRequestDTO patientRequestDTO) {
+        return updatePatient(id, patientRequestDTO, null);
+    }
+
+    /**
+     * Atualiza um paciente existente, desde que ele ainda esteja na versão esperada.
+     *
+     * <p>A versão é conferida aqui e de novo pelo Hibernate no {@code UPDATE ... WHERE version = ?},
+     * então uma atualização concorrente que confirme entre a leitura e o flush também é
+     * recusada ({@link ObjectOptimisticLockingFailureException}). Com shards, a mesma conferência é
+     * feita pelo {@code UPDATE} no shard.</p>
+     *
+     * @param id UUID do paciente a atualizar
+     * @param patientRequestDTO dados enviados para atualização
+     * @param expectedVersion versão que o cliente leu (If-Match), ou null para não conferir
+     * @return PatientResponseDTO com os dados atualizados
+     * @throws PatientNotFoundException se nenhum paciente for encontrado para o id
+     * @throws PatientVersionMismatchException se o paciente já estiver em outra versão
+     * @throws EmailAlreadyExistsException se o email informado já estiver em uso por outro paciente
+     */
+    @Transactional
+    public PatientResponseDTO updatePatient(UUID id, PatientRequestDTO patientRequestDTO, Long expectedVersion) {
 
         // Busca paciente por id; se não existir lança PatientNotFoundException
-        Patient existingPatient = patientRepository.findById(id).orElseThrow(
+        Patient existingPatient = findPatient(id).orElseThrow(
                 () -> new PatientNotFoundException("Patient with id " + id + " not found."));
 
+        // O cliente editou uma versão que já foi substituída
+        if (expectedVersion != null && !expectedVersion.equals(existingPatient.getVersion())) {
+            throw new PatientVersionMismatchException("Patient with id " + id + " is at version "
+                    + existingPatient.getVersion() + ", not " + expectedVersion + ".");
+        }
+
         // Verifica se o email informado pertence a outro paciente (mesmo email, id diferente)
-        if (patientRepository.existsByEmailAndIdNot(patientRequestDTO.getEmail(), id)) {
+        if (isEmailTakenByAnotherPatient(patientRequestDTO.getEmail(), id)) {
             // Impede atualização quando o email já está em uso por outro registro
             throw new EmailAlreadyExistsException(
                     "Patient with email " + patientRequestDTO.getEmail() + " already exists.");
@@ -88,20 +240,77 @@ public PatientResponseDTO createPatient(PatientRequestDTO patientRequestDTO) {
         existingPatient.setName(patientRequestDTO.getName());
         // Atualiza o email do paciente com o valor vindo no DTO
         existingPatient.setEmail(patientRequestDTO.getEmail());
+        emailFilter.add(patientRequestDTO.getEmail());
         // Atualiza o endereço do paciente com o valor vindo no DTO
         existingPatient.setAddress(patientRequestDTO.getAddress());
         // Converte a data (string) do DTO para LocalDate e seta no paciente
-        existingPatient.setDateOfBirth(java.time.LocalDate.parse(patientRequestDTO.getDateOfBirth()));
+        existingPatient.setDateOfBirth(PatientMapper.parseDate(patientRequestDTO.getDateOfBirth()));
+
+        // Persiste as alterações; o flush já incrementa a versão que vai na resposta
+        Patient updatedPatient = update(existingPatient);
 
-        // Persiste as alterações no repositório e recebe a entidade atualizada
-        Patient updatedPatient = patientRepository.save(existingPatient);
+        // Remove a versão antiga (e o email antigo) do cache
+        patientCache.invalidate(id);
 
-        // Converte a entidade atualizada para DTO de resposta e retorna
-        return PatientMapper.toDTO(updatedPatient);
+        // Converte a entidade atualizada para DTO de resposta; o índice de busca a recebe após o commit
+        PatientResponseDTO patient = PatientMapper.toDTO(updatedPatient);
+        eventPublisher.publishEvent(PatientsChangedEvent.saved(patient));
+        return patient;
     }
 
+    /**
+     * Remove o paciente e registra a remoção para o feed de alterações.
+     *
+     * @param id UUID do paciente a remover (um id inexistente é ignorado)
+     */
+    @Transactional
     public void deletePatientById(UUID id) {
-        patientRepository.deleteById(id);
+        if (!patientStore.deleteById(id)) {
+            return;
+        }
+        tombstoneRepository.save(new PatientTombstone(id, Instant.now().truncatedTo(ChronoUnit.MICROS)));
+        patientCache.invalidate(id);
+        eventPublisher.publishEvent(PatientsChangedEvent.deleted(id));
+    }
+
+    /**
+     * Equivalente a {@link PatientStore#existsByEmailAndIdNot}, respondido pelo cache quando
+     * possível. O cache só dispensa o banco quando diz que o email já é do próprio paciente; um
+     * dono diferente no cache pode estar desatualizado (o outro paciente trocou de email) e é
+     * confirmado no banco antes de virar conflito.
+     *
+     * <p>O filtro de emails não é consultado: um "não" dele vale só para as escritas desta
+     * instância, e pular a verificação transformaria o conflito com um email gravado por outra
+     * réplica em erro de restrição única no commit.</p>
+     */
+    private boolean isEmailTakenByAnotherPatient(String email, UUID id) {
+        Optional<UUID> owner = patientCache.findIdByEmail(email);
+        if (owner.isPresent() && owner.get().equals(id)) {
+            return false;
+        }
+        return patientStore.existsByEmailAndIdNot(email, id);
+    }
+
+    private Optional<Patient> findPatient(UUID id) {
+        return patientStore.findById(id);
+    }
+
+    private Optional<Patient> findPatientByEmail(String email) {
+        return patientStore.findByEmail(email);
+    }
+
+    // Mesmo contrato do saveAndFlush: versão conferida no UPDATE e email único (nos shards, pelo diretório)
+    private Patient update(Patient patient) {
+        boolean updated;
+        try {
+            updated = patientStore.update(patient);
+        } catch (DuplicateKeyException e) {
+            throw new EmailAlreadyExistsException("Patient with email " + patient.getEmail() + " already exists.");
+        }
+        if (!updated) {
+            throw new ObjectOptimisticLockingFailureException(Patient.class, patient.getId());
+        }
+        return patient;
     }
 
 }
@@ -0,0 +1,45 @@
+package com.ojuara.patientservice.service;
+
+import com.ojuara.patientservice.dto.PatientResponseDTO;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Pacientes gravados ou removidos em uma transação.
+ *
+ * <p>É publicado dentro da transação e só é consumido depois do commit (ver
+ * {@link PatientSearchIndex} e {@link PatientEventLog}), então um rollback não chega aos
+ * consumidores.</p>
+ *
+ * @param saved pacientes criados ou atualizados, já com os valores gravados
+ * @param deleted ids dos pacientes removidos
+ * @param created {@code true} se os pacientes de {@code saved} foram criados agora
+ */
+public record PatientsChangedEvent(List<PatientResponseDTO> saved, List<UUID> deleted, boolean created) {
+
+    public static PatientsChangedEvent created(List<PatientResponseDTO> patients) {
+        return new PatientsChangedEvent(patients, List.of(), true);
+    }
+
+    public static PatientsChangedEvent created(PatientResponseDTO patient) {
+        return created(List.of(patient));
+    }
+
+    public static PatientsChangedEvent saved(List<PatientResponseDTO> patients) {
+        return new PatientsChangedEvent(patients, List.of(), false);
+    }
+
+    public static PatientsChangedEvent saved(PatientResponseDTO patient) {
+        return saved(List.of(patient));
+    }
+
+    public static PatientsChangedEvent deleted(List<UUID> ids) {
+        return new PatientsChangedEvent(List.of(), ids, false);
+    }
+
+    public static PatientsChangedEvent deleted(UUID id) {
+        return deleted(List.of(id));
+    }
+
+}
@@ -0,0 +1,49 @@
+-- Schema do patient-service. Idempotente: também roda sobre bancos criados pelo antigo data.sql
+-- (ver spring.flyway.baseline-version)
+
+-- Ensure the 'patient' table exists
+CREATE TABLE IF NOT EXISTS patient
+(
+    id              UUID PRIMARY KEY,
+    name            VARCHAR(255)        NOT NULL,
+    email           VARCHAR(255) UNIQUE NOT NULL,
+    address         VARCHAR(255)        NOT NULL,
+    date_of_birth   DATE                NOT NULL,
+    registered_date DATE                NOT NULL,
+    version         BIGINT              NOT NULL DEFAULT 0,
+    updated_at      TIMESTAMP(6) WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP
+    );
+
+-- Bancos criados antes do controle de versão (ETag/If-Match) e do feed de alterações
+ALTER TABLE patient ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE patient ADD COLUMN IF NOT EXISTS updated_at TIMESTAMP(6) WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP;
+
+-- Índice usado pela paginação por cursor (keyset) em GET /api/v1/patients
+CREATE INDEX IF NOT EXISTS idx_patient_registered_date_id ON patient (registered_date, id);
+
+-- Índice usado pelo feed de alterações em GET /api/v1/patients/changes
+CREATE INDEX IF NOT EXISTS idx_patient_updated_at_id ON patient (updated_at, id);
+
+-- Pacientes removidos, para o feed de alterações (ver PatientTombstone)
+CREATE TABLE IF NOT EXISTS patient_tombstone
+(
+    id         UUID PRIMARY KEY,
+    deleted_at TIMESTAMP(6) WITH TIME ZONE NOT NULL
+    );
+
+CREATE INDEX IF NOT EXISTS idx_patient_tombstone_deleted_at_id ON patient_tombstone (deleted_at, id);
+
+-- Outbox de criação de contas de cobrança (ver BillingOutboxEvent)
+CREATE TABLE IF NOT EXISTS billing_outbox
+(
+    id              UUID PRIMARY KEY,
+    patient_id      UUID UNIQUE                 NOT NULL,
+    name            VARCHAR(255)                NOT NULL,
+    email           VARCHAR(255)                NOT NULL,
+    created_at      TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    next_attempt_at TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    attempts        INTEGER                     NOT NULL,
+    last_error      VARCHAR(1000)
+    );
+
+CREATE INDEX IF NOT EXISTS idx_billing_outbox_next_attempt_at ON billing_outbox (next_attempt_at);
@@ -0,0 +1,11 @@
+-- Batimento de replicação (ver ReplicationHeartbeat): o primário incrementa a posição e as
+-- réplicas a recebem pela replicação, o que indica quais escritas elas já aplicaram
+CREATE TABLE IF NOT EXISTS replication_heartbeat
+(
+    id       INTEGER PRIMARY KEY,
+    position BIGINT                      NOT NULL,
+    beat_at  TIMESTAMP(6) WITH TIME ZONE NOT NULL
+    );
+
+INSERT INTO replication_heartbeat (id, position, beat_at)
+VALUES (1, 0, CURRENT_TIMESTAMP);
@@ -0,0 +1,18 @@
+-- Exportações de pacientes em arquivo (ver PatientExport): estado da tarefa e checkpoint
+-- (último paciente gravado e tamanho do arquivo até ele) para retomar depois de uma falha
+CREATE TABLE IF NOT EXISTS patient_export
+(
+    id                   UUID PRIMARY KEY,
+    format               VARCHAR(16)                 NOT NULL,
+    compression          VARCHAR(16)                 NOT NULL,
+    status               VARCHAR(16)                 NOT NULL,
+    file_path            VARCHAR(1000)               NOT NULL,
+    last_registered_date DATE,
+    last_id              UUID,
+    rows_written         BIGINT                      NOT NULL,
+    bytes_written        BIGINT                      NOT NULL,
+    created_at           TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    updated_at           TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    completed_at         TIMESTAMP(6) WITH TIME ZONE,
+    last_error           VARCHAR(1000)
+    );
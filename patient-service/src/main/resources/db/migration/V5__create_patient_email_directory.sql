@@ -0,0 +1,10 @@
+-- Diretório global email -> paciente do armazenamento em shards (ver ShardedPatientRepository):
+-- garante o email único entre os shards e leva findByEmail/existsByEmail a um único shard.
+-- Fica vazio enquanto patient.db.shard-urls não estiver configurado
+CREATE TABLE IF NOT EXISTS patient_email_directory
+(
+    email      VARCHAR(255) PRIMARY KEY,
+    patient_id UUID NOT NULL
+    );
+
+CREATE INDEX IF NOT EXISTS idx_patient_email_directory_patient_id ON patient_email_directory (patient_id);
@@ -0,0 +1,3 @@
+-- Pendências que o billing recusou (REJECTED) ou que esgotaram billing.outbox.max-attempts:
+-- ficam no outbox com failed_at preenchido e saem da fila do relay até serem reenfileiradas
+ALTER TABLE billing_outbox ADD COLUMN IF NOT EXISTS failed_at TIMESTAMP(6) WITH TIME ZONE;
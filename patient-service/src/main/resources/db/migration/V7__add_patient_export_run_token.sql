@@ -0,0 +1,3 @@
+-- Execução dona de cada exportação: trocada a cada retomada, os checkpoints só são gravados
+-- com o token vigente (ver PatientExportRepository.checkpoint)
+ALTER TABLE patient_export ADD COLUMN IF NOT EXISTS run_token UUID;
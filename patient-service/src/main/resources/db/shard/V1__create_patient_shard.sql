@@ -0,0 +1,16 @@
+-- Schema de cada shard de pacientes (ver ShardedPatientRepository). Só a tabela patient: o email
+-- é único entre todos os shards pelo diretório patient_email_directory, no banco principal
+CREATE TABLE IF NOT EXISTS patient
+(
+    id              UUID PRIMARY KEY,
+    name            VARCHAR(255)                NOT NULL,
+    email           VARCHAR(255)                NOT NULL,
+    address         VARCHAR(255)                NOT NULL,
+    date_of_birth   DATE                        NOT NULL,
+    registered_date DATE                        NOT NULL,
+    version         BIGINT                      NOT NULL DEFAULT 0,
+    updated_at      TIMESTAMP(6) WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP
+    );
+
+-- Paginação por cursor (keyset) de cada shard, depois intercalada entre os shards
+CREATE INDEX IF NOT EXISTS idx_patient_registered_date_id ON patient (registered_date, id);
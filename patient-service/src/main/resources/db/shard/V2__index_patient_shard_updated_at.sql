@@ -0,0 +1,2 @@
+-- Feed de alterações (ShardedPatientRepository.findChangedAfter): a mesma ordem do banco principal
+CREATE INDEX IF NOT EXISTS idx_patient_updated_at_id ON patient (updated_at, id);
@@ -0,0 +1,134 @@
+package com.ojuara.patientservice;
+
+import billing.BillingAccountResult;
+import billing.BillingBatchRequest;
+import billing.BillingBatchResponse;
+import billing.BillingRequest;
+import billing.BillingServiceGrpc;
+import com.ojuara.patientservice.dto.PatientRequestDTO;
+import com.ojuara.patientservice.dto.PatientResponseDTO;
+import com.ojuara.patientservice.grpc.BillingServiceGrpcClient;
+import com.ojuara.patientservice.service.PatientService;
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.Server;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.ServerInterceptors;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Timers do caminho de uma requisição (HTTP, service, repositório), gauges do pool e da JVM e
+ * propagação do trace nas chamadas gRPC, medidos no registry em memória dos testes.
+ */
+@SpringBootTest(properties = "billing.outbox.relay.enabled=false")
+@AutoConfigureMockMvc
+@AutoConfigureObservability(metrics = false)
+class ObservabilityTest {
+
+    private static final Metadata.Key<String> TRACEPARENT =
+            Metadata.Key.of("traceparent", Metadata.ASCII_STRING_MARSHALLER);
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private PatientService patientService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ObservationRegistry observationRegistry;
+
+    @Test
+    void requestPathIsTimedAtEachLayer() throws Exception {
+        PatientResponseDTO patient = patientService.createPatient(new PatientRequestDTO(
+                "Metrics", "metrics@example.com", "1 Main St", "1990-01-01", "2024-01-01")).patient();
+
+        mockMvc.perform(get("/api/v1/patients/{id}", patient.id())).andExpect(status().isOk());
+
+        Timer http = meterRegistry.get("http.server.requests").tag("uri", "/api/v1/patients/{id}").timer();
+        assertEquals(1, http.count());
+        assertEquals(3, http.takeSnapshot().percentileValues().length);
+        assertTrue(meterRegistry.get("patient.service").tag("method", "getPatientById").timer().count() >= 1);
+        assertTrue(meterRegistry.get("spring.data.repository.invocations")
+                .tag("repository", "PatientRepository").timer().count() >= 1);
+
+        assertNotNull(meterRegistry.get("hikaricp.connections.active").gauge());
+        assertNotNull(meterRegistry.get("jvm.gc.memory.allocated").counter());
+    }
+
+    @Test
+    void grpcCallsAreTimedAndCarryTraceContext() throws Exception {
+        AtomicReference<String> traceparent = new AtomicReference<>();
+        ServerInterceptor captureTrace = new ServerInterceptor() {
+            @Override
+            public <Q, R> ServerCall.Listener<Q> interceptCall(ServerCall<Q, R> call, Metadata headers,
+                                                               ServerCallHandler<Q, R> next) {
+                traceparent.set(headers.get(TRACEPARENT));
+                return next.startCall(call, headers);
+            }
+        };
+
+        String name = InProcessServerBuilder.generateName();
+        Server server = InProcessServerBuilder.forName(name).directExecutor()
+                .addService(ServerInterceptors.intercept(new EchoBillingService(), captureTrace))
+                .build().start();
+        ManagedChannel channel = InProcessChannelBuilder.forName(name).directExecutor().build();
+        try {
+            BillingServiceGrpcClient client = new BillingServiceGrpcClient(channel, Duration.ofSeconds(2), observationRegistry);
+            client.createBillingAccounts(List.of(BillingRequest.newBuilder().setPatientId("p1").build()));
+        } finally {
+            channel.shutdownNow();
+            server.shutdownNow();
+        }
+
+        assertNotNull(traceparent.get());
+        assertTrue(traceparent.get().matches("00-[0-9a-f]{32}-[0-9a-f]{16}-0[01]"), traceparent.get());
+        assertEquals(1, meterRegistry.get("grpc.client")
+                .tag("rpc.method", "BatchCreateBillingAccounts")
+                .tag("grpc.status_code", "OK")
+                .timer().count());
+    }
+
+    private static final class EchoBillingService extends BillingServiceGrpc.BillingServiceImplBase {
+
+        @Override
+        public void batchCreateBillingAccounts(BillingBatchRequest request,
+                                               StreamObserver<BillingBatchResponse> responseObserver) {
+            BillingBatchResponse.Builder response = BillingBatchResponse.newBuilder();
+            request.getAccountsList().forEach(account -> response.addResults(BillingAccountResult.newBuilder()
+                    .setPatientId(account.getPatientId())
+                    .setAccountId("acc-" + account.getPatientId())
+                    .setStatus("ACTIVE")
+                    .setCreated(true)));
+            responseObserver.onNext(response.build());
+            responseObserver.onCompleted();
+        }
+
+    }
+
+}
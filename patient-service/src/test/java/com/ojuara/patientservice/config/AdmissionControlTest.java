@@ -0,0 +1,149 @@
+package com.ojuara.patientservice.config;
+
+import com.ojuara.patientservice.exception.RateLimitExceededException;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.RequestPostProcessor;
+import org.springframework.web.method.HandlerMethod;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Controle de admissão: baldes por cliente (endereço remoto) na listagem e no stream (rajada de 2,
+ * reposição lenta), o cabeçalho de cliente só atrás de gateway confiável e o limite de concorrência
+ * adaptativo isolado.
+ */
+@SpringBootTest(properties = {
+        "billing.outbox.relay.enabled=false",
+        "patient.admission.endpoints.getPatients.client-rate=0.01",
+        "patient.admission.endpoints.getPatients.client-burst=2",
+        "patient.admission.endpoints.streamPatients.client-rate=0.01",
+        "patient.admission.endpoints.streamPatients.client-burst=2"})
+@AutoConfigureMockMvc
+class AdmissionControlTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void rejectsClientOverItsRateWithRetryAfter() throws Exception {
+        double rejectedBefore = rejected();
+
+        mockMvc.perform(get("/api/v1/patients").with(from("10.0.0.1"))).andExpect(status().isOk());
+        mockMvc.perform(get("/api/v1/patients").with(from("10.0.0.1"))).andExpect(status().isOk());
+        String retryAfter = mockMvc.perform(get("/api/v1/patients").with(from("10.0.0.1")))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().exists("Retry-After"))
+                .andReturn().getResponse().getHeader("Retry-After");
+        assertTrue(Long.parseLong(retryAfter) >= 1);
+        assertEquals(rejectedBefore + 1, rejected());
+
+        // Trocar o X-Client-Id não dá um balde novo sem patient.admission.trusted-gateway
+        mockMvc.perform(get("/api/v1/patients").with(from("10.0.0.1")).header("X-Client-Id", "someone-else"))
+                .andExpect(status().isTooManyRequests());
+        // Outro cliente tem o próprio balde
+        mockMvc.perform(get("/api/v1/patients").with(from("10.0.0.2"))).andExpect(status().isOk());
+    }
+
+    @Test
+    void usesTheClientIdHeaderOnlyBehindATrustedGateway() throws Exception {
+        HandlerMethod handler = new HandlerMethod(this, getClass().getDeclaredMethod("rejected"));
+        RateLimiter rateLimiter = new RateLimiter(endpoint -> new RateLimiter.EndpointRates(
+                new RateLimiter.Rate(0.01, 1), null), 100, Duration.ofMinutes(1));
+        AdmissionControlInterceptor trusted = new AdmissionControlInterceptor(rateLimiter, Map.of(), "X-Client-Id",
+                true, Duration.ofSeconds(1), meterRegistry);
+
+        assertTrue(trusted.preHandle(gatewayRequest("tenant-a"), new MockHttpServletResponse(), handler));
+        assertTrue(trusted.preHandle(gatewayRequest("tenant-b"), new MockHttpServletResponse(), handler));
+        assertThrows(RateLimitExceededException.class,
+                () -> trusted.preHandle(gatewayRequest("tenant-a"), new MockHttpServletResponse(), handler));
+    }
+
+    @Test
+    void chargesAStreamOnceDespiteItsAsyncDispatch() throws Exception {
+        for (int i = 0; i < 2; i++) {
+            MvcResult started = mockMvc.perform(get("/api/v1/patients/stream").with(from("10.0.0.3")))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+            mockMvc.perform(asyncDispatch(started)).andExpect(status().isOk());
+        }
+        mockMvc.perform(get("/api/v1/patients/stream").with(from("10.0.0.3")))
+                .andExpect(status().isTooManyRequests());
+    }
+
+    @Test
+    void concurrencyLimitRejectsWhenFullAndShrinksWhenLatencyRises() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(4, 2, 100);
+
+        int[] permits = new int[4];
+        for (int i = 0; i < permits.length; i++) {
+            permits[i] = limit.tryAcquire();
+            assertEquals(i, permits[i]);
+        }
+        assertEquals(-1, limit.tryAcquire());
+        for (int permit : permits) {
+            limit.release(1_000_000, permit);
+        }
+        assertEquals(0, limit.getInFlight());
+
+        // Latência estável com o limite em uso: cresce
+        for (int i = 0; i < 200; i++) {
+            sampleAtFullUse(limit, 1_000_000);
+        }
+        int grown = limit.getLimit();
+        assertTrue(grown > 4, "limit should grow, was " + grown);
+
+        // Latência dez vezes maior: cai
+        for (int i = 0; i < 50; i++) {
+            sampleAtFullUse(limit, 10_000_000);
+        }
+        assertTrue(limit.getLimit() < grown, "limit should shrink from " + grown + ", was " + limit.getLimit());
+    }
+
+    // Uma requisição que encontrou o limite todo ocupado
+    private static void sampleAtFullUse(AdaptiveConcurrencyLimit limit, long rttNanos) {
+        assertTrue(limit.tryAcquire() >= 0);
+        limit.release(rttNanos, limit.getLimit() - 1);
+    }
+
+    private static RequestPostProcessor from(String remoteAddr) {
+        return request -> {
+            request.setRemoteAddr(remoteAddr);
+            return request;
+        };
+    }
+
+    // Requisição que chega pelo gateway: o mesmo IP para todos os clientes
+    private static MockHttpServletRequest gatewayRequest(String clientId) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/patients");
+        request.setRemoteAddr("10.0.0.254");
+        request.addHeader("X-Client-Id", clientId);
+        return request;
+    }
+
+    private double rejected() {
+        return meterRegistry.counter("patient.admission.rejected", "endpoint", "getPatients", "reason", "rate")
+                .count();
+    }
+
+}
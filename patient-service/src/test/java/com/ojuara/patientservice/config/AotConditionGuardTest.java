@@ -0,0 +1,69 @@
+package com.ojuara.patientservice.config;
+
+import com.ojuara.patientservice.service.PatientEventLog;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Com o contexto gerado pelo AOT, as propriedades de runtime precisam bater com as configurações
+ * que o build incluiu.
+ */
+class AotConditionGuardTest {
+
+    // O que o process-aot inclui com o profile faststart e as variáveis de ambiente vazias
+    private static final Set<Class<?>> FASTSTART_BUILD = Set.of(
+            DatabaseConcurrencyConfig.class, AdmissionControlConfig.class);
+
+    @Test
+    void acceptsThePropertiesTheImageWasBuiltWith() {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("patient.db.max-concurrency", "20");
+
+        assertTrue(AotConditionGuard.mismatches(environment, FASTSTART_BUILD::contains).isEmpty());
+    }
+
+    @Test
+    void reportsDatasourceSettingsTheBuildLeftOut() {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("patient.db.replica-urls", "jdbc:postgresql://replica/patients")
+                .withProperty("patient.db.shard-urls", "jdbc:postgresql://shard-0/patients")
+                .withProperty("patient.db.max-concurrency", "0")
+                .withProperty("patient.events.directory", "");
+
+        List<String> mismatches = AotConditionGuard.mismatches(environment, FASTSTART_BUILD::contains);
+
+        assertEquals(List.of(
+                "patient.db.replica-urls is set but the build left out its configuration",
+                "patient.db.shard-urls is set but the build left out its configuration"), mismatches);
+    }
+
+    @Test
+    void reportsAConnectionLimitTheBuildLeftOut() {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("patient.db.max-concurrency", "20");
+
+        assertEquals(List.of("patient.db.max-concurrency is set but the build left out its configuration"),
+                AotConditionGuard.mismatches(environment, Set.of(AdmissionControlConfig.class)::contains));
+    }
+
+    @Test
+    void reportsAFeatureTheBuildIncludedButTheRuntimeTurnedOff() {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("patient.db.max-concurrency", "20")
+                .withProperty("patient.admission.enabled", "false");
+        Set<Class<?>> built = Set.of(DatabaseConcurrencyConfig.class, AdmissionControlConfig.class,
+                PatientEventLog.class);
+
+        assertEquals(List.of(
+                "patient.events.directory is unset but the build included its configuration",
+                "patient.admission.enabled is unset but the build included its configuration"),
+                AotConditionGuard.mismatches(environment, built::contains));
+    }
+
+}
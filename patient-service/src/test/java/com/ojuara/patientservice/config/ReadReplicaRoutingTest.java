@@ -0,0 +1,170 @@
+package com.ojuara.patientservice.config;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import javax.sql.DataSource;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Roteamento entre dois H2 em memória, um no papel de primário e outro no de réplica. A replicação
+ * é feita pelo teste (cópia das tabelas), assim como o batimento e a leitura do estado da réplica.
+ *
+ * <p>Um paciente gravado só na réplica mostra quando a leitura foi atendida por ela.</p>
+ */
+@SpringBootTest(properties = {
+        "billing.outbox.relay.enabled=false",
+        "spring.datasource.url=" + ReadReplicaRoutingTest.PRIMARY_URL,
+        "patient.db.replica-urls=" + ReadReplicaRoutingTest.REPLICA_URL,
+        "patient.db.replica-max-lag=1m",
+        "patient.db.max-concurrency=20",
+        // Só a execução da subida; depois o teste comanda batimento e leitura das réplicas
+        "patient.db.heartbeat-interval=1h",
+        "patient.db.replica-poll-interval=1h"})
+@AutoConfigureMockMvc
+class ReadReplicaRoutingTest {
+
+    static final String PRIMARY_URL = "jdbc:h2:mem:routing-primary;DB_CLOSE_DELAY=-1";
+    static final String REPLICA_URL = "jdbc:h2:mem:routing-replica;DB_CLOSE_DELAY=-1";
+
+    private static final String REPLICA_ONLY_EMAIL = "replica.only@example.com";
+
+    private final JdbcTemplate primary = new JdbcTemplate(new DriverManagerDataSource(PRIMARY_URL, "sa", ""));
+    private final JdbcTemplate replica = new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL, "sa", ""));
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ReplicationHeartbeat heartbeat;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @BeforeAll
+    static void createReplicaSchema() {
+        Flyway.configure().dataSource(REPLICA_URL, "sa", "").load().migrate();
+    }
+
+    @Test
+    void readsOwnWritesFromThePrimaryUntilTheReplicaCatchesUp() throws Exception {
+        replicate();
+
+        MvcResult created = mockMvc.perform(post("/api/v1/patients/create")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {"name": "Routing", "email": "routing@example.com", "address": "1 Main St",
+                                 "dateOfBirth": "1990-01-01", "registeredDate": "2024-01-01"}
+                                """))
+                .andExpect(status().isCreated())
+                .andReturn();
+        String token = created.getResponse().getHeader(ReadConsistencyFilter.HEADER);
+        assertNotNull(token);
+
+        // Sem token: réplica, que ainda não tem a escrita
+        String stale = listPatients(null);
+        assertTrue(stale.contains(REPLICA_ONLY_EMAIL));
+        assertFalse(stale.contains("routing@example.com"));
+
+        // Com token: a réplica não chegou à posição da escrita, então lê do primário
+        String own = listPatients(token);
+        assertFalse(own.contains(REPLICA_ONLY_EMAIL));
+        assertTrue(own.contains("routing@example.com"));
+
+        // O batimento seguinte à escrita chega à réplica junto com ela
+        replicate();
+        String caughtUp = listPatients(token);
+        assertTrue(caughtUp.contains(REPLICA_ONLY_EMAIL));
+        assertTrue(caughtUp.contains("routing@example.com"));
+    }
+
+    @Test
+    void laggingReplicaFallsBackToThePrimary() throws Exception {
+        replicate();
+        assertTrue(listPatients(null).contains(REPLICA_ONLY_EMAIL));
+
+        // Último batimento aplicado pela réplica há mais que replica-max-lag
+        replica.update("UPDATE replication_heartbeat SET beat_at = ? WHERE id = 1",
+                OffsetDateTime.now(ZoneOffset.UTC).minusMinutes(5));
+        heartbeat.poll();
+
+        assertFalse(listPatients(null).contains(REPLICA_ONLY_EMAIL));
+    }
+
+    @Test
+    void invalidTokenReadsFromThePrimary() throws Exception {
+        replicate();
+
+        assertFalse(listPatients("not-a-position").contains(REPLICA_ONLY_EMAIL));
+    }
+
+    @Test
+    void limitsTheConnectionsOfEachPoolSeparately() {
+        // patient.db.max-concurrency vale para cada pool, não para o roteamento
+        assertFalse(dataSource instanceof ConcurrencyLimitingDataSource);
+        ReplicaRoutingDataSource routing = (ReplicaRoutingDataSource)
+                ((LazyConnectionDataSourceProxy) dataSource).getTargetDataSource();
+        Map<Object, DataSource> pools = routing.getResolvedDataSources();
+        assertEquals(2, pools.size());
+        for (DataSource pool : pools.values()) {
+            assertEquals(20, ((ConcurrencyLimitingDataSource) pool).getMaxConcurrency());
+        }
+        assertNotSame(pools.get(ReplicaSet.PRIMARY), pools.get("replica-1"));
+    }
+
+    private String listPatients(String token) throws Exception {
+        MockHttpServletRequestBuilder request = get("/api/v1/patients").param("limit", "500");
+        if (token != null) {
+            request.header(ReadConsistencyFilter.HEADER, token);
+        }
+        return mockMvc.perform(request).andExpect(status().isOk()).andReturn().getResponse().getContentAsString();
+    }
+
+    /**
+     * Bate no primário e copia pacientes e batimento para a réplica, acrescenta o paciente exclusivo
+     * da réplica e atualiza o estado dela no roteamento.
+     */
+    private void replicate() {
+        heartbeat.beat();
+        replica.update("DELETE FROM patient");
+        for (Map<String, Object> row : primary.queryForList(
+                "SELECT id, name, email, address, date_of_birth, registered_date, version, updated_at FROM patient")) {
+            replica.update("INSERT INTO patient (id, name, email, address, date_of_birth, registered_date, version, updated_at)"
+                            + " VALUES (?, ?, ?, ?, ?, ?, ?, ?)",
+                    row.get("ID"), row.get("NAME"), row.get("EMAIL"), row.get("ADDRESS"), row.get("DATE_OF_BIRTH"),
+                    row.get("REGISTERED_DATE"), row.get("VERSION"), row.get("UPDATED_AT"));
+        }
+        replica.update("INSERT INTO patient (id, name, email, address, date_of_birth, registered_date, version, updated_at)"
+                        + " VALUES (?, 'Replica Only', ?, '1 Replica St', DATE '1990-01-01', DATE '2024-01-01', 0, ?)",
+                UUID.randomUUID(), REPLICA_ONLY_EMAIL, OffsetDateTime.now(ZoneOffset.UTC));
+
+        Map<String, Object> beat = primary.queryForMap("SELECT position, beat_at FROM replication_heartbeat WHERE id = 1");
+        assertEquals(1, replica.update("UPDATE replication_heartbeat SET position = ?, beat_at = ? WHERE id = 1",
+                beat.get("POSITION"), beat.get("BEAT_AT")));
+        heartbeat.poll();
+    }
+
+}
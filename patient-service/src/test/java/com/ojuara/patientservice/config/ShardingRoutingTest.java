@@ -0,0 +1,200 @@
+package com.ojuara.patientservice.config;
+
+import com.ojuara.patientservice.dto.PatientBulkDeleteRequestDTO;
+import com.ojuara.patientservice.dto.PatientBulkItemResultDTO;
+import com.ojuara.patientservice.dto.PatientBulkStatus;
+import com.ojuara.patientservice.dto.PatientChangesResponseDTO;
+import com.ojuara.patientservice.dto.PatientImportResultDTO;
+import com.ojuara.patientservice.dto.PatientImportRowResultDTO;
+import com.ojuara.patientservice.dto.PatientImportStatus;
+import com.ojuara.patientservice.dto.PatientPatchDTO;
+import com.ojuara.patientservice.dto.PatientRequestDTO;
+import com.ojuara.patientservice.dto.PatientResponseDTO;
+import com.ojuara.patientservice.exception.EmailAlreadyExistsException;
+import com.ojuara.patientservice.exception.PatientNotFoundException;
+import com.ojuara.patientservice.mapper.PatientMapper;
+import com.ojuara.patientservice.model.Patient;
+import com.ojuara.patientservice.service.PatientBillingOutbox;
+import com.ojuara.patientservice.service.PatientBulkService;
+import com.ojuara.patientservice.service.PatientCache;
+import com.ojuara.patientservice.service.PatientChangeService;
+import com.ojuara.patientservice.service.PatientImportService;
+import com.ojuara.patientservice.service.PatientService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Com {@code patient.db.shard-urls}, os serviços leem e gravam pacientes nos shards (dois H2 em
+ * memória) e a tabela {@code patient} do banco principal fica como estava. A pendência de cobrança
+ * é confirmada no banco principal antes do insert no shard.
+ */
+@SpringBootTest(properties = {
+        "billing.outbox.relay.enabled=false",
+        "patient.changes.commit-grace=0s",
+        "spring.datasource.url=" + ShardingRoutingTest.MAIN_URL,
+        "patient.db.shard-urls=" + ShardingRoutingTest.SHARD_0_URL + "," + ShardingRoutingTest.SHARD_1_URL})
+class ShardingRoutingTest {
+
+    static final String MAIN_URL = "jdbc:h2:mem:sharding-main;DB_CLOSE_DELAY=-1";
+    static final String SHARD_0_URL = "jdbc:h2:mem:sharding-0;DB_CLOSE_DELAY=-1";
+    static final String SHARD_1_URL = "jdbc:h2:mem:sharding-1;DB_CLOSE_DELAY=-1";
+
+    private final JdbcTemplate main = new JdbcTemplate(new DriverManagerDataSource(MAIN_URL, "sa", ""));
+    private final List<JdbcTemplate> shards = List.of(
+            new JdbcTemplate(new DriverManagerDataSource(SHARD_0_URL, "sa", "")),
+            new JdbcTemplate(new DriverManagerDataSource(SHARD_1_URL, "sa", "")));
+
+    @Autowired
+    private PatientService patientService;
+
+    @Autowired
+    private PatientChangeService changeService;
+
+    @Autowired
+    private PatientBulkService bulkService;
+
+    @Autowired
+    private PatientImportService importService;
+
+    @Autowired
+    private PatientCache patientCache;
+
+    @Autowired
+    private PatientBillingOutbox billingOutbox;
+
+    private int mainPatients;
+
+    @BeforeEach
+    void setUp() {
+        shards.forEach(shard -> shard.update("DELETE FROM patient"));
+        main.update("DELETE FROM patient_email_directory");
+        main.update("DELETE FROM patient_tombstone");
+        main.update("DELETE FROM billing_outbox");
+        patientCache.invalidateAll();
+        mainPatients = countMainPatients();
+    }
+
+    @Test
+    void servesReadsAndWritesFromTheShards() {
+        PatientResponseDTO ana = create("Ana", "ana@example.com", "2024-01-01");
+        PatientResponseDTO bruno = create("Bruno", "bruno@example.com", "2024-02-01");
+        assertEquals(2, countShardPatients());
+        assertEquals(mainPatients, countMainPatients());
+        assertEquals(2, main.queryForObject("SELECT COUNT(*) FROM billing_outbox", Integer.class));
+
+        assertEquals("Ana", patientService.getPatientById(ana.id()).name());
+        assertEquals(bruno.id(), patientService.getPatientByEmail("bruno@example.com").id());
+        assertFalse(patientService.createPatient(request("Ana 2", "ana@example.com", "2024-01-01")).created());
+
+        PatientResponseDTO renamed = patientService.updatePatient(ana.id(),
+                request("Ana Souza", "ana.souza@example.com", "2024-01-01"), ana.version());
+        assertEquals(ana.version() + 1, renamed.version());
+        assertEquals(ana.id(), patientService.getPatientByEmail("ana.souza@example.com").id());
+        assertThrows(PatientNotFoundException.class, () -> patientService.getPatientByEmail("ana@example.com"));
+        assertThrows(EmailAlreadyExistsException.class, () -> patientService.updatePatient(bruno.id(),
+                request("Bruno", "ana.souza@example.com", "2024-02-01")));
+
+        assertEquals(List.of(ana.id(), bruno.id()), patientService.getPatientsPage(null, 10).getPatients().stream()
+                .map(PatientResponseDTO::id).toList());
+
+        patientService.deletePatientById(bruno.id());
+        assertThrows(PatientNotFoundException.class, () -> patientService.getPatientById(bruno.id()));
+        PatientChangesResponseDTO changes = changeService.getChanges(null, 10);
+        assertEquals(List.of("Ana Souza"), changes.getPatients().stream().map(PatientResponseDTO::name).toList());
+        assertEquals(List.of(bruno.id().toString()), changes.getDeletedIds());
+        assertEquals(1, countShardPatients());
+        assertEquals(mainPatients, countMainPatients());
+    }
+
+    @Test
+    void confirmsTheBillingRowBeforeTheShardInsert() {
+        create("Ana", "ana@example.com", "2024-01-01");
+        assertFalse(patientService.createPatient(request("Ana 2", "ana@example.com", "2024-01-01")).created());
+
+        // A pendência da Ana foi liberada para o relay; a reservada para o email repetido, removida
+        assertEquals(1, main.queryForObject("SELECT COUNT(*) FROM billing_outbox", Integer.class));
+        assertEquals(0, parkedBillingRows());
+
+        // Uma requisição que cai depois da reserva deixa a pendência confirmada, esperando o prazo
+        Patient carla = PatientMapper.toEntity(request("Carla", "carla@example.com", "2024-03-01"));
+        billingOutbox.reserve(List.of(carla));
+        assertEquals(1, parkedBillingRows());
+        assertEquals(carla.getId(), main.queryForObject("SELECT patient_id FROM billing_outbox "
+                + "WHERE next_attempt_at > CURRENT_TIMESTAMP", UUID.class));
+    }
+
+    @Test
+    void importsAndBulkOperationsRunOnTheShards() {
+        PatientImportResultDTO imported = importService.importPatients(new ByteArrayInputStream("""
+                [{"name": "Ana", "email": "ana@example.com", "address": "1 Rua",
+                  "dateOfBirth": "1980-01-01", "registeredDate": "2020-01-01"},
+                 {"name": "Bruno", "email": "bruno@example.com", "address": "2 Rua",
+                  "dateOfBirth": "1980-01-01", "registeredDate": "2024-01-01"},
+                 {"name": "Ana de novo", "email": "ana@example.com", "address": "3 Rua",
+                  "dateOfBirth": "1980-01-01", "registeredDate": "2024-01-01"}]
+                """.getBytes(StandardCharsets.UTF_8)), MediaType.APPLICATION_JSON);
+        assertEquals(List.of(PatientImportStatus.CREATED, PatientImportStatus.CREATED, PatientImportStatus.EXISTING),
+                imported.getRows().stream().map(PatientImportRowResultDTO::getStatus).toList());
+        assertEquals(2, countShardPatients());
+
+        PatientResponseDTO ana = patientService.getPatientByEmail("ana@example.com");
+        PatientResponseDTO bruno = patientService.getPatientByEmail("bruno@example.com");
+        List<PatientBulkItemResultDTO> updated = bulkService.updatePatients(List.of(
+                new PatientPatchDTO(ana.id(), null, null, "1 Normalized Ave", null, null),
+                new PatientPatchDTO(bruno.id(), null, "ana@example.com", null, null, null))).getResults();
+        assertEquals(List.of(PatientBulkStatus.UPDATED, PatientBulkStatus.EMAIL_CONFLICT),
+                updated.stream().map(PatientBulkItemResultDTO::getStatus).toList());
+        assertEquals("1 Normalized Ave", patientService.getPatientById(ana.id()).address());
+        assertEquals(ana.version() + 1, updated.getFirst().getVersion());
+
+        List<PatientBulkItemResultDTO> deleted = bulkService.deletePatients(
+                new PatientBulkDeleteRequestDTO(null, LocalDate.of(2022, 1, 1))).getResults();
+        assertEquals(List.of(ana.id()), deleted.stream().map(PatientBulkItemResultDTO::getId).toList());
+        assertEquals(Set.of(bruno.id().toString()), changeService.getChanges(null, 10).getPatients().stream()
+                .map(patient -> patient.id().toString()).collect(Collectors.toSet()));
+        assertTrue(changeService.getChanges(null, 10).getDeletedIds().contains(ana.id().toString()));
+        assertEquals(mainPatients, countMainPatients());
+    }
+
+    private PatientResponseDTO create(String name, String email, String registeredDate) {
+        return patientService.createPatient(request(name, email, registeredDate)).patient();
+    }
+
+    private static PatientRequestDTO request(String name, String email, String registeredDate) {
+        return new PatientRequestDTO(name, email, "1 Rua", "1980-01-01", registeredDate);
+    }
+
+    private int countShardPatients() {
+        return shards.stream()
+                .mapToInt(shard -> shard.queryForObject("SELECT COUNT(*) FROM patient", Integer.class))
+                .sum();
+    }
+
+    private int parkedBillingRows() {
+        return main.queryForObject("SELECT COUNT(*) FROM billing_outbox WHERE next_attempt_at > CURRENT_TIMESTAMP",
+                Integer.class);
+    }
+
+    private int countMainPatients() {
+        return main.queryForObject("SELECT COUNT(*) FROM patient", Integer.class);
+    }
+
+}
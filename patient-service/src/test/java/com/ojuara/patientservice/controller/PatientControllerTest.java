@@ -0,0 +1,161 @@
+package com.ojuara.patientservice.controller;
+
+import com.jayway.jsonpath.JsonPath;
+import com.ojuara.patientservice.repository.BillingOutboxRepository;
+import com.ojuara.patientservice.repository.PatientRepository;
+import com.ojuara.patientservice.repository.PatientStore;
+import com.ojuara.patientservice.service.PatientCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.test.web.servlet.ResultActions;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Códigos HTTP dos endpoints de paciente: criação idempotente (201 ou 200) e requisições
+ * condicionais por ETag (304 no GET, 412 no If-Match e 409 quando outra atualização confirma
+ * entre a leitura e o flush).
+ */
+@SpringBootTest(properties = "billing.outbox.relay.enabled=false")
+@AutoConfigureMockMvc
+class PatientControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private BillingOutboxRepository outboxRepository;
+
+    @Autowired
+    private PatientCache patientCache;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockitoSpyBean
+    private PatientStore patientStore;
+
+    @BeforeEach
+    void setUp() {
+        outboxRepository.deleteAll();
+        patientRepository.deleteAll();
+        patientCache.invalidateAll();
+    }
+
+    @Test
+    void createAnswers201ThenReturnsTheExistingPatientWith200() throws Exception {
+        String id = JsonPath.read(create("Ana", "ana@example.com")
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.name").value("Ana"))
+                .andReturn().getResponse().getContentAsString(), "$.id");
+
+        create("Ana de novo", "ana@example.com")
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(id))
+                .andExpect(jsonPath("$.name").value("Ana"));
+    }
+
+    @Test
+    void getAnswers304WhileTheETagStillMatches() throws Exception {
+        String id = createdId("Ana", "ana@example.com");
+
+        mockMvc.perform(get("/api/v1/patients/{id}", id))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"0\""));
+        mockMvc.perform(get("/api/v1/patients/{id}", id).header(HttpHeaders.IF_NONE_MATCH, "\"0\""))
+                .andExpect(status().isNotModified());
+
+        String pageETag = mockMvc.perform(get("/api/v1/patients"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        mockMvc.perform(get("/api/v1/patients").header(HttpHeaders.IF_NONE_MATCH, pageETag))
+                .andExpect(status().isNotModified());
+
+        update(id, "Ana Souza", "\"0\"").andExpect(status().isOk());
+        mockMvc.perform(get("/api/v1/patients/{id}", id).header(HttpHeaders.IF_NONE_MATCH, "\"0\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"1\""));
+        mockMvc.perform(get("/api/v1/patients").header(HttpHeaders.IF_NONE_MATCH, pageETag))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void updateWithAStaleIfMatchAnswers412() throws Exception {
+        String id = createdId("Ana", "ana@example.com");
+
+        update(id, "Ana Souza", "\"0\"")
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"1\""));
+        update(id, "Ana Lima", "\"0\"").andExpect(status().isPreconditionFailed());
+        update(id, "Ana Lima", "W/\"1\"").andExpect(status().isPreconditionFailed());
+
+        mockMvc.perform(get("/api/v1/patients/{id}", id))
+                .andExpect(jsonPath("$.name").value("Ana Souza"));
+    }
+
+    @Test
+    void updateThatLosesTheRaceAtFlushAnswers409() throws Exception {
+        String id = createdId("Ana", "ana@example.com");
+
+        // Outra requisição confirma uma atualização depois da leitura e antes do flush desta
+        doAnswer(invocation -> {
+            CompletableFuture.runAsync(() -> jdbcTemplate.update(
+                    "UPDATE patient SET version = version + 1 WHERE id = ?", UUID.fromString(id))).join();
+            return invocation.callRealMethod();
+        }).when(patientStore).update(any());
+
+        update(id, "Ana Souza", "\"0\"").andExpect(status().isConflict());
+
+        mockMvc.perform(get("/api/v1/patients/{id}", id))
+                .andExpect(jsonPath("$.name").value("Ana"))
+                .andExpect(header().string(HttpHeaders.ETAG, "\"1\""));
+    }
+
+    private String createdId(String name, String email) throws Exception {
+        return JsonPath.read(create(name, email)
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString(), "$.id");
+    }
+
+    private ResultActions create(String name, String email) throws Exception {
+        return mockMvc.perform(post("/api/v1/patients/create")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(body(name, email)));
+    }
+
+    private ResultActions update(String id, String name, String ifMatch) throws Exception {
+        return mockMvc.perform(put("/api/v1/patients/update/{id}", id)
+                .header(HttpHeaders.IF_MATCH, ifMatch)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(body(name, "ana@example.com")));
+    }
+
+    private static String body(String name, String email) {
+        return """
+                {"name": "%s", "email": "%s", "address": "1 Rua",
+                 "dateOfBirth": "1980-01-01", "registeredDate": "2024-01-01"}
+                """.formatted(name, email);
+    }
+
+}
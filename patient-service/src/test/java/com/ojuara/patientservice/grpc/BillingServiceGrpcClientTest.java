@@ -0,0 +1,181 @@
+package com.ojuara.patientservice.grpc;
+
+import billing.BillingAccountResult;
+import billing.BillingBatchRequest;
+import billing.BillingBatchResponse;
+import billing.BillingRequest;
+import billing.BillingServiceGrpc;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Round-robin, hedge, prazo e disjuntor do cliente contra billing-services falsos em servidores
+ * gRPC in-process, com latência e falhas injetadas.
+ */
+class BillingServiceGrpcClientTest {
+
+    private static final List<BillingRequest> ACCOUNTS = List.of(
+            BillingRequest.newBuilder().setPatientId("p1").setName("Ana").setEmail("ana@example.com").build());
+
+    private final List<Server> servers = new ArrayList<>();
+    private final List<ManagedChannel> channels = new ArrayList<>();
+    private final List<FakeBillingService> backends = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        channels.forEach(ManagedChannel::shutdownNow);
+        servers.forEach(Server::shutdownNow);
+    }
+
+    @Test
+    void spreadsCallsOverTheEndpointsInRoundRobin() throws IOException {
+        BillingServiceGrpcClient client = client(settings(Duration.ofSeconds(2), true), 3);
+
+        for (int i = 0; i < 30; i++) {
+            assertEquals("p1", client.createBillingAccounts(ACCOUNTS).getResults(0).getPatientId());
+        }
+
+        backends.forEach(backend -> assertEquals(10, backend.calls.get()));
+        assertEquals(0L, client.stats().get("hedges"));
+    }
+
+    @Test
+    void hedgesASlowCallToAnotherEndpoint() throws IOException {
+        BillingServiceGrpcClient client = client(settings(Duration.ofSeconds(5), true), 2);
+        backends.get(0).latencyMillis = 2000;
+
+        long start = System.nanoTime();
+        client.createBillingAccounts(ACCOUNTS);
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertTrue(elapsedMillis < 1000, "answered by the hedge after " + elapsedMillis + " ms");
+        assertEquals(1, backends.get(1).calls.get());
+        assertEquals(1L, client.stats().get("hedges"));
+        assertEquals(1L, client.stats().get("hedgeWins"));
+    }
+
+    @Test
+    void fastFailureGoesToTheOtherEndpointRightAway() throws IOException {
+        BillingServiceGrpcClient client = client(settings(Duration.ofSeconds(5), true), 2);
+        backends.get(0).failure = Status.UNAVAILABLE;
+
+        assertEquals("p1", client.createBillingAccounts(ACCOUNTS).getResults(0).getPatientId());
+        assertEquals(1, backends.get(0).calls.get());
+        assertEquals(1, backends.get(1).calls.get());
+    }
+
+    @Test
+    void deadlineCoversTheHedge() throws IOException {
+        BillingServiceGrpcClient client = client(settings(Duration.ofSeconds(5), true), 2);
+        backends.forEach(backend -> backend.latencyMillis = 2000);
+
+        long start = System.nanoTime();
+        StatusRuntimeException e = assertThrows(StatusRuntimeException.class,
+                () -> client.createBillingAccounts(ACCOUNTS, Duration.ofMillis(200)));
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertEquals(Status.Code.DEADLINE_EXCEEDED, e.getStatus().getCode());
+        assertTrue(elapsedMillis < 1000, "gave up after " + elapsedMillis + " ms");
+        assertEquals(1L, client.stats().get("hedges"));
+    }
+
+    @Test
+    void circuitOpensOnFailuresAndClosesAfterASuccessfulProbe() throws Exception {
+        BillingClientSettings settings = new BillingClientSettings(Duration.ofSeconds(2), false, 0.95,
+                Duration.ofMillis(10), Duration.ofSeconds(1), 0.5, 4, 4, Duration.ofMillis(200));
+        BillingServiceGrpcClient client = client(settings, 1);
+        FakeBillingService backend = backends.getFirst();
+        backend.failure = Status.UNAVAILABLE;
+
+        for (int i = 0; i < 4; i++) {
+            assertThrows(StatusRuntimeException.class, () -> client.createBillingAccounts(ACCOUNTS));
+        }
+        assertFalse(client.isAvailable());
+        StatusRuntimeException rejected = assertThrows(StatusRuntimeException.class,
+                () -> client.createBillingAccounts(ACCOUNTS));
+        assertEquals(Status.Code.UNAVAILABLE, rejected.getStatus().getCode());
+        assertEquals(4, backend.calls.get(), "an open circuit does not reach the endpoint");
+
+        backend.failure = null;
+        Thread.sleep(250);
+        assertTrue(client.isAvailable());
+        client.createBillingAccounts(ACCOUNTS);
+        assertEquals(List.of(Map.of("endpoint", channels.getFirst().authority(), "circuit", "CLOSED")),
+                client.stats().get("endpoints"));
+    }
+
+    private BillingServiceGrpcClient client(BillingClientSettings settings, int endpoints) throws IOException {
+        for (int i = 0; i < endpoints; i++) {
+            String name = InProcessServerBuilder.generateName();
+            FakeBillingService backend = new FakeBillingService();
+            backends.add(backend);
+            servers.add(InProcessServerBuilder.forName(name).addService(backend).build().start());
+            channels.add(InProcessChannelBuilder.forName(name).build());
+        }
+        return new BillingServiceGrpcClient(channels, settings, ObservationRegistry.NOOP);
+    }
+
+    // Hedge entre 50 e 100 ms
+    private static BillingClientSettings settings(Duration deadline, boolean hedging) {
+        return new BillingClientSettings(deadline, hedging, 0.95, Duration.ofMillis(50), Duration.ofMillis(100),
+                0.5, 20, 10, Duration.ofSeconds(10));
+    }
+
+    /**
+     * Billing-service falso com latência e falha configuráveis.
+     */
+    private static final class FakeBillingService extends BillingServiceGrpc.BillingServiceImplBase {
+
+        private final AtomicInteger calls = new AtomicInteger();
+        private volatile long latencyMillis;
+        private volatile Status failure;
+
+        @Override
+        public void batchCreateBillingAccounts(BillingBatchRequest request,
+                                               StreamObserver<BillingBatchResponse> responseObserver) {
+            calls.incrementAndGet();
+            if (failure != null) {
+                responseObserver.onError(failure.asRuntimeException());
+                return;
+            }
+            try {
+                Thread.sleep(latencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            BillingBatchResponse.Builder response = BillingBatchResponse.newBuilder();
+            for (BillingRequest account : request.getAccountsList()) {
+                response.addResults(BillingAccountResult.newBuilder()
+                        .setPatientId(account.getPatientId())
+                        .setAccountId("acc-" + account.getPatientId())
+                        .setStatus("ACTIVE")
+                        .setCreated(true));
+            }
+            responseObserver.onNext(response.build());
+            responseObserver.onCompleted();
+        }
+
+    }
+
+}
@@ -0,0 +1,65 @@
+package com.ojuara.patientservice.mapper;
+
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.ojuara.patientservice.dto.PatientResponseDTO;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * O serializador escrito à mão produz o mesmo JSON da serialização por reflexão do Jackson,
+ * e o {@code parseDate} aceita e recusa as mesmas datas que o {@code LocalDate.parse}.
+ */
+class PatientResponseSerializerTest {
+
+    // Datas como texto ISO, como no ObjectMapper do Spring Boot
+    private final ObjectMapper streaming = Jackson2ObjectMapperBuilder.json()
+            .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+    private final ObjectMapper reflective = Jackson2ObjectMapperBuilder.json()
+            .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .mixIn(PatientResponseDTO.class, ReflectiveSerialization.class)
+            .build();
+
+    @Test
+    void writesTheSameJsonAsReflectiveSerialization() throws Exception {
+        List<PatientResponseDTO> patients = List.of(
+                new PatientResponseDTO(UUID.fromString("123e4567-e89b-12d3-a456-426614174000"), "John \"JD\" Doe",
+                        "john.doe@example.com", "123 Main St, São Paulo", LocalDate.of(1985, 6, 15),
+                        LocalDate.of(2024, 1, 10), 3L),
+                new PatientResponseDTO(new UUID(-1L, 0L), "Ana", "ana@example.com", "1 Rua",
+                        LocalDate.of(7, 12, 31), LocalDate.of(2024, 2, 29), null),
+                new PatientResponseDTO(UUID.randomUUID(), null, "x@example.com", "2 Rua",
+                        LocalDate.of(10_000, 1, 1), LocalDate.of(-1, 1, 1), 0L));
+
+        for (PatientResponseDTO patient : patients) {
+            assertEquals(reflective.writeValueAsString(patient), streaming.writeValueAsString(patient));
+        }
+        assertEquals(reflective.writeValueAsString(patients), streaming.writeValueAsString(patients));
+    }
+
+    @Test
+    void parseDateMatchesLocalDateParse() {
+        for (String date : List.of("1985-06-15", "2024-02-29", "0001-01-01", "+10000-01-01")) {
+            assertEquals(LocalDate.parse(date), PatientMapper.parseDate(date));
+        }
+        for (String invalid : List.of("2023-02-29", "2024-13-01", "2024-1-01", "2024/01/01", "abcd-ef-gh", "")) {
+            assertThrows(DateTimeException.class, () -> PatientMapper.parseDate(invalid));
+        }
+    }
+
+    @JsonSerialize(using = JsonSerializer.None.class)
+    private abstract static class ReflectiveSerialization {
+    }
+
+}
@@ -0,0 +1,104 @@
+package com.ojuara.patientservice.repository;
+
+import com.ojuara.patientservice.model.Patient;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CyclicBarrier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Criação idempotente por email ({@link PatientRepositoryImpl#insertIfAbsent}) no H2: o banco
+ * decide entre inserir e devolver o existente, inclusive com duas criações simultâneas.
+ */
+@SpringBootTest(properties = "billing.outbox.relay.enabled=false")
+class PatientRepositoryImplTest {
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private BillingOutboxRepository outboxRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    void setUp() {
+        outboxRepository.deleteAll();
+        patientRepository.deleteAll();
+    }
+
+    @Test
+    void insertsANewEmailWithTheInitialVersion() {
+        PatientInsertResult result = insert(patient("Ana", "ana@example.com"));
+
+        assertTrue(result.created());
+        assertEquals(0L, result.patient().getVersion());
+        Patient stored = patientRepository.findByEmail("ana@example.com").orElseThrow();
+        assertEquals(result.patient().getId(), stored.getId());
+        assertEquals("Ana", stored.getName());
+    }
+
+    @Test
+    void returnsTheExistingPatientWithoutChangingIt() {
+        Patient ana = insert(patient("Ana", "ana@example.com")).patient();
+
+        PatientInsertResult again = insert(patient("Outra Ana", "ana@example.com"));
+
+        assertFalse(again.created());
+        assertEquals(ana.getId(), again.patient().getId());
+        assertEquals("Ana", again.patient().getName());
+        assertEquals(1, patientRepository.count());
+    }
+
+    @Test
+    void concurrentCreatesWithTheSameEmailProduceOnePatient() throws Exception {
+        CyclicBarrier start = new CyclicBarrier(2);
+        List<CompletableFuture<PatientInsertResult>> attempts = List.of("Ana", "Ana B").stream()
+                .map(name -> CompletableFuture.supplyAsync(() -> {
+                    await(start);
+                    return insert(patient(name, "ana@example.com"));
+                }))
+                .toList();
+
+        List<PatientInsertResult> results = attempts.stream().map(CompletableFuture::join).toList();
+
+        assertEquals(1, results.stream().filter(PatientInsertResult::created).count());
+        assertEquals(results.get(0).patient().getId(), results.get(1).patient().getId());
+        assertEquals(1, patientRepository.count());
+    }
+
+    // Cada chamada na sua transação, como na criação pelo serviço
+    private PatientInsertResult insert(Patient patient) {
+        return transactionTemplate.execute(status -> patientRepository.insertIfAbsent(patient));
+    }
+
+    private static Patient patient(String name, String email) {
+        Patient patient = new Patient();
+        patient.setName(name);
+        patient.setEmail(email);
+        patient.setAddress("1 Rua");
+        patient.setDateOfBirth(LocalDate.of(1980, 1, 1));
+        patient.setRegisteredDate(LocalDate.of(2024, 1, 1));
+        return patient;
+    }
+
+    private static void await(CyclicBarrier barrier) {
+        try {
+            barrier.await();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
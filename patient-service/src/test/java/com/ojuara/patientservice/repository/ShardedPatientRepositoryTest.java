@@ -0,0 +1,236 @@
+package com.ojuara.patientservice.repository;
+
+import com.ojuara.patientservice.dto.PatientResponseDTO;
+import com.ojuara.patientservice.model.Patient;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Repositório em shards sobre H2 em memória: três shards e um banco principal com o diretório de
+ * emails, e um quarto shard incluído com rebalanceamento online.
+ */
+class ShardedPatientRepositoryTest {
+
+    private final String run = UUID.randomUUID().toString();
+    private final List<PatientShard> shards = new ArrayList<>();
+
+    private DataSource directory;
+    private ShardedPatientRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        directory = dataSource("directory");
+        Flyway.configure().dataSource(directory).load().migrate();
+        for (int i = 0; i < 3; i++) {
+            shards.add(shard("shard-" + i));
+        }
+        repository = new ShardedPatientRepository(directory, shards, 64);
+    }
+
+    @AfterEach
+    void tearDown() {
+        repository.close();
+    }
+
+    @Test
+    void storesEachPatientOnlyOnItsShardAndFindsItByIdOrEmail() {
+        List<Patient> patients = insert(200);
+
+        ShardRing ring = new ShardRing(List.of("shard-0", "shard-1", "shard-2"), 64);
+        for (Patient patient : patients) {
+            for (PatientShard shard : shards) {
+                int expected = shard.id().equals(ring.shardFor(patient.getId())) ? 1 : 0;
+                assertEquals(expected, count(shard, patient.getId()));
+            }
+            assertEquals(patient.getName(), repository.findById(patient.getId()).orElseThrow().getName());
+            assertEquals(patient.getId(), repository.findByEmail(patient.getEmail()).orElseThrow().getId());
+        }
+        // Distribuição razoável: nenhum shard vazio
+        for (PatientShard shard : shards) {
+            assertTrue(total(shard) > 0, shard.id() + " should hold patients");
+        }
+
+        PatientInsertResult duplicate = repository.insertIfAbsent(patient(0));
+        assertFalse(duplicate.created());
+        assertEquals(patients.getFirst().getId(), duplicate.patient().getId());
+        assertEquals(200, shards.stream().mapToInt(this::total).sum());
+        assertFalse(repository.existsByEmail("nobody@example.com"));
+    }
+
+    @Test
+    void pagesMergeAllShardsInKeyOrder() {
+        List<PatientResponseDTO> expected = new ArrayList<>(insert(150).stream()
+                .map(p -> new PatientResponseDTO(p.getId(), p.getName(), p.getEmail(), p.getAddress(),
+                        p.getDateOfBirth(), p.getRegisteredDate(), p.getVersion()))
+                .toList());
+        expected.sort(ShardedPatientRepository.PAGE_ORDER);
+
+        List<PatientResponseDTO> paged = new ArrayList<>();
+        List<PatientResponseDTO> page = repository.findFirstResponsePage(17);
+        while (!page.isEmpty()) {
+            paged.addAll(page);
+            PatientResponseDTO last = page.getLast();
+            page = repository.findResponsePageAfter(last.registeredDate(), last.id(), 17);
+        }
+        assertEquals(expected, paged);
+
+        List<PatientResponseDTO> streamed = new ArrayList<>();
+        repository.streamAllResponses(streamed::add);
+        assertEquals(expected, streamed);
+    }
+
+    @Test
+    void keepsTheEmailDirectoryInSyncOnUpdateAndDelete() {
+        List<Patient> patients = insert(2);
+        Patient patient = patients.get(0);
+        String previousEmail = patient.getEmail();
+
+        patient.setEmail("renamed@example.com");
+        assertTrue(repository.update(patient));
+        assertEquals(1L, patient.getVersion());
+        assertEquals(patient.getId(), repository.findByEmail("renamed@example.com").orElseThrow().getId());
+        assertFalse(repository.existsByEmail(previousEmail));
+
+        Patient stale = repository.findById(patient.getId()).orElseThrow();
+        stale.setVersion(0L);
+        assertFalse(repository.update(stale));
+
+        Patient taken = repository.findById(patient.getId()).orElseThrow();
+        taken.setEmail(patients.get(1).getEmail());
+        assertThrows(DuplicateKeyException.class, () -> repository.update(taken));
+        assertTrue(repository.existsByEmail("renamed@example.com"));
+
+        assertTrue(repository.deleteById(patient.getId()));
+        assertTrue(repository.findById(patient.getId()).isEmpty());
+        assertFalse(repository.existsByEmail("renamed@example.com"));
+        assertFalse(repository.deleteById(patient.getId()));
+    }
+
+    @Test
+    void emailChangeThatFailsOnTheShardLeavesNoDirectoryEntryBehind() {
+        Patient patient = insert(1).getFirst();
+        Patient change = repository.findById(patient.getId()).orElseThrow();
+        change.setEmail("new@example.com");
+        // Não cabe na coluna: o UPDATE do shard falha depois de o email novo entrar no diretório
+        change.setName("x".repeat(300));
+
+        assertThrows(RuntimeException.class, () -> repository.update(change));
+        assertEquals(List.of(patient.getEmail()), directoryEmails(patient.getId()));
+        assertEquals(patient.getId(), repository.findByEmail(patient.getEmail()).orElseThrow().getId());
+    }
+
+    @Test
+    void ignoresAndThenClearsEntriesLeftByAnUnfinishedEmailChange() {
+        Patient patient = insert(1).getFirst();
+        // Sobra de uma troca que parou no meio: entrada com um email que a linha não tem
+        new JdbcTemplate(directory).update(
+                "INSERT INTO patient_email_directory (email, patient_id) VALUES (?, ?)", "left@example.com", patient.getId());
+
+        assertTrue(repository.findByEmail("left@example.com").isEmpty());
+        assertFalse(repository.existsByEmail("left@example.com"));
+
+        // A entrada é do próprio paciente: a troca para esse email a aproveita
+        patient.setEmail("left@example.com");
+        assertTrue(repository.update(patient));
+        assertEquals(List.of("left@example.com"), directoryEmails(patient.getId()));
+
+        new JdbcTemplate(directory).update(
+                "INSERT INTO patient_email_directory (email, patient_id) VALUES (?, ?)", "other@example.com", patient.getId());
+        patient.setAddress("2 Main St");
+        assertTrue(repository.update(patient));
+        assertEquals(List.of("left@example.com"), directoryEmails(patient.getId()));
+    }
+
+    @Test
+    void addingAShardMovesOnlyItsPatientsWhileReadsAndWritesContinue() throws Exception {
+        List<Patient> patients = insert(600);
+        PatientShard added = shard("shard-3");
+
+        repository.addShard(added);
+        // Durante a movimentação: leituras acham todos e escritas movem o paciente antes de gravar
+        Set<UUID> updated = new HashSet<>();
+        for (int i = 0; i < patients.size(); i += 10) {
+            Patient patient = repository.findById(patients.get(i).getId()).orElseThrow();
+            patient.setAddress("moved " + i);
+            assertTrue(repository.update(patient));
+            updated.add(patient.getId());
+        }
+        assertTrue(repository.awaitRebalance(Duration.ofSeconds(30)));
+        assertFalse(repository.isRebalancing());
+
+        ShardRing ring = new ShardRing(List.of("shard-0", "shard-1", "shard-2", "shard-3"), 64);
+        List<PatientShard> all = new ArrayList<>(shards);
+        all.add(added);
+        for (Patient patient : patients) {
+            for (PatientShard shard : all) {
+                int expected = shard.id().equals(ring.shardFor(patient.getId())) ? 1 : 0;
+                assertEquals(expected, count(shard, patient.getId()), patient.getId() + " on " + shard.id());
+            }
+            Patient stored = repository.findById(patient.getId()).orElseThrow();
+            assertEquals(updated.contains(patient.getId()), stored.getAddress().startsWith("moved"));
+        }
+        assertTrue(total(added) > 0);
+        assertEquals(total(added), repository.getMovedRows());
+        assertEquals(600, all.stream().mapToInt(this::total).sum());
+    }
+
+    private List<Patient> insert(int count) {
+        List<Patient> patients = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            PatientInsertResult result = repository.insertIfAbsent(patient(i));
+            assertTrue(result.created());
+            patients.add(result.patient());
+        }
+        return patients;
+    }
+
+    // Poucas datas de cadastro, para a ordem empatar na data e depender do id
+    private static Patient patient(int i) {
+        return new Patient(null, "Patient " + i, "patient" + i + "@example.com", i + " Main St",
+                LocalDate.of(1980, 1, 1).plusDays(i), LocalDate.of(2024, 1, 1).plusDays(i % 5));
+    }
+
+    private PatientShard shard(String id) {
+        DataSource dataSource = dataSource(id);
+        Flyway.configure().dataSource(dataSource).locations("classpath:db/shard").load().migrate();
+        return new PatientShard(id, dataSource);
+    }
+
+    private DataSource dataSource(String name) {
+        return new DriverManagerDataSource("jdbc:h2:mem:" + name + "-" + run + ";DB_CLOSE_DELAY=-1", "sa", "");
+    }
+
+    private List<String> directoryEmails(UUID id) {
+        return new JdbcTemplate(directory)
+                .queryForList("SELECT email FROM patient_email_directory WHERE patient_id = ?", String.class, id);
+    }
+
+    private int count(PatientShard shard, UUID id) {
+        return new JdbcTemplate(shard.dataSource())
+                .queryForObject("SELECT COUNT(*) FROM patient WHERE id = ?", Integer.class, id);
+    }
+
+    private int total(PatientShard shard) {
+        return new JdbcTemplate(shard.dataSource()).queryForObject("SELECT COUNT(*) FROM patient", Integer.class);
+    }
+
+}
@@ -0,0 +1,283 @@
+package com.ojuara.patientservice.service;
+
+import billing.BillingAccountResult;
+import billing.BillingBatchRequest;
+import billing.BillingBatchResponse;
+import billing.BillingRequest;
+import billing.BillingServiceGrpc;
+import com.ojuara.patientservice.dto.PatientRequestDTO;
+import com.ojuara.patientservice.grpc.BillingServiceGrpcClient;
+import com.ojuara.patientservice.model.BillingOutboxEvent;
+import com.ojuara.patientservice.repository.BillingOutboxRepository;
+import com.ojuara.patientservice.repository.PatientRepository;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.Status;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Outbox de contas de cobrança contra um billing-service falso em um servidor gRPC in-process.
+ */
+@SpringBootTest(properties = "billing.outbox.relay.enabled=false")
+class BillingOutboxRelayTest {
+
+    @Autowired
+    private PatientService patientService;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private BillingOutboxRepository outboxRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private PatientCache patientCache;
+
+    private FakeBillingService billing;
+    private Server server;
+    private ManagedChannel channel;
+    private BillingOutboxRelay relay;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        outboxRepository.deleteAll();
+        patientRepository.deleteAll();
+        patientCache.invalidateAll();
+
+        String name = InProcessServerBuilder.generateName();
+        billing = new FakeBillingService();
+        server = InProcessServerBuilder.forName(name).directExecutor().addService(billing).build().start();
+        channel = InProcessChannelBuilder.forName(name).directExecutor().build();
+
+        relay = new BillingOutboxRelay(outboxRepository,
+                new BillingServiceGrpcClient(channel, Duration.ofSeconds(2)),
+                transactionManager, false, 2, Duration.ofSeconds(1), Duration.ofMinutes(5), Duration.ofSeconds(30), 3);
+    }
+
+    @AfterEach
+    void tearDown() {
+        channel.shutdownNow();
+        server.shutdownNow();
+    }
+
+    @Test
+    void createWritesOneOutboxEventPerNewPatient() {
+        patientService.createPatient(request("ana@example.com"));
+        patientService.createPatient(request("ana@example.com"));
+
+        assertEquals(1, outboxRepository.count());
+        assertEquals(0, billing.calls.get());
+    }
+
+    @Test
+    void relayDrainsOutboxInBatches() {
+        for (int i = 0; i < 5; i++) {
+            patientService.createPatient(request("patient" + i + "@example.com"));
+        }
+
+        assertEquals(5, relay.relayPending());
+
+        assertEquals(0, outboxRepository.count());
+        assertEquals(3, billing.calls.get());
+        assertEquals(5, billing.accounts.size());
+        assertEquals(5L, relay.stats().get("delivered"));
+    }
+
+    @Test
+    void callsBillingWithTheBatchLeasedAndNoTransactionOpen() {
+        patientService.createPatient(request("lease@example.com"));
+        AtomicReference<Instant> seenDuringCall = new AtomicReference<>();
+        AtomicBoolean transactionDuringCall = new AtomicBoolean();
+        billing.duringCall = () -> {
+            transactionDuringCall.set(TransactionSynchronizationManager.isActualTransactionActive());
+            seenDuringCall.set(outboxRepository.findAll().get(0).getNextAttemptAt());
+        };
+
+        assertEquals(1, relay.relayPending());
+
+        // A reserva já estava gravada (visível fora do relay) quando o billing foi chamado
+        assertFalse(transactionDuringCall.get());
+        assertTrue(seenDuringCall.get().isAfter(Instant.now().plusSeconds(20)));
+        assertEquals(0, outboxRepository.count());
+    }
+
+    @Test
+    void batchLeasedByAnotherRelayIsNotRescheduled() {
+        patientService.createPatient(request("expired@example.com"));
+        billing.failNext.set(true);
+        // A reserva venceu durante a chamada e outra instância assumiu a pendência
+        billing.duringCall = () -> {
+            BillingOutboxEvent event = outboxRepository.findAll().get(0);
+            event.setNextAttemptAt(Instant.now().plusSeconds(600));
+            outboxRepository.save(event);
+        };
+
+        assertTrue(relay.relayBatch().failed());
+
+        BillingOutboxEvent event = outboxRepository.findAll().get(0);
+        assertEquals(0, event.getAttempts());
+        assertTrue(event.getNextAttemptAt().isAfter(Instant.now().plusSeconds(500)));
+    }
+
+    @Test
+    void failedBatchIsRescheduledWithBackoff() {
+        patientService.createPatient(request("retry@example.com"));
+        billing.failNext.set(true);
+
+        BillingOutboxRelay.BatchOutcome outcome = relay.relayBatch();
+
+        assertTrue(outcome.failed());
+        BillingOutboxEvent event = outboxRepository.findAll().get(0);
+        assertEquals(1, event.getAttempts());
+        assertTrue(event.getNextAttemptAt().isAfter(Instant.now()));
+        assertEquals(0, relay.relayPending(), "event is not ready before its backoff expires");
+
+        makeReady();
+        assertEquals(1, relay.relayPending());
+        assertEquals(0, outboxRepository.count());
+    }
+
+    @Test
+    void rejectedEventLeavesTheQueueWithTheReason() {
+        patientService.createPatient(request("rejected@example.com"));
+        patientService.createPatient(request("accepted@example.com"));
+        billing.reject.add("rejected@example.com");
+
+        assertEquals(1, relay.relayPending());
+
+        BillingOutboxEvent event = outboxRepository.findAll().get(0);
+        assertEquals("rejected@example.com", event.getEmail());
+        assertNotNull(event.getFailedAt());
+        assertEquals("REJECTED: name is too long", event.getLastError());
+        makeReady();
+        assertEquals(0, relay.relayBatch().claimed());
+        assertEquals(0L, relay.stats().get("pending"));
+        assertEquals(1L, relay.stats().get("failed"));
+
+        billing.reject.clear();
+        assertEquals(1, relay.requeueFailed());
+        assertEquals(1, relay.relayPending());
+        assertEquals(0, outboxRepository.count());
+    }
+
+    @Test
+    void eventGivesUpAfterMaxAttempts() {
+        patientService.createPatient(request("poison@example.com"));
+
+        for (int attempt = 1; attempt <= 3; attempt++) {
+            billing.failNext.set(true);
+            assertTrue(relay.relayBatch().failed());
+            makeReady();
+        }
+
+        BillingOutboxEvent event = outboxRepository.findAll().get(0);
+        assertEquals(3, event.getAttempts());
+        assertNotNull(event.getFailedAt());
+        assertEquals(0, relay.relayBatch().claimed());
+        assertEquals(3, billing.calls.get());
+    }
+
+    @Test
+    void lostResponseIsRedeliveredWithoutDuplicateAccount() {
+        patientService.createPatient(request("lost@example.com"));
+        billing.loseNextResponse.set(true);
+
+        assertTrue(relay.relayBatch().failed());
+        makeReady();
+        relay.relayPending();
+
+        assertEquals(0, outboxRepository.count());
+        assertEquals(2, billing.calls.get());
+        assertEquals(1, billing.accounts.size());
+    }
+
+    private void makeReady() {
+        List<BillingOutboxEvent> events = outboxRepository.findAll();
+        events.forEach(event -> event.setNextAttemptAt(Instant.now().minusSeconds(1)));
+        outboxRepository.saveAll(events);
+    }
+
+    private static PatientRequestDTO request(String email) {
+        return new PatientRequestDTO("Patient", email, "1 Main St", "1990-01-01", "2024-01-01");
+    }
+
+    /**
+     * Billing-service falso, idempotente por patientId como o real.
+     */
+    private static final class FakeBillingService extends BillingServiceGrpc.BillingServiceImplBase {
+
+        private final Map<String, String> accounts = new ConcurrentHashMap<>();
+        private final AtomicInteger calls = new AtomicInteger();
+        private final AtomicBoolean failNext = new AtomicBoolean();
+        private final AtomicBoolean loseNextResponse = new AtomicBoolean();
+        // Emails que o billing recusa, como faz com campos maiores que as colunas
+        private final Set<String> reject = ConcurrentHashMap.newKeySet();
+        private volatile Runnable duringCall = () -> {
+        };
+
+        @Override
+        public void batchCreateBillingAccounts(BillingBatchRequest request,
+                                               StreamObserver<BillingBatchResponse> responseObserver) {
+            calls.incrementAndGet();
+            duringCall.run();
+            if (failNext.getAndSet(false)) {
+                responseObserver.onError(Status.UNAVAILABLE.asRuntimeException());
+                return;
+            }
+
+            BillingBatchResponse.Builder response = BillingBatchResponse.newBuilder();
+            for (BillingRequest account : request.getAccountsList()) {
+                if (reject.contains(account.getEmail())) {
+                    response.addResults(BillingAccountResult.newBuilder()
+                            .setPatientId(account.getPatientId())
+                            .setStatus("REJECTED")
+                            .setError("name is too long"));
+                    continue;
+                }
+                boolean created = accounts.putIfAbsent(account.getPatientId(), "acc-" + account.getPatientId()) == null;
+                response.addResults(BillingAccountResult.newBuilder()
+                        .setPatientId(account.getPatientId())
+                        .setAccountId(accounts.get(account.getPatientId()))
+                        .setStatus("ACTIVE")
+                        .setCreated(created));
+            }
+
+            // Processou, mas a resposta "se perde" no caminho
+            if (loseNextResponse.getAndSet(false)) {
+                responseObserver.onError(Status.DEADLINE_EXCEEDED.asRuntimeException());
+                return;
+            }
+            responseObserver.onNext(response.build());
+            responseObserver.onCompleted();
+        }
+
+    }
+
+}
@@ -0,0 +1,140 @@
+package com.ojuara.patientservice.service;
+
+import com.ojuara.patientservice.dto.PatientRequestDTO;
+import com.ojuara.patientservice.exception.PatientNotFoundException;
+import com.ojuara.patientservice.model.Patient;
+import com.ojuara.patientservice.repository.BillingOutboxRepository;
+import com.ojuara.patientservice.repository.PatientRepository;
+import com.ojuara.patientservice.repository.PatientStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Filtro de emails ligado: taxa de falsos positivos dentro da configurada, reconstrução a partir
+ * da tabela e contadores das verificações.
+ */
+@SpringBootTest(properties = {
+        "billing.outbox.relay.enabled=false",
+        "patient.email-filter.enabled=true",
+        "patient.email-filter.expected-insertions=1000"})
+class EmailBloomFilterTest {
+
+    @Autowired
+    private EmailBloomFilter emailFilter;
+
+    @Autowired
+    private PatientService patientService;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private BillingOutboxRepository outboxRepository;
+
+    @Autowired
+    private PatientCache patientCache;
+
+    @Autowired
+    private PatientStore patientStore;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void setUp() {
+        outboxRepository.deleteAll();
+        patientRepository.deleteAll();
+        patientCache.invalidateAll();
+        emailFilter.rebuild();
+    }
+
+    @Test
+    void keepsFalsePositivesNearTheConfiguredRate() {
+        EmailBloomFilter.BitSetFilter filter = new EmailBloomFilter.BitSetFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put("patient" + i + "@example.com");
+        }
+
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(filter.mightContain("patient" + i + "@example.com"));
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain("other" + i + "@example.com")) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 2_000, falsePositives + " false positives in 100000");
+        assertEquals(10_000, filter.approximateElementCount(), 200);
+        assertTrue(filter.expectedFalsePositiveRate() < 0.02);
+    }
+
+    @Test
+    void answersUnknownEmailsWithoutTheDatabaseAndCountsThem() {
+        patientService.createPatient(request("Ana", "ana@example.com"));
+        long checks = emailFilter.checkCount();
+        long misses = emailFilter.definiteMissCount();
+
+        assertTrue(emailFilter.mightContain("ana@example.com"));
+        assertThrows(PatientNotFoundException.class, () -> patientService.getPatientByEmail("nobody@example.com"));
+
+        assertEquals(checks + 2, emailFilter.checkCount());
+        assertEquals(misses + 1, emailFilter.definiteMissCount());
+        Map<String, Object> stats = emailFilter.stats();
+        assertEquals(true, stats.get("ready"));
+        assertEquals(false, stats.get("rebuilding"));
+        // Dimensionado pela quantidade configurada: ~9,6 bits por email a 1%
+        assertTrue((long) stats.get("bitSize") >= 9_585);
+    }
+
+    @Test
+    void rebuildPicksUpEmailsWrittenAroundTheService() {
+        // Gravado direto no repositório: o filtro só o vê depois de reconstruído
+        patientRepository.save(patient("Bruno", "bruno@example.com"));
+        assertFalse(emailFilter.mightContain("bruno@example.com"));
+
+        emailFilter.rebuild();
+
+        assertTrue(emailFilter.mightContain("bruno@example.com"));
+        assertEquals("Bruno", patientService.getPatientByEmail("bruno@example.com").name());
+        assertTrue((long) emailFilter.stats().get("lastRebuildMillis") >= 0);
+    }
+
+    @Test
+    void answersMaybeUntilTheFirstBuild() {
+        EmailBloomFilter filter = new EmailBloomFilter(patientStore, transactionManager, true, 1000, 0.01);
+
+        assertTrue(filter.mightContain("nobody@example.com"));
+        assertEquals(0, filter.checkCount());
+        assertEquals(false, filter.stats().get("ready"));
+
+        filter.rebuild();
+        assertFalse(filter.mightContain("nobody@example.com"));
+    }
+
+    private static PatientRequestDTO request(String name, String email) {
+        return new PatientRequestDTO(name, email, "1 Rua", "1980-01-01", "2024-01-01");
+    }
+
+    private static Patient patient(String name, String email) {
+        Patient patient = new Patient();
+        patient.setName(name);
+        patient.setEmail(email);
+        patient.setAddress("1 Rua");
+        patient.setDateOfBirth(LocalDate.of(1980, 1, 1));
+        patient.setRegisteredDate(LocalDate.of(2024, 1, 1));
+        return patient;
+    }
+
+}
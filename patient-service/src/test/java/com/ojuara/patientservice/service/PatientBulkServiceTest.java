@@ -0,0 +1,168 @@
+package com.ojuara.patientservice.service;
+
+import com.ojuara.patientservice.dto.PatientBulkDeleteRequestDTO;
+import com.ojuara.patientservice.dto.PatientBulkItemResultDTO;
+import com.ojuara.patientservice.dto.PatientBulkResultDTO;
+import com.ojuara.patientservice.dto.PatientBulkStatus;
+import com.ojuara.patientservice.dto.PatientPatchDTO;
+import com.ojuara.patientservice.dto.PatientRequestDTO;
+import com.ojuara.patientservice.dto.PatientResponseDTO;
+import com.ojuara.patientservice.exception.InvalidBulkRequestException;
+import com.ojuara.patientservice.repository.BillingOutboxRepository;
+import com.ojuara.patientservice.repository.PatientRepository;
+import com.ojuara.patientservice.repository.PatientTombstoneRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Atualização e remoção em lote: resultado por item, conflitos de email e versão, e as
+ * remoções registradas para o feed de alterações.
+ */
+@SpringBootTest(properties = "billing.outbox.relay.enabled=false")
+class PatientBulkServiceTest {
+
+    @Autowired
+    private PatientBulkService bulkService;
+
+    @Autowired
+    private PatientService patientService;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private PatientTombstoneRepository tombstoneRepository;
+
+    @Autowired
+    private BillingOutboxRepository outboxRepository;
+
+    @Autowired
+    private PatientCache patientCache;
+
+    @BeforeEach
+    void setUp() {
+        outboxRepository.deleteAll();
+        patientRepository.deleteAll();
+        patientCache.invalidateAll();
+        tombstoneRepository.deleteAll();
+    }
+
+    @Test
+    void reportsTheOutcomeOfEachPatch() {
+        PatientResponseDTO ana = create("Ana", "ana@example.com", "2024-01-01");
+        PatientResponseDTO bruno = create("Bruno", "bruno@example.com", "2024-01-01");
+        PatientResponseDTO carla = create("Carla", "carla@example.com", "2024-01-01");
+        PatientResponseDTO diego = create("Diego", "diego@example.com", "2024-01-01");
+        // Lido antes do lote: o cache precisa ser invalidado pela atualização
+        patientService.getPatientById(ana.id());
+
+        UUID unknown = UUID.randomUUID();
+        PatientBulkResultDTO result = bulkService.updatePatients(List.of(
+                new PatientPatchDTO(ana.id(), null, null, "1 Normalized Ave", null, null),
+                new PatientPatchDTO(bruno.id(), null, "carla@example.com", null, null, null),
+                new PatientPatchDTO(unknown, "Nobody", null, null, null, null),
+                new PatientPatchDTO(carla.id(), "Carla Lima", null, null, null, carla.version() + 1),
+                new PatientPatchDTO(diego.id(), null, "not-an-email", null, null, null),
+                new PatientPatchDTO(ana.id(), "Ana Souza", null, null, null, null)));
+
+        assertEquals(List.of(PatientBulkStatus.UPDATED, PatientBulkStatus.EMAIL_CONFLICT,
+                        PatientBulkStatus.NOT_FOUND, PatientBulkStatus.VERSION_MISMATCH,
+                        PatientBulkStatus.REJECTED, PatientBulkStatus.REJECTED),
+                result.getResults().stream().map(PatientBulkItemResultDTO::getStatus).toList());
+        assertEquals(1, result.getTotals().get(PatientBulkStatus.UPDATED));
+        assertEquals(2, result.getTotals().get(PatientBulkStatus.REJECTED));
+        assertTrue(result.getResults().get(4).getErrors().containsKey("email"));
+
+        PatientResponseDTO updated = patientService.getPatientById(ana.id());
+        assertEquals("Ana", updated.name());
+        assertEquals("1 Normalized Ave", updated.address());
+        assertEquals(ana.version() + 1, updated.version());
+        assertEquals(updated.version(), result.getResults().getFirst().getVersion());
+        assertEquals("bruno@example.com", patientService.getPatientById(bruno.id()).email());
+        assertEquals("Carla", patientService.getPatientById(carla.id()).name());
+    }
+
+    @Test
+    void movesAnEmailFreedByNoOneOnlyOnce() {
+        PatientResponseDTO ana = create("Ana", "ana@example.com", "2024-01-01");
+        PatientResponseDTO bruno = create("Bruno", "bruno@example.com", "2024-01-01");
+
+        PatientBulkResultDTO result = bulkService.updatePatients(List.of(
+                new PatientPatchDTO(ana.id(), null, "shared@example.com", null, null, null),
+                new PatientPatchDTO(bruno.id(), null, "shared@example.com", null, null, null)));
+
+        assertEquals(List.of(PatientBulkStatus.UPDATED, PatientBulkStatus.EMAIL_CONFLICT),
+                result.getResults().stream().map(PatientBulkItemResultDTO::getStatus).toList());
+        assertEquals(ana.id(), patientService.getPatientByEmail("shared@example.com").id());
+        assertEquals("shared@example.com", patientService.getPatientById(ana.id()).email());
+    }
+
+    @Test
+    void confirmsACachedEmailOwnerInTheDatabase() {
+        PatientResponseDTO ana = create("Ana", "ana@example.com", "2024-01-01");
+        PatientResponseDTO bruno = create("Bruno", "bruno@example.com", "2024-01-01");
+        patientService.getPatientById(ana.id());
+        // Outra instância troca o email da Ana: o cache desta ainda aponta ana@example.com para ela
+        patientRepository.findById(ana.id()).ifPresent(patient -> {
+            patient.setEmail("ana.souza@example.com");
+            patientRepository.save(patient);
+        });
+
+        PatientResponseDTO updated = patientService.updatePatient(bruno.id(),
+                new PatientRequestDTO("Bruno", "ana@example.com", "1 Main St", "1990-01-01", null));
+
+        assertEquals("ana@example.com", updated.email());
+    }
+
+    @Test
+    void deletesByIdsAndByRetentionFilter() {
+        PatientResponseDTO old1 = create("Old One", "old1@example.com", "2019-05-01");
+        PatientResponseDTO old2 = create("Old Two", "old2@example.com", "2020-02-01");
+        PatientResponseDTO recent = create("Recent", "recent@example.com", "2024-01-01");
+        PatientResponseDTO other = create("Other", "other@example.com", "2024-01-01");
+
+        UUID unknown = UUID.randomUUID();
+        PatientBulkResultDTO byIds = bulkService.deletePatients(
+                new PatientBulkDeleteRequestDTO(List.of(other.id(), unknown, other.id()), null));
+        assertEquals(List.of(PatientBulkStatus.DELETED, PatientBulkStatus.NOT_FOUND),
+                byIds.getResults().stream().map(PatientBulkItemResultDTO::getStatus).toList());
+
+        PatientBulkResultDTO byFilter = bulkService.deletePatients(
+                new PatientBulkDeleteRequestDTO(null, LocalDate.parse("2021-01-01")));
+        assertEquals(2, byFilter.getTotals().get(PatientBulkStatus.DELETED));
+        assertEquals(Set.of(old1.id(), old2.id()),
+                byFilter.getResults().stream().map(PatientBulkItemResultDTO::getId).collect(Collectors.toSet()));
+
+        assertEquals(List.of(recent.id()), patientRepository.findAll().stream().map(p -> p.getId()).toList());
+        assertEquals(3, tombstoneRepository.count());
+        assertFalse(tombstoneRepository.existsById(recent.id()));
+    }
+
+    @Test
+    void rejectsDeleteWithoutExactlyOneSelector() {
+        assertThrows(InvalidBulkRequestException.class,
+                () -> bulkService.deletePatients(new PatientBulkDeleteRequestDTO(null, null)));
+        assertThrows(InvalidBulkRequestException.class,
+                () -> bulkService.deletePatients(new PatientBulkDeleteRequestDTO(
+                        List.of(UUID.randomUUID()), LocalDate.parse("2021-01-01"))));
+    }
+
+    private PatientResponseDTO create(String name, String email, String registeredDate) {
+        return patientService.createPatient(
+                new PatientRequestDTO(name, email, "1 Main St", "1990-01-01", registeredDate)).patient();
+    }
+
+}
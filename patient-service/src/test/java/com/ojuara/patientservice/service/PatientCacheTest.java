@@ -0,0 +1,116 @@
+package com.ojuara.patientservice.service;
+
+import com.ojuara.patientservice.dto.PatientRequestDTO;
+import com.ojuara.patientservice.dto.PatientResponseDTO;
+import com.ojuara.patientservice.exception.PatientNotFoundException;
+import com.ojuara.patientservice.repository.BillingOutboxRepository;
+import com.ojuara.patientservice.repository.PatientRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Cache de pacientes: acertos e falhas contados nas estatísticas, invalidação pelas escritas do
+ * {@link PatientService} e nova remoção após o commit.
+ */
+@SpringBootTest(properties = "billing.outbox.relay.enabled=false")
+class PatientCacheTest {
+
+    @Autowired
+    private PatientService patientService;
+
+    @Autowired
+    private PatientCache patientCache;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private BillingOutboxRepository outboxRepository;
+
+    @BeforeEach
+    void setUp() {
+        outboxRepository.deleteAll();
+        patientRepository.deleteAll();
+        patientCache.invalidateAll();
+    }
+
+    @Test
+    void servesRepeatedReadsFromTheCacheAndCountsThem() {
+        PatientResponseDTO ana = create("Ana", "ana@example.com");
+        long hits = patientCache.stats().hitCount();
+        long misses = patientCache.stats().missCount();
+
+        patientService.getPatientById(ana.id());
+        patientService.getPatientById(ana.id());
+        assertEquals(misses + 1, patientCache.stats().missCount());
+        assertEquals(hits + 1, patientCache.stats().hitCount());
+
+        // O email é resolvido pelo índice preenchido na leitura por id, sem ir ao banco
+        long emailHits = patientCache.emailIndexStats().hitCount();
+        assertEquals(ana.id(), patientService.getPatientByEmail("ana@example.com").id());
+        assertEquals(emailHits + 1, patientCache.emailIndexStats().hitCount());
+        assertEquals(1, patientCache.estimatedSize());
+    }
+
+    @Test
+    void writesThroughTheServiceInvalidateTheEntry() {
+        PatientResponseDTO ana = create("Ana", "ana@example.com");
+        patientService.getPatientById(ana.id());
+
+        patientService.updatePatient(ana.id(), request("Ana Souza", "ana.souza@example.com"));
+        assertEquals("Ana Souza", patientService.getPatientById(ana.id()).name());
+        assertThrows(PatientNotFoundException.class, () -> patientService.getPatientByEmail("ana@example.com"));
+        assertEquals(ana.id(), patientService.getPatientByEmail("ana.souza@example.com").id());
+
+        patientService.deletePatientById(ana.id());
+        assertThrows(PatientNotFoundException.class, () -> patientService.getPatientById(ana.id()));
+        assertTrue(patientCache.findIdByEmail("ana.souza@example.com").isEmpty());
+    }
+
+    @Test
+    void evictsAgainAfterTheTransactionCompletes() {
+        PatientCache cache = new PatientCache(10, Duration.ofMinutes(10));
+        PatientResponseDTO ana = new PatientResponseDTO(UUID.randomUUID(), "Ana", "ana@example.com", "1 Rua",
+                LocalDate.of(1980, 1, 1), LocalDate.of(2024, 1, 1), 0L);
+        cache.put(ana);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            cache.invalidate(ana.id());
+            assertFalse(cache.findIdByEmail("ana@example.com").isPresent());
+
+            // Uma leitura concorrente recoloca a versão antiga antes do commit
+            cache.put(ana);
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertEquals(Optional.empty(), cache.getById(ana.id(), id -> Optional.empty()));
+        assertTrue(cache.findIdByEmail("ana@example.com").isEmpty());
+    }
+
+    private PatientResponseDTO create(String name, String email) {
+        return patientService.createPatient(request(name, email)).patient();
+    }
+
+    private static PatientRequestDTO request(String name, String email) {
+        return new PatientRequestDTO(name, email, "1 Rua", "1980-01-01", "2024-01-01");
+    }
+
+}
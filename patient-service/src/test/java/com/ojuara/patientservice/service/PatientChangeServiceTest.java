@@ -0,0 +1,125 @@
+package com.ojuara.patientservice.service;
+
+import com.ojuara.patientservice.dto.PatientChangesResponseDTO;
+import com.ojuara.patientservice.dto.PatientRequestDTO;
+import com.ojuara.patientservice.dto.PatientResponseDTO;
+import com.ojuara.patientservice.exception.ChangeTokenExpiredException;
+import com.ojuara.patientservice.exception.PatientVersionMismatchException;
+import com.ojuara.patientservice.repository.BillingOutboxRepository;
+import com.ojuara.patientservice.repository.PatientRepository;
+import com.ojuara.patientservice.repository.PatientTombstoneRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Feed de alterações (criações, atualizações e remoções desde um token) e atualização
+ * condicionada à versão.
+ */
+@SpringBootTest(properties = {
+        "billing.outbox.relay.enabled=false",
+        "patient.changes.commit-grace=0s"})
+class PatientChangeServiceTest {
+
+    @Autowired
+    private PatientService patientService;
+
+    @Autowired
+    private PatientChangeService changeService;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private PatientTombstoneRepository tombstoneRepository;
+
+    @Autowired
+    private BillingOutboxRepository outboxRepository;
+
+    @Autowired
+    private PatientCache patientCache;
+
+    @BeforeEach
+    void setUp() {
+        outboxRepository.deleteAll();
+        patientRepository.deleteAll();
+        patientCache.invalidateAll();
+        tombstoneRepository.deleteAll();
+    }
+
+    @Test
+    void deliversOnlyWhatChangedSinceTheToken() throws InterruptedException {
+        PatientResponseDTO ana = create("Ana", "ana@example.com");
+        PatientResponseDTO bruno = create("Bruno", "bruno@example.com");
+
+        List<String> ids = new ArrayList<>();
+        String token = drain(null, 1, ids, new ArrayList<>());
+        assertEquals(List.of(ana.id().toString(), bruno.id().toString()), ids);
+
+        // Sem alterações, o feed volta vazio
+        assertTrue(changeService.getChanges(token, 10).getPatients().isEmpty());
+
+        Thread.sleep(2);
+        patientService.updatePatient(ana.id(), request("Ana Souza", "ana@example.com"));
+        patientService.deletePatientById(bruno.id());
+        Thread.sleep(2);
+
+        PatientChangesResponseDTO changes = changeService.getChanges(token, 10);
+        assertEquals(List.of("Ana Souza"), changes.getPatients().stream().map(PatientResponseDTO::name).toList());
+        assertEquals(1L, changes.getPatients().getFirst().version());
+        assertEquals(List.of(bruno.id().toString()), changes.getDeletedIds());
+        assertFalse(changes.isHasMore());
+    }
+
+    @Test
+    void rejectsTokensOlderThanTheDeletionHistory() {
+        String expired = new PatientChangeToken(Instant.now().minus(365, ChronoUnit.DAYS), PatientChangeToken.MIN_ID)
+                .encode();
+        assertThrows(ChangeTokenExpiredException.class, () -> changeService.getChanges(expired, 10));
+    }
+
+    @Test
+    void updateRequiresTheExpectedVersion() {
+        PatientResponseDTO ana = create("Ana", "ana.version@example.com");
+        UUID id = ana.id();
+
+        PatientResponseDTO updated = patientService.updatePatient(id, request("Ana Souza", "ana.version@example.com"), 0L);
+        assertEquals(1L, updated.version());
+
+        assertThrows(PatientVersionMismatchException.class,
+                () -> patientService.updatePatient(id, request("Ana Lima", "ana.version@example.com"), 0L));
+        assertEquals("Ana Souza", patientService.getPatientById(id).name());
+    }
+
+    private String drain(String token, int limit, List<String> ids, List<String> deletedIds) {
+        PatientChangesResponseDTO changes;
+        do {
+            changes = changeService.getChanges(token, limit);
+            changes.getPatients().forEach(patient -> ids.add(patient.id().toString()));
+            deletedIds.addAll(changes.getDeletedIds());
+            token = changes.getChangesSince();
+        } while (changes.isHasMore());
+        return token;
+    }
+
+    private PatientResponseDTO create(String name, String email) {
+        return patientService.createPatient(request(name, email)).patient();
+    }
+
+    private static PatientRequestDTO request(String name, String email) {
+        return new PatientRequestDTO(name, email, "1 Rua", "1980-01-01", "2024-01-01");
+    }
+
+}
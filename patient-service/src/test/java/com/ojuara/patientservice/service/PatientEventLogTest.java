@@ -0,0 +1,228 @@
+package com.ojuara.patientservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ojuara.patientservice.dto.PatientRequestDTO;
+import com.ojuara.patientservice.dto.PatientResponseDTO;
+import com.ojuara.patientservice.exception.ChangeTokenExpiredException;
+import com.ojuara.patientservice.repository.BillingOutboxRepository;
+import com.ojuara.patientservice.repository.PatientRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Log de eventos com segmentos de 1 KB: eventos das escritas do {@link PatientService} em ordem,
+ * compactação mantendo o último evento de cada paciente, remoções expiradas e reabertura.
+ */
+@SpringBootTest(properties = {
+        "billing.outbox.relay.enabled=false",
+        "patient.events.segment-size=1KB",
+        "patient.events.compaction-interval=1h"})
+class PatientEventLogTest {
+
+    @TempDir
+    static Path eventDirectory;
+
+    @TempDir
+    Path standaloneDirectory;
+
+    @DynamicPropertySource
+    static void eventProperties(DynamicPropertyRegistry registry) {
+        registry.add("patient.events.directory", () -> eventDirectory.toString());
+    }
+
+    @Autowired
+    private PatientEventLog eventLog;
+
+    @Autowired
+    private PatientService patientService;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private BillingOutboxRepository outboxRepository;
+
+    @Autowired
+    private PatientCache patientCache;
+
+    @BeforeEach
+    void setUp() {
+        outboxRepository.deleteAll();
+        patientRepository.deleteAll();
+        patientCache.invalidateAll();
+    }
+
+    @Test
+    void recordsCreatesUpdatesAndDeletesInCommitOrder() throws InterruptedException {
+        long from = eventLog.getNextSequence();
+        String email = UUID.randomUUID() + "@example.com";
+        PatientResponseDTO ana = patientService.createPatient(request("Ana", email)).patient();
+        patientService.updatePatient(ana.id(), request("Ana Souza", email));
+        patientService.deletePatientById(ana.id());
+
+        assertTrue(eventLog.awaitEvents(from + 2, Duration.ofSeconds(5)));
+        PatientEventBatch batch = eventLog.read(from, 10);
+        assertEquals(List.of(PatientEventType.CREATED, PatientEventType.UPDATED, PatientEventType.DELETED),
+                batch.events().stream().map(PatientEvent::type).toList());
+        assertEquals(List.of(from, from + 1, from + 2),
+                batch.events().stream().map(PatientEvent::sequence).toList());
+        assertTrue(batch.events().stream().allMatch(event -> event.patientId().equals(ana.id())));
+        assertEquals(List.of(ana.version(), ana.version() + 1, PatientEvent.DELETED_VERSION),
+                batch.events().stream().map(PatientEvent::version).toList());
+        assertTrue(snapshot(batch.events().get(1)).contains("\"name\":\"Ana Souza\""));
+        assertEquals(0, batch.events().get(2).snapshot().length);
+        assertEquals(from + 3, batch.nextSequence());
+
+        // Já no fim: lote vazio e a mesma posição
+        PatientEventBatch empty = eventLog.read(batch.nextSequence(), 10);
+        assertTrue(empty.events().isEmpty());
+        assertEquals(batch.nextSequence(), empty.nextSequence());
+    }
+
+    @Test
+    void compactionKeepsTheLatestEventOfEachPatient() throws IOException {
+        String email = UUID.randomUUID() + "@example.com";
+        PatientResponseDTO bruno = patientService.createPatient(request("Bruno", email)).patient();
+        for (int i = 1; i <= 30; i++) {
+            patientService.updatePatient(bruno.id(), request("Bruno " + i, email));
+        }
+        long segmentsBefore = segmentFiles(eventDirectory);
+        assertTrue(segmentsBefore > 3, "30 updates should fill several 1KB segments");
+
+        eventLog.compactSealedSegments();
+
+        assertTrue(segmentFiles(eventDirectory) < segmentsBefore);
+        List<PatientEvent> events = eventLog.read(0, 1000).events().stream()
+                .filter(event -> event.patientId().equals(bruno.id()))
+                .toList();
+        assertEquals(1, events.size());
+        assertTrue(snapshot(events.getFirst()).contains("\"name\":\"Bruno 30\""));
+    }
+
+    @Test
+    void expiredDeletionsRejectOlderPositionsAndTheSequenceSurvivesReopening() throws Exception {
+        PatientResponseDTO removed = patient("Removed");
+        PatientResponseDTO kept = patient("Kept");
+
+        long last;
+        try (Standalone standalone = new Standalone(standaloneDirectory)) {
+            PatientEventLog log = standalone.log;
+            log.onPatientsChanged(PatientsChangedEvent.created(removed));
+            log.onPatientsChanged(PatientsChangedEvent.deleted(removed.id()));
+            Thread.sleep(2);
+            // Enche segmentos para a remoção ficar em um selado
+            for (int i = 0; i < 10; i++) {
+                log.onPatientsChanged(PatientsChangedEvent.saved(kept));
+            }
+            log.compactSealedSegments();
+
+            assertThrows(ChangeTokenExpiredException.class, () -> log.read(2, 10));
+            List<PatientEvent> all = log.read(0, 100).events();
+            assertFalse(all.stream().anyMatch(event -> event.patientId().equals(removed.id())));
+            assertEquals(1, all.stream().filter(event -> event.patientId().equals(kept.id())).count());
+            last = log.getNextSequence();
+            assertEquals(13, last);
+        }
+
+        try (Standalone reopened = new Standalone(standaloneDirectory)) {
+            assertEquals(last, reopened.log.getNextSequence());
+            assertThrows(ChangeTokenExpiredException.class, () -> reopened.log.read(2, 10));
+            reopened.log.onPatientsChanged(PatientsChangedEvent.saved(kept));
+            assertEquals(List.of(last), reopened.log.read(last, 10).events().stream()
+                    .map(PatientEvent::sequence).toList());
+        }
+    }
+
+    @Test
+    void compactionKeepsTheHighestVersionWhenListenersRanOutOfOrder() throws Exception {
+        PatientResponseDTO ana = patient("Ana");
+        PatientResponseDTO removed = patient("Removed");
+
+        try (Standalone standalone = new Standalone(standaloneDirectory)) {
+            PatientEventLog log = standalone.log;
+            // Os commits foram v1 -> v2 e v1 -> remoção, mas os listeners chegaram invertidos
+            log.onPatientsChanged(PatientsChangedEvent.saved(withVersion(ana, "Ana v2", 2L)));
+            log.onPatientsChanged(PatientsChangedEvent.saved(withVersion(ana, "Ana v1", 1L)));
+            log.onPatientsChanged(PatientsChangedEvent.deleted(removed.id()));
+            log.onPatientsChanged(PatientsChangedEvent.saved(withVersion(removed, "Removed v1", 1L)));
+
+            List<PatientEvent> arrived = log.read(0, 10).events();
+            assertEquals(List.of(2L, 1L, PatientEvent.DELETED_VERSION, 1L),
+                    arrived.stream().map(PatientEvent::version).toList());
+
+            log.compactSealedSegments();
+
+            List<PatientEvent> all = log.read(0, 100).events();
+            List<PatientEvent> anaEvents = all.stream().filter(event -> event.patientId().equals(ana.id())).toList();
+            assertEquals(1, anaEvents.size());
+            assertTrue(snapshot(anaEvents.getFirst()).contains("\"name\":\"Ana v2\""));
+            // A remoção (já expirada aqui) vence a atualização atrasada: o paciente não volta
+            assertFalse(all.stream().anyMatch(event -> event.patientId().equals(removed.id())));
+        }
+    }
+
+    private static long segmentFiles(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".log")).count();
+        }
+    }
+
+    private static String snapshot(PatientEvent event) {
+        return new String(event.snapshot(), StandardCharsets.UTF_8);
+    }
+
+    private static PatientRequestDTO request(String name, String email) {
+        return new PatientRequestDTO(name, email, "1 Rua", "1980-01-01", "2024-01-01");
+    }
+
+    private static PatientResponseDTO patient(String name) {
+        return new PatientResponseDTO(UUID.randomUUID(), name, name.toLowerCase() + "@example.com",
+                "1 Rua com um endereço comprido para ocupar espaço no segmento",
+                LocalDate.of(1980, 1, 1), LocalDate.of(2024, 1, 1), 0L);
+    }
+
+    private static PatientResponseDTO withVersion(PatientResponseDTO patient, String name, long version) {
+        return new PatientResponseDTO(patient.id(), name, patient.email(), patient.address(),
+                patient.dateOfBirth(), patient.registeredDate(), version);
+    }
+
+    // Log fora do contexto Spring, com remoções expirando na hora
+    private static final class Standalone implements AutoCloseable {
+
+        private final PatientEventLog log;
+
+        Standalone(Path directory) throws IOException {
+            this.log = new PatientEventLog(directory.toString(), DataSize.ofBytes(1024), Duration.ZERO,
+                    new ObjectMapper(), new SimpleMeterRegistry());
+        }
+
+        @Override
+        public void close() throws IOException {
+            log.close();
+        }
+
+    }
+
+}
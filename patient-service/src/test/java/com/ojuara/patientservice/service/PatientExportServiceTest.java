@@ -0,0 +1,192 @@
+package com.ojuara.patientservice.service;
+
+import com.ojuara.patientservice.dto.PatientExportDTO;
+import com.ojuara.patientservice.dto.PatientRequestDTO;
+import com.ojuara.patientservice.dto.PatientResponseDTO;
+import com.ojuara.patientservice.exception.PatientExportStateException;
+import com.ojuara.patientservice.model.PatientExport;
+import com.ojuara.patientservice.model.PatientExportCompression;
+import com.ojuara.patientservice.model.PatientExportFormat;
+import com.ojuara.patientservice.model.PatientExportStatus;
+import com.ojuara.patientservice.repository.BillingOutboxRepository;
+import com.ojuara.patientservice.repository.PatientExportRepository;
+import com.ojuara.patientservice.repository.PatientRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Exportação em blocos de 2 pacientes: conteúdo dos arquivos, retomada a partir do checkpoint
+ * depois de uma falha com um bloco gravado pela metade e checkpoints de uma execução assumida.
+ */
+@SpringBootTest(properties = {
+        "billing.outbox.relay.enabled=false",
+        "patient.export.chunk-size=2"})
+class PatientExportServiceTest {
+
+    @TempDir
+    static Path exportDirectory;
+
+    @DynamicPropertySource
+    static void exportProperties(DynamicPropertyRegistry registry) {
+        registry.add("patient.export.directory", () -> exportDirectory.toString());
+    }
+
+    @Autowired
+    private PatientExportService exportService;
+
+    @Autowired
+    private PatientService patientService;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private PatientExportRepository exportRepository;
+
+    @Autowired
+    private BillingOutboxRepository outboxRepository;
+
+    @Autowired
+    private PatientCache patientCache;
+
+    @BeforeEach
+    void setUp() {
+        outboxRepository.deleteAll();
+        patientRepository.deleteAll();
+        patientCache.invalidateAll();
+    }
+
+    @Test
+    void exportsGzippedNdjsonInKeyOrder() throws Exception {
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 1; i <= 5; i++) {
+            ids.add(create("Patient " + i, "export" + i + "@example.com", "2024-01-0" + i).id());
+        }
+
+        PatientExportDTO export = await(exportService.startExport(PatientExportFormat.NDJSON,
+                PatientExportCompression.GZIP).id());
+
+        assertEquals(PatientExportStatus.COMPLETED, export.status());
+        assertEquals(5, export.rowsWritten());
+        List<String> lines = readLines(exportService.getExportFile(export.id()), true);
+        assertEquals(5, lines.size());
+        for (int i = 0; i < ids.size(); i++) {
+            assertTrue(lines.get(i).startsWith("{\"id\":\"" + ids.get(i) + "\""), lines.get(i));
+        }
+    }
+
+    @Test
+    void exportsCsvWithHeaderAndQuotedFields() throws Exception {
+        create("Silva, Ana", "ana.csv@example.com", "2024-01-01");
+
+        PatientExportDTO export = await(exportService.startExport(PatientExportFormat.CSV,
+                PatientExportCompression.NONE).id());
+
+        List<String> lines = readLines(exportService.getExportFile(export.id()), false);
+        assertEquals("id,name,email,address,dateOfBirth,registeredDate,version", lines.getFirst());
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(1).contains(",\"Silva, Ana\",ana.csv@example.com,"), lines.get(1));
+    }
+
+    @Test
+    void resumesFromTheCheckpointDiscardingAPartialChunk() throws Exception {
+        for (int i = 1; i <= 3; i++) {
+            create("Patient " + i, "resume" + i + "@example.com", "2024-01-0" + i);
+        }
+        UUID id = await(exportService.startExport(PatientExportFormat.NDJSON, PatientExportCompression.GZIP).id()).id();
+        assertThrows(PatientExportStateException.class, () -> exportService.resumeExport(id));
+
+        // Falha simulada: um bloco gravado pela metade depois do checkpoint, e novos pacientes
+        // posicionados depois da chave salva
+        Path file = exportService.getExportFile(id);
+        Files.write(file, new byte[]{0x1f, (byte) 0x8b, 0x08, 0x00}, StandardOpenOption.APPEND);
+        PatientExport failed = exportRepository.findById(id).orElseThrow();
+        failed.setStatus(PatientExportStatus.FAILED);
+        exportRepository.save(failed);
+        create("Patient 4", "resume4@example.com", "2024-01-04");
+        create("Patient 5", "resume5@example.com", "2024-01-05");
+
+        exportService.resumeExport(id);
+        PatientExportDTO resumed = await(id);
+
+        assertEquals(PatientExportStatus.COMPLETED, resumed.status());
+        assertEquals(5, resumed.rowsWritten());
+        List<String> lines = readLines(file, true);
+        assertEquals(5, lines.size());
+        assertTrue(lines.getLast().contains("resume5@example.com"));
+        assertEquals(Files.size(file), resumed.bytesWritten());
+    }
+
+    @Test
+    void aRunThatWasTakenOverCannotSaveItsCheckpoint() throws Exception {
+        create("Patient 1", "takeover1@example.com", "2024-01-01");
+        UUID id = await(exportService.startExport(PatientExportFormat.NDJSON, PatientExportCompression.NONE).id()).id();
+
+        // Execução parada: RUNNING sem checkpoint há mais que patient.export.stale-after
+        PatientExport stalled = exportRepository.findById(id).orElseThrow();
+        UUID stalledRun = stalled.getRunToken();
+        stalled.setStatus(PatientExportStatus.RUNNING);
+        stalled.setUpdatedAt(stalled.getUpdatedAt().minus(Duration.ofHours(1)));
+        exportRepository.save(stalled);
+
+        exportService.resumeExport(id);
+        PatientExportDTO resumed = await(id);
+        PatientExport current = exportRepository.findById(id).orElseThrow();
+        assertNotEquals(stalledRun, current.getRunToken());
+
+        // A execução anterior volta e tenta gravar o que tinha em memória
+        stalled.setRowsWritten(99);
+        stalled.setStatus(PatientExportStatus.FAILED);
+        assertEquals(0, exportRepository.checkpoint(stalled));
+        assertEquals(0, exportRepository.finish(stalled));
+
+        PatientExportDTO after = exportService.getExport(id);
+        assertEquals(PatientExportStatus.COMPLETED, after.status());
+        assertEquals(resumed.rowsWritten(), after.rowsWritten());
+    }
+
+    private PatientExportDTO await(UUID id) throws InterruptedException {
+        for (int i = 0; i < 200; i++) {
+            PatientExportDTO export = exportService.getExport(id);
+            if (export.status() != PatientExportStatus.RUNNING) {
+                return export;
+            }
+            Thread.sleep(25);
+        }
+        throw new AssertionError("Export " + id + " did not finish");
+    }
+
+    private static List<String> readLines(Path file, boolean gzip) throws IOException {
+        try (InputStream in = gzip ? new GZIPInputStream(Files.newInputStream(file)) : Files.newInputStream(file)) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8).lines().toList();
+        }
+    }
+
+    private PatientResponseDTO create(String name, String email, String registeredDate) {
+        return patientService.createPatient(
+                new PatientRequestDTO(name, email, "1 Main St", "1990-01-01", registeredDate)).patient();
+    }
+
+}
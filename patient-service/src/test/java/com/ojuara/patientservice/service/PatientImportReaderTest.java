@@ -0,0 +1,87 @@
+package com.ojuara.patientservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ojuara.patientservice.exception.InvalidImportFileException;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Leitura do arquivo de importação: JSON array, NDJSON e CSV (RFC 4180), com erros por registro
+ * e erros que interrompem o arquivo.
+ */
+class PatientImportReaderTest {
+
+    private final PatientImportReader reader = new PatientImportReader(new ObjectMapper());
+
+    @Test
+    void readsAJsonArrayElementByElement() {
+        List<PatientImportReader.ImportRow> rows = read("""
+                [{"name": "Ana", "email": "ana@example.com", "address": "1 Rua",
+                  "dateOfBirth": "1980-01-01", "registeredDate": "2024-01-01"},
+                 {"name": "Bruno", "email": "bruno@example.com"}]
+                """, MediaType.APPLICATION_JSON);
+
+        assertEquals(List.of(1, 2), rows.stream().map(PatientImportReader.ImportRow::row).toList());
+        assertEquals("Ana", rows.get(0).patient().getName());
+        assertNull(rows.get(1).patient().getAddress());
+        assertThrows(InvalidImportFileException.class, () -> read("[{\"name\": ", MediaType.APPLICATION_JSON));
+    }
+
+    @Test
+    void reportsAMalformedNdjsonLineAndKeepsReading() {
+        List<PatientImportReader.ImportRow> rows = read("""
+                {"name": "Ana", "email": "ana@example.com"}
+
+                {"name": "Bruno",
+                {"name": "Carla", "email": "carla@example.com"}
+                """, MediaType.APPLICATION_NDJSON);
+
+        assertEquals(List.of(1, 2, 3), rows.stream().map(PatientImportReader.ImportRow::row).toList());
+        assertNull(rows.get(1).patient());
+        assertNotNull(rows.get(1).error());
+        assertEquals("Carla", rows.get(2).patient().getName());
+    }
+
+    @Test
+    void readsQuotedCsvFieldsInAnyColumnOrder() {
+        List<PatientImportReader.ImportRow> rows = read("\uFEFFemail,Name,address,dateOfBirth,registeredDate,notes\r\n"
+                + "ana@example.com,\"Souza, Ana\",\"1 Rua\n Apto 2\",1980-01-01,2024-01-01,\"diz \"\"oi\"\"\"\r\n"
+                + "\r\n"
+                + "bruno@example.com,Bruno,2 Rua\n", PatientImportReader.TEXT_CSV);
+
+        assertEquals(2, rows.size());
+        assertEquals("Souza, Ana", rows.get(0).patient().getName());
+        assertEquals("ana@example.com", rows.get(0).patient().getEmail());
+        assertEquals("1 Rua\n Apto 2", rows.get(0).patient().getAddress());
+        assertEquals("2024-01-01", rows.get(0).patient().getRegisteredDate());
+        // A linha em branco é ignorada e não conta
+        assertEquals(2, rows.get(1).row());
+        assertEquals("Expected 6 columns but found 3", rows.get(1).error());
+    }
+
+    @Test
+    void rejectsFilesItCannotContinueReading() {
+        assertThrows(InvalidImportFileException.class, () -> read("name,email,address,dateOfBirth\n",
+                PatientImportReader.TEXT_CSV));
+        assertThrows(InvalidImportFileException.class, () -> read(
+                "name,email,address,dateOfBirth,registeredDate\n\"Ana,ana@example.com\n", PatientImportReader.TEXT_CSV));
+        assertThrows(InvalidImportFileException.class, () -> read("Ana", MediaType.TEXT_PLAIN));
+    }
+
+    private List<PatientImportReader.ImportRow> read(String body, MediaType contentType) {
+        List<PatientImportReader.ImportRow> rows = new ArrayList<>();
+        reader.read(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), contentType, rows::add);
+        return rows;
+    }
+
+}
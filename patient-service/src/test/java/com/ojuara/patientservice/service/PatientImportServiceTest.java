@@ -0,0 +1,110 @@
+package com.ojuara.patientservice.service;
+
+import com.ojuara.patientservice.dto.PatientImportResultDTO;
+import com.ojuara.patientservice.dto.PatientImportRowResultDTO;
+import com.ojuara.patientservice.dto.PatientImportStatus;
+import com.ojuara.patientservice.dto.PatientRequestDTO;
+import com.ojuara.patientservice.dto.PatientResponseDTO;
+import com.ojuara.patientservice.repository.BillingOutboxRepository;
+import com.ojuara.patientservice.repository.PatientRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Importação em blocos de {@value PatientImportService#CHUNK_SIZE}: emails repetidos dentro do
+ * bloco, entre blocos e já cadastrados viram EXISTING com o id do paciente, linhas inválidas são
+ * recusadas sem parar o arquivo e cada paciente criado ganha a sua pendência de cobrança.
+ */
+@SpringBootTest(properties = "billing.outbox.relay.enabled=false")
+class PatientImportServiceTest {
+
+    private static final int CHUNK = PatientImportService.CHUNK_SIZE;
+
+    @Autowired
+    private PatientImportService importService;
+
+    @Autowired
+    private PatientService patientService;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private BillingOutboxRepository outboxRepository;
+
+    @Autowired
+    private PatientCache patientCache;
+
+    @BeforeEach
+    void setUp() {
+        outboxRepository.deleteAll();
+        patientRepository.deleteAll();
+        patientCache.invalidateAll();
+    }
+
+    @Test
+    void importsAcrossChunksAndReportsEveryRow() {
+        PatientResponseDTO existing = patientService.createPatient(new PatientRequestDTO(
+                "Zé", "ze@example.com", "1 Rua", "1980-01-01", "2024-01-01")).patient();
+        outboxRepository.deleteAll();
+
+        StringBuilder body = new StringBuilder();
+        for (int i = 1; i <= CHUNK; i++) {
+            body.append(line("p" + i + "@example.com", "2024-01-01"));
+        }
+        // Segundo bloco: repetido do primeiro, já cadastrado, inválido, novo e repetido no próprio bloco
+        body.append(line("p1@example.com", "2024-01-01"));
+        body.append(line("ze@example.com", "2024-01-01"));
+        body.append(line("bad@example.com", "2024-02-30"));
+        body.append(line("last@example.com", "2024-01-01"));
+        body.append(line("last@example.com", "2024-01-01"));
+
+        PatientImportResultDTO result = importService.importPatients(
+                new ByteArrayInputStream(body.toString().getBytes(StandardCharsets.UTF_8)),
+                MediaType.APPLICATION_NDJSON);
+
+        assertEquals(CHUNK + 1, result.getCreated());
+        assertEquals(3, result.getExisting());
+        assertEquals(1, result.getRejected());
+        List<PatientImportRowResultDTO> rows = result.getRows();
+        assertEquals(CHUNK + 5, rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            assertEquals(i + 1, rows.get(i).getRow());
+        }
+
+        assertEquals(PatientImportStatus.EXISTING, rows.get(CHUNK).getStatus());
+        assertEquals(rows.get(0).getId(), rows.get(CHUNK).getId());
+        assertEquals(existing.id().toString(), rows.get(CHUNK + 1).getId());
+        assertEquals(PatientImportStatus.REJECTED, rows.get(CHUNK + 2).getStatus());
+        assertNull(rows.get(CHUNK + 2).getId());
+        assertEquals(Map.of("registeredDate", "Registered Date must be a valid date (yyyy-MM-dd)"),
+                rows.get(CHUNK + 2).getErrors());
+        assertEquals(List.of(PatientImportStatus.CREATED, PatientImportStatus.EXISTING),
+                rows.subList(CHUNK + 3, CHUNK + 5).stream().map(PatientImportRowResultDTO::getStatus).toList());
+        assertEquals(rows.get(CHUNK + 3).getId(), rows.get(CHUNK + 4).getId());
+
+        assertEquals(CHUNK + 2, patientRepository.count());
+        assertEquals(CHUNK + 1, outboxRepository.count());
+        assertTrue(patientRepository.findByEmail("last@example.com").isPresent());
+    }
+
+    private static String line(String email, String registeredDate) {
+        return """
+                {"name": "Paciente", "email": "%s", "address": "1 Rua", "dateOfBirth": "1980-01-01", \
+                "registeredDate": "%s"}
+                """.formatted(email, registeredDate);
+    }
+
+}
@@ -0,0 +1,113 @@
+package com.ojuara.patientservice.service;
+
+import com.ojuara.patientservice.dto.PatientPageResponseDTO;
+import com.ojuara.patientservice.dto.PatientRequestDTO;
+import com.ojuara.patientservice.dto.PatientResponseDTO;
+import com.ojuara.patientservice.exception.InvalidCursorException;
+import com.ojuara.patientservice.repository.BillingOutboxRepository;
+import com.ojuara.patientservice.repository.PatientRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Listagem por cursor (keyset em registeredDate + id): ordem total mesmo com datas repetidas,
+ * páginas estáveis quando entram pacientes antes do cursor e cursores inválidos recusados.
+ */
+@SpringBootTest(properties = "billing.outbox.relay.enabled=false")
+class PatientPagingTest {
+
+    @Autowired
+    private PatientService patientService;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private BillingOutboxRepository outboxRepository;
+
+    @Autowired
+    private PatientCache patientCache;
+
+    @BeforeEach
+    void setUp() {
+        outboxRepository.deleteAll();
+        patientRepository.deleteAll();
+        patientCache.invalidateAll();
+    }
+
+    @Test
+    void walksEveryPatientOnceInKeyOrder() {
+        List<PatientResponseDTO> created = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            // Três pacientes por data: o id desempata
+            created.add(create("p" + i + "@example.com", "2024-01-0" + (1 + i / 3)));
+        }
+        // O banco ordena o UUID como bytes sem sinal, a mesma ordem do texto (UUID.compareTo usa sinal)
+        List<UUID> expected = created.stream()
+                .sorted(Comparator.comparing(PatientResponseDTO::registeredDate)
+                        .thenComparing(patient -> patient.id().toString()))
+                .map(PatientResponseDTO::id)
+                .toList();
+
+        List<UUID> seen = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            PatientPageResponseDTO page = patientService.getPatientsPage(cursor, 3);
+            page.getPatients().forEach(patient -> seen.add(patient.id()));
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(expected, seen);
+        assertEquals(3, pages);
+    }
+
+    @Test
+    void aPatientInsertedBeforeTheCursorDoesNotShiftTheNextPage() {
+        for (int i = 0; i < 4; i++) {
+            create("p" + i + "@example.com", "2024-02-0" + (1 + i));
+        }
+        PatientPageResponseDTO first = patientService.getPatientsPage(null, 2);
+        assertNotNull(first.getNextCursor());
+
+        create("early@example.com", "2023-01-01");
+
+        PatientPageResponseDTO second = patientService.getPatientsPage(first.getNextCursor(), 2);
+        assertEquals(List.of("p2@example.com", "p3@example.com"),
+                second.getPatients().stream().map(PatientResponseDTO::email).toList());
+        assertNull(second.getNextCursor());
+    }
+
+    @Test
+    void rejectsMalformedCursors() {
+        String noSeparator = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString("2024-01-01".getBytes(StandardCharsets.UTF_8));
+        String badDate = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(("2024-13-01|" + UUID.randomUUID()).getBytes(StandardCharsets.UTF_8));
+
+        for (String cursor : List.of("not base64!", noSeparator, badDate)) {
+            assertThrows(InvalidCursorException.class, () -> patientService.getPatientsPage(cursor, 10));
+        }
+    }
+
+    private PatientResponseDTO create(String email, String registeredDate) {
+        return patientService.createPatient(
+                new PatientRequestDTO("Paciente", email, "1 Rua", "1980-01-01", registeredDate)).patient();
+    }
+
+}
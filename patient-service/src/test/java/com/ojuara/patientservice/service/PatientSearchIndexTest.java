@@ -0,0 +1,178 @@
+package com.ojuara.patientservice.service;
+
+import com.ojuara.patientservice.dto.PatientPageResponseDTO;
+import com.ojuara.patientservice.dto.PatientRequestDTO;
+import com.ojuara.patientservice.dto.PatientResponseDTO;
+import com.ojuara.patientservice.exception.InvalidSearchQueryException;
+import com.ojuara.patientservice.model.Patient;
+import com.ojuara.patientservice.repository.BillingOutboxRepository;
+import com.ojuara.patientservice.repository.PatientRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Índice de busca: sincronização pelas escritas do {@link PatientService}, tipos de consulta,
+ * paginação por cursor e reconstrução a partir da tabela.
+ */
+@SpringBootTest(properties = "billing.outbox.relay.enabled=false")
+class PatientSearchIndexTest {
+
+    @Autowired
+    private PatientService patientService;
+
+    @Autowired
+    private PatientSearchIndex searchIndex;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private BillingOutboxRepository outboxRepository;
+
+    @Autowired
+    private PatientCache patientCache;
+
+    @BeforeEach
+    void setUp() {
+        outboxRepository.deleteAll();
+        patientRepository.deleteAll();
+        patientCache.invalidateAll();
+        searchIndex.rebuild();
+    }
+
+    @Test
+    void writesAreSearchableAfterCommit() {
+        PatientResponseDTO ana = create("Ana Conceição", "ana@example.com", "12 Rua das Flores", "1990-05-01");
+        create("Bruno Lima", "bruno@example.com", "34 Avenida Brasil", "1985-02-10");
+        searchIndex.refresh();
+
+        assertEquals(List.of("ana@example.com"), emails(search(query("concei", null, null))));
+
+        patientService.updatePatient(ana.id(),
+                new PatientRequestDTO("Ana Souza", "ana@example.com", "12 Rua das Flores", "1990-05-01", null));
+        searchIndex.refresh();
+        assertEquals(List.of(), emails(search(query("conceicao", null, null))));
+        assertEquals(List.of("ana@example.com"), emails(search(query("souza", null, null))));
+
+        patientService.deletePatientById(ana.id());
+        searchIndex.refresh();
+        assertEquals(List.of(), emails(search(query("souza", null, null))));
+    }
+
+    @Test
+    void eventsThatArriveLateDoNotReplaceNewerVersions() {
+        PatientResponseDTO ana = create("Ana Inicial", "ana@example.com", "12 Rua das Flores", "1990-05-01");
+        searchIndex.refresh();
+        long staleBefore = (long) searchIndex.stats().get("staleEvents");
+
+        // O commit da v2 veio depois do da v1, mas o listener dela rodou antes
+        searchIndex.onPatientsChanged(PatientsChangedEvent.saved(withName(ana, "Ana Nova", 2L)));
+        searchIndex.onPatientsChanged(PatientsChangedEvent.saved(withName(ana, "Ana Velha", 1L)));
+        searchIndex.refresh();
+        assertEquals(List.of("Ana Nova"), search(query("ana", null, null)).getPatients().stream()
+                .map(PatientResponseDTO::name).toList());
+
+        // Uma atualização atrasada não devolve o paciente removido
+        searchIndex.onPatientsChanged(PatientsChangedEvent.deleted(ana.id()));
+        searchIndex.onPatientsChanged(PatientsChangedEvent.saved(withName(ana, "Ana Depois", 3L)));
+        searchIndex.refresh();
+        assertEquals(List.of(), emails(search(query("ana", null, null))));
+        assertEquals(staleBefore + 2, searchIndex.stats().get("staleEvents"));
+    }
+
+    @Test
+    void supportsPrefixFuzzyEmailAndDateOfBirthRange() {
+        create("Mariana Albuquerque", "mariana.a@example.com", "1 Rua Augusta", "1970-03-15");
+        create("Mariano Alves", "m.alves@example.com", "2 Rua Oscar Freire", "1995-07-20");
+        create("Carla Albuquerque", "carla@clinic.org", "3 Rua Augusta", "2001-11-02");
+        searchIndex.refresh();
+
+        assertEquals(Set.of("mariana.a@example.com", "m.alves@example.com"),
+                Set.copyOf(emails(search(query("mari", null, null)))));
+        assertEquals(List.of(), emails(search(query("albuqerque", null, null))));
+        assertEquals(Set.of("mariana.a@example.com", "carla@clinic.org"),
+                Set.copyOf(emails(search(new PatientSearchQuery("albuqerque", null, null, null, null, true)))));
+        assertEquals(List.of("carla@clinic.org"), emails(search(query(null, "CARLA@", null))));
+        assertEquals(List.of("mariana.a@example.com"),
+                emails(search(new PatientSearchQuery(null, null, "augusta", null, LocalDate.of(1980, 1, 1), false))));
+        assertEquals(Set.of("m.alves@example.com", "carla@clinic.org"),
+                Set.copyOf(emails(search(new PatientSearchQuery(null, null, null, LocalDate.of(1990, 1, 1), null, false)))));
+
+        assertThrows(InvalidSearchQueryException.class, () -> search(query(" ", null, null)));
+    }
+
+    @Test
+    void cursorWalksAllResultsWithoutRepeats() {
+        for (int i = 0; i < 25; i++) {
+            create("Paciente Silva " + i, "silva" + i + "@example.com", i + " Rua Um", "1980-01-01");
+        }
+        searchIndex.refresh();
+
+        Set<UUID> seen = new HashSet<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            PatientPageResponseDTO page = searchIndex.search(query("silva", null, null), cursor, 10);
+            page.getPatients().forEach(patient -> assertEquals(true, seen.add(patient.id())));
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(25, seen.size());
+        assertEquals(3, pages);
+    }
+
+    @Test
+    void rebuildPicksUpRowsWrittenWithoutEvents() {
+        PatientResponseDTO removed = create("Removido", "removed@example.com", "1 Rua", "1980-01-01");
+        searchIndex.refresh();
+
+        // Escritas direto no repositório não publicam eventos
+        patientRepository.deleteById(removed.id());
+        patientRepository.save(new Patient(null, "Direto", "direct@example.com", "2 Rua",
+                LocalDate.of(1980, 1, 1), LocalDate.of(2024, 1, 1)));
+        searchIndex.refresh();
+        assertEquals(List.of("removed@example.com"), emails(search(query("removido", null, null))));
+        assertEquals(List.of(), emails(search(query("direto", null, null))));
+
+        searchIndex.rebuild();
+
+        assertEquals(List.of(), emails(search(query("removido", null, null))));
+        assertEquals(List.of("direct@example.com"), emails(search(query("direto", null, null))));
+        assertNull(search(query("direto", null, null)).getNextCursor());
+    }
+
+    private static PatientResponseDTO withName(PatientResponseDTO patient, String name, long version) {
+        return new PatientResponseDTO(patient.id(), name, patient.email(), patient.address(),
+                patient.dateOfBirth(), patient.registeredDate(), version);
+    }
+
+    private PatientResponseDTO create(String name, String email, String address, String dateOfBirth) {
+        return patientService.createPatient(new PatientRequestDTO(name, email, address, dateOfBirth, "2024-01-01")).patient();
+    }
+
+    private PatientPageResponseDTO search(PatientSearchQuery query) {
+        return searchIndex.search(query, null, 50);
+    }
+
+    private static PatientSearchQuery query(String name, String email, String address) {
+        return new PatientSearchQuery(name, email, address, null, null, false);
+    }
+
+    private static List<String> emails(PatientPageResponseDTO page) {
+        return page.getPatients().stream().map(PatientResponseDTO::email).toList();
+    }
+
+}